@@ -31,6 +31,8 @@
 import org.apache.hc.core5.annotation.ThreadingBehavior;
 import org.apache.hc.core5.http2.frame.FrameConsts;
 import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.ByteBufferAllocator;
+import org.apache.hc.core5.util.HeapByteBufferAllocator;
 
 /**
  * HTTP/2 protocol configuration.
@@ -49,10 +51,14 @@ public class H2Config {
     private final int maxFrameSize;
     private final int maxHeaderListSize;
     private final boolean settingAckNeeded;
+    private final ByteBufferAllocator bufferAllocator;
+    private final int outputBatchSize;
+    private final int maxWindowSize;
 
     H2Config(final int headerTableSize, final boolean pushEnabled, final int maxConcurrentStreams,
              final int initialWindowSize, final int maxFrameSize, final int maxHeaderListSize,
-             final boolean settingAckNeeded) {
+             final boolean settingAckNeeded, final ByteBufferAllocator bufferAllocator,
+             final int outputBatchSize, final int maxWindowSize) {
         super();
         this.headerTableSize = headerTableSize;
         this.pushEnabled = pushEnabled;
@@ -61,6 +67,9 @@ public class H2Config {
         this.maxFrameSize = maxFrameSize;
         this.maxHeaderListSize = maxHeaderListSize;
         this.settingAckNeeded = settingAckNeeded;
+        this.bufferAllocator = bufferAllocator;
+        this.outputBatchSize = outputBatchSize;
+        this.maxWindowSize = maxWindowSize;
     }
 
     public int getHeaderTableSize() {
@@ -91,6 +100,39 @@ public boolean isSettingAckNeeded() {
         return settingAckNeeded;
     }
 
+    /**
+     * Returns the allocator of frame input and output buffers.
+     *
+     * @since 5.0
+     */
+    public ByteBufferAllocator getBufferAllocator() {
+        return bufferAllocator;
+    }
+
+    /**
+     * Returns the number of bytes of outgoing frames that may be staged and
+     * written out with a single write operation. {@code 0} means frames
+     * are written out one by one.
+     *
+     * @since 5.0
+     */
+    public int getOutputBatchSize() {
+        return outputBatchSize;
+    }
+
+    /**
+     * Returns the upper bound of auto-tuned input flow control windows.
+     * Auto-tuning is enabled only if this value is greater than
+     * the initial window size. Please note that with auto-tuning enabled
+     * the connection periodically sends PING frames to the peer in order
+     * to sample the bandwidth-delay product.
+     *
+     * @since 5.0
+     */
+    public int getMaxWindowSize() {
+        return maxWindowSize;
+    }
+
     @Override
     public String toString() {
         final StringBuilder builder = new StringBuilder();
@@ -101,6 +143,9 @@ public String toString() {
                 .append(", maxFrameSize=").append(this.maxFrameSize)
                 .append(", maxHeaderListSize=").append(this.maxHeaderListSize)
                 .append(", settingAckNeeded=").append(this.settingAckNeeded)
+                .append(", bufferAllocator=").append(this.bufferAllocator)
+                .append(", outputBatchSize=").append(this.outputBatchSize)
+                .append(", maxWindowSize=").append(this.maxWindowSize)
                 .append("]");
         return builder.toString();
     }
@@ -118,7 +163,10 @@ public static H2Config.Builder copy(final H2Config config) {
                 .setInitialWindowSize(config.getInitialWindowSize())
                 .setMaxFrameSize(config.getMaxFrameSize())
                 .setMaxHeaderListSize(config.getMaxHeaderListSize())
-                .setSettingAckNeeded(config.isSettingAckNeeded());
+                .setSettingAckNeeded(config.isSettingAckNeeded())
+                .setBufferAllocator(config.getBufferAllocator())
+                .setOutputBatchSize(config.getOutputBatchSize())
+                .setMaxWindowSize(config.getMaxWindowSize());
     }
 
     public static class Builder {
@@ -130,6 +178,9 @@ public static class Builder {
         private int maxFrameSize;
         private int maxHeaderListSize;
         private boolean settingAckNeeded;
+        private ByteBufferAllocator bufferAllocator;
+        private int outputBatchSize;
+        private int maxWindowSize;
 
         Builder() {
             this.headerTableSize = 8192;
@@ -139,6 +190,9 @@ public static class Builder {
             this.maxFrameSize  = FrameConsts.MIN_FRAME_SIZE * 4;
             this.maxHeaderListSize = FrameConsts.MAX_FRAME_SIZE;
             this.settingAckNeeded = true;
+            this.bufferAllocator = HeapByteBufferAllocator.INSTANCE;
+            this.outputBatchSize = 0;
+            this.maxWindowSize = 0;
         }
 
         public Builder setHeaderTableSize(final int headerTableSize) {
@@ -181,10 +235,51 @@ public Builder setSettingAckNeeded(final boolean settingAckNeeded) {
             return this;
         }
 
+        /**
+         * Sets the allocator of frame input and output buffers.
+         *
+         * @since 5.0
+         */
+        public Builder setBufferAllocator(final ByteBufferAllocator bufferAllocator) {
+            this.bufferAllocator = bufferAllocator;
+            return this;
+        }
+
+        /**
+         * Sets the number of bytes of outgoing frames that may be staged and
+         * written out with a single write operation. Frames produced by
+         * multiple streams get coalesced until this many bytes are staged.
+         * {@code 0} (default) disables coalescing.
+         *
+         * @since 5.0
+         */
+        public Builder setOutputBatchSize(final int outputBatchSize) {
+            Args.notNegative(outputBatchSize, "Output batch size");
+            this.outputBatchSize = outputBatchSize;
+            return this;
+        }
+
+        /**
+         * Sets the upper bound of input flow control windows. If greater than
+         * the initial window size, connection and stream input windows are
+         * auto-tuned between the initial window size and this value based
+         * on bandwidth-delay product estimates obtained with PING round trips.
+         * A PING frame is sent to the peer with the first DATA frame of every
+         * sample. {@code 0} (default) disables auto-tuning.
+         *
+         * @since 5.0
+         */
+        public Builder setMaxWindowSize(final int maxWindowSize) {
+            Args.notNegative(maxWindowSize, "Max window size");
+            this.maxWindowSize = maxWindowSize;
+            return this;
+        }
+
         public H2Config build() {
             return new H2Config(
                     headerTableSize, pushEnabled, maxConcurrentStreams, initialWindowSize, maxFrameSize, maxHeaderListSize,
-                    settingAckNeeded);
+                    settingAckNeeded, bufferAllocator != null ? bufferAllocator : HeapByteBufferAllocator.INSTANCE,
+                    outputBatchSize, maxWindowSize);
         }
 
     }
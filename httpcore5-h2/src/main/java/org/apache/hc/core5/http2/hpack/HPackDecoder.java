@@ -52,11 +52,13 @@ public final class HPackDecoder {
     private final CharsetDecoder charsetDecoder;
     private CharBuffer tmpBuf;
     private int maxTableSize;
+    private boolean tableDrivenHuffmanDecoding;
 
     HPackDecoder(final InboundDynamicTable dynamicTable, final CharsetDecoder charsetDecoder) {
         this.dynamicTable = dynamicTable != null ? dynamicTable : new InboundDynamicTable();
         this.contentBuf = new ByteArrayBuffer(256);
         this.charsetDecoder = charsetDecoder;
+        this.tableDrivenHuffmanDecoding = true;
     }
 
     HPackDecoder(final InboundDynamicTable dynamicTable, final Charset charset) {
@@ -133,7 +135,8 @@ static void decodePlainString(final ByteArrayBuffer buffer, final ByteBuffer src
         }
     }
 
-    static void decodeHuffman(final ByteArrayBuffer buffer, final ByteBuffer src) throws HPackException {
+    static void decodeHuffman(
+            final ByteArrayBuffer buffer, final ByteBuffer src, final boolean tableDriven) throws HPackException {
 
         final int strLen = decodeInt(src, 7);
         if (strLen > src.remaining()) {
@@ -141,15 +144,23 @@ static void decodeHuffman(final ByteArrayBuffer buffer, final ByteBuffer src) th
         }
         final int limit = src.limit();
         src.limit(src.position() + strLen);
-        Huffman.DECODER.decode(buffer, src);
+        if (tableDriven) {
+            Huffman.TABLE_DECODER.decode(buffer, src);
+        } else {
+            Huffman.DECODER.decode(buffer, src);
+        }
         src.limit(limit);
     }
 
+    static void decodeHuffman(final ByteArrayBuffer buffer, final ByteBuffer src) throws HPackException {
+        decodeHuffman(buffer, src, true);
+    }
+
     void decodeString(final ByteArrayBuffer buffer, final ByteBuffer src) throws HPackException {
 
         final int firstByte = peekByte(src);
         if ((firstByte & 0x80) == 0x80) {
-            decodeHuffman(buffer, src);
+            decodeHuffman(buffer, src, tableDrivenHuffmanDecoding);
         } else {
             decodePlainString(buffer, src);
         }
@@ -304,4 +315,21 @@ public void setMaxTableSize(final int maxTableSize) {
         this.dynamicTable.setMaxSize(maxTableSize);
     }
 
+    /**
+     * @since 5.0
+     */
+    public boolean isTableDrivenHuffmanDecoding() {
+        return this.tableDrivenHuffmanDecoding;
+    }
+
+    /**
+     * Selects the Huffman decoder: the table driven one that decodes four bits
+     * per lookup (default) or the one that walks the Huffman code tree.
+     *
+     * @since 5.0
+     */
+    public void setTableDrivenHuffmanDecoding(final boolean tableDrivenHuffmanDecoding) {
+        this.tableDrivenHuffmanDecoding = tableDrivenHuffmanDecoding;
+    }
+
 }
@@ -323,4 +323,6 @@ private Huffman() {
 
     static final HuffmanDecoder DECODER = new HuffmanDecoder(CODES, LENGTHS);
 
+    static final HuffmanTableDecoder TABLE_DECODER = new HuffmanTableDecoder(CODES, LENGTHS);
+
 }
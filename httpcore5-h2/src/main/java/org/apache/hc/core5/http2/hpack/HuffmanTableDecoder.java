@@ -0,0 +1,172 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.http2.hpack;
+
+import java.nio.ByteBuffer;
+
+import org.apache.hc.core5.util.ByteArrayBuffer;
+
+/**
+ * Table driven Huffman decoder that consumes input four bits at a time.
+ * <p>
+ * The decoder is a finite state machine whose states are the internal nodes
+ * of the Huffman code tree. The transition table built from the code table
+ * gives, for every state and every 4-bit input, the next state, the symbol
+ * completed along the way, if any, and whether the input may end in the
+ * next state. As no code is shorter than five bits, no more than one symbol
+ * can be completed per transition.
+ * </p>
+ */
+final class HuffmanTableDecoder {
+
+    private static final int EMIT = 1 << 16;
+    private static final int ACCEPT = 1 << 17;
+    private static final int FAIL = 1 << 18;
+
+    private final int[] table;
+
+    HuffmanTableDecoder(final int[] codes, final byte[] lengths) {
+        this.table = buildTable(codes, lengths);
+    }
+
+    void decode(final ByteArrayBuffer out, final ByteBuffer src) throws HPackException {
+        int state = 0;
+        boolean accept = true;
+        if (src.hasArray()) {
+            final byte[] b = src.array();
+            final int off = src.arrayOffset() + src.position();
+            final int end = off + src.remaining();
+            for (int i = off; i < end; i++) {
+                final int octet = b[i] & 0xFF;
+                int entry = transition(out, state, octet >>> 4);
+                entry = transition(out, entry & 0xFF, octet & 0x0F);
+                state = entry & 0xFF;
+                accept = (entry & ACCEPT) != 0;
+            }
+            src.position(src.limit());
+        } else {
+            while (src.hasRemaining()) {
+                final int octet = src.get() & 0xFF;
+                int entry = transition(out, state, octet >>> 4);
+                entry = transition(out, entry & 0xFF, octet & 0x0F);
+                state = entry & 0xFF;
+                accept = (entry & ACCEPT) != 0;
+            }
+        }
+
+        // Section 5.2. String Literal Representation
+        // Padding strictly longer than 7 bits or not corresponding to the most
+        // significant bits of the code for the EOS symbol MUST be treated as
+        // a decoding error.
+        if (!accept) {
+            throw new HPackException("Invalid padding");
+        }
+    }
+
+    private int transition(final ByteArrayBuffer out, final int state, final int nibble) throws HPackException {
+        final int entry = table[(state << 4) | nibble];
+        if ((entry & (EMIT | FAIL)) != 0) {
+            if ((entry & FAIL) != 0) {
+                throw new HPackException("EOS decoded");
+            }
+            out.append((entry >>> 8) & 0xFF);
+        }
+        return entry;
+    }
+
+    private static int[] buildTable(final int[] codes, final byte[] lengths) {
+        // Internal nodes of the code tree, root being 0. Children are either
+        // internal nodes (positive), leaves (-(symbol + 1)) or missing (0).
+        final int[][] children = new int[256][2];
+        int nodeCount = 1;
+        for (int symbol = 0; symbol < codes.length; symbol++) {
+            final int code = codes[symbol];
+            final int length = lengths[symbol];
+            int node = 0;
+            for (int i = length - 1; i > 0; i--) {
+                final int bit = (code >>> i) & 1;
+                int child = children[node][bit];
+                if (child < 0) {
+                    throw new IllegalStateException("Invalid Huffman code: prefix not unique");
+                }
+                if (child == 0) {
+                    if (nodeCount == children.length) {
+                        throw new IllegalStateException("Invalid Huffman code: too many nodes");
+                    }
+                    child = nodeCount++;
+                    children[node][bit] = child;
+                }
+                node = child;
+            }
+            if (children[node][code & 1] != 0) {
+                throw new IllegalStateException("Invalid Huffman code: prefix not unique");
+            }
+            children[node][code & 1] = -(symbol + 1);
+        }
+
+        // Input may end where the padding read so far consists of up to 7 bits
+        // of the EOS code, which are all ones
+        final boolean[] accepting = new boolean[children.length];
+        int node = 0;
+        accepting[node] = true;
+        for (int depth = 1; depth <= 7; depth++) {
+            node = children[node][1];
+            if (node <= 0) {
+                break;
+            }
+            accepting[node] = true;
+        }
+
+        final int[] table = new int[children.length << 4];
+        for (int state = 0; state < nodeCount; state++) {
+            for (int nibble = 0; nibble < 16; nibble++) {
+                int current = state;
+                int entry = 0;
+                for (int i = 3; i >= 0; i--) {
+                    final int next = children[current][(nibble >>> i) & 1];
+                    if (next < 0) {
+                        final int symbol = -next - 1;
+                        if (symbol == Huffman.EOS) {
+                            entry |= FAIL;
+                        } else {
+                            entry |= EMIT | (symbol << 8);
+                        }
+                        current = 0;
+                    } else {
+                        current = next;
+                    }
+                }
+                if (accepting[current]) {
+                    entry |= ACCEPT;
+                }
+                table[(state << 4) | nibble] = entry | current;
+            }
+        }
+        return table;
+    }
+
+}
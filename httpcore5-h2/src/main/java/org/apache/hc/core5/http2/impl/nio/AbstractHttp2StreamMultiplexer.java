@@ -31,6 +31,7 @@
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.charset.CharacterCodingException;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
@@ -45,6 +46,7 @@
 
 import javax.net.ssl.SSLSession;
 
+import org.apache.hc.core5.function.Callback;
 import org.apache.hc.core5.http.ConnectionClosedException;
 import org.apache.hc.core5.http.EndpointDetails;
 import org.apache.hc.core5.http.Header;
@@ -59,6 +61,7 @@
 import org.apache.hc.core5.http.impl.CharCodingSupport;
 import org.apache.hc.core5.http.nio.AsyncClientExchangeHandler;
 import org.apache.hc.core5.http.nio.AsyncPushProducer;
+import org.apache.hc.core5.http.nio.RetainableByteBuffer;
 import org.apache.hc.core5.http.nio.command.ExecutionCommand;
 import org.apache.hc.core5.http.nio.command.ShutdownCommand;
 import org.apache.hc.core5.http.protocol.HttpCoreContext;
@@ -69,6 +72,7 @@
 import org.apache.hc.core5.http2.config.H2Config;
 import org.apache.hc.core5.http2.config.H2Param;
 import org.apache.hc.core5.http2.config.H2Setting;
+import org.apache.hc.core5.http2.frame.FrameConsts;
 import org.apache.hc.core5.http2.frame.FrameFactory;
 import org.apache.hc.core5.http2.frame.FrameFlag;
 import org.apache.hc.core5.http2.frame.FrameType;
@@ -79,6 +83,7 @@
 import org.apache.hc.core5.http2.impl.BasicH2TransportMetrics;
 import org.apache.hc.core5.http2.nio.AsyncPingHandler;
 import org.apache.hc.core5.http2.nio.command.PingCommand;
+import org.apache.hc.core5.http2.nio.support.BasicPingHandler;
 import org.apache.hc.core5.io.ShutdownType;
 import org.apache.hc.core5.reactor.Command;
 import org.apache.hc.core5.reactor.TlsCapableIOSession;
@@ -90,6 +95,7 @@
 abstract class AbstractHttp2StreamMultiplexer implements Identifiable, HttpConnection {
 
     private static final long LINGER_TIME = 1000; // 1 second
+    private static final String PRIORITY_HEADER = "priority";
 
     enum Mode { CLIENT, SERVER}
     enum ConnectionHandshake { READY, ACTIVE, GRACEFUL_SHUTDOWN, SHUTDOWN}
@@ -107,12 +113,15 @@ enum SettingsHandshake { READY, TRANSMITTED, ACKED }
     private final FrameInputBuffer inputBuffer;
     private final FrameOutputBuffer outputBuffer;
     private final Deque<RawFrame> outputQueue;
+    private final int outputBatchSize;
     private final HPackEncoder hPackEncoder;
     private final HPackDecoder hPackDecoder;
     private final Map<Integer, Http2Stream> streamMap;
+    private final StreamPriorityTree priorityTree;
     private final Queue<AsyncPingHandler> pingHandlers;
     private final AtomicInteger connInputWindow;
     private final AtomicInteger connOutputWindow;
+    private final BandwidthDelayEstimator windowEstimator;
     private final Lock outputLock;
     private final AtomicInteger outputRequests;
     private final AtomicInteger lastStreamId;
@@ -121,7 +130,7 @@ enum SettingsHandshake { READY, TRANSMITTED, ACKED }
     private ConnectionHandshake connState = ConnectionHandshake.READY;
     private SettingsHandshake localSettingState = SettingsHandshake.READY;
     private SettingsHandshake remoteSettingState = SettingsHandshake.READY;
-    private H2Config remoteConfig;
+    private volatile H2Config remoteConfig;
     private int lowMark;
 
     private Continuation continuation;
@@ -129,6 +138,9 @@ enum SettingsHandshake { READY, TRANSMITTED, ACKED }
     private int processedRemoteStreamId;
     private EndpointDetails endpointDetails;
 
+    private Http2Stream pendingDataStream;
+    private final List<RetainableByteBuffer> pendingData = new ArrayList<>();
+
     AbstractHttp2StreamMultiplexer(
             final Mode mode,
             final TlsCapableIOSession ioSession,
@@ -147,8 +159,11 @@ enum SettingsHandshake { READY, TRANSMITTED, ACKED }
         this.inputMetrics = new BasicH2TransportMetrics();
         this.outputMetrics = new BasicH2TransportMetrics();
         this.connMetrics = new BasicHttpConnectionMetrics(inputMetrics, outputMetrics);
-        this.inputBuffer = new FrameInputBuffer(this.inputMetrics, this.localConfig.getMaxFrameSize());
-        this.outputBuffer = new FrameOutputBuffer(this.outputMetrics, this.localConfig.getMaxFrameSize());
+        this.inputBuffer = new FrameInputBuffer(this.inputMetrics, this.localConfig.getMaxFrameSize(),
+                this.localConfig.getBufferAllocator());
+        this.outputBatchSize = this.localConfig.getOutputBatchSize();
+        this.outputBuffer = new FrameOutputBuffer(this.outputMetrics, this.localConfig.getMaxFrameSize(),
+                this.outputBatchSize, this.localConfig.getBufferAllocator());
         this.outputQueue = new ConcurrentLinkedDeque<>();
         this.pingHandlers = new ConcurrentLinkedQueue<>();
         this.outputLock = new ReentrantLock();
@@ -157,8 +172,12 @@ enum SettingsHandshake { READY, TRANSMITTED, ACKED }
         this.hPackEncoder = new HPackEncoder(CharCodingSupport.createEncoder(charCodingConfig));
         this.hPackDecoder = new HPackDecoder(CharCodingSupport.createDecoder(charCodingConfig));
         this.streamMap = new ConcurrentHashMap<>();
+        this.priorityTree = new StreamPriorityTree();
         this.connInputWindow = new AtomicInteger(localConfig.getInitialWindowSize());
         this.connOutputWindow = new AtomicInteger(H2Config.DEFAULT.getInitialWindowSize());
+        this.windowEstimator = localConfig.getMaxWindowSize() > localConfig.getInitialWindowSize()
+                ? new BandwidthDelayEstimator(localConfig.getInitialWindowSize(), localConfig.getMaxWindowSize())
+                : null;
 
         this.hPackDecoder.setMaxTableSize(H2Config.DEFAULT.getInitialWindowSize());
         this.hPackEncoder.setMaxTableSize(this.localConfig.getHeaderTableSize());
@@ -215,8 +234,20 @@ private int updateOutputWindow(
         return newSize;
     }
 
+    private boolean canStageOutput() {
+        return outputBatchSize > 0 ? outputBuffer.length() < outputBatchSize : outputBuffer.isEmpty();
+    }
+
     private void commitFrameInternal(final RawFrame frame) throws IOException {
-        if (outputBuffer.isEmpty() && outputQueue.isEmpty()) {
+        if (outputBatchSize > 0) {
+            if (outputQueue.isEmpty() && canStageOutput() && outputBuffer.stage(frame)) {
+                if (streamListener != null) {
+                    streamListener.onFrameOutput(this, frame.getStreamId(), frame);
+                }
+            } else {
+                outputQueue.addLast(frame);
+            }
+        } else if (outputBuffer.isEmpty() && outputQueue.isEmpty()) {
             if (streamListener != null) {
                 streamListener.onFrameOutput(this, frame.getStreamId(), frame);
             }
@@ -307,39 +338,61 @@ private void commitPushPromise(
         }
     }
 
-    private void streamDataFrame(
+    /**
+     * @return {@code false} if the frame could not be staged for output, in which
+     *   case no output window has been consumed.
+     */
+    private boolean streamDataFrame(
             final int streamId,
             final AtomicInteger streamOutputWindow,
             final ByteBuffer payload,
             final int chunk) throws IOException {
         final RawFrame dataFrame = frameFactory.createData(streamId, payload, false);
+        if (outputBatchSize > 0) {
+            if (!outputBuffer.stage(dataFrame)) {
+                return false;
+            }
+        } else {
+            outputBuffer.write(dataFrame, ioSession.channel());
+        }
         if (streamListener != null) {
             streamListener.onFrameOutput(this, streamId, dataFrame);
         }
         updateOutputWindow(0, connOutputWindow, -chunk);
         updateOutputWindow(streamId, streamOutputWindow, -chunk);
-        outputBuffer.write(dataFrame, ioSession.channel());
+        priorityTree.sent(streamId, chunk);
+        return true;
     }
 
     private int streamData(
             final int streamId, final AtomicInteger streamOutputWindow, final ByteBuffer payload) throws IOException {
-        if (outputBuffer.isEmpty() && outputQueue.isEmpty()) {
+        if (canStageOutput() && outputQueue.isEmpty()) {
             final int capacity = Math.min(connOutputWindow.get(), streamOutputWindow.get());
             if (capacity <= 0) {
                 return 0;
             }
             final int frameSize = Math.max(localConfig.getMaxFrameSize(), remoteConfig.getMaxFrameSize());
-            final int maxPayloadSize = Math.min(capacity, frameSize);
+            int maxPayloadSize = Math.min(capacity, frameSize);
+            if (outputBatchSize > 0) {
+                maxPayloadSize = Math.min(maxPayloadSize, outputBuffer.available() - FrameConsts.HEAD_LEN);
+                if (maxPayloadSize <= 0) {
+                    return 0;
+                }
+            }
             final int chunk;
             if (payload.remaining() <= maxPayloadSize) {
                 chunk = payload.remaining();
-                streamDataFrame(streamId, streamOutputWindow, payload, chunk);
+                if (!streamDataFrame(streamId, streamOutputWindow, payload, chunk)) {
+                    return 0;
+                }
             } else {
                 chunk = maxPayloadSize;
                 final int originalLimit = payload.limit();
                 try {
                     payload.limit(payload.position() + chunk);
-                    streamDataFrame(streamId, streamOutputWindow, payload, chunk);
+                    if (!streamDataFrame(streamId, streamOutputWindow, payload, chunk)) {
+                        return 0;
+                    }
                 } finally {
                     payload.limit(originalLimit);
                 }
@@ -356,7 +409,9 @@ private void updateInputCapacity(
             final int streamId, final AtomicInteger inputWindow, final int inputCapacity) throws IOException {
         if (inputCapacity > 0) {
             final int streamWinSize = inputWindow.get();
-            final int chunk = inputCapacity - streamWinSize;
+            final int capacity = windowEstimator != null
+                    ? Math.min(inputCapacity, windowEstimator.getWindowSize()) : inputCapacity;
+            final int chunk = capacity - streamWinSize;
             if (chunk > 0) {
                 final RawFrame windowUpdateFrame = frameFactory.createWindowUpdate(streamId, chunk);
                 commitFrame(windowUpdateFrame);
@@ -414,46 +469,75 @@ public final void onInput() throws HttpException, IOException {
                     streamListener.onFrameInput(this, frame.getStreamId(), frame);
                 }
                 consumeFrame(frame);
+                if (pendingDataStream != null && !inputBuffer.isFrameAvailable()) {
+                    consumePendingData();
+                }
             }
+            consumePendingData();
         }
     }
 
     public final void onOutput() throws HttpException, IOException {
         outputLock.lock();
         try {
-            if (!outputBuffer.isEmpty()) {
-                outputBuffer.flush(ioSession.channel());
-            }
-            while (outputBuffer.isEmpty()) {
-                final RawFrame frame = outputQueue.poll();
-                if (frame != null) {
-                    if (streamListener != null) {
-                        streamListener.onFrameOutput(this, frame.getStreamId(), frame);
+            if (outputBatchSize > 0) {
+                // Queued frames are staged along with frames produced by streams below
+                // and written out together with a single write once output is complete
+                while (canStageOutput()) {
+                    final RawFrame frame = outputQueue.peek();
+                    if (frame != null && outputBuffer.stage(frame)) {
+                        outputQueue.poll();
+                        if (streamListener != null) {
+                            streamListener.onFrameOutput(this, frame.getStreamId(), frame);
+                        }
+                    } else {
+                        break;
+                    }
+                }
+            } else {
+                if (!outputBuffer.isEmpty()) {
+                    outputBuffer.flush(ioSession.channel());
+                }
+                while (outputBuffer.isEmpty()) {
+                    final RawFrame frame = outputQueue.poll();
+                    if (frame != null) {
+                        if (streamListener != null) {
+                            streamListener.onFrameOutput(this, frame.getStreamId(), frame);
+                        }
+                        outputBuffer.write(frame, ioSession.channel());
+                    } else {
+                        break;
                     }
-                    outputBuffer.write(frame, ioSession.channel());
-                } else {
-                    break;
                 }
             }
         } finally {
             outputLock.unlock();
         }
 
-        final int connWinSize = connInputWindow.get();
-        if (connWinSize < lowMark) {
-            final int delta = this.remoteConfig.getInitialWindowSize() - connWinSize;
-            if (delta > 0) {
-                final RawFrame windowUpdateFrame = frameFactory.createWindowUpdate(0, delta);
-                commitFrame(windowUpdateFrame);
-                updateInputWindow(0, connInputWindow, delta);
+        if (windowEstimator != null) {
+            updateConnInputWindow(windowEstimator.getWindowSize());
+        } else {
+            final int connWinSize = connInputWindow.get();
+            if (connWinSize < lowMark) {
+                final int delta = this.remoteConfig.getInitialWindowSize() - connWinSize;
+                if (delta > 0) {
+                    final RawFrame windowUpdateFrame = frameFactory.createWindowUpdate(0, delta);
+                    commitFrame(windowUpdateFrame);
+                    updateInputWindow(0, connInputWindow, delta);
+                }
             }
         }
 
-        if (connState.compareTo(ConnectionHandshake.SHUTDOWN) < 0 && remoteSettingState == SettingsHandshake.ACKED) {
+        final boolean outputActive = connState.compareTo(ConnectionHandshake.SHUTDOWN) < 0
+                && remoteSettingState == SettingsHandshake.ACKED;
+        if (outputActive && connOutputWindow.get() > 0) {
+            produceOutput();
+        }
+        if (outputBatchSize > 0) {
+            flushOutput();
+        }
 
-            if (connOutputWindow.get() > 0) {
-                produceOutput();
-            }
+        if (outputActive) {
             final int pendingOutputRequests = outputRequests.get();
             boolean outputPending = false;
             if (!streamMap.isEmpty() && connOutputWindow.get() > 0) {
@@ -496,6 +580,7 @@ public final void onOutput() throws HttpException, IOException {
                 if (stream.isLocalClosed() && stream.isRemoteClosed()) {
                     stream.releaseResources();
                     it.remove();
+                    priorityTree.remove(stream.getId());
                 }
             }
             if (streamMap.isEmpty()) {
@@ -560,6 +645,13 @@ public final void onDisconnect() {
                 break;
             }
         }
+        inputBuffer.release();
+        outputLock.lock();
+        try {
+            outputBuffer.release();
+        } finally {
+            outputLock.unlock();
+        }
     }
 
     private void processPendingCommands() throws IOException, HttpException {
@@ -609,6 +701,7 @@ private void processPendingCommands() throws IOException, HttpException {
                         context);
                 final Http2Stream stream = new Http2Stream(channel, streamHandler, false);
                 streamMap.put(streamId, stream);
+                priorityTree.add(streamId);
 
                 if (stream.isOutputReady()) {
                     stream.produceOutput();
@@ -669,6 +762,9 @@ public final void onException(final Exception cause) {
                 }
                 final RawFrame goAway = frameFactory.createGoAway(processedRemoteStreamId, errorCode, cause.getMessage());
                 commitFrame(goAway);
+                if (outputBatchSize > 0) {
+                    flushOutput();
+                }
             }
             connState = ConnectionHandshake.SHUTDOWN;
         } catch (final IOException ignore) {
@@ -695,6 +791,9 @@ private Http2Stream getValidStream(final int streamId) throws H2ConnectionExcept
     private void consumeFrame(final RawFrame frame) throws HttpException, IOException {
         final FrameType frameType = FrameType.valueOf(frame.getType());
         final int streamId = frame.getStreamId();
+        if (pendingDataStream != null && (frameType != FrameType.DATA || pendingDataStream.getId() != streamId)) {
+            consumePendingData();
+        }
         if (continuation != null && frameType != FrameType.CONTINUATION) {
             throw new H2ConnectionException(H2Error.PROTOCOL_ERROR, "CONTINUATION frame expected");
         }
@@ -714,7 +813,12 @@ private void consumeFrame(final RawFrame frame) throws HttpException, IOExceptio
                 }
 
                 if (stream.isTerminated()) {
+                    if (pendingDataStream == stream) {
+                        pendingDataStream = null;
+                        pendingData.clear();
+                    }
                     streamMap.remove(streamId);
+                    priorityTree.remove(streamId);
                     stream.releaseResources();
                 }
             }
@@ -743,6 +847,7 @@ private void consumeFrame(final RawFrame frame) throws HttpException, IOExceptio
                         stream.produceOutput();
                     }
                     streamMap.put(streamId, stream);
+                    priorityTree.add(streamId);
                 }
 
                 try {
@@ -757,6 +862,7 @@ private void consumeFrame(final RawFrame frame) throws HttpException, IOExceptio
 
                 if (stream.isTerminated()) {
                     streamMap.remove(streamId);
+                    priorityTree.remove(streamId);
                     stream.releaseResources();
                 }
             }
@@ -779,6 +885,7 @@ private void consumeFrame(final RawFrame frame) throws HttpException, IOExceptio
 
                 if (stream.isTerminated()) {
                     streamMap.remove(streamId);
+                    priorityTree.remove(streamId);
                     stream.releaseResources();
                 }
             }
@@ -828,6 +935,7 @@ private void consumeFrame(final RawFrame frame) throws HttpException, IOExceptio
                     final int errorCode = payload.getInt();
                     stream.reset(new H2StreamResetException(errorCode, "Stream reset"));
                     streamMap.remove(streamId);
+                    priorityTree.remove(streamId);
                     stream.releaseResources();
                 }
             }
@@ -879,9 +987,22 @@ private void consumeFrame(final RawFrame frame) throws HttpException, IOExceptio
                 }
             }
             break;
-            case PRIORITY:
-                // Stream priority not supported
-                break;
+            case PRIORITY: {
+                if (streamId == 0) {
+                    throw new H2ConnectionException(H2Error.PROTOCOL_ERROR, "Illegal stream id: " + streamId);
+                }
+                final ByteBuffer payload = frame.getPayload();
+                if (payload == null || payload.remaining() != 5) {
+                    resetStream(streamId, new H2StreamResetException(H2Error.FRAME_SIZE_ERROR, "Invalid PRIORITY frame payload"));
+                } else {
+                    try {
+                        consumePriority(streamId, payload);
+                    } catch (final H2StreamResetException ex) {
+                        resetStream(streamId, ex);
+                    }
+                }
+            }
+            break;
             case PUSH_PROMISE: {
                 if (mode == Mode.SERVER) {
                     throw new H2ConnectionException(H2Error.PROTOCOL_ERROR, "Push not supported");
@@ -919,6 +1040,7 @@ private void consumeFrame(final RawFrame frame) throws HttpException, IOExceptio
                         channel, httpProcessor, connMetrics);
                 final Http2Stream promisedStream = new Http2Stream(channel, streamHandler, true);
                 streamMap.put(promisedStreamId, promisedStream);
+                priorityTree.add(promisedStreamId);
 
                 try {
                     consumePushPromiseFrame(frame, payload, promisedStream);
@@ -969,12 +1091,18 @@ private void consumeDataFrame(final RawFrame frame, final Http2Stream stream) th
         final ByteBuffer payload = frame.getPayloadContent();
         if (payload != null) {
             final int frameLength = frame.getLength();
+            if (windowEstimator != null && windowEstimator.dataReceived(frameLength, System.nanoTime())) {
+                sampleBandwidthDelay();
+            }
+            final int streamLowMark = windowEstimator != null ? windowEstimator.getWindowSize() / 2 : lowMark;
             final int streamWinSize = updateInputWindow(streamId, stream.getInputWindow(), -frameLength);
-            if (streamWinSize < lowMark && !stream.isRemoteClosed()) {
+            if (streamWinSize < streamLowMark && !stream.isRemoteClosed()) {
                 stream.produceInputCapacityUpdate();
             }
             final int connWinSize = updateInputWindow(0, connInputWindow, -frameLength);
-            if (connWinSize < lowMark) {
+            if (windowEstimator != null) {
+                updateConnInputWindow(windowEstimator.getWindowSize());
+            } else if (connWinSize < lowMark) {
                 final int chunk = Integer.MAX_VALUE - connWinSize;
                 if (chunk > 0) {
                     final RawFrame windowUpdateFrame = frameFactory.createWindowUpdate(0, chunk);
@@ -992,7 +1120,68 @@ private void consumeDataFrame(final RawFrame frame, final Http2Stream stream) th
         if (frame.isFlagSet(FrameFlag.END_STREAM)) {
             stream.setRemoteEndStream();
         }
-        stream.consumeData(payload);
+        // Consecutive DATA frames of the same stream get delivered as one batch
+        // of payloads sliced directly from the input buffer
+        if (payload != null) {
+            pendingData.add(inputBuffer.wrap(payload));
+        }
+        pendingDataStream = stream;
+        if (stream.isRemoteClosed()) {
+            consumePendingData();
+        }
+    }
+
+    private void updateConnInputWindow(final int windowSize) throws IOException {
+        final int connWinSize = connInputWindow.get();
+        if (connWinSize < windowSize / 2) {
+            final int delta = windowSize - connWinSize;
+            final RawFrame windowUpdateFrame = frameFactory.createWindowUpdate(0, delta);
+            commitFrame(windowUpdateFrame);
+            updateInputWindow(0, connInputWindow, delta);
+        }
+    }
+
+    /**
+     * Sends a PING frame whose round trip completes the bandwidth-delay sample
+     * started by the most recent DATA frame.
+     */
+    private void sampleBandwidthDelay() throws IOException {
+        final AsyncPingHandler pingHandler = new BasicPingHandler(new Callback<Boolean>() {
+
+            @Override
+            public void execute(final Boolean result) {
+                if (Boolean.TRUE.equals(result)) {
+                    windowEstimator.pingAcknowledged(System.nanoTime());
+                } else {
+                    windowEstimator.pingFailed();
+                }
+            }
+
+        });
+        pingHandlers.add(pingHandler);
+        commitFrame(frameFactory.createPing(pingHandler.getData()));
+    }
+
+    private void consumePendingData() throws HttpException, IOException {
+        final Http2Stream stream = pendingDataStream;
+        if (stream == null) {
+            return;
+        }
+        pendingDataStream = null;
+        try {
+            if (!stream.isResetLocally()) {
+                stream.consumeData(pendingData);
+            }
+        } catch (final H2StreamResetException ex) {
+            stream.localReset(ex);
+        } finally {
+            pendingData.clear();
+        }
+        if (stream.isTerminated()) {
+            streamMap.remove(stream.getId());
+            priorityTree.remove(stream.getId());
+            stream.releaseResources();
+        }
     }
 
     private void consumePushPromiseFrame(final RawFrame frame, final ByteBuffer payload, final Http2Stream promisedStream) throws HttpException, IOException {
@@ -1017,17 +1206,49 @@ private void consumePushPromiseFrame(final RawFrame frame, final ByteBuffer payl
         }
     }
 
+    private void consumePriority(final int streamId, final ByteBuffer payload) throws H2StreamResetException {
+        if (!applyPriority(streamId, payload)) {
+            throw new H2StreamResetException(H2Error.PROTOCOL_ERROR, "Stream depends on itself");
+        }
+    }
+
+    /**
+     * @return {@code false} if the stream has been made dependent on itself.
+     */
+    private boolean applyPriority(final int streamId, final ByteBuffer payload) {
+        final int dependency = payload.getInt();
+        final int weight = (payload.get() & 0xff) + 1;
+        final boolean exclusive = (dependency & 0x80000000) != 0;
+        return priorityTree.prioritize(streamId, dependency & 0x7fffffff, weight, exclusive);
+    }
+
+    private void consumePriorityHeader(final int streamId, final List<? extends Header> headers) {
+        for (int i = 0; i < headers.size(); i++) {
+            final Header header = headers.get(i);
+            if (PRIORITY_HEADER.equalsIgnoreCase(header.getName())) {
+                priorityTree.prioritize(streamId, header.getValue());
+                return;
+            }
+        }
+    }
+
+    private void resetStream(final int streamId, final H2StreamResetException ex) throws IOException {
+        // Streams that are idle or have already been closed cannot be reset
+        final Http2Stream stream = streamMap.get(streamId);
+        if (stream != null) {
+            stream.localReset(ex);
+        }
+    }
+
     private void consumeHeaderFrame(final RawFrame frame, final Http2Stream stream) throws HttpException, IOException {
         final int streamId = stream.getId();
         if (!frame.isFlagSet(FrameFlag.END_HEADERS)) {
             continuation = new Continuation(streamId, frame.getType(), frame.isFlagSet(FrameFlag.END_STREAM));
         }
         final ByteBuffer payload = frame.getPayloadContent();
-        if (frame.isFlagSet(FrameFlag.PRIORITY)) {
-            // Priority not supported
-            payload.getInt();
-            payload.get();
-        }
+        // The header block must be decoded even if the stream gets reset
+        // in order to keep the HPACK dynamic table in sync
+        final boolean selfDependency = frame.isFlagSet(FrameFlag.PRIORITY) && !applyPriority(streamId, payload);
         if (continuation == null) {
             final List<Header> headers = hPackDecoder.decodeHeaders(payload);
             if (stream.isRemoteInitiated() && streamId > processedRemoteStreamId) {
@@ -1039,6 +1260,9 @@ private void consumeHeaderFrame(final RawFrame frame, final Http2Stream stream)
             if (connState == ConnectionHandshake.GRACEFUL_SHUTDOWN) {
                 throw new H2StreamResetException(H2Error.PROTOCOL_ERROR, "Stream refused");
             }
+            if (selfDependency) {
+                throw new H2StreamResetException(H2Error.PROTOCOL_ERROR, "Stream depends on itself");
+            }
             if (stream.isResetLocally()) {
                 return;
             }
@@ -1048,8 +1272,12 @@ private void consumeHeaderFrame(final RawFrame frame, final Http2Stream stream)
             if (frame.isFlagSet(FrameFlag.END_STREAM)) {
                 stream.setRemoteEndStream();
             }
+            if (mode == Mode.SERVER && stream.isRemoteInitiated()) {
+                consumePriorityHeader(streamId, headers);
+            }
             stream.consumeHeader(headers);
         } else {
+            continuation.selfDependency = selfDependency;
             continuation.copyPayload(payload);
         }
     }
@@ -1059,7 +1287,9 @@ private void consumeContinuationFrame(final RawFrame frame, final Http2Stream st
         final ByteBuffer payload = frame.getPayload();
         continuation.copyPayload(payload);
         if (frame.isFlagSet(FrameFlag.END_HEADERS)) {
-            final List<Header> headers = hPackDecoder.decodeHeaders(continuation.getContent());
+            final Continuation completed = continuation;
+            continuation = null;
+            final List<Header> headers = hPackDecoder.decodeHeaders(completed.getContent());
             if (stream.isRemoteInitiated() && streamId > processedRemoteStreamId) {
                 processedRemoteStreamId = streamId;
             }
@@ -1069,21 +1299,26 @@ private void consumeContinuationFrame(final RawFrame frame, final Http2Stream st
             if (connState == ConnectionHandshake.GRACEFUL_SHUTDOWN) {
                 throw new H2StreamResetException(H2Error.PROTOCOL_ERROR, "Stream refused");
             }
+            if (completed.selfDependency) {
+                throw new H2StreamResetException(H2Error.PROTOCOL_ERROR, "Stream depends on itself");
+            }
             if (stream.isResetLocally()) {
                 return;
             }
             if (stream.isRemoteClosed()) {
                 throw new H2StreamResetException(H2Error.STREAM_CLOSED, "Stream already closed");
             }
-            if (continuation.endStream) {
+            if (completed.endStream) {
                 stream.setRemoteEndStream();
             }
-            if (continuation.type == FrameType.PUSH_PROMISE.getValue()) {
+            if (completed.type == FrameType.PUSH_PROMISE.getValue()) {
                 stream.consumePromise(headers);
             } else {
+                if (mode == Mode.SERVER && stream.isRemoteInitiated()) {
+                    consumePriorityHeader(streamId, headers);
+                }
                 stream.consumeHeader(headers);
             }
-            continuation = null;
         }
     }
 
@@ -1153,22 +1388,48 @@ private void consumeSettingsFrame(final ByteBuffer payload) throws HttpException
     }
 
     private void produceOutput() throws HttpException, IOException {
-        for (final Iterator<Map.Entry<Integer, Http2Stream>> it = streamMap.entrySet().iterator(); it.hasNext(); ) {
-            final Map.Entry<Integer, Http2Stream> entry = it.next();
-            final Http2Stream stream = entry.getValue();
+        final int[] schedule = priorityTree.getSchedule();
+        for (int i = 0; i < schedule.length; i++) {
+            final int streamId = schedule[i];
+            final Http2Stream stream = streamMap.get(streamId);
+            if (stream == null) {
+                continue;
+            }
             if (!stream.isLocalClosed() && stream.getOutputWindow().get() > 0) {
                 stream.produceOutput();
             }
             if (stream.isTerminated()) {
-                it.remove();
+                streamMap.remove(streamId);
+                priorityTree.remove(streamId);
                 stream.releaseResources();
             }
-            if (!outputQueue.isEmpty()) {
+            if (!outputQueue.isEmpty() || isOutputBatchFull()) {
                 break;
             }
         }
     }
 
+    private boolean isOutputBatchFull() {
+        if (outputBatchSize <= 0) {
+            return false;
+        }
+        outputLock.lock();
+        try {
+            return outputBuffer.length() >= outputBatchSize;
+        } finally {
+            outputLock.unlock();
+        }
+    }
+
+    private void flushOutput() throws IOException {
+        outputLock.lock();
+        try {
+            outputBuffer.flush(ioSession.channel());
+        } finally {
+            outputLock.unlock();
+        }
+    }
+
     @Override
     public void close() throws IOException {
         ioSession.addFirst(new ShutdownCommand(ShutdownType.GRACEFUL));
@@ -1213,6 +1474,14 @@ public ProtocolVersion getProtocolVersion() {
         return HttpVersion.HTTP_2;
     }
 
+    /**
+     * Returns the maximum number of concurrent streams permitted by the peer.
+     * Until the peer settings have been received the default value is returned.
+     */
+    int getPeerMaxConcurrentStreams() {
+        return remoteConfig.getMaxConcurrentStreams();
+    }
+
     @Override
     public SocketAddress getRemoteAddress() {
         return ioSession.getRemoteAddress();
@@ -1230,6 +1499,8 @@ private static class Continuation {
         final boolean endStream;
         final ByteArrayBuffer headerBuffer;
 
+        boolean selfDependency;
+
         private Continuation(final int streamId, final int type, final boolean endStream) {
             this.streamId = streamId;
             this.type = type;
@@ -1292,6 +1563,9 @@ public void submit(final List<Header> headers, final boolean endStream) throws I
                 if (localEndStream) {
                     return;
                 }
+                if (idle && mode == Mode.CLIENT) {
+                    consumePriorityHeader(id, headers);
+                }
                 idle = false;
                 commitHeaders(id, headers, endStream);
                 if (endStream) {
@@ -1320,6 +1594,9 @@ public void push(final List<Header> headers, final AsyncPushProducer pushProduce
                     channel, httpProcessor, connMetrics, pushProducer, context);
             final Http2Stream stream = new Http2Stream(channel, streamHandler, false);
             streamMap.put(promisedStreamId, stream);
+            priorityTree.add(promisedStreamId);
+            // Pushed streams depend on the stream they are associated with
+            priorityTree.prioritize(promisedStreamId, id, StreamPriorityTree.DEFAULT_WEIGHT, false);
 
             outputLock.lock();
             try {
@@ -1510,9 +1787,9 @@ void consumeHeader(final List<Header> headers) throws HttpException, IOException
             }
         }
 
-        void consumeData(final ByteBuffer src) throws HttpException, IOException {
+        void consumeData(final List<RetainableByteBuffer> data) throws HttpException, IOException {
             try {
-                handler.consumeData(src, channel.isRemoteClosed());
+                handler.consumeData(data, channel.isRemoteClosed());
             } catch (final CharacterCodingException ex) {
                 localReset(ex, H2Error.INTERNAL_ERROR);
             } catch (final ProtocolException ex) {
@@ -0,0 +1,144 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.http2.impl.nio;
+
+/**
+ * Estimator of the bandwidth-delay product of a connection that determines
+ * the size of its input flow control windows.
+ * <p>
+ * A sample starts with the first DATA frame received while no sample is in
+ * progress, at which point a PING frame gets sent to the peer, and completes
+ * once the PING is acknowledged. The sample therefore counts the number of bytes
+ * received over one round trip. If the peer manages to send most of the window
+ * within a round trip at a bandwidth no lower than seen before, the window is
+ * what limits the transfer rate and gets doubled. If several consecutive samples
+ * stay well below the window, the window gets halved.
+ * </p>
+ * <p>
+ * The window size is kept between the given minimum and maximum.
+ * </p>
+ */
+final class BandwidthDelayEstimator {
+
+    /**
+     * Number of consecutive samples below a quarter of the window
+     * that make the window shrink.
+     */
+    private static final int SHRINK_SAMPLES = 3;
+
+    private final int minWindowSize;
+    private final int maxWindowSize;
+
+    private volatile int windowSize;
+    private boolean sampling;
+    private long sampleStart;
+    private long sampleBytes;
+    private double maxBandwidth;
+    private int smallSamples;
+
+    BandwidthDelayEstimator(final int minWindowSize, final int maxWindowSize) {
+        this.minWindowSize = minWindowSize;
+        this.maxWindowSize = Math.max(minWindowSize, maxWindowSize);
+        this.windowSize = minWindowSize;
+    }
+
+    int getWindowSize() {
+        return windowSize;
+    }
+
+    boolean isSampling() {
+        return sampling;
+    }
+
+    /**
+     * Records receipt of DATA bytes.
+     *
+     * @param bytes number of bytes received.
+     * @param now current time in nanoseconds.
+     * @return {@code true} if a new sample has been started and a PING frame
+     *   should be sent to the peer.
+     */
+    boolean dataReceived(final int bytes, final long now) {
+        if (sampling) {
+            sampleBytes += bytes;
+            return false;
+        }
+        sampling = true;
+        sampleStart = now;
+        sampleBytes = bytes;
+        return true;
+    }
+
+    /**
+     * Completes the current sample.
+     *
+     * @param now current time in nanoseconds.
+     * @return {@code true} if the window size has changed.
+     */
+    boolean pingAcknowledged(final long now) {
+        if (!sampling) {
+            return false;
+        }
+        sampling = false;
+        final double bandwidth = (double) sampleBytes / Math.max(now - sampleStart, 1L);
+        boolean changed = false;
+        if (sampleBytes >= (long) windowSize * 2 / 3) {
+            smallSamples = 0;
+            if (bandwidth >= maxBandwidth && windowSize < maxWindowSize) {
+                windowSize = (int) Math.min(maxWindowSize, Math.max(2L * windowSize, 2L * sampleBytes));
+                changed = true;
+            }
+            maxBandwidth = Math.max(maxBandwidth, bandwidth);
+        } else if (sampleBytes < windowSize / 4) {
+            smallSamples++;
+            if (smallSamples >= SHRINK_SAMPLES && windowSize > minWindowSize) {
+                windowSize = (int) Math.max(minWindowSize, Math.max(windowSize / 2, 2L * sampleBytes));
+                smallSamples = 0;
+                // Bandwidth has dropped; let the window grow again once the window gets full
+                maxBandwidth = bandwidth;
+                changed = true;
+            }
+        } else {
+            smallSamples = 0;
+            maxBandwidth = Math.max(maxBandwidth, bandwidth);
+        }
+        return changed;
+    }
+
+    /**
+     * Abandons the current sample if its PING frame has not been acknowledged.
+     */
+    void pingFailed() {
+        sampling = false;
+    }
+
+    @Override
+    public String toString() {
+        return "[windowSize=" + windowSize + ", min=" + minWindowSize + ", max=" + maxWindowSize + "]";
+    }
+
+}
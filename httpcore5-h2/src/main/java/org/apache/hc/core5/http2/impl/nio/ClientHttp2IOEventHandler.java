@@ -38,8 +38,21 @@
 @Contract(threading = ThreadingBehavior.IMMUTABLE_CONDITIONAL)
 public class ClientHttp2IOEventHandler extends AbstractHttp2IOEventHandler {
 
+    private final ClientHttp2StreamMultiplexer streamMultiplexer;
+
     public ClientHttp2IOEventHandler(final ClientHttp2StreamMultiplexer streamMultiplexer) {
         super(streamMultiplexer);
+        this.streamMultiplexer = streamMultiplexer;
+    }
+
+    /**
+     * Returns the maximum number of concurrent streams permitted by the server.
+     * Until the server settings have been received the default value is returned.
+     *
+     * @since 5.0
+     */
+    public int getPeerMaxConcurrentStreams() {
+        return streamMultiplexer.getPeerMaxConcurrentStreams();
     }
 
 }
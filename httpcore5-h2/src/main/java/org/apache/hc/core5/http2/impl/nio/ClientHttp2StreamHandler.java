@@ -46,6 +46,7 @@
 import org.apache.hc.core5.http.nio.AsyncClientExchangeHandler;
 import org.apache.hc.core5.http.nio.DataStreamChannel;
 import org.apache.hc.core5.http.nio.RequestChannel;
+import org.apache.hc.core5.http.nio.RetainableByteBuffer;
 import org.apache.hc.core5.http.protocol.HttpCoreContext;
 import org.apache.hc.core5.http.protocol.HttpProcessor;
 import org.apache.hc.core5.http2.H2ConnectionException;
@@ -222,13 +223,11 @@ public void updateInputCapacity() throws IOException {
     }
 
     @Override
-    public void consumeData(final ByteBuffer src, final boolean endStream) throws HttpException, IOException {
+    public void consumeData(final List<RetainableByteBuffer> data, final boolean endStream) throws HttpException, IOException {
         if (done.get() || responseState != MessageState.BODY) {
             throw new ProtocolException("Unexpected message data");
         }
-        if (src != null) {
-            exchangeHandler.consume(src);
-        }
+        DataConsumerSupport.consume(exchangeHandler, data);
         if (endStream) {
             responseState = MessageState.COMPLETE;
             exchangeHandler.streamEnd(null);
@@ -27,7 +27,6 @@
 package org.apache.hc.core5.http2.impl.nio;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -43,6 +42,7 @@
 import org.apache.hc.core5.http.impl.nio.MessageState;
 import org.apache.hc.core5.http.nio.AsyncPushConsumer;
 import org.apache.hc.core5.http.nio.HandlerFactory;
+import org.apache.hc.core5.http.nio.RetainableByteBuffer;
 import org.apache.hc.core5.http.protocol.HttpCoreContext;
 import org.apache.hc.core5.http.protocol.HttpProcessor;
 import org.apache.hc.core5.http2.H2ConnectionException;
@@ -151,14 +151,12 @@ public void updateInputCapacity() throws IOException {
     }
 
     @Override
-    public void consumeData(final ByteBuffer src, final boolean endStream) throws HttpException, IOException {
+    public void consumeData(final List<RetainableByteBuffer> data, final boolean endStream) throws HttpException, IOException {
         if (responseState != MessageState.BODY) {
             throw new ProtocolException("Unexpected message data");
         }
         Asserts.notNull(exchangeHandler, "Exchange handler");
-        if (src != null) {
-            exchangeHandler.consume(src);
-        }
+        DataConsumerSupport.consume(exchangeHandler, data);
         if (endStream) {
             responseState = MessageState.COMPLETE;
             exchangeHandler.streamEnd(null);
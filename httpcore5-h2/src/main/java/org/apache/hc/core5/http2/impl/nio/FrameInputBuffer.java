@@ -29,8 +29,10 @@
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hc.core5.http.ConnectionClosedException;
+import org.apache.hc.core5.http.nio.RetainableByteBuffer;
 import org.apache.hc.core5.http2.H2ConnectionException;
 import org.apache.hc.core5.http2.H2CorruptFrameException;
 import org.apache.hc.core5.http2.H2Error;
@@ -40,6 +42,8 @@
 import org.apache.hc.core5.http2.frame.RawFrame;
 import org.apache.hc.core5.http2.impl.BasicH2TransportMetrics;
 import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.ByteBufferAllocator;
+import org.apache.hc.core5.util.HeapByteBufferAllocator;
 
 /**
  * Frame input buffer for HTTP/2 non-blocking connections.
@@ -50,10 +54,14 @@ public final class FrameInputBuffer {
 
     enum State { HEAD_EXPECTED, PAYLOAD_EXPECTED }
 
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
     private final BasicH2TransportMetrics metrics;
     private final int maxFramePayloadSize;
-    private final byte[] bytes;
-    private final ByteBuffer buffer;
+    private final ByteBufferAllocator allocator;
+
+    private ByteBuffer buffer;
+    private SharedBuffer shared;
 
     private State state;
     private int payloadLen;
@@ -61,26 +69,63 @@ enum State { HEAD_EXPECTED, PAYLOAD_EXPECTED }
     private int flags;
     private int streamId;
 
-    FrameInputBuffer(final BasicH2TransportMetrics metrics, final int bufferLen, final int maxFramePayloadSize) {
+    FrameInputBuffer(
+            final BasicH2TransportMetrics metrics,
+            final int bufferLen,
+            final int maxFramePayloadSize,
+            final ByteBufferAllocator allocator) {
         Args.notNull(metrics, "HTTP2 transport metrcis");
         Args.positive(maxFramePayloadSize, "Maximum payload size");
         this.metrics = metrics;
         this.maxFramePayloadSize = maxFramePayloadSize;
-        this.bytes = new byte[bufferLen];
-        this.buffer = ByteBuffer.wrap(bytes);
+        this.allocator = Args.notNull(allocator, "Buffer allocator");
+        this.buffer = allocator.allocate(bufferLen);
         this.buffer.flip();
+        this.shared = new SharedBuffer(this.buffer);
         this.state = State.HEAD_EXPECTED;
     }
 
+    FrameInputBuffer(final BasicH2TransportMetrics metrics, final int bufferLen, final int maxFramePayloadSize) {
+        this(metrics, bufferLen, maxFramePayloadSize, HeapByteBufferAllocator.INSTANCE);
+    }
+
+    /**
+     * @since 5.0
+     */
+    public FrameInputBuffer(
+            final BasicH2TransportMetrics metrics,
+            final int maxFramePayloadSize,
+            final ByteBufferAllocator allocator) {
+        this(metrics, FrameConsts.HEAD_LEN + maxFramePayloadSize, maxFramePayloadSize, allocator);
+    }
+
     public FrameInputBuffer(final BasicH2TransportMetrics metrics, final int maxFramePayloadSize) {
-        this(metrics, FrameConsts.HEAD_LEN + maxFramePayloadSize, maxFramePayloadSize);
+        this(metrics, maxFramePayloadSize, HeapByteBufferAllocator.INSTANCE);
     }
 
     public FrameInputBuffer(final int maxFramePayloadSize) {
         this(new BasicH2TransportMetrics(), maxFramePayloadSize);
     }
 
+    /**
+     * Makes sure the buffer is not retained by any consumer before its content
+     * gets moved or overwritten. A retained buffer gets replaced with a new one
+     * and handed over to its consumers to be returned to the allocator once
+     * released.
+     */
+    private void ensureExclusive() {
+        if (shared.isRetained()) {
+            final ByteBuffer newBuffer = allocator.allocate(buffer.capacity());
+            newBuffer.put(buffer);
+            newBuffer.flip();
+            shared.release();
+            buffer = newBuffer;
+            shared = new SharedBuffer(newBuffer);
+        }
+    }
+
     public void put(final ByteBuffer src) {
+        ensureExclusive();
         if (buffer.hasRemaining()) {
             buffer.compact();
         } else {
@@ -120,13 +165,20 @@ public RawFrame read(final ReadableByteChannel channel) throws IOException {
                             }
                             buffer.reset();
                         }
-                        final ByteBuffer payload = payloadLen > 0 ? ByteBuffer.wrap(bytes, buffer.position(), payloadLen) : null;
+                        final ByteBuffer payload;
+                        if (payloadLen > 0) {
+                            payload = buffer.duplicate();
+                            payload.limit(buffer.position() + payloadLen);
+                        } else {
+                            payload = null;
+                        }
                         buffer.position(buffer.position() + payloadLen);
                         state = State.HEAD_EXPECTED;
                         metrics.incrementFramesTransferred();
                         return new RawFrame(type, flags, streamId, payload);
                     }
             }
+            ensureExclusive();
             if (buffer.hasRemaining()) {
                 buffer.compact();
             } else {
@@ -150,13 +202,118 @@ public RawFrame read(final ReadableByteChannel channel) throws IOException {
         return null;
     }
 
+    /**
+     * Determines whether a complete frame can be read from the buffer without
+     * reading from the channel.
+     *
+     * @since 5.0
+     */
+    public boolean isFrameAvailable() {
+        switch (state) {
+            case HEAD_EXPECTED:
+                return buffer.remaining() >= FrameConsts.HEAD_LEN
+                        && buffer.remaining() - FrameConsts.HEAD_LEN >= buffer.getInt(buffer.position()) >>> 8;
+            case PAYLOAD_EXPECTED:
+                return buffer.remaining() >= payloadLen;
+        }
+        return false;
+    }
+
+    /**
+     * Wraps the payload of the most recently read frame in a reference counted view
+     * that can be passed on to data consumers without copying.
+     *
+     * @since 5.0
+     */
+    public RetainableByteBuffer wrap(final ByteBuffer payload) {
+        Args.notNull(payload, "Payload");
+        return new SharedBufferView(shared, payload);
+    }
+
     public void reset() {
+        ensureExclusive();
         buffer.compact();
         state = State.HEAD_EXPECTED;
     }
 
+    /**
+     * Returns the underlying buffer to the allocator. This buffer may not be
+     * used any longer.
+     *
+     * @since 5.0
+     */
+    public void release() {
+        final ByteBuffer oldbuffer = buffer;
+        buffer = EMPTY;
+        if (oldbuffer != EMPTY) {
+            shared.release();
+        }
+    }
+
     public H2TransportMetrics getMetrics() {
         return metrics;
     }
 
+    /**
+     * Input buffer shared with data consumers. The input buffer itself holds
+     * one reference to it.
+     */
+    private final class SharedBuffer {
+
+        private final ByteBuffer buffer;
+        private final AtomicInteger refCount;
+
+        SharedBuffer(final ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.refCount = new AtomicInteger(1);
+        }
+
+        boolean isRetained() {
+            return refCount.get() > 1;
+        }
+
+        void retain() {
+            refCount.incrementAndGet();
+        }
+
+        void release() {
+            if (refCount.decrementAndGet() == 0) {
+                allocator.release(buffer);
+            }
+        }
+
+    }
+
+    private static final class SharedBufferView implements RetainableByteBuffer {
+
+        private final SharedBuffer shared;
+        private final ByteBuffer data;
+
+        SharedBufferView(final SharedBuffer shared, final ByteBuffer data) {
+            this.shared = shared;
+            this.data = data;
+        }
+
+        @Override
+        public ByteBuffer data() {
+            return data.duplicate();
+        }
+
+        @Override
+        public void retain() {
+            shared.retain();
+        }
+
+        @Override
+        public void release() {
+            shared.release();
+        }
+
+        @Override
+        public String toString() {
+            return data.toString();
+        }
+
+    }
+
 }
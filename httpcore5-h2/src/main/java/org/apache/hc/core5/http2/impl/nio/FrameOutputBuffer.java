@@ -38,6 +38,8 @@
 import org.apache.hc.core5.http2.frame.RawFrame;
 import org.apache.hc.core5.http2.impl.BasicH2TransportMetrics;
 import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.ByteBufferAllocator;
+import org.apache.hc.core5.util.HeapByteBufferAllocator;
 
 /**
  * Frame output buffer for HTTP/2 non-blocking connections.
@@ -46,16 +48,46 @@
  */
 public final class FrameOutputBuffer {
 
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
     private final BasicH2TransportMetrics metrics;
     private final int maxFramePayloadSize;
-    private final ByteBuffer buffer;
-
-    public FrameOutputBuffer(final BasicH2TransportMetrics metrics, final int maxFramePayloadSize) {
+    private final ByteBufferAllocator allocator;
+
+    private ByteBuffer buffer;
+
+    /**
+     * Creates a frame output buffer with extra capacity of {@code batchSize} bytes
+     * that can be used for {@link #stage(RawFrame) staging} of multiple frames.
+     *
+     * @since 5.0
+     */
+    public FrameOutputBuffer(
+            final BasicH2TransportMetrics metrics,
+            final int maxFramePayloadSize,
+            final int batchSize,
+            final ByteBufferAllocator allocator) {
         Args.notNull(metrics, "HTTP2 transport metrcis");
         Args.positive(maxFramePayloadSize, "Maximum payload size");
+        Args.notNegative(batchSize, "Batch size");
         this.metrics = metrics;
         this.maxFramePayloadSize = maxFramePayloadSize;
-        this.buffer = ByteBuffer.allocate(FrameConsts.HEAD_LEN + maxFramePayloadSize);
+        this.allocator = Args.notNull(allocator, "Buffer allocator");
+        this.buffer = allocator.allocate(FrameConsts.HEAD_LEN + maxFramePayloadSize + batchSize);
+    }
+
+    /**
+     * @since 5.0
+     */
+    public FrameOutputBuffer(
+            final BasicH2TransportMetrics metrics,
+            final int maxFramePayloadSize,
+            final ByteBufferAllocator allocator) {
+        this(metrics, maxFramePayloadSize, 0, allocator);
+    }
+
+    public FrameOutputBuffer(final BasicH2TransportMetrics metrics, final int maxFramePayloadSize) {
+        this(metrics, maxFramePayloadSize, HeapByteBufferAllocator.INSTANCE);
     }
 
     public FrameOutputBuffer(final int maxFramePayloadSize) {
@@ -69,6 +101,12 @@ private void writeToChannel(final WritableByteChannel channel, final ByteBuffer
         }
     }
 
+    private void putHead(final RawFrame frame, final ByteBuffer payload) {
+        buffer.putInt((payload != null ? payload.remaining() << 8 : 0) | (frame.getType() & 0xff));
+        buffer.put((byte) (frame.getFlags() & 0xff));
+        buffer.putInt(frame.getStreamId());
+    }
+
     public void write(final RawFrame frame, final WritableByteChannel channel) throws IOException {
         Args.notNull(frame, "Frame");
 
@@ -77,9 +115,7 @@ public void write(final RawFrame frame, final WritableByteChannel channel) throw
             throw new H2ConnectionException(H2Error.FRAME_SIZE_ERROR, "Frame size exceeds maximum");
         }
 
-        buffer.putInt((payload != null ? payload.remaining() << 8 : 0) | (frame.getType() & 0xff));
-        buffer.put((byte) (frame.getFlags() & 0xff));
-        buffer.putInt(frame.getStreamId());
+        putHead(frame, payload);
 
         if (payload != null) {
             if (channel instanceof GatheringByteChannel) {
@@ -103,6 +139,34 @@ public void write(final RawFrame frame, final WritableByteChannel channel) throw
         metrics.incrementFramesTransferred();
     }
 
+    /**
+     * Copies the frame to the end of the buffer without writing it out. Staged frames
+     * are written out together with the next {@link #flush(WritableByteChannel)}.
+     *
+     * @return {@code true} if the frame has been staged, {@code false} if there is
+     *   not enough space left in the buffer.
+     *
+     * @since 5.0
+     */
+    public boolean stage(final RawFrame frame) throws IOException {
+        Args.notNull(frame, "Frame");
+
+        final ByteBuffer payload = frame.getPayload();
+        final int payloadLen = payload != null ? payload.remaining() : 0;
+        if (payloadLen > maxFramePayloadSize) {
+            throw new H2ConnectionException(H2Error.FRAME_SIZE_ERROR, "Frame size exceeds maximum");
+        }
+        if (buffer.remaining() < FrameConsts.HEAD_LEN + payloadLen) {
+            return false;
+        }
+        putHead(frame, payload);
+        if (payload != null) {
+            buffer.put(payload);
+        }
+        metrics.incrementFramesTransferred();
+        return true;
+    }
+
     public void flush(final WritableByteChannel channel) throws IOException {
         if (buffer.position() > 0) {
             buffer.flip();
@@ -115,6 +179,38 @@ public boolean isEmpty() {
         return buffer.position() == 0;
     }
 
+    /**
+     * Returns the number of bytes pending output.
+     *
+     * @since 5.0
+     */
+    public int length() {
+        return buffer.position();
+    }
+
+    /**
+     * Returns the number of bytes that can still be staged.
+     *
+     * @since 5.0
+     */
+    public int available() {
+        return buffer.remaining();
+    }
+
+    /**
+     * Returns the underlying buffer to the allocator. This buffer may not be
+     * used any longer.
+     *
+     * @since 5.0
+     */
+    public void release() {
+        final ByteBuffer oldbuffer = buffer;
+        buffer = EMPTY;
+        if (oldbuffer != EMPTY) {
+            allocator.release(oldbuffer);
+        }
+    }
+
     public H2TransportMetrics getMetrics() {
         return metrics;
     }
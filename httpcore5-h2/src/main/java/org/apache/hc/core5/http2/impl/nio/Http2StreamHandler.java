@@ -27,12 +27,12 @@
 package org.apache.hc.core5.http2.impl.nio;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.util.List;
 
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpException;
 import org.apache.hc.core5.http.nio.ResourceHolder;
+import org.apache.hc.core5.http.nio.RetainableByteBuffer;
 
 interface Http2StreamHandler extends ResourceHolder {
 
@@ -46,7 +46,7 @@ interface Http2StreamHandler extends ResourceHolder {
 
     void updateInputCapacity() throws IOException;
 
-    void consumeData(ByteBuffer src, boolean endStream) throws HttpException, IOException;
+    void consumeData(List<RetainableByteBuffer> data, boolean endStream) throws HttpException, IOException;
 
     void failed(Exception cause);
 
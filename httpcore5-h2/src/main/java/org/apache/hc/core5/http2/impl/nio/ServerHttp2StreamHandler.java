@@ -47,6 +47,7 @@
 import org.apache.hc.core5.http.nio.DataStreamChannel;
 import org.apache.hc.core5.http.nio.HandlerFactory;
 import org.apache.hc.core5.http.nio.ResponseChannel;
+import org.apache.hc.core5.http.nio.RetainableByteBuffer;
 import org.apache.hc.core5.http.protocol.HttpCoreContext;
 import org.apache.hc.core5.http.protocol.HttpProcessor;
 import org.apache.hc.core5.http2.H2ConnectionException;
@@ -239,14 +240,12 @@ public void updateInputCapacity() throws IOException {
     }
 
     @Override
-    public void consumeData(final ByteBuffer src, final boolean endStream) throws HttpException, IOException {
+    public void consumeData(final List<RetainableByteBuffer> data, final boolean endStream) throws HttpException, IOException {
         if (done.get() || requestState != MessageState.BODY) {
             throw new ProtocolException("Unexpected message data");
         }
         Asserts.notNull(exchangeHandler, "Exchange handler");
-        if (src != null) {
-            exchangeHandler.consume(src);
-        }
+        DataConsumerSupport.consume(exchangeHandler, data);
         if (endStream) {
             requestState = MessageState.COMPLETE;
             exchangeHandler.streamEnd(null);
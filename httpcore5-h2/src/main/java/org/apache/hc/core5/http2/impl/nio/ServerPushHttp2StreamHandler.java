@@ -44,6 +44,7 @@
 import org.apache.hc.core5.http.nio.AsyncPushProducer;
 import org.apache.hc.core5.http.nio.DataStreamChannel;
 import org.apache.hc.core5.http.nio.ResponseChannel;
+import org.apache.hc.core5.http.nio.RetainableByteBuffer;
 import org.apache.hc.core5.http.protocol.HttpCoreContext;
 import org.apache.hc.core5.http.protocol.HttpProcessor;
 import org.apache.hc.core5.http2.H2ConnectionException;
@@ -122,7 +123,7 @@ public void updateInputCapacity() throws IOException {
     }
 
     @Override
-    public void consumeData(final ByteBuffer src, final boolean endStream) throws HttpException, IOException {
+    public void consumeData(final List<RetainableByteBuffer> data, final boolean endStream) throws HttpException, IOException {
         throw new ProtocolException("Unexpected message data");
     }
 
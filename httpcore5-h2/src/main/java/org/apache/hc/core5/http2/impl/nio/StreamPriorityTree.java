@@ -0,0 +1,387 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.http2.impl.nio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stream dependency tree as defined by RFC 7540, section 5.3, that determines
+ * the order in which streams get to produce output.
+ * <p>
+ * Streams that depend on the same parent share output in proportion to their
+ * weights: each stream carries a virtual finish time that advances by the
+ * amount of data sent divided by its weight, and the sibling with the lowest
+ * finish time goes first. The same applies to the sub-trees of the dependency
+ * tree, so a parent stream and its dependents compete with their siblings
+ * as a whole. A parent stream goes before its dependents.
+ * </p>
+ * <p>
+ * Streams can also carry the urgency and the incremental flag of
+ * the {@code priority} header as defined by RFC 9218. Siblings with lower
+ * urgency strictly go before those with higher urgency. Non-incremental
+ * siblings of the same urgency go one at a time in the order of their
+ * ids, ahead of incremental ones. Streams with no {@code priority} header
+ * are treated as incremental with the default urgency.
+ * </p>
+ * <p>
+ * Nodes of streams that have been referenced by PRIORITY frames but have
+ * not been opened are kept up to a limit, beyond which the least recently
+ * referenced of them get pruned. The schedule is cached until the tree
+ * changes in a way that affects the order of streams.
+ * </p>
+ */
+final class StreamPriorityTree {
+
+    static final int DEFAULT_WEIGHT = 16;
+    static final int DEFAULT_URGENCY = 3;
+    static final int MAX_URGENCY = 7;
+
+    /**
+     * Max number of nodes kept for streams that have been referenced
+     * by PRIORITY frames but are not open.
+     */
+    static final int MAX_IDLE_NODES = 1024;
+
+    private static final Comparator<Node> SIBLING_ORDER = new Comparator<Node>() {
+
+        @Override
+        public int compare(final Node n1, final Node n2) {
+            if (n1.urgency != n2.urgency) {
+                return n1.urgency < n2.urgency ? -1 : 1;
+            }
+            if (n1.incremental != n2.incremental) {
+                return n1.incremental ? 1 : -1;
+            }
+            if (n1.incremental && n1.finish != n2.finish) {
+                return n1.finish < n2.finish ? -1 : 1;
+            }
+            return n1.streamId < n2.streamId ? -1 : (n1.streamId == n2.streamId ? 0 : 1);
+        }
+
+    };
+
+    private final Node root;
+    private final Map<Integer, Node> nodes;
+    // Nodes of streams that are not open in the order they have been referenced
+    private final Set<Node> idleNodes;
+
+    private int[] schedule;
+
+    StreamPriorityTree() {
+        this.root = new Node(0);
+        this.nodes = new HashMap<>();
+        this.idleNodes = new LinkedHashSet<>();
+    }
+
+    private Node createNode(final int streamId, final boolean open) {
+        final Node node = new Node(streamId);
+        node.open = open;
+        node.finish = root.virtualTime;
+        root.attach(node);
+        nodes.put(streamId, node);
+        if (!open) {
+            idleNodes.add(node);
+        }
+        schedule = null;
+        return node;
+    }
+
+    /**
+     * Returns the node of the stream, creating one with the default priority
+     * if the stream is not in the tree.
+     */
+    private Node getNode(final int streamId) {
+        Node node = nodes.get(streamId);
+        if (node == null) {
+            node = createNode(streamId, false);
+        } else if (!node.open) {
+            idleNodes.remove(node);
+            idleNodes.add(node);
+        }
+        return node;
+    }
+
+    /**
+     * Adds a stream that has been opened with the default priority, unless
+     * the stream has already been prioritized.
+     */
+    synchronized void add(final int streamId) {
+        final Node node = nodes.get(streamId);
+        if (node == null) {
+            createNode(streamId, true);
+        } else if (!node.open) {
+            node.open = true;
+            idleNodes.remove(node);
+        }
+    }
+
+    /**
+     * Removes a closed stream. Its dependents become dependents of its parent
+     * and share the weight of the removed stream in proportion to their weights.
+     */
+    synchronized void remove(final int streamId) {
+        final Node node = nodes.get(streamId);
+        if (node != null) {
+            removeNode(node);
+        }
+    }
+
+    private void removeNode(final Node node) {
+        nodes.remove(node.streamId);
+        if (!node.open) {
+            idleNodes.remove(node);
+        }
+        schedule = null;
+        final Node parent = node.parent;
+        parent.detach(node);
+        int totalWeight = 0;
+        for (final Node child : node.children) {
+            totalWeight += child.weight;
+        }
+        for (final Node child : node.children) {
+            child.weight = Math.max(1, node.weight * child.weight / totalWeight);
+            child.finish = parent.virtualTime;
+            parent.attach(child);
+        }
+        node.children.clear();
+    }
+
+    /**
+     * Applies priority information of a PRIORITY frame or a HEADERS frame.
+     *
+     * @param streamId the stream id.
+     * @param dependency the id of the stream the stream depends on.
+     * @param weight the weight from 1 to 256.
+     * @param exclusive whether the dependency is exclusive.
+     * @return {@code false} if the stream depends on itself, {@code true} otherwise.
+     */
+    synchronized boolean prioritize(final int streamId, final int dependency, final int weight, final boolean exclusive) {
+        if (streamId == dependency) {
+            return false;
+        }
+        final Node node = getNode(streamId);
+        final Node parent = dependency == 0 ? root : getNode(dependency);
+        schedule = null;
+        if (isDescendant(parent, node)) {
+            // The former dependent takes the place of the stream
+            parent.parent.detach(parent);
+            parent.finish = node.parent.virtualTime;
+            node.parent.attach(parent);
+        }
+        node.parent.detach(node);
+        if (exclusive) {
+            for (final Node child : parent.children) {
+                child.finish = node.virtualTime;
+                node.attach(child);
+            }
+            parent.children.clear();
+        }
+        node.weight = Math.min(Math.max(weight, 1), 256);
+        node.finish = parent.virtualTime;
+        parent.attach(node);
+        // The stream and its parent are the most recently referenced
+        while (idleNodes.size() > MAX_IDLE_NODES) {
+            removeNode(idleNodes.iterator().next());
+        }
+        return true;
+    }
+
+    /**
+     * Applies the urgency and the incremental flag of a RFC 9218 {@code priority}
+     * header value. Unknown or malformed parameters are ignored.
+     */
+    synchronized void prioritize(final int streamId, final String priority) {
+        final Node node = nodes.get(streamId);
+        if (node == null || priority == null) {
+            return;
+        }
+        int urgency = DEFAULT_URGENCY;
+        boolean incremental = false;
+        for (final String member : priority.split(",")) {
+            final int paramIdx = member.indexOf(';');
+            final String item = (paramIdx >= 0 ? member.substring(0, paramIdx) : member).trim();
+            final int valueIdx = item.indexOf('=');
+            final String key = valueIdx >= 0 ? item.substring(0, valueIdx).trim() : item;
+            final String value = valueIdx >= 0 ? item.substring(valueIdx + 1).trim() : null;
+            if ("u".equals(key) && value != null) {
+                try {
+                    final int u = Integer.parseInt(value);
+                    if (u >= 0 && u <= MAX_URGENCY) {
+                        urgency = u;
+                    }
+                } catch (final NumberFormatException ignore) {
+                }
+            } else if ("i".equals(key)) {
+                if (value == null || "?1".equals(value)) {
+                    incremental = true;
+                } else if ("?0".equals(value)) {
+                    incremental = false;
+                }
+            }
+        }
+        if (node.urgency != urgency || node.incremental != incremental) {
+            node.urgency = urgency;
+            node.incremental = incremental;
+            node.parent.sorted = false;
+            schedule = null;
+        }
+    }
+
+    /**
+     * Accounts for data sent by the stream.
+     */
+    synchronized void sent(final int streamId, final int bytes) {
+        Node node = nodes.get(streamId);
+        while (node != null && node != root) {
+            final Node parent = node.parent;
+            // Streams that had nothing to send do not get to catch up
+            final long start = Math.max(node.finish, parent.virtualTime);
+            parent.virtualTime = start;
+            node.finish = start + ((long) bytes << 8) / node.weight;
+            // Finish time only grows, so the order holds if the node still goes before its next sibling
+            if (parent.sorted) {
+                final int next = node.index + 1;
+                if (next < parent.children.size() && SIBLING_ORDER.compare(node, parent.children.get(next)) > 0) {
+                    parent.sorted = false;
+                    schedule = null;
+                }
+            }
+            node = parent;
+        }
+    }
+
+    /**
+     * Returns ids of all streams in the order they should get to produce output.
+     * The returned array is shared and must not be modified.
+     */
+    synchronized int[] getSchedule() {
+        if (schedule == null) {
+            final int[] ids = new int[nodes.size()];
+            final int count = fill(root, ids, 0);
+            schedule = count == ids.length ? ids : Arrays.copyOf(ids, count);
+        }
+        return schedule;
+    }
+
+    private static int fill(final Node node, final int[] schedule, final int pos) {
+        int n = pos;
+        if (!node.sorted) {
+            node.sort();
+        }
+        for (final Node child : node.children) {
+            schedule[n++] = child.streamId;
+            n = fill(child, schedule, n);
+        }
+        return n;
+    }
+
+    private static boolean isDescendant(final Node node, final Node ancestor) {
+        Node current = node.parent;
+        while (current != null) {
+            if (current == ancestor) {
+                return true;
+            }
+            current = current.parent;
+        }
+        return false;
+    }
+
+    synchronized int getWeight(final int streamId) {
+        final Node node = nodes.get(streamId);
+        return node != null ? node.weight : -1;
+    }
+
+    synchronized int getDependency(final int streamId) {
+        final Node node = nodes.get(streamId);
+        return node != null ? node.parent.streamId : -1;
+    }
+
+    synchronized int size() {
+        return nodes.size();
+    }
+
+    static final class Node {
+
+        final int streamId;
+        final List<Node> children;
+
+        Node parent;
+        boolean open;
+        int weight;
+        int urgency;
+        boolean incremental;
+        // Whether the children are in sibling order
+        boolean sorted;
+        // Position among the siblings, valid while the parent is sorted
+        int index;
+        // Virtual finish time of the node among its siblings
+        long finish;
+        // Virtual start time of the most recently served child
+        long virtualTime;
+
+        Node(final int streamId) {
+            this.streamId = streamId;
+            this.children = new ArrayList<>();
+            this.weight = DEFAULT_WEIGHT;
+            this.urgency = DEFAULT_URGENCY;
+            this.incremental = true;
+            this.sorted = true;
+        }
+
+        void attach(final Node child) {
+            child.parent = this;
+            children.add(child);
+            sorted = false;
+        }
+
+        void detach(final Node child) {
+            children.remove(child);
+            child.parent = null;
+            sorted = false;
+        }
+
+        void sort() {
+            if (children.size() > 1) {
+                Collections.sort(children, SIBLING_ORDER);
+            }
+            for (int i = 0; i < children.size(); i++) {
+                children.get(i).index = i;
+            }
+            sorted = true;
+        }
+
+    }
+
+}
@@ -30,6 +30,7 @@
 import java.util.List;
 
 import org.apache.hc.core5.annotation.Experimental;
+import org.apache.hc.core5.concurrent.HashedWheelTimer;
 import org.apache.hc.core5.function.Decorator;
 import org.apache.hc.core5.function.Supplier;
 import org.apache.hc.core5.http.HttpHost;
@@ -51,12 +52,14 @@
 import org.apache.hc.core5.http2.impl.nio.Http2StreamListener;
 import org.apache.hc.core5.http2.nio.support.DefaultAsyncPushConsumerFactory;
 import org.apache.hc.core5.http2.ssl.H2ClientTlsStrategy;
+import org.apache.hc.core5.pool.AdaptiveRouteLimiter;
 import org.apache.hc.core5.pool.ConnPoolListener;
 import org.apache.hc.core5.pool.LaxConnPool;
 import org.apache.hc.core5.pool.ManagedConnPool;
 import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
 import org.apache.hc.core5.pool.PoolReusePolicy;
 import org.apache.hc.core5.pool.StrictConnPool;
+import org.apache.hc.core5.pool.StripedConnPool;
 import org.apache.hc.core5.reactor.IOEventHandlerFactory;
 import org.apache.hc.core5.reactor.IOReactorConfig;
 import org.apache.hc.core5.reactor.IOSession;
@@ -88,6 +91,8 @@ public class H2RequesterBootstrap {
     private Http2StreamListener streamListener;
     private Http1StreamListener http1StreamListener;
     private ConnPoolListener<HttpHost> connPoolListener;
+    private HashedWheelTimer leaseTimer;
+    private AdaptiveRouteLimiter<HttpHost> routeLimiter;
 
     private H2RequesterBootstrap() {
         this.pushConsumerList = new ArrayList<>();
@@ -225,6 +230,30 @@ public final H2RequesterBootstrap setConnPoolListener(final ConnPoolListener<Htt
         return this;
     }
 
+    /**
+     * Assigns {@link HashedWheelTimer} instance used by the connection pool and
+     * the requester to fail pending lease requests as soon as their request timeout expires.
+     * The timer is not closed by the requester.
+     *
+     * @since 5.0
+     */
+    public final H2RequesterBootstrap setLeaseTimer(final HashedWheelTimer leaseTimer) {
+        this.leaseTimer = leaseTimer;
+        return this;
+    }
+
+    /**
+     * Assigns {@link AdaptiveRouteLimiter} instance used by the connection pool
+     * to adapt the maximum number of connections per route to the observed
+     * lease wait times and connection failures.
+     *
+     * @since 5.0
+     */
+    public final H2RequesterBootstrap setRouteLimiter(final AdaptiveRouteLimiter<HttpHost> routeLimiter) {
+        this.routeLimiter = routeLimiter;
+        return this;
+    }
+
     /**
      * Assigns {@link UriPatternType} for handler registration.
      */
@@ -267,20 +296,38 @@ public Http2AsyncRequester create() {
         final ManagedConnPool<HttpHost, IOSession> connPool;
         switch (poolConcurrencyPolicy != null ? poolConcurrencyPolicy : PoolConcurrencyPolicy.STRICT) {
             case LAX:
-                connPool = new LaxConnPool<>(
+                final LaxConnPool<HttpHost, IOSession> laxPool = new LaxConnPool<>(
+                        defaultMaxPerRoute > 0 ? defaultMaxPerRoute : 20,
+                        maxTotal > 0 ? maxTotal : 0,
+                        timeToLive,
+                        poolReusePolicy,
+                        connPoolListener,
+                        leaseTimer);
+                laxPool.setRouteLimiter(routeLimiter);
+                connPool = laxPool;
+                break;
+            case STRIPED:
+                final StripedConnPool<HttpHost, IOSession> stripedPool = new StripedConnPool<>(
                         defaultMaxPerRoute > 0 ? defaultMaxPerRoute : 20,
+                        maxTotal > 0 ? maxTotal : 50,
                         timeToLive,
                         poolReusePolicy,
-                        connPoolListener);
+                        connPoolListener,
+                        leaseTimer);
+                stripedPool.setRouteLimiter(routeLimiter);
+                connPool = stripedPool;
                 break;
             case STRICT:
             default:
-                connPool = new StrictConnPool<>(
+                final StrictConnPool<HttpHost, IOSession> strictPool = new StrictConnPool<>(
                         defaultMaxPerRoute > 0 ? defaultMaxPerRoute : 20,
                         maxTotal > 0 ? maxTotal : 50,
                         timeToLive,
                         poolReusePolicy,
-                        connPoolListener);
+                        connPoolListener,
+                        leaseTimer);
+                strictPool.setRouteLimiter(routeLimiter);
+                connPool = strictPool;
                 break;
         }
         final RequestHandlerRegistry<Supplier<AsyncPushConsumer>> registry = new RequestHandlerRegistry<>(uriPatternType);
@@ -309,7 +356,8 @@ public Http2AsyncRequester create() {
                 ioSessionDecorator,
                 sessionListener,
                 connPool,
-                tlsStrategy != null ? tlsStrategy : new H2ClientTlsStrategy());
+                tlsStrategy != null ? tlsStrategy : new H2ClientTlsStrategy(),
+                leaseTimer);
     }
 
 }
@@ -30,13 +30,19 @@
 import java.util.concurrent.Future;
 
 import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.concurrent.HashedWheelTimer;
 import org.apache.hc.core5.function.Decorator;
 import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.URIScheme;
 import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncRequester;
 import org.apache.hc.core5.http.nio.AsyncClientEndpoint;
 import org.apache.hc.core5.http.nio.ssl.TlsStrategy;
 import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.config.H2Config;
+import org.apache.hc.core5.http2.impl.nio.ClientHttp2IOEventHandler;
+import org.apache.hc.core5.http2.impl.nio.ClientHttpProtocolNegotiator;
 import org.apache.hc.core5.pool.ManagedConnPool;
+import org.apache.hc.core5.reactor.IOEventHandler;
 import org.apache.hc.core5.reactor.IOEventHandlerFactory;
 import org.apache.hc.core5.reactor.IOReactorConfig;
 import org.apache.hc.core5.reactor.IOSession;
@@ -44,12 +50,32 @@
 import org.apache.hc.core5.util.Timeout;
 
 /**
+ * HTTP/2 capable {@link HttpAsyncRequester}.
+ * <p>
+ * Endpoints requested without an explicit connection attachment share
+ * HTTP/2 connections: concurrent requests to the same host are multiplexed
+ * over the same connection up to the maximum number of concurrent streams
+ * announced by the peer. Additional connections are only leased from
+ * the connection pool once stream capacity of all established connections
+ * to the host has been exhausted. If the protocol gets negotiated
+ * by means of TLS ALPN, a single connection to the host is established
+ * until the protocol and therefore the stream capacity is known.
+ * </p>
+ *
  * @since 5.0
  */
 public class Http2AsyncRequester extends HttpAsyncRequester {
 
     private final HttpVersionPolicy versionPolicy;
+    private final MultiplexingEndpointPool endpointPool;
 
+    /**
+     * @param leaseTimer optional timer used to fail requests waiting for stream
+     *                   capacity of a shared connection as soon as their timeout expires.
+     *                   The timer is not closed by the requester.
+     *
+     * @since 5.0
+     */
     public Http2AsyncRequester(
             final HttpVersionPolicy versionPolicy,
             final IOReactorConfig ioReactorConfig,
@@ -57,9 +83,84 @@ public Http2AsyncRequester(
             final Decorator<IOSession> ioSessionDecorator,
             final IOSessionListener sessionListener,
             final ManagedConnPool<HttpHost, IOSession> connPool,
-            final TlsStrategy tlsStrategy) {
+            final TlsStrategy tlsStrategy,
+            final HashedWheelTimer leaseTimer) {
         super(ioReactorConfig, eventHandlerFactory, ioSessionDecorator, sessionListener, connPool, tlsStrategy);
         this.versionPolicy = versionPolicy != null ? versionPolicy : HttpVersionPolicy.NEGOTIATE;
+        this.endpointPool = new MultiplexingEndpointPool(leaseTimer) {
+
+            @Override
+            Future<AsyncClientEndpoint> leaseEndpoint(
+                    final HttpHost host,
+                    final Timeout timeout,
+                    final FutureCallback<AsyncClientEndpoint> callback) {
+                return doConnect(host, timeout, null, callback);
+            }
+
+            @Override
+            int getStreamCapacity(final AsyncClientEndpoint endpoint) {
+                final IOSession ioSession = getIOSession(endpoint);
+                if (ioSession == null || ioSession.getStatus() >= IOSession.CLOSING) {
+                    return 0;
+                }
+                final IOEventHandler handler = ioSession.getHandler();
+                if (handler instanceof ClientHttp2IOEventHandler) {
+                    return ((ClientHttp2IOEventHandler) handler).getPeerMaxConcurrentStreams();
+                }
+                if (handler instanceof ClientHttpProtocolNegotiator
+                        && Http2AsyncRequester.this.versionPolicy == HttpVersionPolicy.FORCE_HTTP_2) {
+                    return H2Config.DEFAULT.getMaxConcurrentStreams();
+                }
+                // A single exchange can be executed whatever protocol gets negotiated
+                return 1;
+            }
+
+            @Override
+            int getExpectedStreamCapacity(final HttpHost host) {
+                if (Http2AsyncRequester.this.versionPolicy == HttpVersionPolicy.FORCE_HTTP_2) {
+                    return H2Config.DEFAULT.getMaxConcurrentStreams();
+                }
+                // HTTP/2 can only be negotiated by means of TLS ALPN
+                return URIScheme.HTTPS.same(host.getSchemeName()) ? 0 : 1;
+            }
+
+            @Override
+            boolean isNegotiating(final AsyncClientEndpoint endpoint) {
+                final IOSession ioSession = getIOSession(endpoint);
+                return ioSession != null && ioSession.getHandler() instanceof ClientHttpProtocolNegotiator;
+            }
+
+            @Override
+            boolean isMultiplexing(final AsyncClientEndpoint endpoint) {
+                final IOSession ioSession = getIOSession(endpoint);
+                return ioSession != null && ioSession.getHandler() instanceof ClientHttp2IOEventHandler;
+            }
+
+        };
+    }
+
+    public Http2AsyncRequester(
+            final HttpVersionPolicy versionPolicy,
+            final IOReactorConfig ioReactorConfig,
+            final IOEventHandlerFactory eventHandlerFactory,
+            final Decorator<IOSession> ioSessionDecorator,
+            final IOSessionListener sessionListener,
+            final ManagedConnPool<HttpHost, IOSession> connPool,
+            final TlsStrategy tlsStrategy) {
+        this(versionPolicy, ioReactorConfig, eventHandlerFactory, ioSessionDecorator, sessionListener,
+                connPool, tlsStrategy, null);
+    }
+
+    @Override
+    public Future<AsyncClientEndpoint> connect(
+            final HttpHost host,
+            final Timeout timeout,
+            final Object attachment,
+            final FutureCallback<AsyncClientEndpoint> callback) {
+        if (attachment == null && versionPolicy != HttpVersionPolicy.FORCE_HTTP_1) {
+            return endpointPool.lease(host, timeout, callback);
+        }
+        return super.connect(host, timeout, attachment, callback);
     }
 
     @Override
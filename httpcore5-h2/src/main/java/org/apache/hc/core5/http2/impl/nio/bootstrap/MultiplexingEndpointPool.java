@@ -0,0 +1,615 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.http2.impl.nio.bootstrap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.hc.core5.concurrent.BasicFuture;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.concurrent.HashedWheelTimer;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.nio.AsyncClientEndpoint;
+import org.apache.hc.core5.http.nio.AsyncClientExchangeHandler;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+/**
+ * Pool of endpoints that share connections capable of multiplexing message
+ * exchanges, such as HTTP/2 connections, among concurrent lease requests.
+ * <p>
+ * Connections are leased exclusively from the underlying connection pool.
+ * Each of them serves as many concurrent lease requests as it has stream
+ * capacity. A new connection gets leased only once the capacity of all
+ * connections to the route is exhausted. Connections that no longer serve
+ * any request are released back to the underlying pool.
+ * </p>
+ * <p>
+ * If the stream capacity of a route cannot be known before the protocol
+ * has been negotiated with the peer, only one connection at a time gets
+ * leased until the capacity of an established connection is known.
+ * Lease requests waiting for stream capacity fail with
+ * a {@link TimeoutException} once their timeout expires.
+ * </p>
+ *
+ * @since 5.0
+ */
+abstract class MultiplexingEndpointPool {
+
+    private final Map<HttpHost, RoutePool> routePools;
+    private final HashedWheelTimer leaseTimer;
+
+    /**
+     * @param leaseTimer optional timer used to fail waiting lease requests as soon
+     *                   as their timeout expires. If not set, expired lease requests
+     *                   are failed the next time the pool of their route is used.
+     */
+    MultiplexingEndpointPool(final HashedWheelTimer leaseTimer) {
+        this.routePools = new HashMap<>();
+        this.leaseTimer = leaseTimer;
+    }
+
+    MultiplexingEndpointPool() {
+        this(null);
+    }
+
+    /**
+     * Leases a connection endpoint from the underlying pool exclusively.
+     */
+    abstract Future<AsyncClientEndpoint> leaseEndpoint(
+            HttpHost host, Timeout timeout, FutureCallback<AsyncClientEndpoint> callback);
+
+    /**
+     * Returns the number of message exchanges the endpoint can execute
+     * concurrently or {@code 0} if the endpoint is no longer usable.
+     */
+    abstract int getStreamCapacity(AsyncClientEndpoint endpoint);
+
+    /**
+     * Returns the stream capacity expected from a connection to the given host
+     * that is yet to be established or {@code 0} if it cannot be known before
+     * the protocol has been negotiated with the peer.
+     */
+    abstract int getExpectedStreamCapacity(HttpHost host);
+
+    /**
+     * Determines whether the protocol of the connection of the given endpoint
+     * is still being negotiated, in which case its stream capacity is not final.
+     */
+    abstract boolean isNegotiating(AsyncClientEndpoint endpoint);
+
+    /**
+     * Determines whether failure of an individual message exchange leaves
+     * the connection of the given endpoint intact.
+     */
+    abstract boolean isMultiplexing(AsyncClientEndpoint endpoint);
+
+    private RoutePool getRoutePool(final HttpHost host) {
+        synchronized (this.routePools) {
+            RoutePool routePool = this.routePools.get(host);
+            if (routePool == null) {
+                routePool = new RoutePool(host);
+                this.routePools.put(host, routePool);
+            }
+            return routePool;
+        }
+    }
+
+    private void removeRoutePool(final RoutePool routePool) {
+        synchronized (this.routePools) {
+            if (this.routePools.get(routePool.host) == routePool) {
+                this.routePools.remove(routePool.host);
+            }
+        }
+    }
+
+    int getRouteCount() {
+        synchronized (this.routePools) {
+            return this.routePools.size();
+        }
+    }
+
+    public Future<AsyncClientEndpoint> lease(
+            final HttpHost host,
+            final Timeout timeout,
+            final FutureCallback<AsyncClientEndpoint> callback) {
+        Args.notNull(host, "Host");
+        Args.notNull(timeout, "Timeout");
+        final List<Waiter> expired = new ArrayList<>();
+        final List<Completion> completions = new ArrayList<>();
+        final List<SharedEndpoint> released = new ArrayList<>();
+        RoutePool routePool = null;
+        Waiter waiter = null;
+        int leaseCount = 0;
+        while (waiter == null) {
+            final RoutePool candidate = getRoutePool(host);
+            synchronized (candidate) {
+                // Route pool may have been removed after it has been looked up
+                if (!candidate.removed) {
+                    candidate.expireWaiters(System.currentTimeMillis(), expired);
+                    waiter = new Waiter(candidate, timeout, callback);
+                    candidate.enqueue(waiter);
+                    candidate.dispatch(completions, released);
+                    leaseCount = candidate.reserveLeases();
+                    routePool = candidate;
+                }
+            }
+        }
+        complete(expired, completions, released);
+        scheduleExpiry(waiter);
+        for (int i = 0; i < leaseCount; i++) {
+            leaseConnection(routePool, timeout);
+        }
+        return waiter.future;
+    }
+
+    private void leaseConnection(final RoutePool routePool, final Timeout timeout) {
+        leaseEndpoint(routePool.host, timeout, new FutureCallback<AsyncClientEndpoint>() {
+
+            @Override
+            public void completed(final AsyncClientEndpoint endpoint) {
+                final List<Waiter> expired = new ArrayList<>();
+                final List<Completion> completions = new ArrayList<>();
+                final List<SharedEndpoint> released = new ArrayList<>();
+                final int leaseCount;
+                final Timeout nextTimeout;
+                final boolean idle;
+                synchronized (routePool) {
+                    routePool.pendingLeases--;
+                    routePool.expireWaiters(System.currentTimeMillis(), expired);
+                    routePool.endpoints.add(new SharedEndpoint(endpoint));
+                    routePool.dispatch(completions, released);
+                    leaseCount = routePool.reserveLeases();
+                    nextTimeout = routePool.getNextTimeout();
+                    idle = routePool.markRemovedIfIdle();
+                }
+                if (idle) {
+                    removeRoutePool(routePool);
+                }
+                complete(expired, completions, released);
+                for (int i = 0; i < leaseCount; i++) {
+                    leaseConnection(routePool, nextTimeout);
+                }
+            }
+
+            @Override
+            public void failed(final Exception ex) {
+                for (final Waiter waiter: leaseFailed(routePool)) {
+                    waiter.future.failed(ex);
+                }
+            }
+
+            @Override
+            public void cancelled() {
+                for (final Waiter waiter: leaseFailed(routePool)) {
+                    waiter.future.cancel();
+                }
+            }
+
+        });
+    }
+
+    private List<Waiter> leaseFailed(final RoutePool routePool) {
+        final List<Waiter> failed = new ArrayList<>();
+        final boolean idle;
+        synchronized (routePool) {
+            routePool.pendingLeases--;
+            // Fail waiters that are no longer covered by pending leases
+            while (routePool.waiterCount > routePool.getCoverage()) {
+                failed.add(routePool.pollWaiter());
+            }
+            idle = routePool.markRemovedIfIdle();
+        }
+        if (idle) {
+            removeRoutePool(routePool);
+        }
+        return failed;
+    }
+
+    private void release(final RoutePool routePool, final SharedEndpoint sharedEndpoint, final boolean reusable) {
+        final List<Waiter> expired = new ArrayList<>();
+        final List<Completion> completions = new ArrayList<>();
+        final List<SharedEndpoint> released = new ArrayList<>();
+        final int leaseCount;
+        final Timeout nextTimeout;
+        final boolean idle;
+        synchronized (routePool) {
+            sharedEndpoint.streamCount--;
+            if (!reusable && !isMultiplexing(sharedEndpoint.endpoint)) {
+                sharedEndpoint.discard = true;
+            }
+            if (sharedEndpoint.removed && sharedEndpoint.streamCount == 0) {
+                released.add(sharedEndpoint);
+            }
+            routePool.expireWaiters(System.currentTimeMillis(), expired);
+            routePool.dispatch(completions, released);
+            leaseCount = routePool.reserveLeases();
+            nextTimeout = routePool.getNextTimeout();
+            idle = routePool.markRemovedIfIdle();
+        }
+        if (idle) {
+            removeRoutePool(routePool);
+        }
+        complete(expired, completions, released);
+        for (int i = 0; i < leaseCount; i++) {
+            leaseConnection(routePool, nextTimeout);
+        }
+    }
+
+    private void waiterDone(final Waiter waiter) {
+        final RoutePool routePool = waiter.routePool;
+        final boolean idle;
+        synchronized (routePool) {
+            routePool.dequeue(waiter);
+            idle = routePool.markRemovedIfIdle();
+        }
+        if (idle) {
+            removeRoutePool(routePool);
+        }
+    }
+
+    private void expire(final Waiter waiter) {
+        final RoutePool routePool = waiter.routePool;
+        final boolean expired;
+        final boolean idle;
+        synchronized (routePool) {
+            expired = routePool.dequeue(waiter);
+            idle = routePool.markRemovedIfIdle();
+        }
+        if (idle) {
+            removeRoutePool(routePool);
+        }
+        if (expired) {
+            waiter.future.failed(new TimeoutException());
+        }
+    }
+
+    private void scheduleExpiry(final Waiter waiter) {
+        if (this.leaseTimer != null && waiter.deadline != Long.MAX_VALUE && waiter.isQueued()) {
+            waiter.setExpiry(this.leaseTimer.schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    expire(waiter);
+                }
+
+            }, waiter.deadline + 1));
+        }
+    }
+
+    private static void complete(
+            final List<Waiter> expired,
+            final List<Completion> completions,
+            final List<SharedEndpoint> released) {
+        for (final Waiter waiter: expired) {
+            waiter.future.failed(new TimeoutException());
+        }
+        for (final Completion completion: completions) {
+            if (!completion.future.completed(completion.streamEndpoint)) {
+                completion.streamEndpoint.releaseAndReuse();
+            }
+        }
+        for (final SharedEndpoint sharedEndpoint: released) {
+            if (sharedEndpoint.discard) {
+                sharedEndpoint.endpoint.releaseAndDiscard();
+            } else {
+                sharedEndpoint.endpoint.releaseAndReuse();
+            }
+        }
+    }
+
+    final class Waiter implements FutureCallback<AsyncClientEndpoint> {
+
+        final RoutePool routePool;
+        final Timeout timeout;
+        final long deadline;
+        final BasicFuture<AsyncClientEndpoint> future;
+        private final FutureCallback<AsyncClientEndpoint> callback;
+        private final AtomicBoolean queued;
+        private volatile Cancellable expiry;
+
+        Waiter(final RoutePool routePool, final Timeout timeout, final FutureCallback<AsyncClientEndpoint> callback) {
+            this.routePool = routePool;
+            this.timeout = timeout;
+            this.deadline = TimeValue.calculateDeadline(System.currentTimeMillis(), timeout);
+            this.future = new BasicFuture<>(this);
+            this.callback = callback;
+            this.queued = new AtomicBoolean(true);
+        }
+
+        boolean isQueued() {
+            return this.queued.get();
+        }
+
+        /**
+         * Marks the waiter as no longer waiting. Returns {@code true}
+         * only to the first caller.
+         */
+        boolean markDequeued() {
+            if (this.queued.compareAndSet(true, false)) {
+                final Cancellable handle = this.expiry;
+                if (handle != null) {
+                    handle.cancel();
+                }
+                return true;
+            }
+            return false;
+        }
+
+        void setExpiry(final Cancellable expiry) {
+            this.expiry = expiry;
+        }
+
+        @Override
+        public void completed(final AsyncClientEndpoint result) {
+            if (this.callback != null) {
+                this.callback.completed(result);
+            }
+        }
+
+        @Override
+        public void failed(final Exception ex) {
+            if (this.callback != null) {
+                this.callback.failed(ex);
+            }
+        }
+
+        @Override
+        public void cancelled() {
+            if (isQueued()) {
+                waiterDone(this);
+            }
+            if (this.callback != null) {
+                this.callback.cancelled();
+            }
+        }
+
+    }
+
+    static final class Completion {
+
+        final BasicFuture<AsyncClientEndpoint> future;
+        final StreamEndpoint streamEndpoint;
+
+        Completion(final BasicFuture<AsyncClientEndpoint> future, final StreamEndpoint streamEndpoint) {
+            this.future = future;
+            this.streamEndpoint = streamEndpoint;
+        }
+
+    }
+
+    static final class SharedEndpoint {
+
+        final AsyncClientEndpoint endpoint;
+        int streamCount;
+        boolean removed;
+        boolean discard;
+
+        SharedEndpoint(final AsyncClientEndpoint endpoint) {
+            this.endpoint = endpoint;
+        }
+
+    }
+
+    final class RoutePool {
+
+        final HttpHost host;
+        final List<SharedEndpoint> endpoints;
+        // May also contain waiters that are no longer queued
+        final Deque<Waiter> waiters;
+        int waiterCount;
+        int pendingLeases;
+        // Stream capacity of the last connection with a negotiated protocol
+        int streamCapacity;
+        boolean removed;
+
+        RoutePool(final HttpHost host) {
+            this.host = host;
+            this.endpoints = new ArrayList<>();
+            this.waiters = new ArrayDeque<>();
+        }
+
+        void enqueue(final Waiter waiter) {
+            this.waiters.add(waiter);
+            this.waiterCount++;
+        }
+
+        boolean dequeue(final Waiter waiter) {
+            if (waiter.markDequeued()) {
+                this.waiterCount--;
+                if (this.waiterCount == 0) {
+                    this.waiters.clear();
+                }
+                return true;
+            }
+            return false;
+        }
+
+        Waiter pollWaiter() {
+            for (;;) {
+                final Waiter waiter = this.waiters.poll();
+                if (waiter == null || dequeue(waiter)) {
+                    return waiter;
+                }
+            }
+        }
+
+        /**
+         * Removes waiters whose deadline has passed from the head of the queue.
+         * Waiters are usually queued with the same timeout and therefore
+         * expire in the order of the queue.
+         */
+        void expireWaiters(final long now, final List<Waiter> expired) {
+            Waiter waiter;
+            while ((waiter = this.waiters.peek()) != null) {
+                if (waiter.isQueued() && waiter.deadline >= now) {
+                    break;
+                }
+                this.waiters.poll();
+                if (dequeue(waiter)) {
+                    expired.add(waiter);
+                }
+            }
+        }
+
+        int getStreamCapacity(final SharedEndpoint sharedEndpoint) {
+            final int capacity = MultiplexingEndpointPool.this.getStreamCapacity(sharedEndpoint.endpoint);
+            if (capacity > 0 && !isNegotiating(sharedEndpoint.endpoint)) {
+                this.streamCapacity = capacity;
+            }
+            return capacity;
+        }
+
+        /**
+         * Hands over free stream capacity of the connections to waiters and removes
+         * connections that are no longer usable or no longer serve any request.
+         */
+        void dispatch(final List<Completion> completions, final List<SharedEndpoint> released) {
+            for (final Iterator<SharedEndpoint> it = this.endpoints.iterator(); it.hasNext(); ) {
+                final SharedEndpoint sharedEndpoint = it.next();
+                final int capacity = sharedEndpoint.discard ? 0 : getStreamCapacity(sharedEndpoint);
+                while (sharedEndpoint.streamCount < capacity) {
+                    final Waiter waiter = pollWaiter();
+                    if (waiter == null) {
+                        break;
+                    }
+                    sharedEndpoint.streamCount++;
+                    completions.add(new Completion(waiter.future, new StreamEndpoint(this, sharedEndpoint)));
+                }
+                if (capacity <= 0 || sharedEndpoint.streamCount == 0) {
+                    it.remove();
+                    sharedEndpoint.removed = true;
+                    if (sharedEndpoint.streamCount == 0) {
+                        released.add(sharedEndpoint);
+                    }
+                }
+            }
+        }
+
+        int getExpectedCapacity() {
+            return this.streamCapacity > 0 ? this.streamCapacity : getExpectedStreamCapacity(this.host);
+        }
+
+        /**
+         * Returns the number of waiters pending leases are expected to serve.
+         */
+        long getCoverage() {
+            final int expectedCapacity = getExpectedCapacity();
+            if (expectedCapacity > 0) {
+                return (long) this.pendingLeases * expectedCapacity;
+            }
+            // Capacity is unknown until negotiated, assume a single connection can serve all
+            return this.pendingLeases > 0 ? Long.MAX_VALUE : 0;
+        }
+
+        /**
+         * Reserves as many new leases as needed to cover all waiters
+         * not covered by pending leases.
+         */
+        int reserveLeases() {
+            final long uncovered = this.waiterCount - getCoverage();
+            if (uncovered <= 0) {
+                return 0;
+            }
+            final int expectedCapacity = getExpectedCapacity();
+            final int leaseCount = expectedCapacity > 0
+                            ? (int) ((uncovered + expectedCapacity - 1) / expectedCapacity) : 1;
+            this.pendingLeases += leaseCount;
+            return leaseCount;
+        }
+
+        Timeout getNextTimeout() {
+            final Waiter waiter = this.waiters.peek();
+            return waiter != null ? waiter.timeout : null;
+        }
+
+        /**
+         * Marks the route pool as removed if it holds no connections and
+         * no waiters and there are no pending leases.
+         */
+        boolean markRemovedIfIdle() {
+            if (!this.removed && this.endpoints.isEmpty() && this.waiterCount == 0 && this.pendingLeases == 0) {
+                this.removed = true;
+                return true;
+            }
+            return false;
+        }
+
+    }
+    final class StreamEndpoint extends AsyncClientEndpoint {
+
+        private final RoutePool routePool;
+        private final SharedEndpoint sharedEndpoint;
+        private final AtomicBoolean released;
+
+        StreamEndpoint(final RoutePool routePool, final SharedEndpoint sharedEndpoint) {
+            this.routePool = routePool;
+            this.sharedEndpoint = sharedEndpoint;
+            this.released = new AtomicBoolean(false);
+        }
+
+        @Override
+        public void execute(final AsyncClientExchangeHandler exchangeHandler, final HttpContext context) {
+            if (this.released.get()) {
+                throw new IllegalStateException("Endpoint has already been released");
+            }
+            this.sharedEndpoint.endpoint.execute(exchangeHandler, context);
+        }
+
+        @Override
+        public void releaseAndReuse() {
+            if (this.released.compareAndSet(false, true)) {
+                release(this.routePool, this.sharedEndpoint, true);
+            }
+        }
+
+        @Override
+        public void releaseAndDiscard() {
+            if (this.released.compareAndSet(false, true)) {
+                release(this.routePool, this.sharedEndpoint, false);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "[stream endpoint: " + this.sharedEndpoint.endpoint + "]";
+        }
+
+    }
+
+}
@@ -32,6 +32,7 @@
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.message.BasicHeader;
@@ -180,6 +181,63 @@ public void testHuffmanDecodingRFC7541Examples() throws Exception {
         Assert.assertFalse("Decoding completed", src.hasRemaining());
     }
 
+    @Test
+    public void testHuffmanTableDecoding() throws Exception {
+        final Random random = new Random(42);
+        for (int n = 0; n < 1000; n++) {
+            final byte[] data = new byte[n % 64];
+            if (n < 256) {
+                Arrays.fill(data, (byte) n);
+            } else {
+                random.nextBytes(data);
+            }
+            final ByteArrayBuffer encoded = new ByteArrayBuffer(128);
+            Huffman.ENCODER.encode(encoded, ByteBuffer.wrap(data));
+
+            final ByteArrayBuffer buffer1 = new ByteArrayBuffer(64);
+            Huffman.DECODER.decode(buffer1, ByteBuffer.wrap(encoded.array(), 0, encoded.length()));
+            final ByteArrayBuffer buffer2 = new ByteArrayBuffer(64);
+            final ByteBuffer src = ByteBuffer.wrap(encoded.array(), 0, encoded.length());
+            Huffman.TABLE_DECODER.decode(buffer2, src);
+            Assert.assertFalse(src.hasRemaining());
+
+            Assert.assertArrayEquals(data, buffer1.toByteArray());
+            Assert.assertArrayEquals(data, buffer2.toByteArray());
+
+            final ByteArrayBuffer buffer3 = new ByteArrayBuffer(64);
+            final ByteBuffer direct = ByteBuffer.allocateDirect(encoded.length());
+            direct.put(encoded.array(), 0, encoded.length());
+            direct.flip();
+            Huffman.TABLE_DECODER.decode(buffer3, direct);
+            Assert.assertArrayEquals(data, buffer3.toByteArray());
+        }
+    }
+
+    @Test
+    public void testHuffmanTableDecodingInvalidInput() throws Exception {
+        // 'a' (00011) followed by 3 bits of zero padding
+        try {
+            Huffman.TABLE_DECODER.decode(new ByteArrayBuffer(16), createByteBuffer(0x18));
+            Assert.fail("HPackException expected");
+        } catch (final HPackException expected) {
+        }
+        // 'a' followed by 11 bits of padding
+        try {
+            Huffman.TABLE_DECODER.decode(new ByteArrayBuffer(16), createByteBuffer(0x1f, 0xff));
+            Assert.fail("HPackException expected");
+        } catch (final HPackException expected) {
+        }
+        // EOS
+        try {
+            Huffman.TABLE_DECODER.decode(new ByteArrayBuffer(16), createByteBuffer(0xff, 0xff, 0xff, 0xff));
+            Assert.fail("HPackException expected");
+        } catch (final HPackException expected) {
+        }
+        final ByteArrayBuffer buffer = new ByteArrayBuffer(16);
+        Huffman.TABLE_DECODER.decode(buffer, createByteBuffer(0x1f));
+        Assert.assertEquals("a", new String(buffer.array(), 0, buffer.length(), StandardCharsets.US_ASCII));
+    }
+
     private static ByteBuffer createByteBuffer(final String s, final Charset charset) {
 
         return ByteBuffer.wrap(s.getBytes(charset));
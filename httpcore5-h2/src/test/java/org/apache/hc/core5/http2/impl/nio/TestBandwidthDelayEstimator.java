@@ -0,0 +1,115 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.http2.impl.nio;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestBandwidthDelayEstimator {
+
+    private static final long MS = 1000000L;
+
+    private static boolean sample(
+            final BandwidthDelayEstimator estimator, final int bytes, final long start, final long rtt) {
+        Assert.assertTrue(estimator.dataReceived(bytes / 2, start));
+        Assert.assertFalse(estimator.dataReceived(bytes - bytes / 2, start + rtt / 2));
+        return estimator.pingAcknowledged(start + rtt);
+    }
+
+    @Test
+    public void testWindowGrowsWhenFull() throws Exception {
+        final BandwidthDelayEstimator estimator = new BandwidthDelayEstimator(65535, 1024 * 1024);
+        Assert.assertEquals(65535, estimator.getWindowSize());
+
+        Assert.assertTrue(sample(estimator, 60000, 0, 10 * MS));
+        Assert.assertEquals(131070, estimator.getWindowSize());
+        Assert.assertTrue(sample(estimator, 130000, 100 * MS, 10 * MS));
+        Assert.assertEquals(262140, estimator.getWindowSize());
+
+        // Window not full
+        Assert.assertFalse(sample(estimator, 100000, 200 * MS, 10 * MS));
+        Assert.assertEquals(262140, estimator.getWindowSize());
+    }
+
+    @Test
+    public void testWindowBounded() throws Exception {
+        final BandwidthDelayEstimator estimator = new BandwidthDelayEstimator(65535, 100000);
+        Assert.assertTrue(sample(estimator, 65535, 0, 10 * MS));
+        Assert.assertEquals(100000, estimator.getWindowSize());
+        Assert.assertFalse(sample(estimator, 100000, 100 * MS, 5 * MS));
+        Assert.assertEquals(100000, estimator.getWindowSize());
+    }
+
+    @Test
+    public void testWindowDoesNotGrowWhenBandwidthDrops() throws Exception {
+        final BandwidthDelayEstimator estimator = new BandwidthDelayEstimator(65535, 1024 * 1024);
+        Assert.assertTrue(sample(estimator, 60000, 0, 10 * MS));
+        Assert.assertEquals(131070, estimator.getWindowSize());
+        // Window full only because the round trip time went up
+        Assert.assertFalse(sample(estimator, 131070, 100 * MS, 100 * MS));
+        Assert.assertEquals(131070, estimator.getWindowSize());
+    }
+
+    @Test
+    public void testWindowShrinks() throws Exception {
+        final BandwidthDelayEstimator estimator = new BandwidthDelayEstimator(65535, 1024 * 1024);
+        Assert.assertTrue(sample(estimator, 60000, 0, 10 * MS));
+        Assert.assertTrue(sample(estimator, 130000, 100 * MS, 10 * MS));
+        Assert.assertEquals(262140, estimator.getWindowSize());
+
+        Assert.assertFalse(sample(estimator, 1000, 200 * MS, 10 * MS));
+        Assert.assertFalse(sample(estimator, 1000, 300 * MS, 10 * MS));
+        Assert.assertTrue(sample(estimator, 1000, 400 * MS, 10 * MS));
+        Assert.assertEquals(131070, estimator.getWindowSize());
+
+        for (int i = 0; i < 3; i++) {
+            sample(estimator, 1000, (500 + i * 100) * MS, 10 * MS);
+        }
+        Assert.assertEquals(65535, estimator.getWindowSize());
+        for (int i = 0; i < 3; i++) {
+            Assert.assertFalse(sample(estimator, 1000, (800 + i * 100) * MS, 10 * MS));
+        }
+        Assert.assertEquals(65535, estimator.getWindowSize());
+
+        // Bandwidth estimate reset on shrink, so the window can grow again
+        Assert.assertTrue(sample(estimator, 60000, 1100 * MS, 20 * MS));
+        Assert.assertEquals(131070, estimator.getWindowSize());
+    }
+
+    @Test
+    public void testPingFailed() throws Exception {
+        final BandwidthDelayEstimator estimator = new BandwidthDelayEstimator(65535, 1024 * 1024);
+        Assert.assertTrue(estimator.dataReceived(60000, 0));
+        Assert.assertTrue(estimator.isSampling());
+        estimator.pingFailed();
+        Assert.assertFalse(estimator.isSampling());
+        Assert.assertFalse(estimator.pingAcknowledged(10 * MS));
+        Assert.assertEquals(65535, estimator.getWindowSize());
+        Assert.assertTrue(estimator.dataReceived(1000, 20 * MS));
+    }
+
+}
@@ -0,0 +1,341 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.http2.impl.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpConnection;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.config.CharCodingConfig;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.apache.hc.core5.http.message.BasicHttpRequest;
+import org.apache.hc.core5.http.nio.AsyncClientExchangeHandler;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+import org.apache.hc.core5.http.nio.RequestChannel;
+import org.apache.hc.core5.http.nio.command.ExecutionCommand;
+import org.apache.hc.core5.http.protocol.HttpProcessorBuilder;
+import org.apache.hc.core5.http2.WritableByteChannelMock;
+import org.apache.hc.core5.http2.config.H2Config;
+import org.apache.hc.core5.http2.frame.DefaultFrameFactory;
+import org.apache.hc.core5.http2.frame.FrameFlag;
+import org.apache.hc.core5.http2.frame.FrameType;
+import org.apache.hc.core5.http2.frame.RawFrame;
+import org.apache.hc.core5.http2.hpack.HPackEncoder;
+import org.apache.hc.core5.reactor.Command;
+import org.apache.hc.core5.reactor.TlsCapableIOSession;
+import org.apache.hc.core5.util.ByteArrayBuffer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestClientHttp2StreamMultiplexer {
+
+    private static final int FRAME_SIZE = 16 * 1024;
+
+    static class ByteChannelMock implements ByteChannel {
+
+        private final Deque<ByteBuffer> input = new ArrayDeque<>();
+
+        void feed(final byte[] bytes) {
+            input.add(ByteBuffer.wrap(bytes));
+        }
+
+        boolean hasInput() {
+            return !input.isEmpty();
+        }
+
+        @Override
+        public int read(final ByteBuffer dst) throws IOException {
+            int total = 0;
+            while (dst.hasRemaining() && !input.isEmpty()) {
+                final ByteBuffer chunk = input.peek();
+                final int n = Math.min(dst.remaining(), chunk.remaining());
+                final ByteBuffer slice = chunk.duplicate();
+                slice.limit(slice.position() + n);
+                dst.put(slice);
+                chunk.position(chunk.position() + n);
+                if (!chunk.hasRemaining()) {
+                    input.poll();
+                }
+                total += n;
+            }
+            return total;
+        }
+
+        @Override
+        public int write(final ByteBuffer src) throws IOException {
+            final int n = src.remaining();
+            src.position(src.limit());
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+
+    }
+
+    static class FlowControlListener implements Http2StreamListener {
+
+        final List<Integer> connWindowSizes = new ArrayList<>();
+        final List<Integer> streamWindowSizes = new ArrayList<>();
+        int pingCount;
+        byte[] pingData;
+
+        @Override
+        public void onHeaderInput(final HttpConnection connection, final int streamId, final List<? extends Header> headers) {
+        }
+
+        @Override
+        public void onHeaderOutput(final HttpConnection connection, final int streamId, final List<? extends Header> headers) {
+        }
+
+        @Override
+        public void onFrameInput(final HttpConnection connection, final int streamId, final RawFrame frame) {
+        }
+
+        @Override
+        public void onFrameOutput(final HttpConnection connection, final int streamId, final RawFrame frame) {
+            if (FrameType.valueOf(frame.getType()) == FrameType.PING && !frame.isFlagSet(FrameFlag.ACK)) {
+                final ByteBuffer payload = frame.getPayload();
+                pingData = new byte[payload.remaining()];
+                payload.get(pingData);
+                pingCount++;
+            }
+        }
+
+        @Override
+        public void onInputFlowControl(final HttpConnection connection, final int streamId, final int delta, final int actualSize) {
+            if (delta > 0) {
+                if (streamId == 0) {
+                    connWindowSizes.add(actualSize);
+                } else {
+                    streamWindowSizes.add(actualSize);
+                }
+            }
+        }
+
+        @Override
+        public void onOutputFlowControl(final HttpConnection connection, final int streamId, final int delta, final int actualSize) {
+        }
+
+    }
+
+    static class ExchangeHandler implements AsyncClientExchangeHandler {
+
+        @Override
+        public void produceRequest(final RequestChannel channel) throws HttpException, IOException {
+            channel.sendRequest(new BasicHttpRequest("GET", new HttpHost("localhost"), "/"), null);
+        }
+
+        @Override
+        public void consumeResponse(final HttpResponse response, final EntityDetails entityDetails) {
+        }
+
+        @Override
+        public void consumeInformation(final HttpResponse response) {
+        }
+
+        @Override
+        public void updateCapacity(final CapacityChannel capacityChannel) throws IOException {
+            capacityChannel.update(Integer.MAX_VALUE);
+        }
+
+        @Override
+        public int consume(final ByteBuffer src) {
+            final int n = src.remaining();
+            src.position(src.limit());
+            return n;
+        }
+
+        @Override
+        public void streamEnd(final List<? extends Header> trailers) {
+        }
+
+        @Override
+        public int available() {
+            return 0;
+        }
+
+        @Override
+        public void produce(final DataStreamChannel channel) {
+        }
+
+        @Override
+        public void failed(final Exception cause) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public void releaseResources() {
+        }
+
+    }
+
+    private ByteChannelMock channel;
+    private FlowControlListener listener;
+    private TlsCapableIOSession ioSession;
+
+    @Before
+    public void setup() throws Exception {
+        channel = new ByteChannelMock();
+        listener = new FlowControlListener();
+        ioSession = Mockito.mock(TlsCapableIOSession.class);
+        Mockito.when(ioSession.channel()).thenReturn(channel);
+        Mockito.when(ioSession.getCommand()).thenReturn(
+                new ExecutionCommand(new ExchangeHandler(), null), (Command) null);
+    }
+
+    private ClientHttp2StreamMultiplexer connect(final H2Config h2Config) throws Exception {
+        final ClientHttp2StreamMultiplexer multiplexer = new ClientHttp2StreamMultiplexer(
+                ioSession,
+                DefaultFrameFactory.INSTANCE,
+                HttpProcessorBuilder.create().build(),
+                null,
+                h2Config,
+                CharCodingConfig.DEFAULT,
+                listener);
+        multiplexer.onConnect(null);
+        feed(multiplexer,
+                DefaultFrameFactory.INSTANCE.createSettings(),
+                DefaultFrameFactory.INSTANCE.createSettingsAck());
+        multiplexer.onOutput();
+
+        final ByteArrayBuffer buffer = new ByteArrayBuffer(64);
+        final HPackEncoder encoder = new HPackEncoder(StandardCharsets.US_ASCII);
+        encoder.encodeHeaders(buffer, Arrays.asList(new BasicHeader(":status", "200")));
+        feed(multiplexer, DefaultFrameFactory.INSTANCE.createHeaders(
+                1, ByteBuffer.wrap(buffer.array(), 0, buffer.length()), true, false));
+        return multiplexer;
+    }
+
+    private void feed(final ClientHttp2StreamMultiplexer multiplexer, final RawFrame... frames) throws Exception {
+        final WritableByteChannelMock writableChannel = new WritableByteChannelMock(1024);
+        final FrameOutputBuffer outbuffer = new FrameOutputBuffer(FRAME_SIZE);
+        for (final RawFrame frame : frames) {
+            outbuffer.write(frame, writableChannel);
+        }
+        channel.feed(writableChannel.toByteArray());
+        while (channel.hasInput()) {
+            multiplexer.onInput();
+        }
+    }
+
+    private void feedData(final ClientHttp2StreamMultiplexer multiplexer, final int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            feed(multiplexer, DefaultFrameFactory.INSTANCE.createData(1, ByteBuffer.wrap(new byte[FRAME_SIZE]), false));
+        }
+    }
+
+    private void feedPingAck(final ClientHttp2StreamMultiplexer multiplexer) throws Exception {
+        Assert.assertNotNull(listener.pingData);
+        feed(multiplexer, DefaultFrameFactory.INSTANCE.createPingAck(ByteBuffer.wrap(listener.pingData)));
+    }
+
+    @Test
+    public void testInputWindowsNotAutoTuned() throws Exception {
+        final ClientHttp2StreamMultiplexer multiplexer = connect(H2Config.DEFAULT);
+
+        feedData(multiplexer, 2);
+        Assert.assertTrue(listener.connWindowSizes.isEmpty());
+        Assert.assertTrue(listener.streamWindowSizes.isEmpty());
+
+        // Windows fall below half of the initial window size
+        feedData(multiplexer, 1);
+        Assert.assertEquals(Arrays.asList(Integer.MAX_VALUE), listener.connWindowSizes);
+        Assert.assertEquals(Arrays.asList(Integer.MAX_VALUE), listener.streamWindowSizes);
+        Assert.assertEquals(0, listener.pingCount);
+    }
+
+    @Test
+    public void testInputWindowsAutoTuned() throws Exception {
+        final ClientHttp2StreamMultiplexer multiplexer = connect(H2Config.custom()
+                .setMaxWindowSize(1024 * 1024)
+                .build());
+
+        // The first DATA frame starts a bandwidth-delay sample
+        feedData(multiplexer, 2);
+        Assert.assertEquals(1, listener.pingCount);
+        Assert.assertTrue(listener.connWindowSizes.isEmpty());
+        Assert.assertTrue(listener.streamWindowSizes.isEmpty());
+
+        // Windows get topped up to the estimated window once below half of it
+        feedData(multiplexer, 1);
+        Assert.assertEquals(Arrays.asList(65535), listener.connWindowSizes);
+        Assert.assertEquals(Arrays.asList(65535), listener.streamWindowSizes);
+
+        // Most of the window arrived within a round trip: the window grows
+        feedPingAck(multiplexer);
+        feedData(multiplexer, 1);
+        Assert.assertEquals(2, listener.pingCount);
+        Assert.assertEquals(Arrays.asList(65535, 131070), listener.connWindowSizes);
+        Assert.assertEquals(Arrays.asList(65535, 131070), listener.streamWindowSizes);
+
+        // Three consecutive samples well below the window: the window shrinks
+        feedPingAck(multiplexer);
+        feedData(multiplexer, 1);
+        feedPingAck(multiplexer);
+        feedData(multiplexer, 1);
+        feedPingAck(multiplexer);
+        Assert.assertEquals(4, listener.pingCount);
+        Assert.assertEquals(Arrays.asList(65535, 131070), listener.connWindowSizes);
+        Assert.assertEquals(Arrays.asList(65535, 131070), listener.streamWindowSizes);
+
+        // Windows fall below half of the previous window size but not of the current one
+        feedData(multiplexer, 3);
+        Assert.assertEquals(Arrays.asList(65535, 131070), listener.connWindowSizes);
+        Assert.assertEquals(Arrays.asList(65535, 131070), listener.streamWindowSizes);
+
+        // Windows are topped up to the current window size only
+        feedData(multiplexer, 1);
+        Assert.assertEquals(Arrays.asList(65535, 131070, 65535), listener.connWindowSizes);
+        Assert.assertEquals(Arrays.asList(65535, 131070, 65535), listener.streamWindowSizes);
+    }
+
+}
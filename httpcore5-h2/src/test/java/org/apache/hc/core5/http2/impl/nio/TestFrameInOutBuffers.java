@@ -30,6 +30,7 @@
 import java.nio.ByteBuffer;
 
 import org.apache.hc.core5.http.ConnectionClosedException;
+import org.apache.hc.core5.http.nio.RetainableByteBuffer;
 import org.apache.hc.core5.http2.H2ConnectionException;
 import org.apache.hc.core5.http2.H2CorruptFrameException;
 import org.apache.hc.core5.http2.ReadableByteChannelMock;
@@ -39,6 +40,9 @@
 import org.apache.hc.core5.http2.frame.FrameType;
 import org.apache.hc.core5.http2.frame.RawFrame;
 import org.apache.hc.core5.http2.impl.BasicH2TransportMetrics;
+import org.apache.hc.core5.util.ByteBufferAllocator;
+import org.apache.hc.core5.util.HeapByteBufferAllocator;
+import org.apache.hc.core5.util.PooledByteBufferAllocator;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -101,6 +105,126 @@ public void testPartialFrameWrite() throws Exception {
                 writableChannel.toByteArray());
     }
 
+    @Test
+    public void testStageFramesAndFlush() throws Exception {
+        final WritableByteChannelMock writableChannel = new WritableByteChannelMock(1024);
+        final FrameOutputBuffer outbuffer = new FrameOutputBuffer(new BasicH2TransportMetrics(), 16, 16,
+                HeapByteBufferAllocator.INSTANCE);
+        Assert.assertEquals(FrameConsts.HEAD_LEN + 32, outbuffer.available());
+
+        final RawFrame frame1 = new RawFrame(FrameType.DATA.getValue(), 0, 1,
+                ByteBuffer.wrap(new byte[]{1,2,3,4,5}));
+        final RawFrame frame2 = new RawFrame(FrameType.DATA.getValue(), FrameFlag.END_STREAM.getValue(), 3,
+                ByteBuffer.wrap(new byte[]{6,7,8}));
+        final RawFrame frame3 = new RawFrame(FrameType.DATA.getValue(), 0, 5,
+                ByteBuffer.wrap(new byte[16]));
+
+        Assert.assertTrue(outbuffer.stage(frame1));
+        Assert.assertTrue(outbuffer.stage(frame2));
+        Assert.assertFalse(outbuffer.stage(frame3));
+        Assert.assertEquals(2 * FrameConsts.HEAD_LEN + 8, outbuffer.length());
+        Assert.assertEquals(0, writableChannel.toByteArray().length);
+        Assert.assertEquals(2, outbuffer.getMetrics().getFramesTransferred());
+
+        outbuffer.flush(writableChannel);
+        Assert.assertTrue(outbuffer.isEmpty());
+        Assert.assertArrayEquals(new byte[] {0,0,5,0,0,0,0,0,1,1,2,3,4,5,0,0,3,0,1,0,0,0,3,6,7,8},
+                writableChannel.toByteArray());
+        Assert.assertEquals(2 * FrameConsts.HEAD_LEN + 8, outbuffer.getMetrics().getBytesTransferred());
+
+        Assert.assertTrue(outbuffer.stage(frame3));
+    }
+
+    @Test(expected = H2ConnectionException.class)
+    public void testStageFrameExceedsMaxPayloadSize() throws Exception {
+        final FrameOutputBuffer outbuffer = new FrameOutputBuffer(new BasicH2TransportMetrics(), 16, 1024,
+                HeapByteBufferAllocator.INSTANCE);
+        outbuffer.stage(new RawFrame(FrameType.DATA.getValue(), 0, 1, ByteBuffer.wrap(new byte[17])));
+    }
+
+    static class CountingAllocator implements ByteBufferAllocator {
+
+        int allocated;
+        int released;
+
+        @Override
+        public ByteBuffer allocate(final int capacity) {
+            allocated++;
+            return ByteBuffer.allocate(capacity);
+        }
+
+        @Override
+        public void release(final ByteBuffer buffer) {
+            released++;
+        }
+
+    }
+
+    @Test
+    public void testRetainFramePayload() throws Exception {
+        final CountingAllocator allocator = new CountingAllocator();
+        final FrameInputBuffer inbuffer = new FrameInputBuffer(new BasicH2TransportMetrics(), 32, 16, allocator);
+        final ReadableByteChannelMock readableChannel = new ReadableByteChannelMock(
+                new byte[] {0,0,3,0,0,0,0,0,1,1,2,3,0,0,2,0},
+                new byte[] {1,0,0,0,3,4,5});
+
+        final RawFrame frame1 = inbuffer.read(readableChannel);
+        Assert.assertNotNull(frame1);
+        Assert.assertFalse(inbuffer.isFrameAvailable());
+        final RetainableByteBuffer chunk1 = inbuffer.wrap(frame1.getPayloadContent());
+        chunk1.retain();
+
+        final RawFrame frame2 = inbuffer.read(readableChannel);
+        Assert.assertNotNull(frame2);
+        Assert.assertEquals(3, frame2.getStreamId());
+        Assert.assertEquals(2, allocator.allocated);
+        Assert.assertEquals(0, allocator.released);
+
+        final ByteBuffer data1 = chunk1.data();
+        Assert.assertEquals(3, data1.remaining());
+        Assert.assertEquals(1, data1.get());
+        Assert.assertEquals(2, data1.get());
+        Assert.assertEquals(3, data1.get());
+
+        chunk1.release();
+        Assert.assertEquals(1, allocator.released);
+        inbuffer.release();
+        Assert.assertEquals(2, allocator.released);
+    }
+
+    @Test
+    public void testLargeFrameNotAvailable() throws Exception {
+        final FrameInputBuffer inbuffer = new FrameInputBuffer(new BasicH2TransportMetrics(), 32, 16);
+        final ReadableByteChannelMock readableChannel = new ReadableByteChannelMock(
+                new byte[] {0,0,1,0,0,0,0,0,1,1,(byte) 0x80,0,1,0,0,0,0,0,1});
+
+        Assert.assertNotNull(inbuffer.read(readableChannel));
+        Assert.assertFalse(inbuffer.isFrameAvailable());
+    }
+
+    @Test
+    public void testFramePayloadNotRetained() throws Exception {
+        final CountingAllocator allocator = new CountingAllocator();
+        final FrameInputBuffer inbuffer = new FrameInputBuffer(new BasicH2TransportMetrics(), 32, 16, allocator);
+        final ReadableByteChannelMock readableChannel = new ReadableByteChannelMock(
+                new byte[] {0,0,3,0,0,0,0,0,1,1,2,3,0,0,2,0,1,0,0,0,3,4,5},
+                new byte[] {0,0,1,0,1,0,0,0,3,6});
+
+        final RawFrame frame1 = inbuffer.read(readableChannel);
+        Assert.assertNotNull(frame1);
+        Assert.assertTrue(inbuffer.isFrameAvailable());
+        final RetainableByteBuffer chunk1 = inbuffer.wrap(frame1.getPayloadContent());
+        Assert.assertEquals(3, chunk1.data().remaining());
+
+        Assert.assertNotNull(inbuffer.read(readableChannel));
+        Assert.assertFalse(inbuffer.isFrameAvailable());
+        Assert.assertNotNull(inbuffer.read(readableChannel));
+        Assert.assertEquals(1, allocator.allocated);
+
+        inbuffer.release();
+        Assert.assertEquals(1, allocator.released);
+    }
+
     @Test
     public void testReadFrameMultiple() throws Exception {
         final FrameInputBuffer inbuffer = new FrameInputBuffer(16 * 1024);
@@ -271,5 +395,34 @@ public void testReadFrameExceedingLimit() throws Exception {
         inbuffer.read(readableChannel);
     }
 
-}
+    @Test
+    public void testReadWriteFramePooledBuffers() throws Exception {
+        final PooledByteBufferAllocator allocator = new PooledByteBufferAllocator();
+        final WritableByteChannelMock writableChannel = new WritableByteChannelMock(1024);
+        final FrameOutputBuffer outbuffer = new FrameOutputBuffer(new BasicH2TransportMetrics(), 16 * 1024, allocator);
+
+        final RawFrame frame = new RawFrame(FrameType.DATA.getValue(), 0, 1,
+                ByteBuffer.wrap(new byte[]{1,2,3,4,5}));
+        outbuffer.write(frame, writableChannel);
+        outbuffer.release();
 
+        final FrameInputBuffer inbuffer = new FrameInputBuffer(new BasicH2TransportMetrics(), 16 * 1024, allocator);
+        final ReadableByteChannelMock readableChannel = new ReadableByteChannelMock(writableChannel.toByteArray());
+        final RawFrame frame2 = inbuffer.read(readableChannel);
+        Assert.assertEquals(1L, frame2.getStreamId());
+        final ByteBuffer payload2 = frame2.getPayloadContent();
+        Assert.assertNotNull(payload2);
+        Assert.assertTrue(payload2.isDirect());
+        Assert.assertEquals(5, payload2.remaining());
+        Assert.assertEquals(1, payload2.get());
+        Assert.assertEquals(2, payload2.get());
+        Assert.assertEquals(3, payload2.get());
+        Assert.assertEquals(4, payload2.get());
+        Assert.assertEquals(5, payload2.get());
+        inbuffer.release();
+
+        Assert.assertEquals(1, allocator.getAllocatedCount());
+        Assert.assertEquals(1, allocator.getReusedCount());
+    }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.http2.impl.nio;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestStreamPriorityTree {
+
+    private static int next(final StreamPriorityTree tree) {
+        final int[] schedule = tree.getSchedule();
+        Assert.assertTrue(schedule.length > 0);
+        return schedule[0];
+    }
+
+    @Test
+    public void testDefaultPriority() throws Exception {
+        final StreamPriorityTree tree = new StreamPriorityTree();
+        tree.add(3);
+        tree.add(1);
+        tree.add(5);
+        Assert.assertArrayEquals(new int[] {1, 3, 5}, tree.getSchedule());
+        Assert.assertEquals(StreamPriorityTree.DEFAULT_WEIGHT, tree.getWeight(1));
+        Assert.assertEquals(0, tree.getDependency(1));
+
+        // Streams with equal weights take turns
+        tree.sent(1, 1000);
+        Assert.assertArrayEquals(new int[] {3, 5, 1}, tree.getSchedule());
+        tree.sent(3, 1000);
+        tree.sent(5, 1000);
+        Assert.assertArrayEquals(new int[] {1, 3, 5}, tree.getSchedule());
+    }
+
+    @Test
+    public void testWeightedShare() throws Exception {
+        final StreamPriorityTree tree = new StreamPriorityTree();
+        tree.add(1);
+        tree.add(3);
+        Assert.assertTrue(tree.prioritize(1, 0, 64, false));
+        Assert.assertTrue(tree.prioritize(3, 0, 16, false));
+
+        int sent1 = 0;
+        int sent3 = 0;
+        for (int i = 0; i < 500; i++) {
+            final int streamId = next(tree);
+            tree.sent(streamId, 1024);
+            if (streamId == 1) {
+                sent1++;
+            } else {
+                sent3++;
+            }
+        }
+        Assert.assertEquals(4.0, (double) sent1 / sent3, 0.1);
+    }
+
+    @Test
+    public void testDependencies() throws Exception {
+        final StreamPriorityTree tree = new StreamPriorityTree();
+        tree.add(1);
+        tree.add(3);
+        tree.add(5);
+        Assert.assertTrue(tree.prioritize(3, 1, 16, false));
+        Assert.assertTrue(tree.prioritize(5, 1, 16, false));
+        Assert.assertEquals(1, tree.getDependency(3));
+        Assert.assertArrayEquals(new int[] {1, 3, 5}, tree.getSchedule());
+
+        // Dependents share the output of their parent sub-tree with its siblings
+        tree.add(7);
+        tree.sent(3, 1000);
+        Assert.assertArrayEquals(new int[] {7, 1, 5, 3}, tree.getSchedule());
+
+        // Exclusive dependency
+        Assert.assertTrue(tree.prioritize(7, 1, 16, true));
+        Assert.assertEquals(1, tree.getDependency(7));
+        Assert.assertEquals(7, tree.getDependency(3));
+        Assert.assertEquals(7, tree.getDependency(5));
+
+        // Dependency on a dependent
+        Assert.assertTrue(tree.prioritize(1, 5, 32, false));
+        Assert.assertEquals(0, tree.getDependency(5));
+        Assert.assertEquals(5, tree.getDependency(1));
+        Assert.assertEquals(32, tree.getWeight(1));
+        Assert.assertArrayEquals(new int[] {5, 1, 7, 3}, tree.getSchedule());
+
+        Assert.assertFalse(tree.prioritize(3, 3, 16, false));
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        final StreamPriorityTree tree = new StreamPriorityTree();
+        tree.add(1);
+        tree.add(3);
+        tree.add(5);
+        Assert.assertTrue(tree.prioritize(3, 1, 8, false));
+        Assert.assertTrue(tree.prioritize(5, 1, 24, false));
+
+        tree.remove(1);
+        Assert.assertEquals(2, tree.size());
+        Assert.assertEquals(0, tree.getDependency(3));
+        Assert.assertEquals(0, tree.getDependency(5));
+        Assert.assertEquals(4, tree.getWeight(3));
+        Assert.assertEquals(12, tree.getWeight(5));
+        Assert.assertEquals(-1, tree.getWeight(1));
+    }
+
+    @Test
+    public void testPriorityPlaceholders() throws Exception {
+        final StreamPriorityTree tree = new StreamPriorityTree();
+        Assert.assertTrue(tree.prioritize(3, 1, 16, false));
+        Assert.assertEquals(2, tree.size());
+        Assert.assertEquals(1, tree.getDependency(3));
+
+        // Streams keep the priority assigned before they have been opened
+        tree.add(3);
+        Assert.assertEquals(1, tree.getDependency(3));
+    }
+
+    @Test
+    public void testExtensiblePriorities() throws Exception {
+        final StreamPriorityTree tree = new StreamPriorityTree();
+        tree.add(1);
+        tree.add(3);
+        tree.add(5);
+        tree.add(7);
+        tree.prioritize(1, "u=5");
+        tree.prioritize(3, "u=1, i");
+        tree.prioritize(5, "u=1");
+        Assert.assertArrayEquals(new int[] {5, 3, 7, 1}, tree.getSchedule());
+
+        // Urgency takes precedence over fair share
+        tree.sent(5, 100000);
+        Assert.assertArrayEquals(new int[] {5, 3, 7, 1}, tree.getSchedule());
+
+        // Malformed parameters are ignored
+        tree.prioritize(5, "u=9, i=?1;foo=bar");
+        Assert.assertArrayEquals(new int[] {3, 7, 5, 1}, tree.getSchedule());
+    }
+
+    @Test
+    public void testIdleNodesPruned() throws Exception {
+        final StreamPriorityTree tree = new StreamPriorityTree();
+        tree.add(1);
+        int lastId = 1;
+        for (int i = 0; i < StreamPriorityTree.MAX_IDLE_NODES + 10; i++) {
+            lastId += 2;
+            Assert.assertTrue(tree.prioritize(lastId, 0, 32, false));
+        }
+        Assert.assertEquals(StreamPriorityTree.MAX_IDLE_NODES + 1, tree.size());
+        // Least recently referenced nodes are pruned while open streams are kept
+        Assert.assertEquals(-1, tree.getWeight(3));
+        Assert.assertEquals(StreamPriorityTree.DEFAULT_WEIGHT, tree.getWeight(1));
+        Assert.assertEquals(32, tree.getWeight(lastId));
+
+        // Open streams do not count towards the limit
+        for (int i = 0; i < StreamPriorityTree.MAX_IDLE_NODES; i++) {
+            lastId += 2;
+            tree.add(lastId);
+        }
+        Assert.assertTrue(tree.prioritize(lastId + 2, 1, 64, false));
+        Assert.assertEquals(1, tree.getDependency(lastId + 2));
+        Assert.assertEquals(64, tree.getWeight(lastId + 2));
+    }
+
+    @Test
+    public void testScheduleCached() throws Exception {
+        final StreamPriorityTree tree = new StreamPriorityTree();
+        tree.add(1);
+        tree.add(3);
+        final int[] schedule1 = tree.getSchedule();
+        Assert.assertArrayEquals(new int[] {1, 3}, schedule1);
+        Assert.assertSame(schedule1, tree.getSchedule());
+
+        tree.sent(1, 10);
+        final int[] schedule2 = tree.getSchedule();
+        Assert.assertArrayEquals(new int[] {3, 1}, schedule2);
+
+        // Order of streams has not changed
+        tree.sent(3, 1);
+        Assert.assertSame(schedule2, tree.getSchedule());
+
+        tree.prioritize(1, "u=0");
+        Assert.assertArrayEquals(new int[] {1, 3}, tree.getSchedule());
+        tree.remove(1);
+        Assert.assertArrayEquals(new int[] {3}, tree.getSchedule());
+    }
+
+}
@@ -0,0 +1,385 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.http2.impl.nio.bootstrap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.hc.core5.concurrent.BasicFuture;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.concurrent.HashedWheelTimer;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.nio.AsyncClientEndpoint;
+import org.apache.hc.core5.http.nio.AsyncClientExchangeHandler;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.Timeout;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestMultiplexingEndpointPool {
+
+    static class MockEndpoint extends AsyncClientEndpoint {
+
+        int capacity;
+        boolean multiplexing;
+        boolean negotiating;
+        boolean reused;
+        boolean discarded;
+
+        MockEndpoint(final int capacity, final boolean multiplexing) {
+            this.capacity = capacity;
+            this.multiplexing = multiplexing;
+        }
+
+        @Override
+        public void execute(final AsyncClientExchangeHandler exchangeHandler, final HttpContext context) {
+        }
+
+        @Override
+        public void releaseAndReuse() {
+            reused = true;
+        }
+
+        @Override
+        public void releaseAndDiscard() {
+            discarded = true;
+        }
+
+    }
+
+    static class MockEndpointPool extends MultiplexingEndpointPool {
+
+        final List<BasicFuture<AsyncClientEndpoint>> leases = new ArrayList<>();
+        final int expectedCapacity;
+
+        MockEndpointPool(final int expectedCapacity, final HashedWheelTimer leaseTimer) {
+            super(leaseTimer);
+            this.expectedCapacity = expectedCapacity;
+        }
+
+        MockEndpointPool(final int expectedCapacity) {
+            this(expectedCapacity, null);
+        }
+
+        @Override
+        Future<AsyncClientEndpoint> leaseEndpoint(
+                final HttpHost host, final Timeout timeout, final FutureCallback<AsyncClientEndpoint> callback) {
+            final BasicFuture<AsyncClientEndpoint> future = new BasicFuture<>(callback);
+            leases.add(future);
+            return future;
+        }
+
+        @Override
+        int getStreamCapacity(final AsyncClientEndpoint endpoint) {
+            return ((MockEndpoint) endpoint).capacity;
+        }
+
+        @Override
+        int getExpectedStreamCapacity(final HttpHost host) {
+            return expectedCapacity;
+        }
+
+        @Override
+        boolean isNegotiating(final AsyncClientEndpoint endpoint) {
+            return ((MockEndpoint) endpoint).negotiating;
+        }
+
+        @Override
+        boolean isMultiplexing(final AsyncClientEndpoint endpoint) {
+            return ((MockEndpoint) endpoint).multiplexing;
+        }
+
+    }
+
+    private HttpHost host;
+
+    @Before
+    public void setup() {
+        host = new HttpHost("somehost");
+    }
+
+    @Test
+    public void testConcurrentLeasesShareConnection() throws Exception {
+        final MockEndpointPool pool = new MockEndpointPool(2);
+
+        final Future<AsyncClientEndpoint> future1 = pool.lease(host, Timeout.ofSeconds(1), null);
+        final Future<AsyncClientEndpoint> future2 = pool.lease(host, Timeout.ofSeconds(1), null);
+        Assert.assertEquals(1, pool.leases.size());
+        Assert.assertFalse(future1.isDone());
+        Assert.assertFalse(future2.isDone());
+
+        final MockEndpoint endpoint = new MockEndpoint(2, true);
+        pool.leases.get(0).completed(endpoint);
+        Assert.assertTrue(future1.isDone());
+        Assert.assertTrue(future2.isDone());
+
+        // Capacity exhausted
+        final Future<AsyncClientEndpoint> future3 = pool.lease(host, Timeout.ofSeconds(1), null);
+        Assert.assertEquals(2, pool.leases.size());
+        Assert.assertFalse(future3.isDone());
+
+        // Freed stream is handed over to the pending request
+        future1.get().releaseAndReuse();
+        Assert.assertTrue(future3.isDone());
+        Assert.assertFalse(endpoint.reused);
+
+        // Second connection is not needed anymore
+        final MockEndpoint endpoint2 = new MockEndpoint(2, true);
+        pool.leases.get(1).completed(endpoint2);
+        Assert.assertTrue(endpoint2.reused);
+
+        future2.get().releaseAndReuse();
+        future2.get().releaseAndReuse();
+        Assert.assertFalse(endpoint.reused);
+        future3.get().releaseAndDiscard();
+        Assert.assertTrue(endpoint.reused);
+        Assert.assertFalse(endpoint.discarded);
+    }
+
+    @Test
+    public void testIdleConnectionReleased() throws Exception {
+        final MockEndpointPool pool = new MockEndpointPool(10);
+
+        final Future<AsyncClientEndpoint> future1 = pool.lease(host, Timeout.ofSeconds(1), null);
+        final MockEndpoint endpoint = new MockEndpoint(10, true);
+        pool.leases.get(0).completed(endpoint);
+        future1.get().releaseAndReuse();
+        Assert.assertTrue(endpoint.reused);
+
+        final Future<AsyncClientEndpoint> future2 = pool.lease(host, Timeout.ofSeconds(1), null);
+        Assert.assertEquals(2, pool.leases.size());
+        Assert.assertFalse(future2.isDone());
+    }
+
+    @Test
+    public void testClosedConnectionNotShared() throws Exception {
+        final MockEndpointPool pool = new MockEndpointPool(10);
+
+        final Future<AsyncClientEndpoint> future1 = pool.lease(host, Timeout.ofSeconds(1), null);
+        final MockEndpoint endpoint = new MockEndpoint(10, true);
+        pool.leases.get(0).completed(endpoint);
+        Assert.assertTrue(future1.isDone());
+
+        endpoint.capacity = 0;
+        final Future<AsyncClientEndpoint> future2 = pool.lease(host, Timeout.ofSeconds(1), null);
+        Assert.assertEquals(2, pool.leases.size());
+        Assert.assertFalse(future2.isDone());
+
+        future1.get().releaseAndReuse();
+        Assert.assertTrue(endpoint.reused);
+    }
+
+    @Test
+    public void testNonMultiplexingConnectionDiscarded() throws Exception {
+        final MockEndpointPool pool = new MockEndpointPool(1);
+
+        final Future<AsyncClientEndpoint> future1 = pool.lease(host, Timeout.ofSeconds(1), null);
+        final Future<AsyncClientEndpoint> future2 = pool.lease(host, Timeout.ofSeconds(1), null);
+        Assert.assertEquals(2, pool.leases.size());
+
+        final MockEndpoint endpoint1 = new MockEndpoint(1, false);
+        pool.leases.get(0).completed(endpoint1);
+        Assert.assertTrue(future1.isDone());
+        Assert.assertFalse(future2.isDone());
+
+        future1.get().releaseAndDiscard();
+        Assert.assertTrue(endpoint1.discarded);
+        Assert.assertFalse(future2.isDone());
+
+        final MockEndpoint endpoint2 = new MockEndpoint(1, false);
+        pool.leases.get(1).completed(endpoint2);
+        Assert.assertTrue(future2.isDone());
+    }
+
+    @Test
+    public void testLeaseFailure() throws Exception {
+        final MockEndpointPool pool = new MockEndpointPool(10);
+
+        final Future<AsyncClientEndpoint> future1 = pool.lease(host, Timeout.ofSeconds(1), null);
+        final Future<AsyncClientEndpoint> future2 = pool.lease(host, Timeout.ofSeconds(1), null);
+        Assert.assertEquals(1, pool.leases.size());
+
+        pool.leases.get(0).failed(new IOException("Oopsie"));
+        Assert.assertTrue(future1.isDone());
+        Assert.assertTrue(future2.isDone());
+        try {
+            future1.get();
+            Assert.fail("ExecutionException expected");
+        } catch (final ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testUnknownCapacityLeasesSingleConnection() throws Exception {
+        final MockEndpointPool pool = new MockEndpointPool(0);
+
+        final List<Future<AsyncClientEndpoint>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(pool.lease(host, Timeout.ofSeconds(1), null));
+        }
+        Assert.assertEquals(1, pool.leases.size());
+
+        final MockEndpoint endpoint1 = new MockEndpoint(1, false);
+        endpoint1.negotiating = true;
+        pool.leases.get(0).completed(endpoint1);
+        Assert.assertTrue(futures.get(0).isDone());
+        Assert.assertFalse(futures.get(1).isDone());
+        // Capacity still unknown
+        Assert.assertEquals(2, pool.leases.size());
+
+        // HTTP/2 has been negotiated
+        endpoint1.negotiating = false;
+        endpoint1.multiplexing = true;
+        endpoint1.capacity = 10;
+        final Future<AsyncClientEndpoint> future = pool.lease(host, Timeout.ofSeconds(1), null);
+        for (final Future<AsyncClientEndpoint> f: futures) {
+            Assert.assertTrue(f.isDone());
+        }
+        Assert.assertTrue(future.isDone());
+        Assert.assertEquals(2, pool.leases.size());
+
+        final MockEndpoint endpoint2 = new MockEndpoint(10, true);
+        pool.leases.get(1).completed(endpoint2);
+        Assert.assertTrue(endpoint2.reused);
+    }
+
+    @Test
+    public void testUnknownCapacityLearnedFromNegotiatedConnection() throws Exception {
+        final MockEndpointPool pool = new MockEndpointPool(0);
+
+        final Future<AsyncClientEndpoint> future1 = pool.lease(host, Timeout.ofSeconds(1), null);
+        final Future<AsyncClientEndpoint> future2 = pool.lease(host, Timeout.ofSeconds(1), null);
+        final Future<AsyncClientEndpoint> future3 = pool.lease(host, Timeout.ofSeconds(1), null);
+        Assert.assertEquals(1, pool.leases.size());
+
+        final MockEndpoint endpoint1 = new MockEndpoint(1, false);
+        endpoint1.negotiating = true;
+        pool.leases.get(0).completed(endpoint1);
+        Assert.assertTrue(future1.isDone());
+        Assert.assertEquals(2, pool.leases.size());
+
+        // HTTP/1.1 has been negotiated
+        endpoint1.negotiating = false;
+        final MockEndpoint endpoint2 = new MockEndpoint(1, false);
+        pool.leases.get(1).completed(endpoint2);
+        Assert.assertTrue(future2.isDone());
+        Assert.assertFalse(future3.isDone());
+        Assert.assertEquals(3, pool.leases.size());
+    }
+
+    @Test
+    public void testCancelledWaitersNotCounted() throws Exception {
+        final MockEndpointPool pool = new MockEndpointPool(1);
+
+        final Future<AsyncClientEndpoint> future1 = pool.lease(host, Timeout.ofSeconds(1), null);
+        final Future<AsyncClientEndpoint> future2 = pool.lease(host, Timeout.ofSeconds(1), null);
+        Assert.assertEquals(2, pool.leases.size());
+        future1.cancel(true);
+        future2.cancel(true);
+
+        pool.lease(host, Timeout.ofSeconds(1), null);
+        pool.lease(host, Timeout.ofSeconds(1), null);
+        pool.lease(host, Timeout.ofSeconds(1), null);
+        // Two pending leases cover two of the three live waiters
+        Assert.assertEquals(3, pool.leases.size());
+    }
+
+    @Test
+    public void testWaiterExpiredOnNextLease() throws Exception {
+        final MockEndpointPool pool = new MockEndpointPool(10);
+
+        final Future<AsyncClientEndpoint> future1 = pool.lease(host, Timeout.ofMillis(1), null);
+        Thread.sleep(20);
+        final Future<AsyncClientEndpoint> future2 = pool.lease(host, Timeout.ofSeconds(1), null);
+        Assert.assertTrue(future1.isDone());
+        Assert.assertFalse(future2.isDone());
+        try {
+            future1.get();
+            Assert.fail("ExecutionException expected");
+        } catch (final ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof TimeoutException);
+        }
+    }
+
+    @Test
+    public void testWaiterExpiredByTimer() throws Exception {
+        final HashedWheelTimer timer = new HashedWheelTimer();
+        try {
+            final MockEndpointPool pool = new MockEndpointPool(10, timer);
+
+            final Future<AsyncClientEndpoint> future = pool.lease(host, Timeout.ofMillis(50), null);
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                Assert.fail("ExecutionException expected");
+            } catch (final ExecutionException ex) {
+                Assert.assertTrue(ex.getCause() instanceof TimeoutException);
+            }
+            Assert.assertEquals(1, pool.getRouteCount());
+
+            // Connection that is no longer needed is released
+            final MockEndpoint endpoint = new MockEndpoint(10, true);
+            pool.leases.get(0).completed(endpoint);
+            Assert.assertTrue(endpoint.reused);
+            Assert.assertEquals(0, pool.getRouteCount());
+        } finally {
+            timer.close();
+        }
+    }
+
+    @Test
+    public void testIdleRoutePoolRemoved() throws Exception {
+        final MockEndpointPool pool = new MockEndpointPool(10);
+
+        final Future<AsyncClientEndpoint> future1 = pool.lease(host, Timeout.ofSeconds(1), null);
+        Assert.assertEquals(1, pool.getRouteCount());
+        pool.leases.get(0).completed(new MockEndpoint(10, true));
+        future1.get().releaseAndReuse();
+        Assert.assertEquals(0, pool.getRouteCount());
+
+        final Future<AsyncClientEndpoint> future2 = pool.lease(host, Timeout.ofSeconds(1), null);
+        pool.leases.get(1).failed(new IOException("Oopsie"));
+        Assert.assertTrue(future2.isDone());
+        Assert.assertEquals(0, pool.getRouteCount());
+
+        final Future<AsyncClientEndpoint> future3 = pool.lease(host, Timeout.ofSeconds(1), null);
+        future3.cancel(true);
+        // Lease is still pending
+        Assert.assertEquals(1, pool.getRouteCount());
+        final MockEndpoint endpoint = new MockEndpoint(10, true);
+        pool.leases.get(2).completed(endpoint);
+        Assert.assertTrue(endpoint.reused);
+        Assert.assertEquals(0, pool.getRouteCount());
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.benchmark;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+import org.apache.hc.core5.function.Supplier;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.apache.hc.core5.http.nio.AsyncServerExchangeHandler;
+import org.apache.hc.core5.http.nio.BasicResponseProducer;
+import org.apache.hc.core5.http.nio.entity.BasicAsyncEntityProducer;
+import org.apache.hc.core5.http.nio.support.ImmediateResponseExchangeHandler;
+import org.apache.hc.core5.http2.config.H2Config;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.testing.nio.ClientSessionEndpoint;
+import org.apache.hc.core5.testing.nio.Http2TestClient;
+import org.apache.hc.core5.testing.nio.Http2TestServer;
+import org.apache.hc.core5.util.TimeValue;
+
+/**
+ * Benchmark that measures the number of HTTP/2 message exchanges per second
+ * multiplexed over a single plain connection with many concurrently active
+ * streams, once with frames written out one by one and once with frames
+ * of multiple streams coalesced into batches of the given size.
+ * <p>
+ * Usage: {@code Http2OutputBatchBenchmark [batch size] [producers]
+ * [concurrent streams per producer] [response size] [seconds]}
+ */
+public class Http2OutputBatchBenchmark {
+
+    public static void main(final String[] args) throws Exception {
+        final int batchSize = args.length > 0 ? Integer.parseInt(args[0]) : 64 * 1024;
+        final int producers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        final int streams = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+        final int responseSize = args.length > 3 ? Integer.parseInt(args[3]) : 1024;
+        final int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+        for (final int n : new int[] {0, batchSize}) {
+            final long exchanges = run(n, producers, streams, responseSize, seconds);
+            System.out.println("batch size " + n + ", " + producers + " producers, " + streams + " streams each: "
+                    + (exchanges / seconds) + " exchanges/s");
+        }
+    }
+
+    static long run(
+            final int batchSize,
+            final int producers,
+            final int streams,
+            final int responseSize,
+            final int seconds) throws Exception {
+        final H2Config h2Config = H2Config.custom()
+                .setMaxConcurrentStreams(Math.max(producers * streams, 100))
+                .setOutputBatchSize(batchSize)
+                .build();
+        final IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(1)
+                .build();
+        final Http2TestServer server = new Http2TestServer(ioReactorConfig, null);
+        final Http2TestClient client = new Http2TestClient(ioReactorConfig, null);
+        final byte[] content = new byte[responseSize];
+        server.register("*", new Supplier<AsyncServerExchangeHandler>() {
+
+            @Override
+            public AsyncServerExchangeHandler get() {
+                return new ImmediateResponseExchangeHandler(new BasicResponseProducer(
+                        new BasicHttpResponse(HttpStatus.SC_OK),
+                        new BasicAsyncEntityProducer(content, ContentType.APPLICATION_OCTET_STREAM)));
+            }
+
+        });
+        final InetSocketAddress serverEndpoint = server.start(h2Config);
+        client.start(h2Config);
+        try {
+            final ClientSessionEndpoint endpoint = client.connect(
+                    "localhost", serverEndpoint.getPort(), TimeValue.ofSeconds(5)).get();
+            final URI requestUri = new URI("http", null, "localhost", serverEndpoint.getPort(), "/", null, null);
+
+            // Warm up
+            SSLIOSessionContentionBenchmark.run(endpoint, requestUri, producers, streams, Math.max(1, seconds / 5));
+            final long exchanges = SSLIOSessionContentionBenchmark.run(endpoint, requestUri, producers, streams, seconds);
+            endpoint.close();
+            return exchanges;
+        } finally {
+            client.shutdown(TimeValue.ofSeconds(5));
+            server.shutdown(TimeValue.ofSeconds(5));
+        }
+    }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.core5.benchmark;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.io.ShutdownType;
+import org.apache.hc.core5.reactor.DefaultConnectingIOReactor;
+import org.apache.hc.core5.reactor.DefaultListeningIOReactor;
+import org.apache.hc.core5.reactor.IOEventHandler;
+import org.apache.hc.core5.reactor.IOEventHandlerFactory;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.reactor.IOSession;
+import org.apache.hc.core5.reactor.ListenerEndpoint;
+import org.apache.hc.core5.reactor.TlsCapableIOSession;
+import org.apache.hc.core5.util.TimeValue;
+
+/**
+ * Echo benchmark over the loopback interface that measures the number of message
+ * round trips per second handled by the I/O reactors with the given transport
+ * providers.
+ * <p>
+ * Usage: {@code IOReactorLoopbackBenchmark [connections] [message size] [seconds] [provider class]...}
+ * <p>
+ * If no provider class is given the system default provider gets compared with
+ * the {@code poll(2)} based provider of the Java runtime.
+ */
+public class IOReactorLoopbackBenchmark {
+
+    public static void main(final String[] args) throws Exception {
+        final int connections = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        final int messageSize = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        final int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        final String[] providers = args.length > 3 ?
+                Arrays.copyOfRange(args, 3, args.length) :
+                new String[] { null, "sun.nio.ch.PollSelectorProvider" };
+        for (final String providerClass : providers) {
+            final SelectorProvider provider;
+            if (providerClass != null) {
+                provider = (SelectorProvider) Class.forName(providerClass).newInstance();
+            } else {
+                provider = SelectorProvider.provider();
+            }
+            // Warm up
+            run(provider, connections, messageSize, Math.max(1, seconds / 5));
+            final long roundTrips = run(provider, connections, messageSize, seconds);
+            System.out.println(provider.getClass().getName() + ": " + (roundTrips / seconds) + " round trips/s");
+        }
+    }
+
+    static long run(
+            final SelectorProvider provider,
+            final int connections,
+            final int messageSize,
+            final int seconds) throws Exception {
+        final IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setSelectorProvider(provider)
+                .setIoThreadCount(2)
+                .build();
+        final AtomicLong roundTrips = new AtomicLong(0);
+        final DefaultListeningIOReactor server = new DefaultListeningIOReactor(new IOEventHandlerFactory() {
+
+            @Override
+            public IOEventHandler createHandler(final TlsCapableIOSession ioSession, final Object attachment) {
+                return new EchoHandler(messageSize, false, null);
+            }
+
+        }, ioReactorConfig, null);
+        final DefaultConnectingIOReactor client = new DefaultConnectingIOReactor(new IOEventHandlerFactory() {
+
+            @Override
+            public IOEventHandler createHandler(final TlsCapableIOSession ioSession, final Object attachment) {
+                return new EchoHandler(messageSize, true, roundTrips);
+            }
+
+        }, ioReactorConfig, null);
+        server.start();
+        client.start();
+        try {
+            final ListenerEndpoint endpoint = server.listen(new InetSocketAddress(0)).get();
+            final InetSocketAddress address = new InetSocketAddress(
+                    InetAddress.getLoopbackAddress(), ((InetSocketAddress) endpoint.getAddress()).getPort());
+            final HttpHost host = new HttpHost(address.getHostName(), address.getPort());
+            for (int i = 0; i < connections; i++) {
+                client.connect(host, address, null, TimeValue.ofSeconds(5), null, null);
+            }
+            final long start = roundTrips.get();
+            Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+            return roundTrips.get() - start;
+        } finally {
+            client.shutdown(ShutdownType.IMMEDIATE);
+            server.shutdown(ShutdownType.IMMEDIATE);
+        }
+    }
+
+    static class EchoHandler implements IOEventHandler {
+
+        private final ByteBuffer buffer;
+        private final boolean initiator;
+        private final AtomicLong roundTrips;
+
+        EchoHandler(final int messageSize, final boolean initiator, final AtomicLong roundTrips) {
+            this.buffer = ByteBuffer.allocate(messageSize);
+            this.initiator = initiator;
+            this.roundTrips = roundTrips;
+        }
+
+        @Override
+        public void connected(final IOSession session) {
+            if (initiator) {
+                while (buffer.hasRemaining()) {
+                    buffer.put((byte) 'a');
+                }
+                buffer.flip();
+                session.setEventMask(SelectionKey.OP_WRITE);
+            } else {
+                session.setEventMask(SelectionKey.OP_READ);
+            }
+        }
+
+        @Override
+        public void inputReady(final IOSession session) {
+            try {
+                final int bytesRead = session.channel().read(buffer);
+                if (bytesRead < 0) {
+                    session.close();
+                    return;
+                }
+                if (!buffer.hasRemaining()) {
+                    if (roundTrips != null) {
+                        roundTrips.incrementAndGet();
+                    }
+                    buffer.flip();
+                    session.setEventMask(SelectionKey.OP_WRITE);
+                }
+            } catch (final IOException ex) {
+                session.close();
+            }
+        }
+
+        @Override
+        public void outputReady(final IOSession session) {
+            try {
+                session.channel().write(buffer);
+                if (!buffer.hasRemaining()) {
+                    buffer.clear();
+                    session.setEventMask(SelectionKey.OP_READ);
+                }
+            } catch (final IOException ex) {
+                session.close();
+            }
+        }
+
+        @Override
+        public void timeout(final IOSession session) {
+        }
+
+        @Override
+        public void exception(final IOSession session, final Exception cause) {
+            session.close();
+        }
+
+        @Override
+        public void disconnected(final IOSession session) {
+        }
+
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hc.core5.io.GracefullyCloseable;
+import org.apache.hc.core5.io.ShutdownType;
+import org.apache.hc.core5.pool.LaxConnPool;
+import org.apache.hc.core5.pool.PoolEntry;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.util.TimeValue;
+
+/**
+ * Benchmark that measures the number of lease / release cycles per second
+ * {@link LaxConnPool} sustains with worker threads that repeatedly lease
+ * connections to the same few routes, with and without the per-thread
+ * connection cache.
+ * <p>
+ * Usage: {@code LaxConnPoolThreadCacheBenchmark [threads] [routes] [thread cache size] [seconds]}
+ */
+public class LaxConnPoolThreadCacheBenchmark {
+
+    static class DummyConnection implements GracefullyCloseable {
+
+        @Override
+        public void shutdown(final ShutdownType shutdownType) {
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        final int routes = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        final int cacheSize = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        final int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        for (final int size: new int[] {0, cacheSize}) {
+            // Warm up
+            run(threads, routes, size, Math.max(1, seconds / 5));
+            final long cycles = run(threads, routes, size, seconds);
+            System.out.println(threads + " threads, " + routes + " routes, thread cache size " + size + ": "
+                    + (cycles / seconds) + " leases/s");
+        }
+    }
+
+    static long run(
+            final int threads,
+            final int routes,
+            final int cacheSize,
+            final int seconds) throws Exception {
+        final LaxConnPool<String, DummyConnection> pool = new LaxConnPool<>(
+                threads, TimeValue.NEG_ONE_MILLISECONDS, PoolReusePolicy.LIFO, null);
+        pool.setThreadCacheSize(cacheSize);
+        final String[] routeNames = new String[routes];
+        for (int i = 0; i < routeNames.length; i++) {
+            routeNames[i] = "route-" + i;
+        }
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicLong cycles = new AtomicLong(0);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final Thread[] workers = new Thread[threads];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    long count = 0;
+                    try {
+                        while (running.get()) {
+                            final String route = routeNames[(int) (count % routeNames.length)];
+                            final PoolEntry<String, DummyConnection> entry = pool.lease(route, null).get();
+                            if (!entry.hasConnection()) {
+                                entry.assignConnection(new DummyConnection());
+                            }
+                            pool.release(entry, true);
+                            count++;
+                        }
+                    } catch (final Exception ex) {
+                        failure.compareAndSet(null, ex);
+                        running.set(false);
+                    } finally {
+                        cycles.addAndGet(count);
+                    }
+                }
+
+            }, "worker-" + i);
+            workers[i].start();
+        }
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        running.set(false);
+        for (final Thread worker : workers) {
+            worker.join();
+        }
+        pool.shutdown(ShutdownType.IMMEDIATE);
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return cycles.get();
+    }
+
+}
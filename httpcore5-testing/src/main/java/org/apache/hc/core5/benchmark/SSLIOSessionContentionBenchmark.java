@@ -0,0 +1,195 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.core5.benchmark;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.function.Supplier;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.apache.hc.core5.http.nio.AsyncServerExchangeHandler;
+import org.apache.hc.core5.http.nio.BasicRequestProducer;
+import org.apache.hc.core5.http.nio.BasicResponseConsumer;
+import org.apache.hc.core5.http.nio.BasicResponseProducer;
+import org.apache.hc.core5.http.nio.entity.BasicAsyncEntityProducer;
+import org.apache.hc.core5.http.nio.entity.NoopEntityConsumer;
+import org.apache.hc.core5.http.nio.support.ImmediateResponseExchangeHandler;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.ssl.SSLContextBuilder;
+import org.apache.hc.core5.testing.nio.ClientSessionEndpoint;
+import org.apache.hc.core5.testing.nio.Http2TestClient;
+import org.apache.hc.core5.testing.nio.Http2TestServer;
+import org.apache.hc.core5.util.TimeValue;
+
+/**
+ * Benchmark that measures the number of HTTP/2 message exchanges per second
+ * multiplexed over a single TLS connection while several producer threads
+ * submit requests concurrently with the I/O reactor thread encrypting and
+ * decrypting the stream data.
+ * <p>
+ * Usage: {@code SSLIOSessionContentionBenchmark <keystore URL> <keystore password>
+ * [producers] [concurrent streams per producer] [response size] [seconds]}
+ * <p>
+ * The key store is expected to contain a server key protected with the key store
+ * password and to be trusted by the client.
+ */
+public class SSLIOSessionContentionBenchmark {
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: <keystore URL> <keystore password> "
+                    + "[producers] [concurrent streams per producer] [response size] [seconds]");
+            System.exit(1);
+        }
+        final URL keyStoreURL = new URL(args[0]);
+        final char[] password = args[1].toCharArray();
+        final int producers = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        final int streams = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+        final int responseSize = args.length > 4 ? Integer.parseInt(args[4]) : 4096;
+        final int seconds = args.length > 5 ? Integer.parseInt(args[5]) : 10;
+
+        final SSLContext serverSSLContext = SSLContextBuilder.create()
+                .loadTrustMaterial(keyStoreURL, password)
+                .loadKeyMaterial(keyStoreURL, password, password)
+                .build();
+        final SSLContext clientSSLContext = SSLContextBuilder.create()
+                .loadTrustMaterial(keyStoreURL, password)
+                .build();
+
+        final IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(1)
+                .build();
+        final Http2TestServer server = new Http2TestServer(ioReactorConfig, serverSSLContext);
+        final Http2TestClient client = new Http2TestClient(ioReactorConfig, clientSSLContext);
+        final byte[] content = new byte[responseSize];
+        server.register("*", new Supplier<AsyncServerExchangeHandler>() {
+
+            @Override
+            public AsyncServerExchangeHandler get() {
+                return new ImmediateResponseExchangeHandler(new BasicResponseProducer(
+                        new BasicHttpResponse(HttpStatus.SC_OK),
+                        new BasicAsyncEntityProducer(content, ContentType.APPLICATION_OCTET_STREAM)));
+            }
+
+        });
+        final InetSocketAddress serverEndpoint = server.start();
+        client.start();
+        try {
+            final ClientSessionEndpoint endpoint = client.connect(
+                    "localhost", serverEndpoint.getPort(), TimeValue.ofSeconds(5)).get();
+            final URI requestUri = new URI("http", null, "localhost", serverEndpoint.getPort(), "/", null, null);
+
+            // Warm up
+            run(endpoint, requestUri, producers, streams, Math.max(1, seconds / 5));
+            final long exchanges = run(endpoint, requestUri, producers, streams, seconds);
+            System.out.println(producers + " producers, " + streams + " streams each: "
+                    + (exchanges / seconds) + " exchanges/s");
+            endpoint.close();
+        } finally {
+            client.shutdown(TimeValue.ofSeconds(5));
+            server.shutdown(TimeValue.ofSeconds(5));
+        }
+    }
+
+    static long run(
+            final ClientSessionEndpoint endpoint,
+            final URI requestUri,
+            final int producers,
+            final int streams,
+            final int seconds) throws Exception {
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicLong exchanges = new AtomicLong(0);
+        final AtomicLong failures = new AtomicLong(0);
+        final Thread[] threads = new Thread[producers];
+        for (int i = 0; i < threads.length; i++) {
+            final Semaphore inFlight = new Semaphore(streams);
+            threads[i] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        while (running.get() && endpoint.isOpen()) {
+                            if (!inFlight.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                                continue;
+                            }
+                            endpoint.execute(
+                                    new BasicRequestProducer("GET", requestUri),
+                                    new BasicResponseConsumer<>(new NoopEntityConsumer()),
+                                    new FutureCallback<Message<HttpResponse, Void>>() {
+
+                                        @Override
+                                        public void completed(final Message<HttpResponse, Void> result) {
+                                            exchanges.incrementAndGet();
+                                            inFlight.release();
+                                        }
+
+                                        @Override
+                                        public void failed(final Exception ex) {
+                                            failures.incrementAndGet();
+                                            inFlight.release();
+                                        }
+
+                                        @Override
+                                        public void cancelled() {
+                                            inFlight.release();
+                                        }
+
+                                    });
+                        }
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+            }, "producer-" + i);
+            threads[i].start();
+        }
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        running.set(false);
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        if (failures.get() > 0) {
+            System.out.println(failures.get() + " exchanges failed");
+        }
+        return exchanges.get();
+    }
+
+}
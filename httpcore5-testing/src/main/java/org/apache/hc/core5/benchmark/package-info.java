@@ -26,6 +26,6 @@
  */
 
 /**
- * Apache Bench (AB) clone based on HttpCore.
+ * Apache Bench (AB) clone and micro-benchmarks of core components based on HttpCore.
  */
 package org.apache.hc.core5.benchmark;
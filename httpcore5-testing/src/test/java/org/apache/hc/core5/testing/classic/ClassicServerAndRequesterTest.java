@@ -51,6 +51,7 @@
 import org.apache.hc.core5.http.protocol.HttpContext;
 import org.apache.hc.core5.http.protocol.HttpCoreContext;
 import org.apache.hc.core5.io.ShutdownType;
+import org.apache.hc.core5.pool.PoolStats;
 import org.apache.hc.core5.util.Timeout;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -187,6 +188,32 @@ public void testSequentialRequests() throws Exception {
         }
     }
 
+    @Test
+    public void testConnectionWarmUp() throws Exception {
+        server.start();
+        final HttpHost target = new HttpHost("localhost", server.getLocalPort());
+        requester.setMinIdle(target, 3);
+        // Limited by the max per route
+        Assert.assertThat(requester.warmUp(target, TIMEOUT), CoreMatchers.equalTo(2));
+        final PoolStats stats1 = requester.getStats(target);
+        Assert.assertThat(stats1.getAvailable(), CoreMatchers.equalTo(2));
+        Assert.assertThat(stats1.getLeased(), CoreMatchers.equalTo(0));
+
+        final HttpCoreContext context = HttpCoreContext.create();
+        final ClassicHttpRequest request = new BasicClassicHttpRequest("POST", "/stuff");
+        request.setEntity(new StringEntity("some stuff", ContentType.TEXT_PLAIN));
+        try (final ClassicHttpResponse response = requester.execute(target, request, TIMEOUT, context)) {
+            Assert.assertThat(response.getCode(), CoreMatchers.equalTo(HttpStatus.SC_OK));
+            final String body = EntityUtils.toString(response.getEntity());
+            Assert.assertThat(body, CoreMatchers.equalTo("some stuff"));
+        }
+
+        // Already warm
+        Assert.assertThat(requester.warmUp(target, TIMEOUT), CoreMatchers.equalTo(2));
+        final PoolStats stats2 = requester.getStats(target);
+        Assert.assertThat(stats2.getAvailable(), CoreMatchers.equalTo(2));
+    }
+
     @Test
     public void testSequentialRequestsNonPersistentConnection() throws Exception {
         server.start();
@@ -128,6 +128,7 @@
 import org.apache.hc.core5.reactor.TlsCapableIOSession;
 import org.apache.hc.core5.testing.SSLTestContexts;
 import org.apache.hc.core5.util.CharArrayBuffer;
+import org.apache.hc.core5.util.PooledByteBufferAllocator;
 import org.apache.hc.core5.util.TextUtils;
 import org.apache.hc.core5.util.TimeValue;
 import org.apache.logging.log4j.LogManager;
@@ -376,6 +377,59 @@ public AsyncServerExchangeHandler get() {
         }
     }
 
+    @Test
+    public void testReleaseIdleBuffers() throws Exception {
+        server.register("/hello", new Supplier<AsyncServerExchangeHandler>() {
+
+            @Override
+            public AsyncServerExchangeHandler get() {
+                return new SingleLineResponseHandler("Hi there");
+            }
+
+        });
+        server.register("/", new Supplier<AsyncServerExchangeHandler>() {
+
+            @Override
+            public AsyncServerExchangeHandler get() {
+                return new MultiLineResponseHandler("0123456789abcdef", 2000);
+            }
+
+        });
+        final PooledByteBufferAllocator allocator = new PooledByteBufferAllocator();
+        final H1Config h1Config = H1Config.custom()
+                .setBufferAllocator(allocator)
+                .setReleaseIdleBuffers(true)
+                .build();
+        final InetSocketAddress serverEndpoint = server.start(null, h1Config);
+
+        client.start(h1Config);
+        final Future<ClientSessionEndpoint> connectFuture = client.connect(
+                "localhost", serverEndpoint.getPort(), TIMEOUT);
+        final ClientSessionEndpoint streamEndpoint = connectFuture.get();
+
+        for (int i = 0; i < 5; i++) {
+            final Future<Message<HttpResponse, String>> future1 = streamEndpoint.execute(
+                    new BasicRequestProducer("GET", createRequestURI(serverEndpoint, "/hello")),
+                    new BasicResponseConsumer<>(new StringAsyncEntityConsumer()), null);
+            final Message<HttpResponse, String> result1 = future1.get(TIMEOUT.getDuration(), TIMEOUT.getTimeUnit());
+            Assert.assertNotNull(result1);
+            Assert.assertEquals(200, result1.getHead().getCode());
+            Assert.assertEquals("Hi there", result1.getBody());
+
+            final Future<Message<HttpResponse, String>> future2 = streamEndpoint.execute(
+                    new BasicRequestProducer("GET", createRequestURI(serverEndpoint, "/")),
+                    new BasicResponseConsumer<>(new StringAsyncEntityConsumer()), null);
+            final Message<HttpResponse, String> result2 = future2.get(LONG_TIMEOUT.getDuration(), LONG_TIMEOUT.getTimeUnit());
+            Assert.assertNotNull(result2);
+            Assert.assertEquals(200, result2.getHead().getCode());
+            final StringTokenizer t = new StringTokenizer(result2.getBody(), "\r\n");
+            while (t.hasMoreTokens()) {
+                Assert.assertEquals("0123456789abcdef", t.nextToken());
+            }
+        }
+        Assert.assertTrue(allocator.getReusedCount() > 0);
+    }
+
     @Test
     public void testBasicPost() throws Exception {
         server.register("/hello", new Supplier<AsyncServerExchangeHandler>() {
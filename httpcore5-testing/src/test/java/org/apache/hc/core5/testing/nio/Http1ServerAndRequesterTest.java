@@ -63,6 +63,7 @@
 import org.apache.hc.core5.http.nio.entity.StringAsyncEntityProducer;
 import org.apache.hc.core5.http.protocol.HttpContext;
 import org.apache.hc.core5.io.ShutdownType;
+import org.apache.hc.core5.pool.PoolStats;
 import org.apache.hc.core5.reactor.ExceptionEvent;
 import org.apache.hc.core5.reactor.IOReactorConfig;
 import org.apache.hc.core5.reactor.ListenerEndpoint;
@@ -251,6 +252,39 @@ public void testSequentialRequests() throws Exception {
         Assert.assertThat(body3, CoreMatchers.equalTo("some more stuff"));
     }
 
+    @Test
+    public void testConnectionWarmUp() throws Exception {
+        server.start();
+        final Future<ListenerEndpoint> future = server.listen(new InetSocketAddress(0));
+        final ListenerEndpoint listener = future.get();
+        final InetSocketAddress address = (InetSocketAddress) listener.getAddress();
+        requester.start();
+
+        final HttpHost target = new HttpHost("localhost", address.getPort());
+        requester.setMinIdle(target, 3);
+        Assert.assertThat(requester.getMinIdle(target), CoreMatchers.equalTo(3));
+        final Future<Integer> warmUpFuture = requester.warmUp(target, TIMEOUT, null);
+        Assert.assertThat(warmUpFuture.get(TIMEOUT.getDuration(), TIMEOUT.getTimeUnit()), CoreMatchers.equalTo(3));
+        final PoolStats stats1 = requester.getStats(target);
+        Assert.assertThat(stats1.getAvailable(), CoreMatchers.equalTo(3));
+        Assert.assertThat(stats1.getLeased(), CoreMatchers.equalTo(0));
+
+        final Future<Message<HttpResponse, String>> resultFuture = requester.execute(
+                new BasicRequestProducer("POST", target, "/stuff",
+                        new StringAsyncEntityProducer("some stuff", ContentType.TEXT_PLAIN)),
+                new BasicResponseConsumer<>(new StringAsyncEntityConsumer()), TIMEOUT, null);
+        final Message<HttpResponse, String> message = resultFuture.get(TIMEOUT.getDuration(), TIMEOUT.getTimeUnit());
+        Assert.assertThat(message, CoreMatchers.notNullValue());
+        Assert.assertThat(message.getHead().getCode(), CoreMatchers.equalTo(HttpStatus.SC_OK));
+        Assert.assertThat(message.getBody(), CoreMatchers.equalTo("some stuff"));
+
+        // Already warm
+        final Future<Integer> warmUpFuture2 = requester.warmUp(target, TIMEOUT, null);
+        Assert.assertThat(warmUpFuture2.get(TIMEOUT.getDuration(), TIMEOUT.getTimeUnit()), CoreMatchers.equalTo(3));
+        final PoolStats stats2 = requester.getStats(target);
+        Assert.assertThat(stats2.getAvailable(), CoreMatchers.equalTo(3));
+    }
+
     @Test
     public void testSequentialRequestsNonPersistentConnection() throws Exception {
         server.start();
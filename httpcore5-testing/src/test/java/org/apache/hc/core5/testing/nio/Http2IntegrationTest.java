@@ -294,6 +294,145 @@ public AsyncServerExchangeHandler get() {
         }
     }
 
+    @Test
+    public void testOutputBatching() throws Exception {
+        server.register("/", new Supplier<AsyncServerExchangeHandler>() {
+
+            @Override
+            public AsyncServerExchangeHandler get() {
+                return new MultiLineResponseHandler("0123456789abcdef", 2000);
+            }
+
+        });
+        final H2Config h2Config = H2Config.custom()
+                .setOutputBatchSize(32 * 1024)
+                .build();
+        final InetSocketAddress serverEndpoint = server.start(h2Config);
+
+        client.start(h2Config);
+        final Future<ClientSessionEndpoint> connectFuture = client.connect(
+                "localhost", serverEndpoint.getPort(), TIMEOUT);
+        final ClientSessionEndpoint streamEndpoint = connectFuture.get();
+
+        final Queue<Future<Message<HttpResponse, String>>> queue = new LinkedList<>();
+        for (int i = 0; i < 20; i++) {
+            queue.add(streamEndpoint.execute(
+                    new BasicRequestProducer("GET", createRequestURI(serverEndpoint, "/")),
+                    new BasicResponseConsumer<>(new StringAsyncEntityConsumer()), null));
+        }
+        while (!queue.isEmpty()) {
+            final Future<Message<HttpResponse, String>> future = queue.remove();
+            final Message<HttpResponse, String> result = future.get(TIMEOUT.getDuration(), TIMEOUT.getTimeUnit());
+            Assert.assertNotNull(result);
+            final HttpResponse response = result.getHead();
+            Assert.assertNotNull(response);
+            Assert.assertEquals(200, response.getCode());
+            final String s1 = result.getBody();
+            Assert.assertNotNull(s1);
+            final StringTokenizer t1 = new StringTokenizer(s1, "\r\n");
+            int lines = 0;
+            while (t1.hasMoreTokens()) {
+                Assert.assertEquals("0123456789abcdef", t1.nextToken());
+                lines++;
+            }
+            Assert.assertEquals(2000, lines);
+        }
+    }
+
+    @Test
+    public void testWindowAutoTuning() throws Exception {
+        server.register("/", new Supplier<AsyncServerExchangeHandler>() {
+
+            @Override
+            public AsyncServerExchangeHandler get() {
+                return new MultiLineResponseHandler("0123456789abcdef", 20000);
+            }
+
+        });
+        final InetSocketAddress serverEndpoint = server.start();
+
+        client.start(H2Config.custom()
+                .setMaxWindowSize(4 * 1024 * 1024)
+                .build());
+        final Future<ClientSessionEndpoint> connectFuture = client.connect(
+                "localhost", serverEndpoint.getPort(), TIMEOUT);
+        final ClientSessionEndpoint streamEndpoint = connectFuture.get();
+
+        final Queue<Future<Message<HttpResponse, String>>> queue = new LinkedList<>();
+        for (int i = 0; i < 5; i++) {
+            queue.add(streamEndpoint.execute(
+                    new BasicRequestProducer("GET", createRequestURI(serverEndpoint, "/")),
+                    new BasicResponseConsumer<>(new StringAsyncEntityConsumer()), null));
+        }
+        while (!queue.isEmpty()) {
+            final Future<Message<HttpResponse, String>> future = queue.remove();
+            final Message<HttpResponse, String> result = future.get(TIMEOUT.getDuration(), TIMEOUT.getTimeUnit());
+            Assert.assertNotNull(result);
+            final HttpResponse response = result.getHead();
+            Assert.assertNotNull(response);
+            Assert.assertEquals(200, response.getCode());
+            final String s1 = result.getBody();
+            Assert.assertNotNull(s1);
+            final StringTokenizer t1 = new StringTokenizer(s1, "\r\n");
+            int lines = 0;
+            while (t1.hasMoreTokens()) {
+                Assert.assertEquals("0123456789abcdef", t1.nextToken());
+                lines++;
+            }
+            Assert.assertEquals(20000, lines);
+        }
+    }
+
+    @Test
+    public void testTlsRecordCoalescing() throws Exception {
+        final IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setTlsRecordSize(4096)
+                .build();
+        final Http2TestServer coalescingServer = new Http2TestServer(ioReactorConfig,
+                scheme == URIScheme.HTTPS ? SSLTestContexts.createServerSSLContext() : null);
+        final Http2TestClient coalescingClient = new Http2TestClient(ioReactorConfig,
+                scheme == URIScheme.HTTPS ? SSLTestContexts.createClientSSLContext() : null);
+        try {
+            coalescingServer.register("/", new Supplier<AsyncServerExchangeHandler>() {
+
+                @Override
+                public AsyncServerExchangeHandler get() {
+                    return new MultiLineResponseHandler("0123456789abcdef", 2000);
+                }
+
+            });
+            final InetSocketAddress serverEndpoint = coalescingServer.start();
+
+            coalescingClient.start();
+            final Future<ClientSessionEndpoint> connectFuture = coalescingClient.connect(
+                    "localhost", serverEndpoint.getPort(), TIMEOUT);
+            final ClientSessionEndpoint streamEndpoint = connectFuture.get();
+
+            final Queue<Future<Message<HttpResponse, String>>> queue = new LinkedList<>();
+            for (int i = 0; i < 10; i++) {
+                queue.add(streamEndpoint.execute(
+                        new BasicRequestProducer("GET", createRequestURI(serverEndpoint, "/")),
+                        new BasicResponseConsumer<>(new StringAsyncEntityConsumer()), null));
+            }
+            while (!queue.isEmpty()) {
+                final Future<Message<HttpResponse, String>> future = queue.remove();
+                final Message<HttpResponse, String> result = future.get(LONG_TIMEOUT.getDuration(), LONG_TIMEOUT.getTimeUnit());
+                Assert.assertNotNull(result);
+                Assert.assertEquals(200, result.getHead().getCode());
+                final StringTokenizer t = new StringTokenizer(result.getBody(), "\r\n");
+                int count = 0;
+                while (t.hasMoreTokens()) {
+                    Assert.assertEquals("0123456789abcdef", t.nextToken());
+                    count++;
+                }
+                Assert.assertEquals(2000, count);
+            }
+        } finally {
+            coalescingClient.shutdown(TimeValue.ofSeconds(5));
+            coalescingServer.shutdown(TimeValue.ofSeconds(5));
+        }
+    }
+
     @Test
     public void testBasicPost() throws Exception {
         server.register("/hello", new Supplier<AsyncServerExchangeHandler>() {
@@ -27,10 +27,17 @@
 
 package org.apache.hc.core5.testing.nio;
 
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hc.core5.io.ShutdownType;
 import org.apache.hc.core5.reactor.DefaultListeningIOReactor;
@@ -56,12 +63,25 @@ public class TestDefaultListeningIOReactor {
 
     private static class NoopIOEventHandlerFactory implements IOEventHandlerFactory {
 
+        private final CountDownLatch connectLatch;
+
+        NoopIOEventHandlerFactory(final CountDownLatch connectLatch) {
+            this.connectLatch = connectLatch;
+        }
+
+        NoopIOEventHandlerFactory() {
+            this(null);
+        }
+
         @Override
         public IOEventHandler createHandler(final TlsCapableIOSession ioSession, final Object attachment) {
             return new IOEventHandler() {
 
                 @Override
                 public void connected(final IOSession session) {
+                    if (connectLatch != null) {
+                        connectLatch.countDown();
+                    }
                 }
 
                 @Override
@@ -156,4 +176,64 @@ public void testEndpointAlreadyBound() throws Exception {
         Assert.assertEquals(IOReactorStatus.SHUT_DOWN, ioreactor.getStatus());
     }
 
+    private static boolean isReusePortSupported() {
+        try {
+            StandardSocketOptions.class.getField("SO_REUSEPORT");
+            return true;
+        } catch (final NoSuchFieldException ex) {
+            return false;
+        }
+    }
+
+    @Test
+    public void testReusePortEndpoints() throws Exception {
+        final CountDownLatch connectLatch = new CountDownLatch(4);
+        final IOReactorConfig reactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(2)
+                .setSoReusePort(true)
+                .build();
+        final AtomicInteger listenerThreadCount = new AtomicInteger(0);
+        final DefaultListeningIOReactor reusePortReactor = new DefaultListeningIOReactor(
+                new NoopIOEventHandlerFactory(connectLatch), reactorConfig, null, new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        listenerThreadCount.incrementAndGet();
+                        return new Thread(r, "I/O listener");
+                    }
+
+                }, null, null, null);
+        try {
+            // A dedicated listener thread is only used as a fallback when SO_REUSEPORT is unavailable
+            Assert.assertEquals(isReusePortSupported() ? 0 : 1, listenerThreadCount.get());
+            reusePortReactor.start();
+
+            final Future<ListenerEndpoint> future = reusePortReactor.listen(new InetSocketAddress(0));
+            final ListenerEndpoint endpoint = future.get();
+            final int port = ((InetSocketAddress) endpoint.getAddress()).getPort();
+
+            final Set<ListenerEndpoint> endpoints = reusePortReactor.getEndpoints();
+            Assert.assertEquals(1, endpoints.size());
+
+            final Socket[] sockets = new Socket[4];
+            for (int i = 0; i < sockets.length; i++) {
+                sockets[i] = new Socket(InetAddress.getLoopbackAddress(), port);
+            }
+            Assert.assertTrue(connectLatch.await(5, TimeUnit.SECONDS));
+            for (final Socket socket : sockets) {
+                socket.close();
+            }
+
+            endpoint.close();
+            Assert.assertTrue(endpoint.isClosed());
+            Assert.assertEquals(0, reusePortReactor.getEndpoints().size());
+
+            reusePortReactor.shutdown(ShutdownType.GRACEFUL);
+            reusePortReactor.awaitShutdown(TimeValue.ofSeconds(5));
+            Assert.assertEquals(IOReactorStatus.SHUT_DOWN, reusePortReactor.getStatus());
+        } finally {
+            reusePortReactor.shutdown(ShutdownType.IMMEDIATE);
+        }
+    }
+
 }
@@ -0,0 +1,326 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.concurrent;
+
+import java.io.Closeable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.TimeValue;
+
+/**
+ * Hashed timing wheel that executes tasks at (or at most one tick after) their
+ * deadline. Scheduling and cancellation are O(1) and never block on the timer
+ * thread: new and cancelled tasks are handed over through lock-free queues and
+ * linked into or unlinked from their wheel slot by the timer thread.
+ * <p>
+ * The timer thread is started lazily on the first call to
+ * {@link #schedule(Runnable, long)} and parks without ticking while there are
+ * no pending tasks. Tasks are executed on the timer thread and therefore
+ * are expected to be short.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public final class HashedWheelTimer implements Closeable {
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final long tickMillis;
+    private final Slot[] slots;
+    private final int mask;
+    private final ThreadFactory threadFactory;
+    private final Queue<ScheduledTask> newTasks;
+    private final Queue<ScheduledTask> cancelledTasks;
+    private final AtomicBoolean started;
+    private final Object monitor;
+
+    private volatile boolean shutdown;
+    private volatile boolean idle;
+    private volatile Thread thread;
+
+    // Accessed by the timer thread only
+    private long currentTick;
+    private int size;
+
+    /**
+     * Creates a new timer.
+     *
+     * @param tickDuration the resolution of the timer.
+     * @param slotCount the number of wheel slots; rounded up to a power of two.
+     * @param threadFactory the factory used to create the timer thread.
+     */
+    public HashedWheelTimer(final TimeValue tickDuration, final int slotCount, final ThreadFactory threadFactory) {
+        Args.notNull(tickDuration, "Tick duration");
+        Args.positive(tickDuration.toMillis(), "Tick duration");
+        Args.positive(slotCount, "Slot count");
+        this.tickMillis = tickDuration.toMillis();
+        int n = 1;
+        while (n < slotCount) {
+            n <<= 1;
+        }
+        this.slots = new Slot[n];
+        for (int i = 0; i < n; i++) {
+            this.slots[i] = new Slot();
+        }
+        this.mask = n - 1;
+        this.threadFactory = threadFactory != null ? threadFactory : new DefaultThreadFactory("wheel-timer", true);
+        this.newTasks = new ConcurrentLinkedQueue<>();
+        this.cancelledTasks = new ConcurrentLinkedQueue<>();
+        this.started = new AtomicBoolean(false);
+        this.monitor = new Object();
+    }
+
+    /**
+     * Creates a new timer with a 10 millisecond resolution and 512 slots
+     * running on a daemon thread.
+     */
+    public HashedWheelTimer() {
+        this(TimeValue.ofMillis(10), 512, null);
+    }
+
+    /**
+     * Schedules the task for execution at the given deadline.
+     *
+     * @param task the task to execute.
+     * @param deadline the deadline expressed in milliseconds since epoch
+     *                 as returned by {@link System#currentTimeMillis()}.
+     * @return handle that can be used to cancel the task. Cancellation is O(1).
+     */
+    public Cancellable schedule(final Runnable task, final long deadline) {
+        Args.notNull(task, "Task");
+        if (shutdown) {
+            throw new IllegalStateException("Timer has been shut down");
+        }
+        if (started.compareAndSet(false, true)) {
+            final Thread t = threadFactory.newThread(new Runnable() {
+
+                @Override
+                public void run() {
+                    execute();
+                }
+
+            });
+            thread = t;
+            t.start();
+        }
+        final ScheduledTask scheduledTask = new ScheduledTask(task, deadline);
+        newTasks.add(scheduledTask);
+        if (idle) {
+            synchronized (monitor) {
+                monitor.notifyAll();
+            }
+        }
+        return scheduledTask;
+    }
+
+    /**
+     * Stops the timer thread. Pending tasks are discarded without being executed.
+     */
+    @Override
+    public void close() {
+        shutdown = true;
+        synchronized (monitor) {
+            monitor.notifyAll();
+        }
+        final Thread t = thread;
+        if (t != null && t != Thread.currentThread()) {
+            try {
+                t.join(tickMillis * 10);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void execute() {
+        while (!shutdown) {
+            final long now = System.currentTimeMillis();
+            final long tick = now / tickMillis;
+            if (size == 0) {
+                // Nothing to catch up with after a period of inactivity
+                currentTick = tick - 1;
+            }
+            transferNewTasks();
+            unlinkCancelledTasks();
+            if (tick > currentTick) {
+                final long ticks = Math.min(tick - currentTick, slots.length);
+                for (long i = 1; i <= ticks; i++) {
+                    expire(slots[(int) ((currentTick + i) & mask)], tick);
+                }
+                currentTick = tick;
+            }
+            try {
+                synchronized (monitor) {
+                    idle = true;
+                    try {
+                        if (shutdown) {
+                            break;
+                        }
+                        if (size == 0) {
+                            if (newTasks.isEmpty()) {
+                                monitor.wait();
+                            }
+                        } else {
+                            final long remaining = (currentTick + 1) * tickMillis - System.currentTimeMillis();
+                            if (remaining > 0 && newTasks.isEmpty()) {
+                                monitor.wait(remaining);
+                            }
+                        }
+                    } finally {
+                        idle = false;
+                    }
+                }
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        newTasks.clear();
+        cancelledTasks.clear();
+    }
+
+    private void transferNewTasks() {
+        ScheduledTask task;
+        while ((task = newTasks.poll()) != null) {
+            if (task.state.get() != PENDING) {
+                continue;
+            }
+            final long deadline = task.deadline;
+            long tick = deadline / tickMillis;
+            if (deadline % tickMillis != 0) {
+                tick++;
+            }
+            task.tick = Math.max(tick, currentTick + 1);
+            slots[(int) (task.tick & mask)].link(task);
+            size++;
+        }
+    }
+
+    private void unlinkCancelledTasks() {
+        ScheduledTask task;
+        while ((task = cancelledTasks.poll()) != null) {
+            if (task.slot != null) {
+                task.slot.unlink(task);
+                size--;
+            }
+        }
+    }
+
+    private void expire(final Slot slot, final long tick) {
+        ScheduledTask task = slot.head;
+        while (task != null) {
+            final ScheduledTask next = task.next;
+            if (task.tick <= tick) {
+                slot.unlink(task);
+                size--;
+                if (task.state.compareAndSet(PENDING, EXPIRED)) {
+                    try {
+                        task.task.run();
+                    } catch (final RuntimeException ignore) {
+                        // Keep the timer running
+                    }
+                }
+            }
+            task = next;
+        }
+    }
+
+    private final class ScheduledTask implements Cancellable {
+
+        final Runnable task;
+        final long deadline;
+        final AtomicInteger state;
+
+        // Accessed by the timer thread only
+        long tick;
+        Slot slot;
+        ScheduledTask prev;
+        ScheduledTask next;
+
+        ScheduledTask(final Runnable task, final long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+            this.state = new AtomicInteger(PENDING);
+        }
+
+        @Override
+        public boolean cancel() {
+            if (state.compareAndSet(PENDING, CANCELLED)) {
+                cancelledTasks.add(this);
+                return true;
+            }
+            return false;
+        }
+
+    }
+
+    private static final class Slot {
+
+        ScheduledTask head;
+        ScheduledTask tail;
+
+        void link(final ScheduledTask task) {
+            task.slot = this;
+            task.prev = tail;
+            task.next = null;
+            if (tail == null) {
+                head = task;
+            } else {
+                tail.next = task;
+            }
+            tail = task;
+        }
+
+        void unlink(final ScheduledTask task) {
+            if (task.prev == null) {
+                head = task.next;
+            } else {
+                task.prev.next = task.next;
+            }
+            if (task.next == null) {
+                tail = task.prev;
+            } else {
+                task.next.prev = task.prev;
+            }
+            task.slot = null;
+            task.prev = null;
+            task.next = null;
+        }
+
+    }
+
+}
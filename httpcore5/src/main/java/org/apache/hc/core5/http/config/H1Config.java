@@ -28,6 +28,8 @@
 package org.apache.hc.core5.http.config;
 
 import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.ByteBufferAllocator;
+import org.apache.hc.core5.util.HeapByteBufferAllocator;
 
 /**
  * HTTP/1.1 protocol parameters.
@@ -49,9 +51,12 @@ public class H1Config {
     private final int maxLineLength;
     private final int maxHeaderCount;
     private final int maxEmptyLineCount;
+    private final ByteBufferAllocator bufferAllocator;
+    private final boolean releaseIdleBuffers;
 
     H1Config(final int bufferSize, final int chunkSizeHint, final int waitForContinueTimeout,
-             final int maxLineLength, final int maxHeaderCount, final int maxEmptyLineCount) {
+             final int maxLineLength, final int maxHeaderCount, final int maxEmptyLineCount,
+             final ByteBufferAllocator bufferAllocator, final boolean releaseIdleBuffers) {
         super();
         this.bufferSize = bufferSize;
         this.chunkSizeHint = chunkSizeHint;
@@ -59,6 +64,8 @@ public class H1Config {
         this.maxLineLength = maxLineLength;
         this.maxHeaderCount = maxHeaderCount;
         this.maxEmptyLineCount = maxEmptyLineCount;
+        this.bufferAllocator = bufferAllocator;
+        this.releaseIdleBuffers = releaseIdleBuffers;
     }
 
     public int getBufferSize() {
@@ -85,6 +92,26 @@ public int getMaxEmptyLineCount() {
         return this.maxEmptyLineCount;
     }
 
+    /**
+     * Returns the allocator of session input and output buffers.
+     *
+     * @since 5.0
+     */
+    public ByteBufferAllocator getBufferAllocator() {
+        return this.bufferAllocator;
+    }
+
+    /**
+     * Determines whether or not session input and output buffers should be returned
+     * to the buffer allocator as soon as the connection becomes idle between messages
+     * and re-acquired once there is more data to read or write.
+     *
+     * @since 5.0
+     */
+    public boolean isReleaseIdleBuffers() {
+        return this.releaseIdleBuffers;
+    }
+
     @Override
     public String toString() {
         final StringBuilder builder = new StringBuilder();
@@ -94,6 +121,8 @@ public String toString() {
                 .append(", maxLineLength=").append(maxLineLength)
                 .append(", maxHeaderCount=").append(maxHeaderCount)
                 .append(", maxEmptyLineCount=").append(maxEmptyLineCount)
+                .append(", bufferAllocator=").append(bufferAllocator)
+                .append(", releaseIdleBuffers=").append(releaseIdleBuffers)
                 .append("]");
         return builder.toString();
     }
@@ -110,7 +139,9 @@ public static H1Config.Builder copy(final H1Config config) {
                 .setWaitForContinueTimeout(config.getWaitForContinueTimeout())
                 .setMaxHeaderCount(config.getMaxHeaderCount())
                 .setMaxLineLength(config.getMaxLineLength())
-                .setMaxEmptyLineCount(config.maxEmptyLineCount);
+                .setMaxEmptyLineCount(config.maxEmptyLineCount)
+                .setBufferAllocator(config.getBufferAllocator())
+                .setReleaseIdleBuffers(config.isReleaseIdleBuffers());
     }
 
     public static class Builder {
@@ -121,6 +152,8 @@ public static class Builder {
         private int maxLineLength;
         private int maxHeaderCount;
         private int maxEmptyLineCount;
+        private ByteBufferAllocator bufferAllocator;
+        private boolean releaseIdleBuffers;
 
         Builder() {
             this.bufferSize = -1;
@@ -129,6 +162,8 @@ public static class Builder {
             this.maxLineLength = -1;
             this.maxHeaderCount = -1;
             this.maxEmptyLineCount = 10;
+            this.bufferAllocator = HeapByteBufferAllocator.INSTANCE;
+            this.releaseIdleBuffers = false;
         }
 
         public Builder setBufferSize(final int bufferSize) {
@@ -161,8 +196,30 @@ public Builder setMaxEmptyLineCount(final int maxEmptyLineCount) {
             return this;
         }
 
+        /**
+         * Sets the allocator of session input and output buffers.
+         *
+         * @since 5.0
+         */
+        public Builder setBufferAllocator(final ByteBufferAllocator bufferAllocator) {
+            this.bufferAllocator = bufferAllocator;
+            return this;
+        }
+
+        /**
+         * Sets whether or not idle session buffers should be released.
+         *
+         * @since 5.0
+         */
+        public Builder setReleaseIdleBuffers(final boolean releaseIdleBuffers) {
+            this.releaseIdleBuffers = releaseIdleBuffers;
+            return this;
+        }
+
         public H1Config build() {
-            return new H1Config(bufferSize > 0 ? bufferSize : 8192, chunkSizeHint, waitForContinueTimeout, maxLineLength, maxHeaderCount, maxEmptyLineCount);
+            return new H1Config(bufferSize > 0 ? bufferSize : 8192, chunkSizeHint, waitForContinueTimeout, maxLineLength, maxHeaderCount, maxEmptyLineCount,
+                    bufferAllocator != null ? bufferAllocator : HeapByteBufferAllocator.INSTANCE,
+                    releaseIdleBuffers);
         }
 
     }
@@ -27,6 +27,7 @@
 package org.apache.hc.core5.http.impl.bootstrap;
 
 import org.apache.hc.core5.annotation.Experimental;
+import org.apache.hc.core5.concurrent.HashedWheelTimer;
 import org.apache.hc.core5.function.Decorator;
 import org.apache.hc.core5.http.ConnectionReuseStrategy;
 import org.apache.hc.core5.http.HttpHost;
@@ -39,12 +40,14 @@
 import org.apache.hc.core5.http.nio.ssl.BasicClientTlsStrategy;
 import org.apache.hc.core5.http.nio.ssl.TlsStrategy;
 import org.apache.hc.core5.http.protocol.HttpProcessor;
+import org.apache.hc.core5.pool.AdaptiveRouteLimiter;
 import org.apache.hc.core5.pool.ConnPoolListener;
 import org.apache.hc.core5.pool.LaxConnPool;
 import org.apache.hc.core5.pool.ManagedConnPool;
 import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
 import org.apache.hc.core5.pool.PoolReusePolicy;
 import org.apache.hc.core5.pool.StrictConnPool;
+import org.apache.hc.core5.pool.StripedConnPool;
 import org.apache.hc.core5.reactor.IOEventHandlerFactory;
 import org.apache.hc.core5.reactor.IOReactorConfig;
 import org.apache.hc.core5.reactor.IOSession;
@@ -71,6 +74,8 @@ public class AsyncRequesterBootstrap {
     private IOSessionListener sessionListener;
     private Http1StreamListener streamListener;
     private ConnPoolListener<HttpHost> connPoolListener;
+    private HashedWheelTimer leaseTimer;
+    private AdaptiveRouteLimiter<HttpHost> routeLimiter;
 
     private AsyncRequesterBootstrap() {
     }
@@ -191,24 +196,66 @@ public final AsyncRequesterBootstrap setConnPoolListener(final ConnPoolListener<
         return this;
     }
 
+    /**
+     * Assigns {@link HashedWheelTimer} instance used by the connection pool to fail
+     * pending lease requests as soon as their request timeout expires.
+     * The timer is not closed by the requester.
+     *
+     * @since 5.0
+     */
+    public final AsyncRequesterBootstrap setLeaseTimer(final HashedWheelTimer leaseTimer) {
+        this.leaseTimer = leaseTimer;
+        return this;
+    }
+
+    /**
+     * Assigns {@link AdaptiveRouteLimiter} instance used by the connection pool
+     * to adapt the maximum number of connections per route to the observed
+     * lease wait times and connection failures.
+     *
+     * @since 5.0
+     */
+    public final AsyncRequesterBootstrap setRouteLimiter(final AdaptiveRouteLimiter<HttpHost> routeLimiter) {
+        this.routeLimiter = routeLimiter;
+        return this;
+    }
+
     public HttpAsyncRequester create() {
         final ManagedConnPool<HttpHost, IOSession> connPool;
         switch (poolConcurrencyPolicy != null ? poolConcurrencyPolicy : PoolConcurrencyPolicy.STRICT) {
             case LAX:
-                connPool = new LaxConnPool<>(
+                final LaxConnPool<HttpHost, IOSession> laxPool = new LaxConnPool<>(
                         defaultMaxPerRoute > 0 ? defaultMaxPerRoute : 20,
+                        maxTotal > 0 ? maxTotal : 0,
+                        timeToLive,
+                        poolReusePolicy,
+                        connPoolListener,
+                        leaseTimer);
+                laxPool.setRouteLimiter(routeLimiter);
+                connPool = laxPool;
+                break;
+            case STRIPED:
+                final StripedConnPool<HttpHost, IOSession> stripedPool = new StripedConnPool<>(
+                        defaultMaxPerRoute > 0 ? defaultMaxPerRoute : 20,
+                        maxTotal > 0 ? maxTotal : 50,
                         timeToLive,
                         poolReusePolicy,
-                        connPoolListener);
+                        connPoolListener,
+                        leaseTimer);
+                stripedPool.setRouteLimiter(routeLimiter);
+                connPool = stripedPool;
                 break;
             case STRICT:
             default:
-                connPool = new StrictConnPool<>(
+                final StrictConnPool<HttpHost, IOSession> strictPool = new StrictConnPool<>(
                         defaultMaxPerRoute > 0 ? defaultMaxPerRoute : 20,
                         maxTotal > 0 ? maxTotal : 50,
                         timeToLive,
                         poolReusePolicy,
-                        connPoolListener);
+                        connPoolListener,
+                        leaseTimer);
+                strictPool.setRouteLimiter(routeLimiter);
+                connPool = strictPool;
                 break;
         }
         final ClientHttp1StreamDuplexerFactory streamDuplexerFactory = new ClientHttp1StreamDuplexerFactory(
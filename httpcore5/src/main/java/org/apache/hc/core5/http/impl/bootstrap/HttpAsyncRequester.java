@@ -29,9 +29,11 @@
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.hc.core5.concurrent.BasicFuture;
@@ -62,7 +64,7 @@
 import org.apache.hc.core5.http.protocol.HttpCoreContext;
 import org.apache.hc.core5.io.ShutdownType;
 import org.apache.hc.core5.net.URIAuthority;
-import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.pool.AdaptiveConnPoolControl;
 import org.apache.hc.core5.pool.ManagedConnPool;
 import org.apache.hc.core5.pool.PoolEntry;
 import org.apache.hc.core5.pool.PoolStats;
@@ -78,11 +80,13 @@
 /**
  * @since 5.0
  */
-public class HttpAsyncRequester extends AsyncRequester implements ConnPoolControl<HttpHost> {
+public class HttpAsyncRequester extends AsyncRequester implements AdaptiveConnPoolControl<HttpHost> {
 
     private final ManagedConnPool<HttpHost, IOSession> connPool;
+    private final AdaptiveConnPoolControl<HttpHost> adaptivePoolControl;
     private final TlsStrategy tlsStrategy;
 
+    @SuppressWarnings("unchecked")
     public HttpAsyncRequester(
             final IOReactorConfig ioReactorConfig,
             final IOEventHandlerFactory eventHandlerFactory,
@@ -99,6 +103,8 @@ public void execute(final IOSession session) {
 
         });
         this.connPool = Args.notNull(connPool, "Connection pool");
+        this.adaptivePoolControl = connPool instanceof AdaptiveConnPoolControl
+                ? (AdaptiveConnPoolControl<HttpHost>) connPool : null;
         this.tlsStrategy = tlsStrategy;
     }
 
@@ -142,6 +148,38 @@ public int getMaxPerRoute(final HttpHost route) {
         return connPool.getMaxPerRoute(route);
     }
 
+    @Override
+    public int getEffectiveMaxPerRoute(final HttpHost route) {
+        return adaptivePoolControl != null ? adaptivePoolControl.getEffectiveMaxPerRoute(route) : connPool.getMaxPerRoute(route);
+    }
+
+    @Override
+    public void setDefaultMinIdle(final int min) {
+        getAdaptivePoolControl().setDefaultMinIdle(min);
+    }
+
+    @Override
+    public int getDefaultMinIdle() {
+        return adaptivePoolControl != null ? adaptivePoolControl.getDefaultMinIdle() : 0;
+    }
+
+    @Override
+    public void setMinIdle(final HttpHost route, final int min) {
+        getAdaptivePoolControl().setMinIdle(route, min);
+    }
+
+    @Override
+    public int getMinIdle(final HttpHost route) {
+        return adaptivePoolControl != null ? adaptivePoolControl.getMinIdle(route) : 0;
+    }
+
+    private AdaptiveConnPoolControl<HttpHost> getAdaptivePoolControl() {
+        if (adaptivePoolControl == null) {
+            throw new UnsupportedOperationException("Connection pool does not support a minimum of idle connections");
+        }
+        return adaptivePoolControl;
+    }
+
     @Override
     public void closeIdle(final TimeValue idleTime) {
         connPool.closeIdle(idleTime);
@@ -247,6 +285,62 @@ public Future<AsyncClientEndpoint> connect(final HttpHost host, final Timeout ti
         return connect(host, timeout, null, null);
     }
 
+    /**
+     * Establishes connections to the given host in the background and parks them
+     * in the connection pool as idle connections until the route holds
+     * {@link #getMinIdle(HttpHost)} idle connections, as far as the per route
+     * limit permits. Connections that are already idle in the pool count towards
+     * the minimum. This method can be called periodically to restore the minimum
+     * after idle connections have been closed.
+     *
+     * @param host the target host.
+     * @param timeout the connect timeout.
+     * @param callback the result callback.
+     * @return future of the number of idle connections parked in the pool.
+     *
+     * @since 5.0
+     */
+    public Future<Integer> warmUp(final HttpHost host, final Timeout timeout, final FutureCallback<Integer> callback) {
+        Args.notNull(host, "Host");
+        final PoolStats stats = connPool.getStats(host);
+        final int count = Math.min(getMinIdle(host), getEffectiveMaxPerRoute(host) - stats.getLeased());
+        return warmUp(host, count, timeout, callback);
+    }
+
+    /**
+     * Establishes the given number of connections to the given host in the background
+     * and parks them in the connection pool as idle connections. Connections that are
+     * already idle in the pool count towards the number. Every connection is returned
+     * to the pool as soon as it has been established.
+     *
+     * @param host the target host.
+     * @param count the number of idle connections.
+     * @param timeout the connect timeout.
+     * @param callback the result callback.
+     * @return future of the number of idle connections parked in the pool.
+     *
+     * @since 5.0
+     */
+    public Future<Integer> warmUp(
+            final HttpHost host,
+            final int count,
+            final Timeout timeout,
+            final FutureCallback<Integer> callback) {
+        Args.notNull(host, "Host");
+        Args.notNull(timeout, "Timeout");
+        final BasicFuture<Integer> resultFuture = new BasicFuture<>(callback);
+        if (count <= 0) {
+            resultFuture.completed(0);
+            return resultFuture;
+        }
+        final WarmUpCallback connectCallback = new WarmUpCallback(resultFuture, count);
+        for (int i = 0; i < count; i++) {
+            doConnect(host, timeout, null, connectCallback);
+        }
+        connectCallback.requestsIssued();
+        return resultFuture;
+    }
+
     public void execute(
             final AsyncClientExchangeHandler exchangeHandler,
             final Timeout timeout,
@@ -401,6 +495,89 @@ public final <T> Future<T> execute(
         return execute(requestProducer, responseConsumer, timeout, null, callback);
     }
 
+    /**
+     * Returns the I/O session of an endpoint leased from this requester
+     * or {@code null} if the endpoint has already been released.
+     *
+     * @since 5.0
+     */
+    protected final IOSession getIOSession(final AsyncClientEndpoint endpoint) {
+        if (endpoint instanceof InternalAsyncClientEndpoint) {
+            final PoolEntry<HttpHost, IOSession> poolEntry = ((InternalAsyncClientEndpoint) endpoint).poolEntryRef.get();
+            return poolEntry != null ? poolEntry.getConnection() : null;
+        }
+        return null;
+    }
+
+    /**
+     * Returns warmed up connections to the pool as soon as they have been established.
+     * Endpoints that complete while connection leases are still being requested are held
+     * back until all requests have been issued in order to prevent an idle connection
+     * from being leased more than once.
+     */
+    private static class WarmUpCallback implements FutureCallback<AsyncClientEndpoint> {
+
+        private final BasicFuture<Integer> resultFuture;
+        private final AtomicInteger remaining;
+        private final AtomicInteger parked;
+        private final List<AsyncClientEndpoint> heldEndpoints;
+        private boolean requesting;
+
+        WarmUpCallback(final BasicFuture<Integer> resultFuture, final int count) {
+            this.resultFuture = resultFuture;
+            this.remaining = new AtomicInteger(count);
+            this.parked = new AtomicInteger(0);
+            this.heldEndpoints = new ArrayList<>();
+            this.requesting = true;
+        }
+
+        @Override
+        public void completed(final AsyncClientEndpoint endpoint) {
+            synchronized (this) {
+                if (requesting) {
+                    heldEndpoints.add(endpoint);
+                    return;
+                }
+            }
+            release(endpoint);
+        }
+
+        @Override
+        public void failed(final Exception ex) {
+            countDown();
+        }
+
+        @Override
+        public void cancelled() {
+            countDown();
+        }
+
+        void requestsIssued() {
+            final List<AsyncClientEndpoint> endpoints;
+            synchronized (this) {
+                requesting = false;
+                endpoints = new ArrayList<>(heldEndpoints);
+                heldEndpoints.clear();
+            }
+            for (final AsyncClientEndpoint endpoint: endpoints) {
+                release(endpoint);
+            }
+        }
+
+        private void release(final AsyncClientEndpoint endpoint) {
+            endpoint.releaseAndReuse();
+            parked.incrementAndGet();
+            countDown();
+        }
+
+        private void countDown() {
+            if (remaining.decrementAndGet() == 0) {
+                resultFuture.completed(parked.get());
+            }
+        }
+
+    }
+
     private class InternalAsyncClientEndpoint extends AsyncClientEndpoint {
 
         final AtomicReference<PoolEntry<HttpHost, IOSession>> poolEntryRef;
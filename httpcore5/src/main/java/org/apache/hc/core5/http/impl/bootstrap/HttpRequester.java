@@ -32,6 +32,8 @@
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -66,6 +68,7 @@
 import org.apache.hc.core5.io.GracefullyCloseable;
 import org.apache.hc.core5.io.ShutdownType;
 import org.apache.hc.core5.net.URIAuthority;
+import org.apache.hc.core5.pool.AdaptiveConnPoolControl;
 import org.apache.hc.core5.pool.ConnPoolControl;
 import org.apache.hc.core5.pool.ManagedConnPool;
 import org.apache.hc.core5.pool.PoolEntry;
@@ -77,29 +80,53 @@
 /**
  * @since 5.0
  */
-public class HttpRequester implements ConnPoolControl<HttpHost>, GracefullyCloseable {
+public class HttpRequester implements AdaptiveConnPoolControl<HttpHost>, GracefullyCloseable {
 
     private final HttpRequestExecutor requestExecutor;
     private final HttpProcessor httpProcessor;
     private final ManagedConnPool<HttpHost, HttpClientConnection> connPool;
+    private final AdaptiveConnPoolControl<HttpHost> adaptivePoolControl;
     private final SocketConfig socketConfig;
     private final HttpConnectionFactory<? extends HttpClientConnection> connectFactory;
     private final SSLSocketFactory sslSocketFactory;
-
+    private final TimeValue validateAfterInactivity;
+
+    /**
+     * @param validateAfterInactivity period of inactivity after which pooled
+     *   connections are checked for being stale before they get reused or
+     *   {@code null} if pooled connections are not to be checked.
+     *
+     * @since 5.0
+     */
+    @SuppressWarnings("unchecked")
     public HttpRequester(
             final HttpRequestExecutor requestExecutor,
             final HttpProcessor httpProcessor,
             final ManagedConnPool<HttpHost, HttpClientConnection> connPool,
             final SocketConfig socketConfig,
             final HttpConnectionFactory<? extends HttpClientConnection> connectFactory,
-            final SSLSocketFactory sslSocketFactory) {
+            final SSLSocketFactory sslSocketFactory,
+            final TimeValue validateAfterInactivity) {
         this.requestExecutor = Args.notNull(requestExecutor, "Request executor");
         this.httpProcessor = Args.notNull(httpProcessor, "HTTP processor");
         this.connPool = Args.notNull(connPool, "Connection pool");
+        this.adaptivePoolControl = connPool instanceof AdaptiveConnPoolControl
+                ? (AdaptiveConnPoolControl<HttpHost>) connPool : null;
         this.socketConfig = socketConfig != null ? socketConfig : SocketConfig.DEFAULT;
         this.connectFactory = connectFactory != null ? connectFactory : new DefaultBHttpClientConnectionFactory(
                 H1Config.DEFAULT, CharCodingConfig.DEFAULT);
         this.sslSocketFactory = sslSocketFactory != null ? sslSocketFactory : (SSLSocketFactory) SSLSocketFactory.getDefault();
+        this.validateAfterInactivity = validateAfterInactivity;
+    }
+
+    public HttpRequester(
+            final HttpRequestExecutor requestExecutor,
+            final HttpProcessor httpProcessor,
+            final ManagedConnPool<HttpHost, HttpClientConnection> connPool,
+            final SocketConfig socketConfig,
+            final HttpConnectionFactory<? extends HttpClientConnection> connectFactory,
+            final SSLSocketFactory sslSocketFactory) {
+        this(requestExecutor, httpProcessor, connPool, socketConfig, connectFactory, sslSocketFactory, null);
     }
 
     @Override
@@ -142,6 +169,38 @@ public int getMaxPerRoute(final HttpHost route) {
         return connPool.getMaxPerRoute(route);
     }
 
+    @Override
+    public int getEffectiveMaxPerRoute(final HttpHost route) {
+        return adaptivePoolControl != null ? adaptivePoolControl.getEffectiveMaxPerRoute(route) : connPool.getMaxPerRoute(route);
+    }
+
+    @Override
+    public void setDefaultMinIdle(final int min) {
+        getAdaptivePoolControl().setDefaultMinIdle(min);
+    }
+
+    @Override
+    public int getDefaultMinIdle() {
+        return adaptivePoolControl != null ? adaptivePoolControl.getDefaultMinIdle() : 0;
+    }
+
+    @Override
+    public void setMinIdle(final HttpHost route, final int min) {
+        getAdaptivePoolControl().setMinIdle(route, min);
+    }
+
+    @Override
+    public int getMinIdle(final HttpHost route) {
+        return adaptivePoolControl != null ? adaptivePoolControl.getMinIdle(route) : 0;
+    }
+
+    private AdaptiveConnPoolControl<HttpHost> getAdaptivePoolControl() {
+        if (adaptivePoolControl == null) {
+            throw new UnsupportedOperationException("Connection pool does not support a minimum of idle connections");
+        }
+        return adaptivePoolControl;
+    }
+
     @Override
     public void closeIdle(final TimeValue idleTime) {
         connPool.closeIdle(idleTime);
@@ -212,6 +271,21 @@ public <T> T execute(
         }
     }
 
+    private boolean isStale(final PoolEntry<HttpHost, HttpClientConnection> poolEntry) throws IOException {
+        final HttpClientConnection connection = poolEntry.getConnection();
+        if (connection == null) {
+            return false;
+        }
+        if (!connection.isOpen()) {
+            return true;
+        }
+        if (TimeValue.isNonNegative(validateAfterInactivity)
+                && poolEntry.getUpdated() + validateAfterInactivity.toMillis() <= System.currentTimeMillis()) {
+            return connection.isStale();
+        }
+        return false;
+    }
+
     private Socket createSocket(final HttpHost targetHost) throws IOException {
         final Socket sock = new Socket();
         sock.setSoTimeout(socketConfig.getSoTimeout().toMillisIntBound());
@@ -275,6 +349,9 @@ public ClassicHttpResponse execute(
         }
         final PoolEntryHolder connectionHolder = new PoolEntryHolder(poolEntry);
         try {
+            if (isStale(poolEntry)) {
+                poolEntry.discardConnection(ShutdownType.IMMEDIATE);
+            }
             HttpClientConnection connection = poolEntry.getConnection();
             if (connection == null) {
                 final Socket socket = createSocket(targetHost);
@@ -395,6 +472,62 @@ public <T> T  execute(
         }
     }
 
+    /**
+     * Establishes connections to the given host and parks them in the connection
+     * pool as idle connections until the route holds {@link #getMinIdle(HttpHost)}
+     * idle connections, as far as the per route limit permits. Connections that are
+     * already idle in the pool count towards the minimum.
+     * <p>
+     * This method blocks the calling thread while the connections are established
+     * one after another and is expected to be executed by a background thread.
+     * </p>
+     *
+     * @param targetHost the target host.
+     * @param connectTimeout the connect timeout.
+     * @return the number of idle connections parked in the pool.
+     *
+     * @since 5.0
+     */
+    public int warmUp(final HttpHost targetHost, final Timeout connectTimeout) throws HttpException, IOException {
+        Args.notNull(targetHost, "HTTP host");
+        final PoolStats stats = connPool.getStats(targetHost);
+        final int count = Math.min(getMinIdle(targetHost), getEffectiveMaxPerRoute(targetHost) - stats.getLeased());
+        final Timeout timeout = Timeout.defaultsToDisabled(connectTimeout);
+        final List<PoolEntryHolder> connectionHolders = new ArrayList<>(Math.max(count, 0));
+        try {
+            for (int i = 0; i < count; i++) {
+                final Future<PoolEntry<HttpHost, HttpClientConnection>> leaseFuture = connPool.lease(
+                        targetHost, null, connectTimeout, null);
+                final PoolEntry<HttpHost, HttpClientConnection> poolEntry;
+                try {
+                    poolEntry = leaseFuture.get(timeout.getDuration(), timeout.getTimeUnit());
+                } catch (final InterruptedException ex) {
+                    throw new InterruptedIOException(ex.getMessage());
+                } catch (final ExecutionException ex) {
+                    throw new HttpException("Unexpected failure leasing connection", ex);
+                } catch (final TimeoutException ex) {
+                    throw new ConnectionRequestTimeoutException("Connection request timeout");
+                }
+                final PoolEntryHolder connectionHolder = new PoolEntryHolder(poolEntry);
+                connectionHolders.add(connectionHolder);
+                if (poolEntry.getConnection() == null || isStale(poolEntry)) {
+                    poolEntry.discardConnection(ShutdownType.IMMEDIATE);
+                    final Socket socket = createSocket(targetHost);
+                    poolEntry.assignConnection(connectFactory.createConnection(socket));
+                }
+            }
+            final int parked = connectionHolders.size();
+            for (final PoolEntryHolder connectionHolder: connectionHolders) {
+                connectionHolder.releaseConnection();
+            }
+            return parked;
+        } finally {
+            for (final PoolEntryHolder connectionHolder: connectionHolders) {
+                connectionHolder.discardConnection();
+            }
+        }
+    }
+
     public ConnPoolControl<HttpHost> getConnPoolControl() {
         return connPool;
     }
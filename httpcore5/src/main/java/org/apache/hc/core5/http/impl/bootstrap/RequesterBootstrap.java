@@ -29,6 +29,7 @@
 import javax.net.ssl.SSLSocketFactory;
 
 import org.apache.hc.core5.annotation.Experimental;
+import org.apache.hc.core5.concurrent.HashedWheelTimer;
 import org.apache.hc.core5.http.ConnectionReuseStrategy;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.config.CharCodingConfig;
@@ -42,12 +43,15 @@
 import org.apache.hc.core5.http.io.HttpClientConnection;
 import org.apache.hc.core5.http.io.HttpConnectionFactory;
 import org.apache.hc.core5.http.protocol.HttpProcessor;
+import org.apache.hc.core5.pool.AdaptiveRouteLimiter;
 import org.apache.hc.core5.pool.ConnPoolListener;
 import org.apache.hc.core5.pool.LaxConnPool;
 import org.apache.hc.core5.pool.ManagedConnPool;
 import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
 import org.apache.hc.core5.pool.PoolReusePolicy;
 import org.apache.hc.core5.pool.StrictConnPool;
+import org.apache.hc.core5.pool.StripedConnPool;
+import org.apache.hc.core5.util.TimeValue;
 import org.apache.hc.core5.util.Timeout;
 
 /**
@@ -67,6 +71,10 @@ public class RequesterBootstrap {
     private PoolConcurrencyPolicy poolConcurrencyPolicy;
     private Http1StreamListener streamListener;
     private ConnPoolListener<HttpHost> connPoolListener;
+    private HashedWheelTimer leaseTimer;
+    private AdaptiveRouteLimiter<HttpHost> routeLimiter;
+    private int poolThreadCacheSize;
+    private TimeValue validateAfterInactivity;
 
     private RequesterBootstrap() {
     }
@@ -99,6 +107,18 @@ public final RequesterBootstrap setSocketConfig(final SocketConfig socketConfig)
         return this;
     }
 
+    /**
+     * Sets period of inactivity after which pooled connections are checked for
+     * being stale before they get reused. Stale connections are discarded and
+     * replaced with new ones.
+     *
+     * @since 5.0
+     */
+    public final RequesterBootstrap setValidateAfterInactivity(final TimeValue validateAfterInactivity) {
+        this.validateAfterInactivity = validateAfterInactivity;
+        return this;
+    }
+
     public final RequesterBootstrap setConnectionFactory(final HttpConnectionFactory<? extends HttpClientConnection> connectFactory) {
         this.connectFactory = connectFactory;
         return this;
@@ -145,6 +165,44 @@ public final RequesterBootstrap setConnPoolListener(final ConnPoolListener<HttpH
         return this;
     }
 
+    /**
+     * Assigns {@link HashedWheelTimer} instance used by the connection pool to fail
+     * pending lease requests as soon as their request timeout expires.
+     * The timer is not closed by the requester.
+     *
+     * @since 5.0
+     */
+    public final RequesterBootstrap setLeaseTimer(final HashedWheelTimer leaseTimer) {
+        this.leaseTimer = leaseTimer;
+        return this;
+    }
+
+    /**
+     * Assigns {@link AdaptiveRouteLimiter} instance used by the connection pool
+     * to adapt the maximum number of connections per route to the observed
+     * lease wait times and connection failures.
+     *
+     * @since 5.0
+     */
+    public final RequesterBootstrap setRouteLimiter(final AdaptiveRouteLimiter<HttpHost> routeLimiter) {
+        this.routeLimiter = routeLimiter;
+        return this;
+    }
+
+    /**
+     * Sets the number of recently released connections each thread keeps track of
+     * in order to lease them again without contending with other threads.
+     * Applies to the {@link PoolConcurrencyPolicy#LAX} connection pool only.
+     *
+     * @see LaxConnPool#setThreadCacheSize(int)
+     *
+     * @since 5.0
+     */
+    public final RequesterBootstrap setPoolThreadCacheSize(final int poolThreadCacheSize) {
+        this.poolThreadCacheSize = poolThreadCacheSize;
+        return this;
+    }
+
     public HttpRequester create() {
         final HttpRequestExecutor requestExecutor = new HttpRequestExecutor(
                 HttpRequestExecutor.DEFAULT_WAIT_FOR_CONTINUE,
@@ -153,20 +211,39 @@ public HttpRequester create() {
         final ManagedConnPool<HttpHost, HttpClientConnection> connPool;
         switch (poolConcurrencyPolicy != null ? poolConcurrencyPolicy : PoolConcurrencyPolicy.STRICT) {
             case LAX:
-                connPool = new LaxConnPool<>(
+                final LaxConnPool<HttpHost, HttpClientConnection> laxPool = new LaxConnPool<>(
+                        defaultMaxPerRoute > 0 ? defaultMaxPerRoute : 20,
+                        maxTotal > 0 ? maxTotal : 0,
+                        timeToLive,
+                        poolReusePolicy,
+                        connPoolListener,
+                        leaseTimer);
+                laxPool.setRouteLimiter(routeLimiter);
+                laxPool.setThreadCacheSize(poolThreadCacheSize);
+                connPool = laxPool;
+                break;
+            case STRIPED:
+                final StripedConnPool<HttpHost, HttpClientConnection> stripedPool = new StripedConnPool<>(
                         defaultMaxPerRoute > 0 ? defaultMaxPerRoute : 20,
+                        maxTotal > 0 ? maxTotal : 50,
                         timeToLive,
                         poolReusePolicy,
-                        connPoolListener);
+                        connPoolListener,
+                        leaseTimer);
+                stripedPool.setRouteLimiter(routeLimiter);
+                connPool = stripedPool;
                 break;
             case STRICT:
             default:
-                connPool = new StrictConnPool<>(
+                final StrictConnPool<HttpHost, HttpClientConnection> strictPool = new StrictConnPool<>(
                         defaultMaxPerRoute > 0 ? defaultMaxPerRoute : 20,
                         maxTotal > 0 ? maxTotal : 50,
                         timeToLive,
                         poolReusePolicy,
-                        connPoolListener);
+                        connPoolListener,
+                        leaseTimer);
+                strictPool.setRouteLimiter(routeLimiter);
+                connPool = strictPool;
                 break;
         }
         return new HttpRequester(
@@ -176,7 +253,8 @@ public HttpRequester create() {
                 socketConfig != null ? socketConfig : SocketConfig.DEFAULT,
                 connectFactory != null ? connectFactory : new DefaultBHttpClientConnectionFactory(
                         H1Config.DEFAULT, CharCodingConfig.DEFAULT),
-                sslSocketFactory);
+                sslSocketFactory,
+                validateAfterInactivity);
     }
 
 }
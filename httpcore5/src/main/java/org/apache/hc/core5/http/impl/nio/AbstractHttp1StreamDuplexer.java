@@ -123,9 +123,11 @@ private enum ConnectionState { READY, ACTIVE, GRACEFUL_SHUTDOWN, SHUTDOWN}
         final int bufferSize = this.h1Config.getBufferSize();
         this.inbuf = new SessionInputBufferImpl(bufferSize, bufferSize < 512 ? bufferSize : 512,
                 this.h1Config.getMaxLineLength(),
-                CharCodingSupport.createDecoder(charCodingConfig));
+                CharCodingSupport.createDecoder(charCodingConfig),
+                this.h1Config.getBufferAllocator());
         this.outbuf = new SessionOutputBufferImpl(bufferSize, bufferSize < 512 ? bufferSize : 512,
-                CharCodingSupport.createEncoder(charCodingConfig));
+                CharCodingSupport.createEncoder(charCodingConfig),
+                this.h1Config.getBufferAllocator());
         this.inTransportMetrics = new BasicHttpTransportMetrics();
         this.outTransportMetrics = new BasicHttpTransportMetrics();
         this.connMetrics = new BasicHttpConnectionMetrics(inTransportMetrics, outTransportMetrics);
@@ -341,6 +343,9 @@ public void update(final int increment) throws IOException {
                 break;
             }
         }
+        if (h1Config.isReleaseIdleBuffers() && incomingMessage == null && !inbuf.hasData()) {
+            inbuf.release();
+        }
     }
 
     public final void onOutput() throws IOException, HttpException {
@@ -382,6 +387,9 @@ public final void onOutput() throws IOException, HttpException {
                 outputLock.unlock();
             }
             if (outputEnd) {
+                if (h1Config.isReleaseIdleBuffers()) {
+                    releaseIdleOutputBuffer();
+                }
                 outputEnd();
                 if (connState.compareTo(ConnectionState.ACTIVE) == 0) {
                     processCommands();
@@ -437,6 +445,28 @@ public final void onDisconnect() {
             }
         }
         releaseResources();
+        releaseBuffers();
+    }
+
+    private void releaseIdleOutputBuffer() {
+        outputLock.lock();
+        try {
+            if (outgoingMessage == null && !outbuf.hasData()) {
+                outbuf.release();
+            }
+        } finally {
+            outputLock.unlock();
+        }
+    }
+
+    private void releaseBuffers() {
+        inbuf.release();
+        outputLock.lock();
+        try {
+            outbuf.release();
+        } finally {
+            outputLock.unlock();
+        }
     }
 
     void requestShutdown(final ShutdownType shutdownType) {
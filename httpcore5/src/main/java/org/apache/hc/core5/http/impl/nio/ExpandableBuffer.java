@@ -29,6 +29,10 @@
 
 import java.nio.ByteBuffer;
 
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.ByteBufferAllocator;
+import org.apache.hc.core5.util.HeapByteBufferAllocator;
+
 /**
  * A buffer that expand its capacity on demand. Internally, this class is backed
  * by an instance of {@link ByteBuffer}.
@@ -42,6 +46,11 @@ public class ExpandableBuffer {
     public final static int INPUT_MODE = 0;
     public final static int OUTPUT_MODE = 1;
 
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final ByteBufferAllocator allocator;
+    private final int initialCapacity;
+
     private int mode;
     private ByteBuffer buffer;
 
@@ -49,13 +58,27 @@ public class ExpandableBuffer {
      * Allocates buffer of the given size using the given allocator.
      *
      * @param buffersize the buffer size.
+     * @param allocator the buffer allocator.
+     *
+     * @since 5.0
      */
-    protected ExpandableBuffer(final int buffersize) {
+    protected ExpandableBuffer(final int buffersize, final ByteBufferAllocator allocator) {
         super();
-        this.buffer = ByteBuffer.allocate(buffersize);
+        this.allocator = Args.notNull(allocator, "Buffer allocator");
+        this.initialCapacity = buffersize;
+        this.buffer = allocator.allocate(buffersize);
         this.mode = INPUT_MODE;
     }
 
+    /**
+     * Allocates buffer of the given size on the heap.
+     *
+     * @param buffersize the buffer size.
+     */
+    protected ExpandableBuffer(final int buffersize) {
+        this(buffersize, HeapByteBufferAllocator.INSTANCE);
+    }
+
     /**
      * Returns the current mode:
      * <p>
@@ -99,15 +122,22 @@ protected void setInputMode() {
 
     private void expandCapacity(final int capacity) {
         final ByteBuffer oldbuffer = this.buffer;
-        this.buffer = ByteBuffer.allocate(capacity);
+        this.buffer = this.allocator.allocate(capacity);
         oldbuffer.flip();
         this.buffer.put(oldbuffer);
+        if (oldbuffer != EMPTY) {
+            this.allocator.release(oldbuffer);
+        }
     }
 
     /**
      * Expands buffer's capacity.
      */
     protected void expand() {
+        if (this.buffer == EMPTY) {
+            expandCapacity(this.initialCapacity);
+            return;
+        }
         int newcapacity = (this.buffer.capacity() + 1) << 1;
         if (newcapacity < 0) {
             newcapacity = Integer.MAX_VALUE;
@@ -120,7 +150,7 @@ protected void expand() {
      */
     protected void ensureCapacity(final int requiredCapacity) {
         if (requiredCapacity > this.buffer.capacity()) {
-            expandCapacity(requiredCapacity);
+            expandCapacity(this.buffer == EMPTY ? Math.max(requiredCapacity, this.initialCapacity) : requiredCapacity);
         }
     }
 
@@ -163,6 +193,22 @@ protected void clear() {
         this.mode = INPUT_MODE;
     }
 
+    /**
+     * Returns the underlying buffer to the allocator discarding its content.
+     * Capacity gets re-acquired from the allocator should the buffer be
+     * written into again.
+     *
+     * @since 5.0
+     */
+    public void release() {
+        final ByteBuffer oldbuffer = this.buffer;
+        this.buffer = EMPTY;
+        this.mode = INPUT_MODE;
+        if (oldbuffer != EMPTY) {
+            this.allocator.release(oldbuffer);
+        }
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder();
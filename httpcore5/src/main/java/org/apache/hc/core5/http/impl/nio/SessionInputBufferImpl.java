@@ -40,7 +40,9 @@
 import org.apache.hc.core5.http.MessageConstraintException;
 import org.apache.hc.core5.http.nio.SessionInputBuffer;
 import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.ByteBufferAllocator;
 import org.apache.hc.core5.util.CharArrayBuffer;
+import org.apache.hc.core5.util.HeapByteBufferAllocator;
 
 /**
  * Default implementation of {@link SessionInputBuffer} based on
@@ -65,20 +67,42 @@ public class SessionInputBufferImpl extends ExpandableBuffer implements SessionI
      * @param chardecoder chardecoder to be used for decoding HTTP protocol elements.
      *   If {@code null} simple type cast will be used for byte to char conversion.
      * @param maxLineLen maximum line length.
+     * @param allocator the buffer allocator.
      *
-     * @since 4.4
+     * @since 5.0
      */
     public SessionInputBufferImpl(
             final int buffersize,
             final int lineBuffersize,
             final int maxLineLen,
-            final CharsetDecoder chardecoder) {
-        super(buffersize);
+            final CharsetDecoder chardecoder,
+            final ByteBufferAllocator allocator) {
+        super(buffersize, allocator);
         this.lineBuffersize = Args.positive(lineBuffersize, "Line buffer size");
         this.maxLineLen = maxLineLen > 0 ? maxLineLen : 0;
         this.chardecoder = chardecoder;
     }
 
+    /**
+     *  Creates SessionInputBufferImpl instance.
+     *
+     * @param buffersize input buffer size
+     * @param lineBuffersize buffer size for line operations. Has effect only if
+     *   {@code chardecoder} is not {@code null}.
+     * @param chardecoder chardecoder to be used for decoding HTTP protocol elements.
+     *   If {@code null} simple type cast will be used for byte to char conversion.
+     * @param maxLineLen maximum line length.
+     *
+     * @since 4.4
+     */
+    public SessionInputBufferImpl(
+            final int buffersize,
+            final int lineBuffersize,
+            final int maxLineLen,
+            final CharsetDecoder chardecoder) {
+        this(buffersize, lineBuffersize, maxLineLen, chardecoder, HeapByteBufferAllocator.INSTANCE);
+    }
+
     /**
      * @since 4.3
      */
@@ -116,6 +140,12 @@ public SessionInputBufferImpl(final int buffersize) {
         this(buffersize, 256);
     }
 
+    @Override
+    public void release() {
+        super.release();
+        this.charbuffer = null;
+    }
+
     public void put(final ByteBuffer src) {
         if (src != null && src.hasRemaining()) {
             setInputMode();
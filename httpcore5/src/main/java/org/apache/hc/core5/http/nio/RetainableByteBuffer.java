@@ -0,0 +1,64 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.http.nio;
+
+import java.nio.ByteBuffer;
+
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+
+/**
+ * Reference counted view of a chunk of incoming data backed by a buffer
+ * shared with the transport. The content of the buffer is guaranteed to remain
+ * unchanged only for the duration of the call it has been passed to, unless
+ * the buffer gets retained, in which case it remains valid until released.
+ * <p>
+ * Every {@link #retain()} is expected to be matched by exactly one
+ * {@link #release()}.
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public interface RetainableByteBuffer {
+
+    /**
+     * Returns a new view of the data with its own position and limit.
+     */
+    ByteBuffer data();
+
+    /**
+     * Prevents the underlying buffer from being reused by the transport until
+     * {@link #release()} is called.
+     */
+    void retain();
+
+    /**
+     * Releases the buffer previously retained with {@link #retain()}.
+     */
+    void release();
+
+}
@@ -0,0 +1,54 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.http.nio;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Abstract asynchronous data consumer capable of consuming incoming data
+ * without copying it. Transports that support it pass consecutive chunks
+ * of data in batches instead of calling {@link #consume(java.nio.ByteBuffer)}
+ * for each chunk.
+ *
+ * @since 5.0
+ */
+public interface RetainableDataConsumer extends AsyncDataConsumer {
+
+    /**
+     * Triggered to pass a batch of incoming data chunks to the data consumer.
+     * The consumer can hold on to individual chunks beyond the call by
+     * {@link RetainableByteBuffer#retain() retaining} them. The list itself
+     * may not be used once the method returns.
+     *
+     * @param chunks data chunks in the order they have been received.
+     * @return the number of bytes of capacity the consumer is willing to accept,
+     *   same as with {@link #consume(java.nio.ByteBuffer)}.
+     */
+    int consume(List<RetainableByteBuffer> chunks) throws IOException;
+
+}
@@ -0,0 +1,64 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.pool;
+
+/**
+ * Extension of {@link ConnPoolControl} for connection pools that can adapt their
+ * per route limits to the observed load and keep a minimum of idle connections
+ * per route.
+ *
+ * @param <T> the route type that represents the opposite endpoint of a pooled
+ *   connection.
+ * @since 5.0
+ */
+public interface AdaptiveConnPoolControl<T> extends ConnPoolControl<T> {
+
+    /**
+     * Returns the maximum number of connections currently allowed for the given
+     * route. It can be lower than {@link #getMaxPerRoute(Object)} if the pool
+     * adapts the route limit to the observed load.
+     */
+    int getEffectiveMaxPerRoute(final T route);
+
+    /**
+     * Sets the minimum number of idle connections to be kept for routes that
+     * have no per route minimum set.
+     */
+    void setDefaultMinIdle(int min);
+
+    int getDefaultMinIdle();
+
+    /**
+     * Sets the minimum number of idle connections to be kept for the given route.
+     * The pool itself does not establish connections. It is up to the pool user
+     * to pre-establish connections up to this minimum.
+     */
+    void setMinIdle(final T route, int min);
+
+    int getMinIdle(final T route);
+
+}
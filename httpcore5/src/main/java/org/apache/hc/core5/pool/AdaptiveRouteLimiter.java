@@ -0,0 +1,189 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.pool;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.TimeValue;
+
+/**
+ * Adaptive limit of connections per route based on the additive increase /
+ * multiplicative decrease (AIMD) scheme.
+ * <p>
+ * The limiter observes lease wait times and releases of pool entries in windows
+ * of a fixed number of releases. If the ratio of entries released as non-reusable
+ * (due to I/O or protocol errors, for instance) within a window exceeds the maximum
+ * error rate the route limit gets reduced by the backoff ratio. Otherwise,
+ * if any lease request within the window had to wait longer than the wait
+ * threshold, the limit gets increased by one. The limit never exceeds the maximum
+ * per route configured with the pool and never falls below the minimum limit.
+ * </p>
+ *
+ * @param <T> the route type that represents the opposite endpoint of a pooled
+ *   connection.
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public final class AdaptiveRouteLimiter<T> {
+
+    private final int minLimit;
+    private final long waitThresholdNanos;
+    private final double maxErrorRate;
+    private final double backoffRatio;
+    private final int windowSize;
+    private final ConcurrentMap<T, RouteLimit> routeLimits;
+
+    /**
+     * Creates a new limiter.
+     *
+     * @param minLimit the minimum limit per route.
+     * @param waitThreshold lease wait time that signals that the route needs more connections.
+     * @param maxErrorRate ratio of non-reusable releases above which the limit gets reduced.
+     * @param backoffRatio ratio the limit gets multiplied by when reduced.
+     * @param windowSize number of releases after which the limit gets re-evaluated.
+     */
+    public AdaptiveRouteLimiter(
+            final int minLimit,
+            final TimeValue waitThreshold,
+            final double maxErrorRate,
+            final double backoffRatio,
+            final int windowSize) {
+        super();
+        this.minLimit = Args.positive(minLimit, "Min limit");
+        this.waitThresholdNanos = Args.notNull(waitThreshold, "Wait threshold").toNanos();
+        Args.check(maxErrorRate >= 0 && maxErrorRate < 1, "Max error rate must be in the range [0, 1)");
+        this.maxErrorRate = maxErrorRate;
+        Args.check(backoffRatio > 0 && backoffRatio < 1, "Backoff ratio must be in the range (0, 1)");
+        this.backoffRatio = backoffRatio;
+        this.windowSize = Args.positive(windowSize, "Window size");
+        this.routeLimits = new ConcurrentHashMap<>();
+    }
+
+    public AdaptiveRouteLimiter() {
+        this(1, TimeValue.ofMillis(10), 0.1, 0.75, 20);
+    }
+
+    private RouteLimit getRouteLimit(final T route) {
+        RouteLimit routeLimit = this.routeLimits.get(route);
+        if (routeLimit == null) {
+            final RouteLimit newRouteLimit = new RouteLimit();
+            routeLimit = this.routeLimits.putIfAbsent(route, newRouteLimit);
+            if (routeLimit == null) {
+                routeLimit = newRouteLimit;
+            }
+        }
+        return routeLimit;
+    }
+
+    /**
+     * Returns the current limit for the given route.
+     *
+     * @param route the route.
+     * @param max the maximum per route configured with the pool.
+     */
+    public int getLimit(final T route, final int max) {
+        final RouteLimit routeLimit = this.routeLimits.get(route);
+        return routeLimit != null ? routeLimit.getLimit(max) : max;
+    }
+
+    /**
+     * Records completion of a lease request.
+     *
+     * @param route the route.
+     * @param waitNanos time in nanoseconds the request waited for a pool entry.
+     */
+    public void leased(final T route, final long waitNanos) {
+        if (waitNanos >= this.waitThresholdNanos) {
+            getRouteLimit(route).waited();
+        }
+    }
+
+    /**
+     * Records release of a pool entry and re-evaluates the route limit
+     * once a window of releases is complete.
+     *
+     * @param route the route.
+     * @param reusable {@code true} if the entry has been released with a re-usable connection.
+     * @param max the maximum per route configured with the pool.
+     */
+    public void released(final T route, final boolean reusable, final int max) {
+        getRouteLimit(route).released(reusable, max);
+    }
+
+    @Override
+    public String toString() {
+        return "[routes: " + this.routeLimits + "]";
+    }
+
+    final class RouteLimit {
+
+        // -1 means no limit other than the pool maximum
+        private int limit = -1;
+        private int releases;
+        private int failures;
+        private int waits;
+
+        synchronized int getLimit(final int max) {
+            final int current = this.limit >= 0 ? Math.min(this.limit, max) : max;
+            return Math.max(Math.min(minLimit, max), current);
+        }
+
+        synchronized void waited() {
+            this.waits++;
+        }
+
+        synchronized void released(final boolean reusable, final int max) {
+            this.releases++;
+            if (!reusable) {
+                this.failures++;
+            }
+            if (this.releases < windowSize) {
+                return;
+            }
+            final int current = getLimit(max);
+            if (this.failures > maxErrorRate * this.releases) {
+                this.limit = Math.max(minLimit, Math.min(current - 1, (int) (current * backoffRatio)));
+            } else if (this.waits > 0) {
+                this.limit = current + 1 < max ? current + 1 : -1;
+            }
+            this.releases = 0;
+            this.failures = 0;
+            this.waits = 0;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return this.limit >= 0 ? Integer.toString(this.limit) : "max";
+        }
+
+    }
+
+}
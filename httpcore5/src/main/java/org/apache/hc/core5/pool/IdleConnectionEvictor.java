@@ -0,0 +1,139 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.pool;
+
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.DefaultThreadFactory;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.TimeValue;
+
+/**
+ * This class maintains a background thread that periodically closes expired
+ * connections and connections that have been idle longer than the given period
+ * of time, so that callers no longer need to invoke
+ * {@link ConnPoolControl#closeExpired()} and {@link ConnPoolControl#closeIdle(TimeValue)}
+ * themselves and stale connections get evicted off the lease path.
+ * <p>
+ * Idle connections are evicted in the order they have been released back to the pool
+ * and the per route minimum of idle connections (see {@link AdaptiveConnPoolControl#getMinIdle(Object)})
+ * is preserved.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public final class IdleConnectionEvictor {
+
+    private final ConnPoolControl<?> connPool;
+    private final Thread thread;
+    private final TimeValue sleepTime;
+    private final TimeValue maxIdleTime;
+
+    private volatile Exception exception;
+
+    /**
+     * Creates a new evictor.
+     *
+     * @param connPool the connection pool.
+     * @param threadFactory the factory used to create the evictor thread.
+     * @param sleepTime the period of time between eviction runs.
+     * @param maxIdleTime the maximum period of time a connection can be idle or
+     *                    {@code null} if only expired connections are to be closed.
+     */
+    public IdleConnectionEvictor(
+            final ConnPoolControl<?> connPool,
+            final ThreadFactory threadFactory,
+            final TimeValue sleepTime,
+            final TimeValue maxIdleTime) {
+        this.connPool = Args.notNull(connPool, "Connection pool");
+        this.sleepTime = TimeValue.isPositive(sleepTime) ? sleepTime : TimeValue.ofSeconds(5);
+        this.maxIdleTime = maxIdleTime;
+        this.thread = (threadFactory != null ? threadFactory : new DefaultThreadFactory("idle-connection-evictor", true))
+                .newThread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        Thread.sleep(IdleConnectionEvictor.this.sleepTime.toMillis());
+                        try {
+                            evict();
+                        } catch (final RuntimeException ex) {
+                            // Keep evicting, a failed run must not stop the evictor
+                            exception = ex;
+                        }
+                    }
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+        });
+    }
+
+    public IdleConnectionEvictor(final ConnPoolControl<?> connPool, final TimeValue sleepTime, final TimeValue maxIdleTime) {
+        this(connPool, null, sleepTime, maxIdleTime);
+    }
+
+    public IdleConnectionEvictor(final ConnPoolControl<?> connPool, final TimeValue maxIdleTime) {
+        this(connPool, null, maxIdleTime, maxIdleTime);
+    }
+
+    void evict() {
+        connPool.closeExpired();
+        if (maxIdleTime != null) {
+            connPool.closeIdle(maxIdleTime);
+        }
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public void shutdown() {
+        thread.interrupt();
+    }
+
+    public boolean isRunning() {
+        return thread.isAlive();
+    }
+
+    public void awaitTermination(final TimeValue waitTime) throws InterruptedException {
+        thread.join(waitTime != null ? waitTime.toMillis() : Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the exception thrown by the most recent failed eviction run, if any.
+     */
+    public Exception getException() {
+        return exception;
+    }
+
+}
@@ -0,0 +1,235 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.pool;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Lock-free histogram of non-negative values such as latencies.
+ * <p>
+ * Values are counted in log-linear buckets: each power of two range is split
+ * into 16 sub-buckets of equal width, which bounds the relative error of
+ * reported percentiles to 1/16 of the value while keeping the memory footprint
+ * fixed. Recording a value never blocks; {@link #getSnapshot()} can be called
+ * concurrently with recording and returns a consistent enough view for
+ * monitoring purposes.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT;
+    private static final long MAX_TRACKABLE_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private final AtomicLongArray buckets;
+    private final AtomicLong sum;
+    private final AtomicLong min;
+    private final AtomicLong max;
+
+    public LatencyHistogram() {
+        super();
+        this.buckets = new AtomicLongArray(BUCKET_COUNT);
+        this.sum = new AtomicLong();
+        this.min = new AtomicLong(Long.MAX_VALUE);
+        this.max = new AtomicLong(Long.MIN_VALUE);
+    }
+
+    static int bucketIndex(final long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    static long bucketUpperBound(final int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        final int exponent = index / SUB_COUNT - 1 + SUB_BITS;
+        final long width = 1L << (exponent - SUB_BITS);
+        final long lowerBound = (1L << exponent) + (index % SUB_COUNT) * width;
+        return lowerBound + width - 1;
+    }
+
+    /**
+     * Records the given value. Values greater than {@code 2^41 - 1} are counted
+     * as the maximum trackable value.
+     *
+     * @param value non-negative value.
+     */
+    public void record(final long value) {
+        Args.notNegative(value, "Value");
+        final long v = Math.min(value, MAX_TRACKABLE_VALUE);
+        this.buckets.incrementAndGet(bucketIndex(v));
+        this.sum.addAndGet(v);
+        for (;;) {
+            final long current = this.min.get();
+            if (v >= current || this.min.compareAndSet(current, v)) {
+                break;
+            }
+        }
+        for (;;) {
+            final long current = this.max.get();
+            if (v <= current || this.max.compareAndSet(current, v)) {
+                break;
+            }
+        }
+    }
+
+    public Snapshot getSnapshot() {
+        final long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = this.buckets.get(i);
+        }
+        return new Snapshot(counts, this.sum.get(), this.min.get(), this.max.get());
+    }
+
+    /**
+     * Immutable point in time view of a {@link LatencyHistogram}.
+     *
+     * @since 5.0
+     */
+    @Contract(threading = ThreadingBehavior.IMMUTABLE)
+    public static final class Snapshot implements Serializable {
+
+        private static final long serialVersionUID = 5049562153493458437L;
+
+        static final Snapshot EMPTY = new Snapshot(new long[BUCKET_COUNT], 0, Long.MAX_VALUE, Long.MIN_VALUE);
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+
+        Snapshot(final long[] counts, final long sum, final long min, final long max) {
+            long total = 0;
+            for (final long c: counts) {
+                total += c;
+            }
+            this.counts = counts;
+            this.count = total;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        Snapshot merge(final Snapshot other) {
+            final long[] merged = new long[BUCKET_COUNT];
+            for (int i = 0; i < merged.length; i++) {
+                merged[i] = this.counts[i] + other.counts[i];
+            }
+            return new Snapshot(merged,
+                    this.sum + other.sum,
+                    Math.min(this.min, other.min),
+                    Math.max(this.max, other.max));
+        }
+
+        /**
+         * @return total number of recorded values.
+         */
+        public long getCount() {
+            return this.count;
+        }
+
+        /**
+         * @return smallest recorded value or {@code 0} if nothing has been recorded.
+         */
+        public long getMin() {
+            return this.count > 0 ? this.min : 0;
+        }
+
+        /**
+         * @return largest recorded value or {@code 0} if nothing has been recorded.
+         */
+        public long getMax() {
+            return this.count > 0 ? this.max : 0;
+        }
+
+        /**
+         * @return arithmetic mean of recorded values or {@code 0} if nothing has been recorded.
+         */
+        public double getMean() {
+            return this.count > 0 ? (double) this.sum / this.count : 0;
+        }
+
+        /**
+         * Returns the value at the given percentile. The result is the upper bound
+         * of the bucket the percentile falls into, capped at {@link #getMax()}.
+         *
+         * @param percentile percentile in the range of {@code 0} to {@code 100}.
+         * @return value at the given percentile or {@code 0} if nothing has been recorded.
+         */
+        public long getValueAtPercentile(final double percentile) {
+            Args.check(percentile >= 0 && percentile <= 100, "Percentile must be in the range [0, 100]");
+            if (this.count == 0) {
+                return 0;
+            }
+            final long target = Math.max(1, (long) Math.ceil(percentile / 100 * this.count));
+            long cumulative = 0;
+            for (int i = 0; i < this.counts.length; i++) {
+                cumulative += this.counts[i];
+                if (cumulative >= target) {
+                    return Math.max(Math.min(bucketUpperBound(i), this.max), this.min);
+                }
+            }
+            return this.max;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder buffer = new StringBuilder();
+            buffer.append("[count: ");
+            buffer.append(getCount());
+            buffer.append("; min: ");
+            buffer.append(getMin());
+            buffer.append("; p50: ");
+            buffer.append(getValueAtPercentile(50));
+            buffer.append("; p99: ");
+            buffer.append(getValueAtPercentile(99));
+            buffer.append("; max: ");
+            buffer.append(getMax());
+            buffer.append("]");
+            return buffer.toString();
+        }
+
+    }
+
+}
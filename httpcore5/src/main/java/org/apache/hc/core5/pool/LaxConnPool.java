@@ -26,16 +26,21 @@
  */
 package org.apache.hc.core5.pool;
 
+import java.lang.ref.WeakReference;
 import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.Experimental;
@@ -43,6 +48,7 @@
 import org.apache.hc.core5.concurrent.BasicFuture;
 import org.apache.hc.core5.concurrent.Cancellable;
 import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.concurrent.HashedWheelTimer;
 import org.apache.hc.core5.function.Callback;
 import org.apache.hc.core5.io.GracefullyCloseable;
 import org.apache.hc.core5.io.ShutdownType;
@@ -54,6 +60,15 @@
 
 /**
  * Connection pool with higher concurrency but with lax connection limit guarantees.
+ * <p>
+ * The total number of connections can optionally be capped. The cap is enforced
+ * with an atomic counter of allocated connections. Routes whose lease requests
+ * are waiting for a connection slot get served in the order they started waiting
+ * once a slot becomes free.
+ * <p>
+ * Optionally each thread can keep the connections it has recently released
+ * in a small cache of its own and lease them again without going through
+ * the shared state of their route, see {@link #setThreadCacheSize(int)}.
  *
  * @param <T> route
  * @param <C> connection object
@@ -62,32 +77,88 @@
  */
 @Contract(threading = ThreadingBehavior.SAFE)
 @Experimental
-public class LaxConnPool<T, C extends GracefullyCloseable> implements ManagedConnPool<T, C> {
+public class LaxConnPool<T, C extends GracefullyCloseable> implements ManagedConnPool<T, C>, AdaptiveConnPoolControl<T>, ConnPoolMetrics<T> {
 
     private final TimeValue timeToLive;
     private final ConnPoolListener<T> connPoolListener;
     private final PoolReusePolicy policy;
     private final ConcurrentMap<T, PerRoutePool<T, C>> routeToPool;
+    private final ConcurrentMap<T, Integer> minIdlePerRoute;
+    private final AtomicInteger allocatedTotal;
+    private final Queue<PerRoutePool<T, C>> totalLimitWaiters;
     private final AtomicBoolean isShutDown;
+    private final HashedWheelTimer leaseTimer;
+    private final PoolMetricsRecorder<T> metrics;
+    private final Queue<ThreadCache<T, C>> threadCaches;
 
     private volatile int defaultMaxPerRoute;
+    private volatile int defaultMinIdle;
+    private volatile int maxTotal;
+    private volatile AdaptiveRouteLimiter<T> routeLimiter;
+    private volatile ThreadLocal<ThreadCache<T, C>> threadCache;
+    private volatile int threadCacheSize;
 
     /**
+     * @param defaultMaxPerRoute max number of connections per route.
+     * @param maxTotal max total number of connections or {@code 0} if the total
+     *   number of connections should not be limited.
+     * @param leaseTimer optional timer used to fail pending lease requests as soon
+     *   as their request timeout expires. If {@code null} expired requests are only
+     *   failed when the pending request queue is processed or
+     *   {@link #validatePendingRequests()} is called.
+     *
      * @since 5.0
      */
     public LaxConnPool(
             final int defaultMaxPerRoute,
+            final int maxTotal,
             final TimeValue timeToLive,
             final PoolReusePolicy policy,
-            final ConnPoolListener<T> connPoolListener) {
+            final ConnPoolListener<T> connPoolListener,
+            final HashedWheelTimer leaseTimer) {
         super();
         Args.positive(defaultMaxPerRoute, "Max per route value");
+        Args.notNegative(maxTotal, "Max total value");
         this.timeToLive = TimeValue.defaultsToNegativeOneMillisecond(timeToLive);
         this.connPoolListener = connPoolListener;
         this.policy = policy != null ? policy : PoolReusePolicy.LIFO;
         this.routeToPool = new ConcurrentHashMap<>();
+        this.minIdlePerRoute = new ConcurrentHashMap<>();
+        this.allocatedTotal = new AtomicInteger(0);
+        this.totalLimitWaiters = new ConcurrentLinkedQueue<>();
         this.isShutDown = new AtomicBoolean(false);
+        this.leaseTimer = leaseTimer;
+        this.metrics = new PoolMetricsRecorder<>();
+        this.threadCaches = new ConcurrentLinkedQueue<>();
         this.defaultMaxPerRoute = defaultMaxPerRoute;
+        this.maxTotal = maxTotal;
+    }
+
+    /**
+     * @param defaultMaxPerRoute max number of connections per route.
+     * @param maxTotal max total number of connections or {@code 0} if the total
+     *   number of connections should not be limited.
+     *
+     * @since 5.0
+     */
+    public LaxConnPool(
+            final int defaultMaxPerRoute,
+            final int maxTotal,
+            final TimeValue timeToLive,
+            final PoolReusePolicy policy,
+            final ConnPoolListener<T> connPoolListener) {
+        this(defaultMaxPerRoute, maxTotal, timeToLive, policy, connPoolListener, null);
+    }
+
+    /**
+     * @since 5.0
+     */
+    public LaxConnPool(
+            final int defaultMaxPerRoute,
+            final TimeValue timeToLive,
+            final PoolReusePolicy policy,
+            final ConnPoolListener<T> connPoolListener) {
+        this(defaultMaxPerRoute, 0, timeToLive, policy, connPoolListener);
     }
 
     public LaxConnPool(final int defaultMaxPerRoute) {
@@ -101,6 +172,15 @@ public boolean isShutdown() {
     @Override
     public void shutdown(final ShutdownType shutdownType) {
         if (isShutDown.compareAndSet(false, true)) {
+            threadCache = null;
+            ThreadCache<T, C> cache;
+            while ((cache = threadCaches.poll()) != null) {
+                cache.retire();
+                PoolEntry<T, C> entry;
+                while ((entry = cache.claim(null, Long.MAX_VALUE)) != null) {
+                    entry.discardConnection(shutdownType);
+                }
+            }
             for (final Iterator<PerRoutePool<T, C>> it = routeToPool.values().iterator(); it.hasNext(); ) {
                 final PerRoutePool<T, C> routePool = it.next();
                 routePool.shutdown(shutdownType);
@@ -139,6 +219,13 @@ public Future<PoolEntry<T, C>> lease(
             final FutureCallback<PoolEntry<T, C>> callback) {
         Args.notNull(route, "Route");
         Asserts.check(!isShutDown.get(), "Connection pool shut down");
+        final ThreadLocal<ThreadCache<T, C>> cache = threadCache;
+        if (cache != null) {
+            final Future<PoolEntry<T, C>> future = cache.get().lease(route, state, callback);
+            if (future != null) {
+                return future;
+            }
+        }
         final PerRoutePool<T, C> routePool = getPool(route);
         return routePool.lease(state, requestTimeout, callback);
     }
@@ -168,13 +255,90 @@ public void validatePendingRequests() {
         }
     }
 
+    /**
+     * Attempts to allocate a connection slot within the total max limit.
+     * If the limit has been reached the slot of an available connection
+     * of another route gets reclaimed, if any.
+     */
+    boolean allocate(final PerRoutePool<T, C> requester) {
+        for (;;) {
+            final int max = maxTotal;
+            final int allocated = allocatedTotal.get();
+            if (max > 0 && allocated >= max) {
+                break;
+            }
+            if (allocatedTotal.compareAndSet(allocated, allocated + 1)) {
+                return true;
+            }
+        }
+        for (final PerRoutePool<T, C> routePool : routeToPool.values()) {
+            if (routePool != requester && routePool.reclaimAvailable()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void deallocate() {
+        allocatedTotal.decrementAndGet();
+        processTotalLimitWaiters();
+    }
+
+    /**
+     * Registers the route pool as waiting for a connection slot to become
+     * available within the total max limit.
+     */
+    void awaitAllocation(final PerRoutePool<T, C> routePool) {
+        totalLimitWaiters.add(routePool);
+        // A slot may have been freed while the route pool was being registered
+        processTotalLimitWaiters();
+        // Cached connections can give up their slot
+        final PoolEntry<T, C> entry = claimCached(null);
+        if (entry != null) {
+            returnCached(entry, false);
+        }
+    }
+
+    /**
+     * Lets the route pool that has been waiting the longest for a connection
+     * slot reclaim the slot of a connection that has just become available.
+     */
+    void reclaimForTotalLimitWaiter() {
+        final PerRoutePool<T, C> routePool = totalLimitWaiters.poll();
+        if (routePool != null) {
+            routePool.processPendingRequests();
+        }
+    }
+
+    private void processTotalLimitWaiters() {
+        PerRoutePool<T, C> routePool;
+        while (hasFreeCapacity() && (routePool = totalLimitWaiters.poll()) != null) {
+            routePool.processPendingRequests();
+        }
+    }
+
+    private boolean hasFreeCapacity() {
+        final int max = maxTotal;
+        return max <= 0 || allocatedTotal.get() < max;
+    }
+
+    /**
+     * Sets max total number of connections. {@code 0} disables the total limit.
+     */
     @Override
     public void setMaxTotal(final int max) {
+        Args.notNegative(max, "Max value");
+        maxTotal = max;
+        processTotalLimitWaiters();
     }
 
+    /**
+     * Returns max total number of connections or {@code 0} if the total number
+     * of connections is not limited.
+     */
     @Override
     public int getMaxTotal() {
-        return 0;
+        return maxTotal;
     }
 
     @Override
@@ -203,6 +367,221 @@ public int getMaxPerRoute(final T route) {
         return routePool.getMax();
     }
 
+    @Override
+    public int getEffectiveMaxPerRoute(final T route) {
+        Args.notNull(route, "Route");
+        final PerRoutePool<T, C> routePool = getPool(route);
+        return routePool.getEffectiveMax();
+    }
+
+    /**
+     * Sets an optional adaptive limiter that may reduce the maximum number
+     * of connections per route below the configured maximum.
+     *
+     * @since 5.0
+     */
+    public void setRouteLimiter(final AdaptiveRouteLimiter<T> routeLimiter) {
+        this.routeLimiter = routeLimiter;
+    }
+
+    /**
+     * @since 5.0
+     */
+    public AdaptiveRouteLimiter<T> getRouteLimiter() {
+        return routeLimiter;
+    }
+
+    /**
+     * Sets the number of recently released connections each thread keeps in
+     * a cache of its own in order to lease them again without contending with
+     * other threads. Cached connections can still be claimed by other threads
+     * if their route runs short of connections and remain subject to eviction
+     * and shutdown. {@code 0} disables the per-thread cache.
+     *
+     * @since 5.0
+     */
+    public void setThreadCacheSize(final int size) {
+        Args.notNegative(size, "Thread cache size");
+        final ThreadLocal<ThreadCache<T, C>> threadLocal = size > 0 ? new ThreadLocal<ThreadCache<T, C>>() {
+
+            @Override
+            protected ThreadCache<T, C> initialValue() {
+                // Threads come and go, hand back connections cached by those that are gone
+                purgeThreadCaches();
+                final ThreadCache<T, C> cache = new ThreadCache<>(size, this);
+                threadCaches.add(cache);
+                return cache;
+            }
+
+        } : null;
+        this.threadCacheSize = size;
+        this.threadCache = threadLocal;
+        // Hand connections cached with the previous settings back to their routes
+        for (final Iterator<ThreadCache<T, C>> it = threadCaches.iterator(); it.hasNext(); ) {
+            final ThreadCache<T, C> cache = it.next();
+            if (cache.getThreadLocal() != threadLocal) {
+                it.remove();
+                retireThreadCache(cache);
+            }
+        }
+    }
+
+    /**
+     * @since 5.0
+     */
+    public int getThreadCacheSize() {
+        return threadCacheSize;
+    }
+
+    /**
+     * Attempts to cache the connection released by the current thread.
+     */
+    boolean cacheReleased(final PerRoutePool<T, C> routePool, final PoolEntry<T, C> entry) {
+        final ThreadLocal<ThreadCache<T, C>> threadLocal = threadCache;
+        if (threadLocal == null || routePool.hasPending() || !totalLimitWaiters.isEmpty()) {
+            return false;
+        }
+        final ThreadCache<T, C> cache = threadLocal.get();
+        final int slot = cache.add(routePool, entry);
+        // Lease requests queued in the meantime may have missed the cached connection
+        if (cache.isRetired() || routePool.hasPending() || !totalLimitWaiters.isEmpty()) {
+            return !cache.remove(slot, entry);
+        }
+        return true;
+    }
+
+    /**
+     * Claims a connection cached by any thread.
+     *
+     * @param route the route of the connection or {@code null} for any route.
+     */
+    PoolEntry<T, C> claimCached(final T route) {
+        if (threadCaches.isEmpty()) {
+            return null;
+        }
+        for (final ThreadCache<T, C> cache : threadCaches) {
+            final PoolEntry<T, C> entry = cache.claim(route, Long.MAX_VALUE);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    int getCachedCount(final T route) {
+        if (threadCaches.isEmpty()) {
+            return 0;
+        }
+        int count = 0;
+        for (final ThreadCache<T, C> cache : threadCaches) {
+            count += cache.count(route);
+        }
+        return count;
+    }
+
+    boolean isThreadCacheActive() {
+        return !threadCaches.isEmpty();
+    }
+
+    int getThreadCacheCount() {
+        return threadCaches.size();
+    }
+
+    void returnCached(final PoolEntry<T, C> entry, final boolean leastRecentlyUsed) {
+        final PerRoutePool<T, C> routePool = routeToPool.get(entry.getRoute());
+        if (routePool != null) {
+            routePool.addAvailable(entry, leastRecentlyUsed);
+        } else {
+            entry.discardConnection(ShutdownType.GRACEFUL);
+        }
+    }
+
+    private void retireThreadCache(final ThreadCache<T, C> cache) {
+        cache.retire();
+        PoolEntry<T, C> entry;
+        while ((entry = cache.claim(null, Long.MAX_VALUE)) != null) {
+            returnCached(entry, false);
+        }
+    }
+
+    /**
+     * Hands connections cached by threads that have terminated back to their routes.
+     */
+    private void purgeThreadCaches() {
+        for (final Iterator<ThreadCache<T, C>> it = threadCaches.iterator(); it.hasNext(); ) {
+            final ThreadCache<T, C> cache = it.next();
+            if (!cache.isOwnerAlive()) {
+                it.remove();
+                retireThreadCache(cache);
+            }
+        }
+    }
+
+    /**
+     * Hands connections idle since the deadline and connections cached by
+     * threads that have terminated back to their routes.
+     */
+    private void drainThreadCaches(final long deadline) {
+        for (final Iterator<ThreadCache<T, C>> it = threadCaches.iterator(); it.hasNext(); ) {
+            final ThreadCache<T, C> cache = it.next();
+            if (!cache.isOwnerAlive()) {
+                it.remove();
+                retireThreadCache(cache);
+            } else {
+                PoolEntry<T, C> entry;
+                while ((entry = cache.claim(null, deadline)) != null) {
+                    returnCached(entry, true);
+                }
+            }
+        }
+    }
+
+    int getEffectiveMax(final T route, final int max) {
+        final AdaptiveRouteLimiter<T> limiter = routeLimiter;
+        return limiter != null ? limiter.getLimit(route, max) : max;
+    }
+
+    void leased(final T route, final long started, final boolean reused) {
+        final long waitNanos = System.nanoTime() - started;
+        metrics.leased(route, waitNanos, reused);
+        final AdaptiveRouteLimiter<T> limiter = routeLimiter;
+        if (limiter != null) {
+            limiter.leased(route, waitNanos);
+        }
+    }
+
+    void released(final T route, final boolean reusable, final int max) {
+        final AdaptiveRouteLimiter<T> limiter = routeLimiter;
+        if (limiter != null) {
+            limiter.released(route, reusable, max);
+        }
+    }
+
+    @Override
+    public void setDefaultMinIdle(final int min) {
+        Args.notNegative(min, "Min value");
+        defaultMinIdle = min;
+    }
+
+    @Override
+    public int getDefaultMinIdle() {
+        return defaultMinIdle;
+    }
+
+    @Override
+    public void setMinIdle(final T route, final int min) {
+        Args.notNull(route, "Route");
+        Args.notNegative(min, "Min value");
+        minIdlePerRoute.put(route, Integer.valueOf(min));
+    }
+
+    @Override
+    public int getMinIdle(final T route) {
+        Args.notNull(route, "Route");
+        final Integer v = minIdlePerRoute.get(route);
+        return v != null ? v.intValue() : defaultMinIdle;
+    }
+
     @Override
     public PoolStats getTotalStats() {
         int leasedTotal = 0;
@@ -215,6 +594,9 @@ public PoolStats getTotalStats() {
             availableTotal += routePool.getAvailableCount();
             maxTotal += routePool.getMax();
         }
+        if (this.maxTotal > 0) {
+            maxTotal = this.maxTotal;
+        }
         return new PoolStats(leasedTotal, pendingTotal, availableTotal, maxTotal);
     }
 
@@ -234,10 +616,58 @@ public Set<T> getRoutes() {
         return new HashSet<>(routeToPool.keySet());
     }
 
+    /**
+     * Returns the number of lease requests for the given route that failed
+     * because their request timeout expired while waiting for a connection.
+     */
+    public long getLeaseTimeoutCount(final T route) {
+        Args.notNull(route, "Route");
+        return metrics.getTimeoutCount(route);
+    }
+
+    /**
+     * Returns the total number of lease requests that failed because their
+     * request timeout expired while waiting for a connection.
+     */
+    public long getLeaseTimeoutCount() {
+        return metrics.getTotalTimeoutCount();
+    }
+
+    @Override
+    public PoolMetrics getTotalMetrics() {
+        return metrics.getTotalMetrics();
+    }
+
+    @Override
+    public PoolMetrics getMetrics(final T route) {
+        Args.notNull(route, "Route");
+        return metrics.getMetrics(route);
+    }
+
+    void scheduleExpiry(final PerRoutePool<T, C> routePool, final LeaseRequest<T, C> leaseRequest) {
+        final long deadline = leaseRequest.getDeadline();
+        if (leaseTimer != null && deadline != Long.MAX_VALUE) {
+            leaseRequest.setExpiry(leaseTimer.schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    routePool.expire(leaseRequest);
+                }
+
+            }, deadline + 1));
+        }
+    }
+
     public void enumAvailable(final Callback<PoolEntry<T, C>> callback) {
         for (final PerRoutePool<T, C> routePool : routeToPool.values()) {
             routePool.enumAvailable(callback);
         }
+        for (final ThreadCache<T, C> cache : threadCaches) {
+            final int discarded = cache.enumAvailable(callback);
+            for (int i = 0; i < discarded; i++) {
+                deallocate();
+            }
+        }
     }
 
     public void enumLeased(final Callback<PoolEntry<T, C>> callback) {
@@ -246,19 +676,20 @@ public void enumLeased(final Callback<PoolEntry<T, C>> callback) {
         }
     }
 
+    /**
+     * Closes connections that have been idle longer than the given period
+     * of time, while keeping at least {@link #getMinIdle(Object)} idle connections
+     * per route. Available connections of a route are kept in the order they
+     * have been released back to the pool, so only idle connections and
+     * the first connection that is still fresh get examined.
+     */
     @Override
     public void closeIdle(final TimeValue idleTime) {
         final long deadline = System.currentTimeMillis() - (TimeValue.isPositive(idleTime) ? idleTime.toMillis() : 0);
-        enumAvailable(new Callback<PoolEntry<T, C>>() {
-
-            @Override
-            public void execute(final PoolEntry<T, C> entry) {
-                if (entry.getUpdated() <= deadline) {
-                    entry.discardConnection(ShutdownType.GRACEFUL);
-                }
-            }
-
-        });
+        drainThreadCaches(deadline);
+        for (final PerRoutePool<T, C> routePool : routeToPool.values()) {
+            routePool.closeIdle(deadline, getMinIdle(routePool.getRoute()));
+        }
     }
 
     @Override
@@ -270,6 +701,7 @@ public void closeExpired() {
             public void execute(final PoolEntry<T, C> entry) {
                 if (entry.getExpiry() < now) {
                     entry.discardConnection(ShutdownType.GRACEFUL);
+                    metrics.evicted(entry.getRoute(), 1);
                 }
             }
 
@@ -294,7 +726,11 @@ public String toString() {
 
         private final Object state;
         private final long deadline;
+        private final long started;
         private final BasicFuture<PoolEntry<T, C>> future;
+        private final AtomicBoolean completed;
+        private final AtomicBoolean dequeued;
+        private volatile Cancellable expiry;
 
         LeaseRequest(
                 final Object state,
@@ -303,7 +739,10 @@ public String toString() {
             super();
             this.state = state;
             this.deadline = TimeValue.calculateDeadline(System.currentTimeMillis(), requestTimeout);
+            this.started = System.nanoTime();
             this.future = future;
+            this.completed = new AtomicBoolean(false);
+            this.dequeued = new AtomicBoolean(false);
         }
 
         BasicFuture<PoolEntry<T, C>> getFuture() {
@@ -318,35 +757,211 @@ public long getDeadline() {
             return this.deadline;
         }
 
+        long getStarted() {
+            return this.started;
+        }
+
         public boolean isDone() {
-            return this.future.isDone();
+            return this.completed.get() || this.future.isDone();
+        }
+
+        public boolean completed(final PoolEntry<T, C> result) {
+            if (this.completed.compareAndSet(false, true)) {
+                cancelExpiry();
+                return this.future.completed(result);
+            }
+            return false;
+        }
+
+        /**
+         * Fails the request with a {@link TimeoutException} unless it has already been
+         * completed or cancelled. The timeout gets counted before the waiter is notified.
+         */
+        boolean timeout(final PoolMetricsRecorder<T> metrics, final T route) {
+            if (this.completed.compareAndSet(false, true)) {
+                cancelExpiry();
+                if (!this.future.isCancelled()) {
+                    metrics.timedOut(route);
+                    return this.future.failed(new TimeoutException());
+                }
+            }
+            return false;
         }
 
-        public void completed(final PoolEntry<T, C> result) {
-            future.completed(result);
+        /**
+         * @return {@code true} the first time the request stops being counted as pending.
+         */
+        boolean markDequeued() {
+            return this.dequeued.compareAndSet(false, true);
         }
 
-        public void failed(final Exception ex) {
-            future.failed(ex);
+        void setExpiry(final Cancellable expiry) {
+            this.expiry = expiry;
+        }
+
+        void cancelExpiry() {
+            final Cancellable handle = this.expiry;
+            if (handle != null) {
+                handle.cancel();
+            }
         }
 
         @Override
         public boolean cancel() {
+            cancelExpiry();
             return future.cancel();
         }
 
     }
 
+    /**
+     * Connections recently released by the owner thread. Only the owner thread
+     * adds connections to the cache, while any thread can claim them.
+     */
+    static final class ThreadCache<T, C extends GracefullyCloseable> {
+
+        // Must not keep terminated threads from being garbage collected
+        private final WeakReference<Thread> owner;
+        private final ThreadLocal<ThreadCache<T, C>> threadLocal;
+        private final AtomicReferenceArray<PoolEntry<T, C>> entries;
+        // Accessed by the owner thread only
+        private final PerRoutePool<?, ?>[] routePools;
+        private int next;
+
+        private volatile boolean retired;
+
+        ThreadCache(final int size, final ThreadLocal<ThreadCache<T, C>> threadLocal) {
+            this.owner = new WeakReference<>(Thread.currentThread());
+            this.threadLocal = threadLocal;
+            this.entries = new AtomicReferenceArray<>(size);
+            this.routePools = new PerRoutePool<?, ?>[size];
+        }
+
+        ThreadLocal<ThreadCache<T, C>> getThreadLocal() {
+            return threadLocal;
+        }
+
+        boolean isOwnerAlive() {
+            final Thread thread = owner.get();
+            return thread != null && thread.isAlive();
+        }
+
+        boolean isRetired() {
+            return retired;
+        }
+
+        void retire() {
+            retired = true;
+        }
+
+        /**
+         * Adds the connection to the cache, handing the connection it displaces
+         * back to its route. Called by the owner thread only.
+         */
+        @SuppressWarnings("unchecked")
+        int add(final PerRoutePool<T, C> routePool, final PoolEntry<T, C> entry) {
+            final int slot = next;
+            next = (slot + 1) % routePools.length;
+            final PerRoutePool<T, C> displacedPool = (PerRoutePool<T, C>) routePools[slot];
+            routePools[slot] = routePool;
+            final PoolEntry<T, C> displaced = entries.getAndSet(slot, entry);
+            if (displaced != null) {
+                displacedPool.addAvailable(displaced, false);
+            }
+            return slot;
+        }
+
+        boolean remove(final int slot, final PoolEntry<T, C> entry) {
+            return entries.compareAndSet(slot, entry, null);
+        }
+
+        /**
+         * Leases the most recently cached connection matching the route
+         * and the state. Called by the owner thread only.
+         */
+        @SuppressWarnings("unchecked")
+        Future<PoolEntry<T, C>> lease(
+                final T route,
+                final Object state,
+                final FutureCallback<PoolEntry<T, C>> callback) {
+            final int size = routePools.length;
+            for (int n = 1; n <= size; n++) {
+                final int slot = (next - n + size) % size;
+                final PoolEntry<T, C> entry = entries.get(slot);
+                if (entry != null && route.equals(entry.getRoute()) && LangUtils.equals(entry.getState(), state)
+                        && entries.compareAndSet(slot, entry, null)) {
+                    final PerRoutePool<T, C> routePool = (PerRoutePool<T, C>) routePools[slot];
+                    return routePool.leaseCached(entry, callback);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Claims a cached connection.
+         *
+         * @param route the route of the connection or {@code null} for any route.
+         * @param deadline the connection must have been idle since.
+         */
+        PoolEntry<T, C> claim(final T route, final long deadline) {
+            for (int slot = 0; slot < entries.length(); slot++) {
+                final PoolEntry<T, C> entry = entries.get(slot);
+                if (entry != null
+                        && (route == null || route.equals(entry.getRoute()))
+                        && entry.getUpdated() <= deadline
+                        && entries.compareAndSet(slot, entry, null)) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        int count(final T route) {
+            int count = 0;
+            for (int slot = 0; slot < entries.length(); slot++) {
+                final PoolEntry<T, C> entry = entries.get(slot);
+                if (entry != null && route.equals(entry.getRoute())) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Enumerates cached connections, removing those that have been discarded.
+         *
+         * @return the number of removed connections.
+         */
+        int enumAvailable(final Callback<PoolEntry<T, C>> callback) {
+            int removed = 0;
+            for (int slot = 0; slot < entries.length(); slot++) {
+                final PoolEntry<T, C> entry = entries.get(slot);
+                if (entry != null) {
+                    callback.execute(entry);
+                    if (!entry.hasConnection() && entries.compareAndSet(slot, entry, null)) {
+                        removed++;
+                    }
+                }
+            }
+            return removed;
+        }
+
+    }
+
     static class PerRoutePool<T, C extends GracefullyCloseable> {
 
         private final T route;
         private final TimeValue timeToLive;
         private final PoolReusePolicy policy;
-        private final ConnPoolStats<T> connPoolStats;
+        private final LaxConnPool<T, C> connPool;
         private final ConnPoolListener<T> connPoolListener;
         private final ConcurrentMap<PoolEntry<T, C>, Boolean> leased;
         private final Deque<PoolEntry<T, C>> available;
+        // Requests that have expired may remain queued until they reach the head
         private final Deque<LeaseRequest<T, C>> pending;
+        private final AtomicInteger pendingCount;
+        private final AtomicBoolean processing;
+        private final AtomicBoolean processingRequested;
         private final AtomicBoolean terminated;
 
         private volatile int max;
@@ -356,17 +971,20 @@ public boolean cancel() {
                 final int max,
                 final TimeValue timeToLive,
                 final PoolReusePolicy policy,
-                final ConnPoolStats<T> connPoolStats,
+                final LaxConnPool<T, C> connPool,
                 final ConnPoolListener<T> connPoolListener) {
             super();
             this.route = route;
             this.timeToLive = timeToLive;
             this.policy = policy;
-            this.connPoolStats = connPoolStats;
+            this.connPool = connPool;
             this.connPoolListener = connPoolListener;
             this.leased = new ConcurrentHashMap<>();
             this.available = new ConcurrentLinkedDeque<>();
             this.pending = new ConcurrentLinkedDeque<>();
+            this.pendingCount = new AtomicInteger(0);
+            this.processing = new AtomicBoolean(false);
+            this.processingRequested = new AtomicBoolean(false);
             this.terminated = new AtomicBoolean(false);
             this.max = max;
         }
@@ -383,22 +1001,27 @@ public void shutdown(final ShutdownType shutdownType) {
                 leased.clear();
                 LeaseRequest<T, C> leaseRequest;
                 while ((leaseRequest = pending.poll()) != null) {
+                    dequeued(leaseRequest);
                     leaseRequest.cancel();
                 }
             }
         }
 
-        private void addLeased(final PoolEntry<T, C> entry) {
+        private void addLeased(final PoolEntry<T, C> entry, final long started) {
             if (leased.putIfAbsent(entry, Boolean.TRUE) != null) {
                 throw new IllegalStateException("Pool entry already present in the set of leased entries");
-            } else if (connPoolListener != null) {
-                connPoolListener.onLease(route, connPoolStats);
+            }
+            connPool.leased(route, started, entry.hasConnection());
+            entry.markAllocated();
+            if (connPoolListener != null) {
+                connPoolListener.onLease(route, connPool);
             }
         }
 
         private void removeLeased(final PoolEntry<T, C> entry) {
+            connPool.metrics.released(entry);
             if (connPoolListener != null) {
-                connPoolListener.onRelease(route, connPoolStats);
+                connPoolListener.onRelease(route, connPool);
             }
             if (!leased.remove(entry, Boolean.TRUE)) {
                 throw new IllegalStateException("Pool entry is not present in the set of leased entries");
@@ -406,10 +1029,14 @@ private void removeLeased(final PoolEntry<T, C> entry) {
         }
 
         private PoolEntry<T, C> getAvailableEntry(final Object state) {
-            final PoolEntry<T, C> entry = available.poll();
+            PoolEntry<T, C> entry = available.poll();
+            if (entry == null) {
+                entry = connPool.claimCached(route);
+            }
             if (entry != null) {
                 if (entry.getExpiry() < System.currentTimeMillis()) {
                     entry.discardConnection(ShutdownType.GRACEFUL);
+                    connPool.metrics.evicted(route, 1);
                 }
                 if (!LangUtils.equals(entry.getState(), state)) {
                     entry.discardConnection(ShutdownType.GRACEFUL);
@@ -423,66 +1050,200 @@ public Future<PoolEntry<T, C>> lease(
                 final TimeValue requestTimeout,
                 final FutureCallback<PoolEntry<T, C>> callback) {
             Asserts.check(!terminated.get(), "Connection pool shut down");
+            final long started = System.nanoTime();
             final BasicFuture<PoolEntry<T, C>> future = new BasicFuture<>(callback);
             final PoolEntry<T, C> availableEntry = getAvailableEntry(state);
             if (availableEntry != null) {
-                addLeased(availableEntry);
+                addLeased(availableEntry, started);
                 future.completed(availableEntry);
             } else {
-                if (pending.isEmpty() && leased.size() < max) {
+                if (pending.isEmpty() && leased.size() < getEffectiveMax() && connPool.allocate(this)) {
                     final PoolEntry<T, C> entry = new PoolEntry<>(route, timeToLive);
-                    addLeased(entry);
+                    addLeased(entry, started);
                     future.completed(entry);
                 } else {
-                    pending.add(new LeaseRequest<>(state, requestTimeout, future));
+                    final LeaseRequest<T, C> leaseRequest = new LeaseRequest<>(state, requestTimeout, future);
+                    pending.add(leaseRequest);
+                    pendingCount.incrementAndGet();
+                    connPool.scheduleExpiry(this, leaseRequest);
+                    if (leased.size() < getEffectiveMax()) {
+                        // Waiting for the total max limit
+                        connPool.awaitAllocation(this);
+                    }
+                    if (connPool.isThreadCacheActive()) {
+                        // Connections cached in the meantime may have missed the request
+                        processPendingRequests();
+                    }
                 }
             }
             return future;
         }
 
+        /**
+         * Discards the least recently used available connection and gives up
+         * its connection slot to another route.
+         */
+        boolean reclaimAvailable() {
+            PoolEntry<T, C> entry = available.pollLast();
+            if (entry == null) {
+                entry = connPool.claimCached(route);
+            }
+            if (entry != null) {
+                entry.discardConnection(ShutdownType.GRACEFUL);
+                return true;
+            }
+            return false;
+        }
+
         public void release(final PoolEntry<T, C> releasedEntry, final boolean reusable) {
             removeLeased(releasedEntry);
+            connPool.released(route, reusable && releasedEntry.hasConnection(), max);
             if (!reusable || releasedEntry.getExpiry() < System.currentTimeMillis()) {
                 releasedEntry.discardConnection(ShutdownType.GRACEFUL);
             }
             if (releasedEntry.hasConnection()) {
-                switch (policy) {
-                    case LIFO:
-                        available.addFirst(releasedEntry);
-                        break;
-                    case FIFO:
-                        available.addLast(releasedEntry);
-                        break;
-                    default:
-                        throw new IllegalStateException("Unexpected ConnPoolPolicy value: " + policy);
+                releasedEntry.markIdle();
+                if (!connPool.cacheReleased(this, releasedEntry)) {
+                    addAvailable(releasedEntry, false);
                 }
+            } else {
+                // Routes waiting for the total max limit take precedence
+                connPool.deallocate();
+                processPendingRequests();
+            }
+        }
+
+        /**
+         * Leases a connection claimed from a thread cache.
+         */
+        Future<PoolEntry<T, C>> leaseCached(
+                final PoolEntry<T, C> entry,
+                final FutureCallback<PoolEntry<T, C>> callback) {
+            final long started = System.nanoTime();
+            if (terminated.get()) {
+                entry.discardConnection(ShutdownType.GRACEFUL);
+                connPool.deallocate();
+                return null;
             }
+            if (entry.getExpiry() < System.currentTimeMillis()) {
+                entry.discardConnection(ShutdownType.GRACEFUL);
+                connPool.metrics.evicted(route, 1);
+            }
+            addLeased(entry, started);
+            final BasicFuture<PoolEntry<T, C>> future = new BasicFuture<>(callback);
+            future.completed(entry);
+            return future;
+        }
+
+        /**
+         * Makes the idle connection available to lease requests of the route.
+         *
+         * @param leastRecentlyUsed whether the connection should be treated as
+         *   least recently used rather than most recently used.
+         */
+        void addAvailable(final PoolEntry<T, C> entry, final boolean leastRecentlyUsed) {
+            switch (policy) {
+                case LIFO:
+                    if (leastRecentlyUsed) {
+                        available.addLast(entry);
+                    } else {
+                        available.addFirst(entry);
+                    }
+                    break;
+                case FIFO:
+                    if (leastRecentlyUsed) {
+                        available.addFirst(entry);
+                    } else {
+                        available.addLast(entry);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected ConnPoolPolicy value: " + policy);
+            }
+            processPendingRequests();
+            if (!available.isEmpty()) {
+                connPool.reclaimForTotalLimitWaiter();
+            }
+        }
+
+        /**
+         * Completes pending requests for as long as there is capacity to serve them.
+         * Only one thread at a time processes the request queue. Requests to process
+         * the queue made while another thread is doing so get executed by that thread
+         * before it gives up processing.
+         */
+        void processPendingRequests() {
+            processingRequested.set(true);
+            while (processingRequested.get() && processing.compareAndSet(false, true)) {
+                try {
+                    if (processingRequested.compareAndSet(true, false)) {
+                        completePendingRequests();
+                    }
+                } finally {
+                    processing.set(false);
+                }
+            }
+        }
+
+        private void completePendingRequests() {
             LeaseRequest<T, C> leaseRequest;
-            while ((leaseRequest = pending.poll()) != null) {
+            while ((leaseRequest = pending.peek()) != null) {
                 if (leaseRequest.isDone()) {
+                    removePending(leaseRequest);
                     continue;
                 }
-                final Object state = leaseRequest.getState();
-                final long deadline = leaseRequest.getDeadline();
-
                 final long now = System.currentTimeMillis();
-                if (now > deadline) {
-                    leaseRequest.failed(new TimeoutException());
-                } else {
-                    final PoolEntry<T, C> availableEntry = getAvailableEntry(state);
-                    if (availableEntry != null) {
-                        addLeased(releasedEntry);
-                        leaseRequest.completed(availableEntry);
-                    } else if (leased.size() < max) {
-                        final PoolEntry<T, C> newEntry = new PoolEntry<>(route, timeToLive);
-                        addLeased(newEntry);
-                        leaseRequest.completed(newEntry);
+                if (now > leaseRequest.getDeadline()) {
+                    removePending(leaseRequest);
+                    timeout(leaseRequest);
+                    continue;
+                }
+                PoolEntry<T, C> entry = getAvailableEntry(leaseRequest.getState());
+                if (entry == null) {
+                    if (leased.size() >= getEffectiveMax()) {
+                        break;
                     }
-                    break;
+                    if (!connPool.allocate(this)) {
+                        connPool.awaitAllocation(this);
+                        break;
+                    }
+                    entry = new PoolEntry<>(route, timeToLive);
+                }
+                removePending(leaseRequest);
+                addLeased(entry, leaseRequest.getStarted());
+                if (!leaseRequest.completed(entry)) {
+                    release(entry, true);
                 }
             }
         }
 
+        /**
+         * Removes the request at the head of the queue.
+         */
+        private void removePending(final LeaseRequest<T, C> leaseRequest) {
+            if (pending.remove(leaseRequest)) {
+                dequeued(leaseRequest);
+            }
+        }
+
+        private void dequeued(final LeaseRequest<T, C> leaseRequest) {
+            if (leaseRequest.markDequeued()) {
+                pendingCount.decrementAndGet();
+            }
+        }
+
+        void expire(final LeaseRequest<T, C> leaseRequest) {
+            // The request is left in the queue, which is linear to search, and gets
+            // discarded once it reaches the head. It stops being counted as pending
+            // before the waiter gets notified
+            dequeued(leaseRequest);
+            timeout(leaseRequest);
+        }
+
+        private void timeout(final LeaseRequest<T, C> leaseRequest) {
+            leaseRequest.timeout(connPool.metrics, route);
+        }
+
         public void validatePendingRequests() {
             final long now = System.currentTimeMillis();
             final Iterator<LeaseRequest<T, C>> it = pending.iterator();
@@ -491,13 +1252,15 @@ public void validatePendingRequests() {
                 final BasicFuture<PoolEntry<T, C>> future = request.getFuture();
                 if (future.isCancelled() && !request.isDone()) {
                     it.remove();
+                    dequeued(request);
                 } else {
                     final long deadline = request.getDeadline();
                     if (now > deadline) {
-                        request.failed(new TimeoutException());
+                        timeout(request);
                     }
                     if (request.isDone()) {
                         it.remove();
+                        dequeued(request);
                     }
                 }
             }
@@ -515,8 +1278,16 @@ public void setMax(final int max) {
             this.max = max;
         }
 
+        int getEffectiveMax() {
+            return connPool.getEffectiveMax(route, max);
+        }
+
         public int getPendingCount() {
-            return pending.size();
+            return pendingCount.get();
+        }
+
+        boolean hasPending() {
+            return !pending.isEmpty();
         }
 
         public int getLeasedCount() {
@@ -524,15 +1295,38 @@ public int getLeasedCount() {
         }
 
         public int getAvailableCount() {
-            return available.size();
+            return available.size() + connPool.getCachedCount(route);
+        }
+
+        void closeIdle(final long deadline, final int minIdle) {
+            // The least recently released connection is at the tail with LIFO
+            // and at the head with FIFO
+            final boolean fifo = policy == PoolReusePolicy.FIFO;
+            // Deque#size() is linear, so the count is taken once and maintained locally
+            int idleCount = minIdle > 0 ? available.size() : 0;
+            for (;;) {
+                final PoolEntry<T, C> entry = fifo ? available.peekFirst() : available.peekLast();
+                if (entry == null || entry.getUpdated() > deadline) {
+                    break;
+                }
+                if (minIdle > 0 && idleCount <= minIdle) {
+                    break;
+                }
+                if (fifo ? available.removeFirstOccurrence(entry) : available.removeLastOccurrence(entry)) {
+                    idleCount--;
+                    entry.discardConnection(ShutdownType.GRACEFUL);
+                    connPool.metrics.evicted(route, 1);
+                    connPool.deallocate();
+                }
+            }
         }
 
         public void enumAvailable(final Callback<PoolEntry<T, C>> callback) {
             for (final Iterator<PoolEntry<T, C>> it = available.iterator(); it.hasNext(); ) {
                 final PoolEntry<T, C> entry = it.next();
                 callback.execute(entry);
-                if (!entry.hasConnection()) {
-                    it.remove();
+                if (!entry.hasConnection() && available.removeFirstOccurrence(entry)) {
+                    connPool.deallocate();
                 }
             }
         }
@@ -557,7 +1351,7 @@ public String toString() {
             buffer.append("][available: ");
             buffer.append(available.size());
             buffer.append("][pending: ");
-            buffer.append(pending.size());
+            buffer.append(pendingCount.get());
             buffer.append("]");
             return buffer.toString();
         }
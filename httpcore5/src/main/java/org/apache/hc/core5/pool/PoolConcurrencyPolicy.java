@@ -41,6 +41,14 @@ public enum PoolConcurrencyPolicy {
     /**
      * Strict connection max limit guarantees.
      */
-    STRICT
+    STRICT,
+
+    /**
+     * Strict connection max limit guarantees with lease and release operations
+     * that do not serialize on a global lock.
+     *
+     * @see StripedConnPool
+     */
+    STRIPED
 
 }
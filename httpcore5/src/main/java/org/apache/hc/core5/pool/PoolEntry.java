@@ -57,6 +57,7 @@
     private volatile long updated;
     private volatile long expiry;
     private volatile long validityDeadline;
+    private volatile long allocated;
     private Supplier<Long> currentTimeSupplier;
 
     PoolEntry(final T route, final TimeValue timeToLive, final Supplier<Long> currentTimeSupplier) {
@@ -170,6 +171,37 @@ public void updateState(final Object state) {
         this.updated = getCurrentTime();
     }
 
+    /**
+     * Marks the start of an idle period of a connection returned to the pool.
+     */
+    void markIdle() {
+        if (this.connRef.get() != null) {
+            this.updated = getCurrentTime();
+        }
+    }
+
+    /**
+     * Marks the entry as handed out without a connection, which starts
+     * the connect time measured by {@link #takeConnectTime()}.
+     */
+    void markAllocated() {
+        this.allocated = this.connRef.get() == null ? getCurrentTime() : 0;
+    }
+
+    /**
+     * Returns time in milliseconds between the entry having been allocated
+     * and a connection having been assigned to it, or {@code -1} if no connection
+     * has been assigned since. Resets the measurement.
+     */
+    long takeConnectTime() {
+        final long allocatedTime = this.allocated;
+        this.allocated = 0;
+        if (allocatedTime > 0 && this.connRef.get() != null) {
+            return Math.max(this.created - allocatedTime, 0);
+        }
+        return -1;
+    }
+
     @Override
     public String toString() {
         final StringBuilder buffer = new StringBuilder();
@@ -0,0 +1,153 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.pool;
+
+import java.io.Serializable;
+
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+
+/**
+ * Cumulative pool usage metrics.
+ * <p>
+ * Unlike {@link PoolStats}, which captures the current state of the pool, pool
+ * metrics count events since the pool was created and can be used to size
+ * the pool: how long lease requests wait, how long it takes to create
+ * new connections and how often pooled connections get re-used.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE)
+public final class PoolMetrics implements Serializable {
+
+    private static final long serialVersionUID = -3146463416393431624L;
+
+    private final long reuseCount;
+    private final long allocationCount;
+    private final long evictionCount;
+    private final long timeoutCount;
+    private final LatencyHistogram.Snapshot leaseWaitTime;
+    private final LatencyHistogram.Snapshot connectTime;
+
+    public PoolMetrics(
+            final long reuseCount,
+            final long allocationCount,
+            final long evictionCount,
+            final long timeoutCount,
+            final LatencyHistogram.Snapshot leaseWaitTime,
+            final LatencyHistogram.Snapshot connectTime) {
+        super();
+        this.reuseCount = reuseCount;
+        this.allocationCount = allocationCount;
+        this.evictionCount = evictionCount;
+        this.timeoutCount = timeoutCount;
+        this.leaseWaitTime = leaseWaitTime != null ? leaseWaitTime : LatencyHistogram.Snapshot.EMPTY;
+        this.connectTime = connectTime != null ? connectTime : LatencyHistogram.Snapshot.EMPTY;
+    }
+
+    /**
+     * Gets the total number of successfully completed lease requests.
+     */
+    public long getLeaseCount() {
+        return this.reuseCount + this.allocationCount;
+    }
+
+    /**
+     * Gets the number of lease requests satisfied with an available persistent connection.
+     */
+    public long getReuseCount() {
+        return this.reuseCount;
+    }
+
+    /**
+     * Gets the number of lease requests that required a new pool entry to be allocated.
+     */
+    public long getAllocationCount() {
+        return this.allocationCount;
+    }
+
+    /**
+     * Gets the ratio of re-used connections to all leased connections
+     * or {@code 0} if no connections have been leased.
+     */
+    public double getReuseRatio() {
+        final long leaseCount = getLeaseCount();
+        return leaseCount > 0 ? (double) this.reuseCount / leaseCount : 0;
+    }
+
+    /**
+     * Gets the number of available connections closed by the pool because
+     * they expired or stayed idle for too long.
+     */
+    public long getEvictionCount() {
+        return this.evictionCount;
+    }
+
+    /**
+     * Gets the number of lease requests failed because the request timeout expired.
+     */
+    public long getTimeoutCount() {
+        return this.timeoutCount;
+    }
+
+    /**
+     * Gets the distribution of time in microseconds lease requests spent
+     * waiting for a pool entry.
+     */
+    public LatencyHistogram.Snapshot getLeaseWaitTime() {
+        return this.leaseWaitTime;
+    }
+
+    /**
+     * Gets the distribution of time in milliseconds between allocation of a new pool
+     * entry and assignment of a connection to it.
+     */
+    public LatencyHistogram.Snapshot getConnectTime() {
+        return this.connectTime;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[reused: ");
+        buffer.append(this.reuseCount);
+        buffer.append("; allocated: ");
+        buffer.append(this.allocationCount);
+        buffer.append("; evicted: ");
+        buffer.append(this.evictionCount);
+        buffer.append("; timed out: ");
+        buffer.append(this.timeoutCount);
+        buffer.append("; lease wait (us): ");
+        buffer.append(this.leaseWaitTime);
+        buffer.append("; connect (ms): ");
+        buffer.append(this.connectTime);
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.pool;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free per route recorder of pool events.
+ *
+ * @param <T> route
+ *
+ * @since 5.0
+ */
+final class PoolMetricsRecorder<T> {
+
+    static final class RouteMetrics {
+
+        final AtomicLong reuseCount = new AtomicLong();
+        final AtomicLong allocationCount = new AtomicLong();
+        final AtomicLong evictionCount = new AtomicLong();
+        final AtomicLong timeoutCount = new AtomicLong();
+        final LatencyHistogram leaseWaitTime = new LatencyHistogram();
+        final LatencyHistogram connectTime = new LatencyHistogram();
+
+        PoolMetrics getMetrics() {
+            return new PoolMetrics(
+                    this.reuseCount.get(),
+                    this.allocationCount.get(),
+                    this.evictionCount.get(),
+                    this.timeoutCount.get(),
+                    this.leaseWaitTime.getSnapshot(),
+                    this.connectTime.getSnapshot());
+        }
+
+    }
+
+    private final ConcurrentMap<T, RouteMetrics> routeMetrics;
+
+    PoolMetricsRecorder() {
+        this.routeMetrics = new ConcurrentHashMap<>();
+    }
+
+    private RouteMetrics getRouteMetrics(final T route) {
+        RouteMetrics metrics = this.routeMetrics.get(route);
+        if (metrics == null) {
+            final RouteMetrics newMetrics = new RouteMetrics();
+            metrics = this.routeMetrics.putIfAbsent(route, newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Records a completed lease.
+     *
+     * @param route the route.
+     * @param waitNanos time in nanoseconds the lease request waited for a pool entry.
+     * @param reused {@code true} if the lease was served with an available entry.
+     */
+    void leased(final T route, final long waitNanos, final boolean reused) {
+        final RouteMetrics metrics = getRouteMetrics(route);
+        if (reused) {
+            metrics.reuseCount.incrementAndGet();
+        } else {
+            metrics.allocationCount.incrementAndGet();
+        }
+        metrics.leaseWaitTime.record(TimeUnit.NANOSECONDS.toMicros(Math.max(waitNanos, 0)));
+    }
+
+    void released(final PoolEntry<T, ?> entry) {
+        final long connectTime = entry.takeConnectTime();
+        if (connectTime >= 0) {
+            getRouteMetrics(entry.getRoute()).connectTime.record(connectTime);
+        }
+    }
+
+    void evicted(final T route, final int count) {
+        if (count > 0) {
+            getRouteMetrics(route).evictionCount.addAndGet(count);
+        }
+    }
+
+    void timedOut(final T route) {
+        getRouteMetrics(route).timeoutCount.incrementAndGet();
+    }
+
+    long getTimeoutCount(final T route) {
+        final RouteMetrics metrics = this.routeMetrics.get(route);
+        return metrics != null ? metrics.timeoutCount.get() : 0;
+    }
+
+    long getTotalTimeoutCount() {
+        long total = 0;
+        for (final RouteMetrics metrics: this.routeMetrics.values()) {
+            total += metrics.timeoutCount.get();
+        }
+        return total;
+    }
+
+    PoolMetrics getMetrics(final T route) {
+        final RouteMetrics metrics = this.routeMetrics.get(route);
+        return metrics != null ? metrics.getMetrics() : new PoolMetrics(0, 0, 0, 0, null, null);
+    }
+
+    PoolMetrics getTotalMetrics() {
+        long reuseCount = 0;
+        long allocationCount = 0;
+        long evictionCount = 0;
+        long timeoutCount = 0;
+        LatencyHistogram.Snapshot leaseWaitTime = LatencyHistogram.Snapshot.EMPTY;
+        LatencyHistogram.Snapshot connectTime = LatencyHistogram.Snapshot.EMPTY;
+        for (final RouteMetrics metrics: this.routeMetrics.values()) {
+            reuseCount += metrics.reuseCount.get();
+            allocationCount += metrics.allocationCount.get();
+            evictionCount += metrics.evictionCount.get();
+            timeoutCount += metrics.timeoutCount.get();
+            leaseWaitTime = leaseWaitTime.merge(metrics.leaseWaitTime.getSnapshot());
+            connectTime = connectTime.merge(metrics.connectTime.getSnapshot());
+        }
+        return new PoolMetrics(reuseCount, allocationCount, evictionCount, timeoutCount, leaseWaitTime, connectTime);
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.pool;
+
+/**
+ * Enumeration of policies applied when a lease request cannot be satisfied
+ * with an available connection whose state matches the state of the request.
+ *
+ * @since 5.0
+ */
+public enum PoolStateFallbackPolicy {
+
+    /**
+     * Re-use an available connection without state, if any, otherwise allocate a new connection.
+     */
+    REUSE_STATELESS,
+
+    /**
+     * Re-use the least recently used available connection regardless of its state.
+     * <p>
+     * Please note that this policy can hand a connection bound to one user principal,
+     * for instance an NTLM authenticated or a TLS client authenticated connection,
+     * to a request made on behalf of another user. It should only be used if
+     * connection state carries no security context.
+     * </p>
+     */
+    REUSE_ANY,
+
+    /**
+     * Always allocate a new connection.
+     */
+    ALLOCATE_NEW
+
+}
@@ -29,8 +29,8 @@
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -43,7 +43,9 @@
 import org.apache.hc.core5.annotation.Contract;
 import org.apache.hc.core5.annotation.ThreadingBehavior;
 import org.apache.hc.core5.concurrent.BasicFuture;
+import org.apache.hc.core5.concurrent.Cancellable;
 import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.concurrent.HashedWheelTimer;
 import org.apache.hc.core5.function.Callback;
 import org.apache.hc.core5.io.GracefullyCloseable;
 import org.apache.hc.core5.io.ShutdownType;
@@ -62,24 +64,38 @@
  * @since 4.2
  */
 @Contract(threading = ThreadingBehavior.SAFE)
-public class StrictConnPool<T, C extends GracefullyCloseable> implements ManagedConnPool<T, C> {
+public class StrictConnPool<T, C extends GracefullyCloseable> implements ManagedConnPool<T, C>, AdaptiveConnPoolControl<T>, ConnPoolMetrics<T> {
 
     private final TimeValue timeToLive;
     private final ConnPoolListener<T> connPoolListener;
     private final PoolReusePolicy policy;
     private final Map<T, PerRoutePool<T, C>> routeToPool;
-    private final LinkedList<LeaseRequest<T, C>> leasingRequests;
+    private final Set<LeaseRequest<T, C>> leasingRequests;
     private final Set<PoolEntry<T, C>> leased;
-    private final LinkedList<PoolEntry<T, C>> available;
+    // Available connections of all routes in the order they have been released
+    private final Set<PoolEntry<T, C>> available;
     private final ConcurrentLinkedQueue<LeaseRequest<T, C>> completedRequests;
     private final Map<T, Integer> maxPerRoute;
+    private final Map<T, Integer> minIdlePerRoute;
     private final Lock lock;
     private final AtomicBoolean isShutDown;
+    private final HashedWheelTimer leaseTimer;
+    private final PoolMetricsRecorder<T> metrics;
 
     private volatile int defaultMaxPerRoute;
+    private volatile int defaultMinIdle;
     private volatile int maxTotal;
+    private volatile PoolStateFallbackPolicy stateFallbackPolicy;
+    private volatile AdaptiveRouteLimiter<T> routeLimiter;
 
     /**
+     * Creates a new pool.
+     *
+     * @param leaseTimer optional timer used to fail pending lease requests as soon
+     *                   as their request timeout expires. If {@code null} expired
+     *                   requests are only failed when the pending request queue
+     *                   is processed or {@link #validatePendingRequests()} is called.
+     *
      * @since 5.0
      */
     public StrictConnPool(
@@ -87,7 +103,8 @@ public StrictConnPool(
             final int maxTotal,
             final TimeValue timeToLive,
             final PoolReusePolicy policy,
-            final ConnPoolListener<T> connPoolListener) {
+            final ConnPoolListener<T> connPoolListener,
+            final HashedWheelTimer leaseTimer) {
         super();
         Args.positive(defaultMaxPerRoute, "Max per route value");
         Args.positive(maxTotal, "Max total value");
@@ -95,15 +112,31 @@ public StrictConnPool(
         this.connPoolListener = connPoolListener;
         this.policy = policy != null ? policy : PoolReusePolicy.LIFO;
         this.routeToPool = new HashMap<>();
-        this.leasingRequests = new LinkedList<>();
+        this.leasingRequests = new LinkedHashSet<>();
         this.leased = new HashSet<>();
-        this.available = new LinkedList<>();
+        this.available = new LinkedHashSet<>();
         this.completedRequests = new ConcurrentLinkedQueue<>();
         this.maxPerRoute = new HashMap<>();
+        this.minIdlePerRoute = new HashMap<>();
         this.lock = new ReentrantLock();
         this.isShutDown = new AtomicBoolean(false);
+        this.leaseTimer = leaseTimer;
+        this.metrics = new PoolMetricsRecorder<>();
         this.defaultMaxPerRoute = defaultMaxPerRoute;
         this.maxTotal = maxTotal;
+        this.stateFallbackPolicy = PoolStateFallbackPolicy.REUSE_STATELESS;
+    }
+
+    /**
+     * @since 5.0
+     */
+    public StrictConnPool(
+            final int defaultMaxPerRoute,
+            final int maxTotal,
+            final TimeValue timeToLive,
+            final PoolReusePolicy policy,
+            final ConnPoolListener<T> connPoolListener) {
+        this(defaultMaxPerRoute, maxTotal, timeToLive, policy, connPoolListener, null);
     }
 
     public StrictConnPool(final int defaultMaxPerRoute, final int maxTotal) {
@@ -141,7 +174,7 @@ public void close() {
     private PerRoutePool<T, C> getPool(final T route) {
         PerRoutePool<T, C> pool = this.routeToPool.get(route);
         if (pool == null) {
-            pool = new PerRoutePool<>(route);
+            pool = new PerRoutePool<>(route, this.policy);
             this.routeToPool.put(route, pool);
         }
         return pool;
@@ -162,6 +195,7 @@ public Future<PoolEntry<T, C>> lease(
             final boolean completed = processPendingRequest(request);
             if (!request.isDone() && !completed) {
                 this.leasingRequests.add(request);
+                scheduleExpiry(request);
             }
             if (request.isDone()) {
                 this.completedRequests.add(request);
@@ -177,6 +211,35 @@ public Future<PoolEntry<T, C>> lease(final T route, final Object state) {
         return lease(route, state, Timeout.DISABLED, null);
     }
 
+    private void scheduleExpiry(final LeaseRequest<T, C> request) {
+        final long deadline = request.getDeadline();
+        if (this.leaseTimer != null && deadline != Long.MAX_VALUE) {
+            request.setExpiry(this.leaseTimer.schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    expire(request);
+                }
+
+            }, deadline + 1));
+        }
+    }
+
+    private void expire(final LeaseRequest<T, C> request) {
+        this.lock.lock();
+        try {
+            if (this.leasingRequests.remove(request)) {
+                if (request.failed(new TimeoutException())) {
+                    this.metrics.timedOut(request.getRoute());
+                }
+                this.completedRequests.add(request);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        fireCallbacks();
+    }
+
     @Override
     public void release(final PoolEntry<T, C> entry, final boolean reusable) {
         if (entry == null) {
@@ -191,23 +254,20 @@ public void release(final PoolEntry<T, C> entry, final boolean reusable) {
         this.lock.lock();
         try {
             if (this.leased.remove(entry)) {
+                this.metrics.released(entry);
                 if (this.connPoolListener != null) {
                     this.connPoolListener.onRelease(entry.getRoute(), this);
                 }
                 final PerRoutePool<T, C> pool = getPool(entry.getRoute());
                 final boolean keepAlive = entry.hasConnection() && reusable;
+                final AdaptiveRouteLimiter<T> limiter = this.routeLimiter;
+                if (limiter != null) {
+                    limiter.released(entry.getRoute(), keepAlive, getMax(entry.getRoute()));
+                }
                 pool.free(entry, keepAlive);
                 if (keepAlive) {
-                    switch (policy) {
-                        case LIFO:
-                            this.available.addFirst(entry);
-                            break;
-                        case FIFO:
-                            this.available.addLast(entry);
-                            break;
-                        default:
-                            throw new IllegalStateException("Unexpected ConnPoolPolicy value: " + policy);
-                    }
+                    entry.markIdle();
+                    this.available.add(entry);
                 } else {
                     entry.discardConnection(ShutdownType.GRACEFUL);
                 }
@@ -222,12 +282,13 @@ public void release(final PoolEntry<T, C> entry, final boolean reusable) {
     }
 
     private void processPendingRequests() {
-        final ListIterator<LeaseRequest<T, C>> it = this.leasingRequests.listIterator();
+        final Iterator<LeaseRequest<T, C>> it = this.leasingRequests.iterator();
         while (it.hasNext()) {
             final LeaseRequest<T, C> request = it.next();
             final BasicFuture<PoolEntry<T, C>> future = request.getFuture();
             if (future.isCancelled()) {
                 it.remove();
+                request.cancelExpiry();
                 continue;
             }
             final boolean completed = processPendingRequest(request);
@@ -241,12 +302,13 @@ private void processPendingRequests() {
     }
 
     private void processNextPendingRequest() {
-        final ListIterator<LeaseRequest<T, C>> it = this.leasingRequests.listIterator();
+        final Iterator<LeaseRequest<T, C>> it = this.leasingRequests.iterator();
         while (it.hasNext()) {
             final LeaseRequest<T, C> request = it.next();
             final BasicFuture<PoolEntry<T, C>> future = request.getFuture();
             if (future.isCancelled()) {
                 it.remove();
+                request.cancelExpiry();
                 continue;
             }
             final boolean completed = processPendingRequest(request);
@@ -269,14 +331,16 @@ private boolean processPendingRequest(final LeaseRequest<T, C> request) {
 
         final long now = System.currentTimeMillis();
         if (now > deadline) {
-            request.failed(new TimeoutException());
+            if (request.failed(new TimeoutException())) {
+                this.metrics.timedOut(route);
+            }
             return false;
         }
 
         final PerRoutePool<T, C> pool = getPool(route);
         PoolEntry<T, C> entry;
         for (;;) {
-            entry = pool.getFree(state);
+            entry = pool.getFree(state, this.stateFallbackPolicy);
             if (entry == null) {
                 break;
             }
@@ -284,6 +348,7 @@ private boolean processPendingRequest(final LeaseRequest<T, C> request) {
                 entry.discardConnection(ShutdownType.GRACEFUL);
                 this.available.remove(entry);
                 pool.free(entry, false);
+                this.metrics.evicted(route, 1);
             } else {
                 break;
             }
@@ -292,6 +357,7 @@ private boolean processPendingRequest(final LeaseRequest<T, C> request) {
             this.available.remove(entry);
             this.leased.add(entry);
             request.completed(entry);
+            leased(route, request, true);
             if (this.connPoolListener != null) {
                 this.connPoolListener.onLease(entry.getRoute(), this);
             }
@@ -299,7 +365,7 @@ private boolean processPendingRequest(final LeaseRequest<T, C> request) {
         }
 
         // New connection is needed
-        final int maxPerRoute = getMax(route);
+        final int maxPerRoute = getEffectiveMax(route);
         // Shrink the pool prior to allocating a new connection
         final int excess = Math.max(0, pool.getAllocatedCount() + 1 - maxPerRoute);
         if (excess > 0) {
@@ -321,8 +387,11 @@ private boolean processPendingRequest(final LeaseRequest<T, C> request) {
             }
             final int totalAvailable = this.available.size();
             if (totalAvailable > freeCapacity - 1) {
-                if (!this.available.isEmpty()) {
-                    final PoolEntry<T, C> lastUsed = this.available.removeLast();
+                final Iterator<PoolEntry<T, C>> it = this.available.iterator();
+                if (it.hasNext()) {
+                    // Discard the least recently released connection
+                    final PoolEntry<T, C> lastUsed = it.next();
+                    it.remove();
                     lastUsed.discardConnection(ShutdownType.GRACEFUL);
                     final PerRoutePool<T, C> otherpool = getPool(lastUsed.getRoute());
                     otherpool.remove(lastUsed);
@@ -330,8 +399,10 @@ private boolean processPendingRequest(final LeaseRequest<T, C> request) {
             }
 
             entry = pool.createEntry(this.timeToLive);
+            entry.markAllocated();
             this.leased.add(entry);
             request.completed(entry);
+            leased(route, request, false);
             if (this.connPoolListener != null) {
                 this.connPoolListener.onLease(entry.getRoute(), this);
             }
@@ -340,6 +411,15 @@ private boolean processPendingRequest(final LeaseRequest<T, C> request) {
         return false;
     }
 
+    private void leased(final T route, final LeaseRequest<T, C> request, final boolean reused) {
+        final long waitNanos = System.nanoTime() - request.getStarted();
+        this.metrics.leased(route, waitNanos, reused);
+        final AdaptiveRouteLimiter<T> limiter = this.routeLimiter;
+        if (limiter != null) {
+            limiter.leased(route, waitNanos);
+        }
+    }
+
     private void fireCallbacks() {
         LeaseRequest<T, C> request;
         while ((request = this.completedRequests.poll()) != null) {
@@ -366,16 +446,19 @@ public void validatePendingRequests() {
         this.lock.lock();
         try {
             final long now = System.currentTimeMillis();
-            final ListIterator<LeaseRequest<T, C>> it = this.leasingRequests.listIterator();
+            final Iterator<LeaseRequest<T, C>> it = this.leasingRequests.iterator();
             while (it.hasNext()) {
                 final LeaseRequest<T, C> request = it.next();
                 final BasicFuture<PoolEntry<T, C>> future = request.getFuture();
                 if (future.isCancelled() && !request.isDone()) {
                     it.remove();
+                    request.cancelExpiry();
                 } else {
                     final long deadline = request.getDeadline();
                     if (now > deadline) {
-                        request.failed(new TimeoutException());
+                        if (request.failed(new TimeoutException())) {
+                            this.metrics.timedOut(request.getRoute());
+                        }
                     }
                     if (request.isDone()) {
                         it.remove();
@@ -397,6 +480,47 @@ private int getMax(final T route) {
         return this.defaultMaxPerRoute;
     }
 
+    private int getEffectiveMax(final T route) {
+        final int max = getMax(route);
+        final AdaptiveRouteLimiter<T> limiter = this.routeLimiter;
+        return limiter != null ? limiter.getLimit(route, max) : max;
+    }
+
+    /**
+     * Sets the policy applied when no available connection has a state
+     * matching the state of a lease request. Defaults to
+     * {@link PoolStateFallbackPolicy#REUSE_STATELESS}.
+     *
+     * @since 5.0
+     */
+    public void setStateFallbackPolicy(final PoolStateFallbackPolicy stateFallbackPolicy) {
+        this.stateFallbackPolicy = Args.notNull(stateFallbackPolicy, "State fallback policy");
+    }
+
+    /**
+     * @since 5.0
+     */
+    public PoolStateFallbackPolicy getStateFallbackPolicy() {
+        return this.stateFallbackPolicy;
+    }
+
+    /**
+     * Sets an optional adaptive limiter that may reduce the maximum number
+     * of connections per route below the configured maximum.
+     *
+     * @since 5.0
+     */
+    public void setRouteLimiter(final AdaptiveRouteLimiter<T> routeLimiter) {
+        this.routeLimiter = routeLimiter;
+    }
+
+    /**
+     * @since 5.0
+     */
+    public AdaptiveRouteLimiter<T> getRouteLimiter() {
+        return this.routeLimiter;
+    }
+
     @Override
     public void setMaxTotal(final int max) {
         Args.positive(max, "Max value");
@@ -462,6 +586,52 @@ public int getMaxPerRoute(final T route) {
         }
     }
 
+    @Override
+    public int getEffectiveMaxPerRoute(final T route) {
+        Args.notNull(route, "Route");
+        this.lock.lock();
+        try {
+            return getEffectiveMax(route);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void setDefaultMinIdle(final int min) {
+        Args.notNegative(min, "Min value");
+        this.defaultMinIdle = min;
+    }
+
+    @Override
+    public int getDefaultMinIdle() {
+        return this.defaultMinIdle;
+    }
+
+    @Override
+    public void setMinIdle(final T route, final int min) {
+        Args.notNull(route, "Route");
+        Args.notNegative(min, "Min value");
+        this.lock.lock();
+        try {
+            this.minIdlePerRoute.put(route, Integer.valueOf(min));
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public int getMinIdle(final T route) {
+        Args.notNull(route, "Route");
+        this.lock.lock();
+        try {
+            final Integer v = this.minIdlePerRoute.get(route);
+            return v != null ? v.intValue() : this.defaultMinIdle;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
     @Override
     public PoolStats getTotalStats() {
         this.lock.lock();
@@ -513,6 +683,38 @@ public Set<T> getRoutes() {
         }
     }
 
+    /**
+     * Returns the number of lease requests for the given route that failed
+     * because their request timeout expired while waiting for a connection.
+     *
+     * @since 5.0
+     */
+    public long getLeaseTimeoutCount(final T route) {
+        Args.notNull(route, "Route");
+        return this.metrics.getTimeoutCount(route);
+    }
+
+    /**
+     * Returns the total number of lease requests that failed because their
+     * request timeout expired while waiting for a connection.
+     *
+     * @since 5.0
+     */
+    public long getLeaseTimeoutCount() {
+        return this.metrics.getTotalTimeoutCount();
+    }
+
+    @Override
+    public PoolMetrics getTotalMetrics() {
+        return this.metrics.getTotalMetrics();
+    }
+
+    @Override
+    public PoolMetrics getMetrics(final T route) {
+        Args.notNull(route, "Route");
+        return this.metrics.getMetrics(route);
+    }
+
     /**
      * Enumerates all available connections.
      *
@@ -568,34 +770,77 @@ private void purgePoolMap() {
         }
     }
 
+    /**
+     * Closes connections that have been idle longer than the given period
+     * of time, while keeping at least {@link #getMinIdle(Object)} idle connections
+     * per route.
+     * <p>
+     * Available connections of a route are kept in the order they have been
+     * released back to the pool, so only idle connections and the first
+     * connection that is still fresh get examined. The pool lock is held
+     * for one route at a time.
+     * </p>
+     */
     @Override
     public void closeIdle(final TimeValue idleTime) {
         final long deadline = System.currentTimeMillis() - (TimeValue.isPositive(idleTime) ? idleTime.toMillis() : 0);
-        enumAvailable(new Callback<PoolEntry<T, C>>() {
-
-            @Override
-            public void execute(final PoolEntry<T, C> entry) {
-                if (entry.getUpdated() <= deadline) {
-                    entry.discardConnection(ShutdownType.GRACEFUL);
+        for (final T route: getRoutes()) {
+            this.lock.lock();
+            try {
+                final PerRoutePool<T, C> pool = this.routeToPool.get(route);
+                if (pool != null) {
+                    final int minIdle = getMinIdle(route);
+                    int closed = 0;
+                    PoolEntry<T, C> entry;
+                    while (pool.getAvailableCount() > minIdle
+                            && (entry = pool.getLastUsed()) != null
+                            && entry.getUpdated() <= deadline) {
+                        entry.discardConnection(ShutdownType.GRACEFUL);
+                        this.available.remove(entry);
+                        pool.remove(entry);
+                        closed++;
+                    }
+                    if (closed > 0) {
+                        this.metrics.evicted(route, closed);
+                        purgeRoute(pool);
+                    }
                 }
+            } finally {
+                this.lock.unlock();
             }
-
-        });
+        }
+        fireCallbacks();
     }
 
+    /**
+     * Closes expired connections. The pool lock is held for one route at a time.
+     */
     @Override
     public void closeExpired() {
         final long now = System.currentTimeMillis();
-        enumAvailable(new Callback<PoolEntry<T, C>>() {
-
-            @Override
-            public void execute(final PoolEntry<T, C> entry) {
-                if (entry.getExpiry() < now) {
-                    entry.discardConnection(ShutdownType.GRACEFUL);
+        for (final T route: getRoutes()) {
+            this.lock.lock();
+            try {
+                final PerRoutePool<T, C> pool = this.routeToPool.get(route);
+                if (pool != null) {
+                    final int closed = pool.closeExpired(now, this.available);
+                    if (closed > 0) {
+                        this.metrics.evicted(route, closed);
+                        purgeRoute(pool);
+                    }
                 }
+            } finally {
+                this.lock.unlock();
             }
+        }
+        fireCallbacks();
+    }
 
-        });
+    private void purgeRoute(final PerRoutePool<T, C> pool) {
+        processPendingRequests();
+        if (pool.getAllocatedCount() == 0) {
+            this.routeToPool.remove(pool.getRoute());
+        }
     }
 
     @Override
@@ -617,10 +862,12 @@ public String toString() {
         private final T route;
         private final Object state;
         private final long deadline;
+        private final long started;
         private final BasicFuture<PoolEntry<T, C>> future;
         private final AtomicBoolean completed;
         private volatile PoolEntry<T, C> result;
         private volatile Exception ex;
+        private volatile Cancellable expiry;
 
         /**
          * Constructor
@@ -639,6 +886,7 @@ public LeaseRequest(
             this.route = route;
             this.state = state;
             this.deadline = Timeout.calculateDeadline(System.currentTimeMillis(), requestTimeout);
+            this.started = System.nanoTime();
             this.future = future;
             this.completed = new AtomicBoolean(false);
         }
@@ -655,19 +903,38 @@ public long getDeadline() {
             return this.deadline;
         }
 
+        long getStarted() {
+            return this.started;
+        }
+
         public boolean isDone() {
             return this.completed.get();
         }
 
-        public void failed(final Exception ex) {
+        public boolean failed(final Exception ex) {
             if (this.completed.compareAndSet(false, true)) {
                 this.ex = ex;
+                cancelExpiry();
+                return true;
             }
+            return false;
         }
 
         public void completed(final PoolEntry<T, C> result) {
             if (this.completed.compareAndSet(false, true)) {
                 this.result = result;
+                cancelExpiry();
+            }
+        }
+
+        void setExpiry(final Cancellable expiry) {
+            this.expiry = expiry;
+        }
+
+        void cancelExpiry() {
+            final Cancellable handle = this.expiry;
+            if (handle != null) {
+                handle.cancel();
             }
         }
 
@@ -699,14 +966,20 @@ public String toString() {
     static class PerRoutePool<T, C extends GracefullyCloseable> {
 
         private final T route;
+        private final PoolReusePolicy policy;
         private final Set<PoolEntry<T, C>> leased;
-        private final LinkedList<PoolEntry<T, C>> available;
+        // Available entries, least recently released first
+        private final Set<PoolEntry<T, C>> available;
+        // Available entries indexed by state, most recently released first
+        private final Map<Object, LinkedList<PoolEntry<T, C>>> availableByState;
 
-        PerRoutePool(final T route) {
+        PerRoutePool(final T route, final PoolReusePolicy policy) {
             super();
             this.route = route;
+            this.policy = policy;
             this.leased = new HashSet<>();
-            this.available = new LinkedList<>();
+            this.available = new LinkedHashSet<>();
+            this.availableByState = new HashMap<>();
         }
 
         public final T getRoute() {
@@ -725,45 +998,110 @@ public int getAllocatedCount() {
             return this.available.size() + this.leased.size();
         }
 
-        public PoolEntry<T, C> getFree(final Object state) {
-            if (!this.available.isEmpty()) {
-                if (state != null) {
-                    final Iterator<PoolEntry<T, C>> it = this.available.iterator();
-                    while (it.hasNext()) {
-                        final PoolEntry<T, C> entry = it.next();
-                        if (state.equals(entry.getState())) {
-                            it.remove();
-                            this.leased.add(entry);
-                            return entry;
-                        }
-                    }
+        private PoolEntry<T, C> pollAvailable(final Object state) {
+            final LinkedList<PoolEntry<T, C>> entries = this.availableByState.get(state);
+            if (entries == null) {
+                return null;
+            }
+            final PoolEntry<T, C> entry = this.policy == PoolReusePolicy.FIFO ? entries.pollLast() : entries.poll();
+            if (entries.isEmpty()) {
+                this.availableByState.remove(state);
+            }
+            if (entry != null) {
+                this.available.remove(entry);
+            }
+            return entry;
+        }
+
+        private void unindex(final PoolEntry<T, C> entry) {
+            final Object state = entry.getState();
+            final LinkedList<PoolEntry<T, C>> entries = this.availableByState.get(state);
+            if (entries != null && entries.removeLastOccurrence(entry)) {
+                if (entries.isEmpty()) {
+                    this.availableByState.remove(state);
                 }
-                final Iterator<PoolEntry<T, C>> it = this.available.iterator();
-                while (it.hasNext()) {
-                    final PoolEntry<T, C> entry = it.next();
-                    if (entry.getState() == null) {
+                return;
+            }
+            // The state has been updated while the entry was available
+            final Iterator<LinkedList<PoolEntry<T, C>>> it = this.availableByState.values().iterator();
+            while (it.hasNext()) {
+                final LinkedList<PoolEntry<T, C>> otherEntries = it.next();
+                if (otherEntries.remove(entry)) {
+                    if (otherEntries.isEmpty()) {
                         it.remove();
-                        this.leased.add(entry);
-                        return entry;
                     }
+                    return;
                 }
             }
-            return null;
+        }
+
+        /**
+         * Gets the most recently (or with {@link PoolReusePolicy#FIFO} the least recently)
+         * released available entry with the given state, falling back to other available entries as the policy allows.
+         */
+        public PoolEntry<T, C> getFree(final Object state, final PoolStateFallbackPolicy fallbackPolicy) {
+            if (this.available.isEmpty()) {
+                return null;
+            }
+            PoolEntry<T, C> entry = pollAvailable(state);
+            if (entry == null) {
+                if (fallbackPolicy == PoolStateFallbackPolicy.REUSE_ANY) {
+                    entry = getLastUsed();
+                    if (entry != null) {
+                        this.available.remove(entry);
+                        unindex(entry);
+                    }
+                } else if (fallbackPolicy == PoolStateFallbackPolicy.REUSE_STATELESS && state != null) {
+                    entry = pollAvailable(null);
+                }
+            }
+            if (entry != null) {
+                this.leased.add(entry);
+            }
+            return entry;
         }
 
         public PoolEntry<T, C> getLastUsed() {
-            return this.available.peekLast();
+            final Iterator<PoolEntry<T, C>> it = this.available.iterator();
+            return it.hasNext() ? it.next() : null;
+        }
+
+        int closeExpired(final long now, final Set<PoolEntry<T, C>> allAvailable) {
+            int closed = 0;
+            final Iterator<PoolEntry<T, C>> it = this.available.iterator();
+            while (it.hasNext()) {
+                final PoolEntry<T, C> entry = it.next();
+                if (entry.getExpiry() < now) {
+                    entry.discardConnection(ShutdownType.GRACEFUL);
+                    it.remove();
+                    unindex(entry);
+                    allAvailable.remove(entry);
+                    closed++;
+                }
+            }
+            return closed;
         }
 
         public boolean remove(final PoolEntry<T, C> entry) {
-            return this.available.remove(entry) || this.leased.remove(entry);
+            if (this.available.remove(entry)) {
+                unindex(entry);
+                return true;
+            }
+            return this.leased.remove(entry);
         }
 
         public void free(final PoolEntry<T, C> entry, final boolean reusable) {
             final boolean found = this.leased.remove(entry);
             Asserts.check(found, "Entry %s has not been leased from this pool", entry);
             if (reusable) {
-                this.available.addFirst(entry);
+                this.available.add(entry);
+                final Object state = entry.getState();
+                LinkedList<PoolEntry<T, C>> entries = this.availableByState.get(state);
+                if (entries == null) {
+                    entries = new LinkedList<>();
+                    this.availableByState.put(state, entries);
+                }
+                entries.addFirst(entry);
             }
         }
 
@@ -774,10 +1112,11 @@ public PoolEntry<T, C> createEntry(final TimeValue timeToLive) {
         }
 
         public void shutdown(final ShutdownType shutdownType) {
-            PoolEntry<T, C> availableEntry;
-            while ((availableEntry = available.poll()) != null) {
+            for (final PoolEntry<T, C> availableEntry: this.available) {
                 availableEntry.discardConnection(shutdownType);
             }
+            this.available.clear();
+            this.availableByState.clear();
             for (final PoolEntry<T, C> entry: this.leased) {
                 entry.discardConnection(shutdownType);
             }
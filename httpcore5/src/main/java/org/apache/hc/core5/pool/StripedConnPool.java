@@ -0,0 +1,939 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.pool;
+
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.Experimental;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.concurrent.BasicFuture;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.concurrent.HashedWheelTimer;
+import org.apache.hc.core5.function.Callback;
+import org.apache.hc.core5.io.GracefullyCloseable;
+import org.apache.hc.core5.io.ShutdownType;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.Asserts;
+import org.apache.hc.core5.util.LangUtils;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+/**
+ * Connection pool with strict connection limit guarantees that does not serialize
+ * lease and release operations on a global lock. Each route maintains its own
+ * non-blocking deques of available entries and pending requests, while connection
+ * limits are enforced by atomic per route and total allocation counters.
+ * Leasing an available connection and releasing a leased one are constant time
+ * operations as long as there are no pending requests.
+ *
+ * @param <T> route
+ * @param <C> connection object
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+@Experimental
+public class StripedConnPool<T, C extends GracefullyCloseable> implements ManagedConnPool<T, C>, AdaptiveConnPoolControl<T>, ConnPoolMetrics<T> {
+
+    private final TimeValue timeToLive;
+    private final ConnPoolListener<T> connPoolListener;
+    private final PoolReusePolicy policy;
+    private final ConcurrentMap<T, PerRoutePool<T, C>> routeToPool;
+    private final ConcurrentMap<T, Integer> minIdlePerRoute;
+    private final ConcurrentMap<T, Integer> maxPerRoute;
+    private final AtomicInteger allocatedTotal;
+    private final AtomicInteger pendingTotal;
+    private final AtomicBoolean isShutDown;
+    private final HashedWheelTimer leaseTimer;
+    private final PoolMetricsRecorder<T> metrics;
+
+    private volatile int defaultMaxPerRoute;
+    private volatile int defaultMinIdle;
+    private volatile int maxTotal;
+    private volatile AdaptiveRouteLimiter<T> routeLimiter;
+
+    /**
+     * Creates a new pool.
+     *
+     * @param leaseTimer optional timer used to fail pending lease requests as soon
+     *                   as their request timeout expires. If {@code null} expired
+     *                   requests are only failed when the pending request queue
+     *                   is processed or {@link #validatePendingRequests()} is called.
+     *
+     * @since 5.0
+     */
+    public StripedConnPool(
+            final int defaultMaxPerRoute,
+            final int maxTotal,
+            final TimeValue timeToLive,
+            final PoolReusePolicy policy,
+            final ConnPoolListener<T> connPoolListener,
+            final HashedWheelTimer leaseTimer) {
+        super();
+        Args.positive(defaultMaxPerRoute, "Max per route value");
+        Args.positive(maxTotal, "Max total value");
+        this.timeToLive = TimeValue.defaultsToNegativeOneMillisecond(timeToLive);
+        this.connPoolListener = connPoolListener;
+        this.policy = policy != null ? policy : PoolReusePolicy.LIFO;
+        this.routeToPool = new ConcurrentHashMap<>();
+        this.minIdlePerRoute = new ConcurrentHashMap<>();
+        this.maxPerRoute = new ConcurrentHashMap<>();
+        this.allocatedTotal = new AtomicInteger(0);
+        this.pendingTotal = new AtomicInteger(0);
+        this.isShutDown = new AtomicBoolean(false);
+        this.leaseTimer = leaseTimer;
+        this.metrics = new PoolMetricsRecorder<>();
+        this.defaultMaxPerRoute = defaultMaxPerRoute;
+        this.maxTotal = maxTotal;
+    }
+
+    /**
+     * @since 5.0
+     */
+    public StripedConnPool(
+            final int defaultMaxPerRoute,
+            final int maxTotal,
+            final TimeValue timeToLive,
+            final PoolReusePolicy policy,
+            final ConnPoolListener<T> connPoolListener) {
+        this(defaultMaxPerRoute, maxTotal, timeToLive, policy, connPoolListener, null);
+    }
+
+    public StripedConnPool(final int defaultMaxPerRoute, final int maxTotal) {
+        this(defaultMaxPerRoute, maxTotal, TimeValue.NEG_ONE_MILLISECONDS, PoolReusePolicy.LIFO, null);
+    }
+
+    public boolean isShutdown() {
+        return isShutDown.get();
+    }
+
+    @Override
+    public void shutdown(final ShutdownType shutdownType) {
+        if (isShutDown.compareAndSet(false, true)) {
+            for (final PerRoutePool<T, C> routePool : routeToPool.values()) {
+                routePool.shutdown(shutdownType);
+            }
+            routeToPool.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        shutdown(ShutdownType.GRACEFUL);
+    }
+
+    private PerRoutePool<T, C> getPool(final T route) {
+        PerRoutePool<T, C> routePool = routeToPool.get(route);
+        if (routePool == null) {
+            final PerRoutePool<T, C> newRoutePool = new PerRoutePool<>(route, this);
+            routePool = routeToPool.putIfAbsent(route, newRoutePool);
+            if (routePool == null) {
+                routePool = newRoutePool;
+            }
+        }
+        return routePool;
+    }
+
+    @Override
+    public Future<PoolEntry<T, C>> lease(
+            final T route, final Object state,
+            final Timeout requestTimeout,
+            final FutureCallback<PoolEntry<T, C>> callback) {
+        Args.notNull(route, "Route");
+        Args.notNull(requestTimeout, "Request timeout");
+        Asserts.check(!isShutDown.get(), "Connection pool shut down");
+        final PerRoutePool<T, C> routePool = getPool(route);
+        return routePool.lease(state, requestTimeout, callback);
+    }
+
+    public Future<PoolEntry<T, C>> lease(final T route, final Object state) {
+        return lease(route, state, Timeout.DISABLED, null);
+    }
+
+    @Override
+    public void release(final PoolEntry<T, C> entry, final boolean reusable) {
+        if (entry == null) {
+            return;
+        }
+        if (isShutDown.get()) {
+            return;
+        }
+        final PerRoutePool<T, C> routePool = getPool(entry.getRoute());
+        routePool.release(entry, reusable);
+    }
+
+    public void validatePendingRequests() {
+        for (final PerRoutePool<T, C> routePool : routeToPool.values()) {
+            routePool.validatePendingRequests();
+        }
+    }
+
+    /**
+     * Attempts to reserve a connection slot for a new pool entry
+     * within the total max limit. If the limit has been reached
+     * the slot of an available connection of another route gets
+     * reclaimed, if any.
+     */
+    boolean reserveTotal(final PerRoutePool<T, C> requester) {
+        for (;;) {
+            final int allocated = allocatedTotal.get();
+            if (allocated >= maxTotal) {
+                break;
+            }
+            if (allocatedTotal.compareAndSet(allocated, allocated + 1)) {
+                return true;
+            }
+        }
+        for (final PerRoutePool<T, C> routePool : routeToPool.values()) {
+            if (routePool != requester && routePool.reclaimAvailable()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void releaseTotal() {
+        allocatedTotal.decrementAndGet();
+        if (pendingTotal.get() > 0) {
+            processPendingRequests();
+        }
+    }
+
+    void processPendingRequests() {
+        for (final PerRoutePool<T, C> routePool : routeToPool.values()) {
+            if (routePool.hasPending()) {
+                routePool.processPendingRequests();
+            }
+        }
+    }
+
+    int getMax(final T route) {
+        final Integer v = maxPerRoute.get(route);
+        if (v != null) {
+            return v.intValue();
+        }
+        return defaultMaxPerRoute;
+    }
+
+    int getEffectiveMax(final T route) {
+        final int max = getMax(route);
+        final AdaptiveRouteLimiter<T> limiter = routeLimiter;
+        return limiter != null ? limiter.getLimit(route, max) : max;
+    }
+
+    void leased(final T route, final long started, final boolean reused) {
+        final long waitNanos = System.nanoTime() - started;
+        metrics.leased(route, waitNanos, reused);
+        final AdaptiveRouteLimiter<T> limiter = routeLimiter;
+        if (limiter != null) {
+            limiter.leased(route, waitNanos);
+        }
+    }
+
+    void released(final T route, final boolean reusable) {
+        final AdaptiveRouteLimiter<T> limiter = routeLimiter;
+        if (limiter != null) {
+            limiter.released(route, reusable, getMax(route));
+        }
+    }
+
+    /**
+     * Sets an optional adaptive limiter that may reduce the maximum number
+     * of connections per route below the configured maximum.
+     *
+     * @since 5.0
+     */
+    public void setRouteLimiter(final AdaptiveRouteLimiter<T> routeLimiter) {
+        this.routeLimiter = routeLimiter;
+    }
+
+    /**
+     * @since 5.0
+     */
+    public AdaptiveRouteLimiter<T> getRouteLimiter() {
+        return routeLimiter;
+    }
+
+    @Override
+    public void setMaxTotal(final int max) {
+        Args.positive(max, "Max value");
+        maxTotal = max;
+        processPendingRequests();
+    }
+
+    @Override
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    @Override
+    public void setDefaultMaxPerRoute(final int max) {
+        Args.positive(max, "Max value");
+        defaultMaxPerRoute = max;
+        processPendingRequests();
+    }
+
+    @Override
+    public int getDefaultMaxPerRoute() {
+        return defaultMaxPerRoute;
+    }
+
+    @Override
+    public void setMaxPerRoute(final T route, final int max) {
+        Args.notNull(route, "Route");
+        Args.positive(max, "Max value");
+        maxPerRoute.put(route, Integer.valueOf(max));
+        final PerRoutePool<T, C> routePool = routeToPool.get(route);
+        if (routePool != null) {
+            routePool.processPendingRequests();
+        }
+    }
+
+    @Override
+    public int getMaxPerRoute(final T route) {
+        Args.notNull(route, "Route");
+        return getMax(route);
+    }
+
+    @Override
+    public int getEffectiveMaxPerRoute(final T route) {
+        Args.notNull(route, "Route");
+        return getEffectiveMax(route);
+    }
+
+    @Override
+    public void setDefaultMinIdle(final int min) {
+        Args.notNegative(min, "Min value");
+        defaultMinIdle = min;
+    }
+
+    @Override
+    public int getDefaultMinIdle() {
+        return defaultMinIdle;
+    }
+
+    @Override
+    public void setMinIdle(final T route, final int min) {
+        Args.notNull(route, "Route");
+        Args.notNegative(min, "Min value");
+        minIdlePerRoute.put(route, Integer.valueOf(min));
+    }
+
+    @Override
+    public int getMinIdle(final T route) {
+        Args.notNull(route, "Route");
+        final Integer v = minIdlePerRoute.get(route);
+        return v != null ? v.intValue() : defaultMinIdle;
+    }
+
+    @Override
+    public PoolStats getTotalStats() {
+        int leasedTotal = 0;
+        int availableTotal = 0;
+        for (final PerRoutePool<T, C> routePool : routeToPool.values()) {
+            leasedTotal += routePool.getLeasedCount();
+            availableTotal += routePool.getAvailableCount();
+        }
+        return new PoolStats(leasedTotal, pendingTotal.get(), availableTotal, maxTotal);
+    }
+
+    @Override
+    public PoolStats getStats(final T route) {
+        Args.notNull(route, "Route");
+        final PerRoutePool<T, C> routePool = routeToPool.get(route);
+        if (routePool == null) {
+            return new PoolStats(0, 0, 0, getMax(route));
+        }
+        return new PoolStats(
+                routePool.getLeasedCount(),
+                routePool.getPendingCount(),
+                routePool.getAvailableCount(),
+                getMax(route));
+    }
+
+    @Override
+    public Set<T> getRoutes() {
+        return new HashSet<>(routeToPool.keySet());
+    }
+
+    /**
+     * Returns the number of lease requests for the given route that failed
+     * because their request timeout expired while waiting for a connection.
+     */
+    public long getLeaseTimeoutCount(final T route) {
+        Args.notNull(route, "Route");
+        return metrics.getTimeoutCount(route);
+    }
+
+    /**
+     * Returns the total number of lease requests that failed because their
+     * request timeout expired while waiting for a connection.
+     */
+    public long getLeaseTimeoutCount() {
+        return metrics.getTotalTimeoutCount();
+    }
+
+    @Override
+    public PoolMetrics getTotalMetrics() {
+        return metrics.getTotalMetrics();
+    }
+
+    @Override
+    public PoolMetrics getMetrics(final T route) {
+        Args.notNull(route, "Route");
+        return metrics.getMetrics(route);
+    }
+
+    void scheduleExpiry(final PerRoutePool<T, C> routePool, final LeaseRequest<T, C> leaseRequest) {
+        final long deadline = leaseRequest.getDeadline();
+        if (leaseTimer != null && deadline != Long.MAX_VALUE) {
+            leaseRequest.setExpiry(leaseTimer.schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    routePool.expire(leaseRequest);
+                }
+
+            }, deadline + 1));
+        }
+    }
+
+    public void enumAvailable(final Callback<PoolEntry<T, C>> callback) {
+        for (final PerRoutePool<T, C> routePool : routeToPool.values()) {
+            routePool.enumAvailable(callback);
+        }
+    }
+
+    public void enumLeased(final Callback<PoolEntry<T, C>> callback) {
+        for (final PerRoutePool<T, C> routePool : routeToPool.values()) {
+            routePool.enumLeased(callback);
+        }
+    }
+
+    /**
+     * Closes connections that have been idle longer than the given period
+     * of time, while keeping at least {@link #getMinIdle(Object)} idle connections
+     * per route. Available connections of a route are kept in the order they
+     * have been released back to the pool, so only idle connections and
+     * the first connection that is still fresh get examined.
+     */
+    @Override
+    public void closeIdle(final TimeValue idleTime) {
+        final long deadline = System.currentTimeMillis() - (TimeValue.isPositive(idleTime) ? idleTime.toMillis() : 0);
+        for (final PerRoutePool<T, C> routePool : routeToPool.values()) {
+            routePool.closeIdle(deadline, getMinIdle(routePool.getRoute()));
+        }
+    }
+
+    @Override
+    public void closeExpired() {
+        final long now = System.currentTimeMillis();
+        enumAvailable(new Callback<PoolEntry<T, C>>() {
+
+            @Override
+            public void execute(final PoolEntry<T, C> entry) {
+                if (entry.getExpiry() < now) {
+                    entry.discardConnection(ShutdownType.GRACEFUL);
+                    metrics.evicted(entry.getRoute(), 1);
+                }
+            }
+
+        });
+    }
+
+    @Override
+    public String toString() {
+        final PoolStats totalStats = getTotalStats();
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[leased: ");
+        buffer.append(totalStats.getLeased());
+        buffer.append("][available: ");
+        buffer.append(totalStats.getAvailable());
+        buffer.append("][pending: ");
+        buffer.append(totalStats.getPending());
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+    static class LeaseRequest<T, C extends GracefullyCloseable> {
+
+        private final Object state;
+        private final long deadline;
+        private final long started;
+        private final BasicFuture<PoolEntry<T, C>> future;
+        private final AtomicBoolean completed;
+        private final AtomicBoolean dequeued;
+        private volatile Cancellable expiry;
+
+        LeaseRequest(
+                final Object state,
+                final Timeout requestTimeout,
+                final BasicFuture<PoolEntry<T, C>> future) {
+            super();
+            this.state = state;
+            this.deadline = Timeout.calculateDeadline(System.currentTimeMillis(), requestTimeout);
+            this.started = System.nanoTime();
+            this.future = future;
+            this.completed = new AtomicBoolean(false);
+            this.dequeued = new AtomicBoolean(false);
+        }
+
+        BasicFuture<PoolEntry<T, C>> getFuture() {
+            return this.future;
+        }
+
+        public Object getState() {
+            return this.state;
+        }
+
+        public long getDeadline() {
+            return this.deadline;
+        }
+
+        long getStarted() {
+            return this.started;
+        }
+
+        public boolean isDone() {
+            return this.completed.get() || this.future.isDone();
+        }
+
+        /**
+         * @return {@code true} the first time the request stops being counted as pending.
+         */
+        boolean markDequeued() {
+            return this.dequeued.compareAndSet(false, true);
+        }
+
+        public boolean completed(final PoolEntry<T, C> result) {
+            if (this.completed.compareAndSet(false, true)) {
+                cancelExpiry();
+                return this.future.completed(result);
+            }
+            return false;
+        }
+
+        /**
+         * Fails the request with a {@link TimeoutException} unless it has already been
+         * completed or cancelled. The timeout gets counted before the waiter is notified.
+         */
+        boolean timeout(final PoolMetricsRecorder<T> metrics, final T route) {
+            if (this.completed.compareAndSet(false, true)) {
+                cancelExpiry();
+                if (!this.future.isCancelled()) {
+                    metrics.timedOut(route);
+                    return this.future.failed(new TimeoutException());
+                }
+            }
+            return false;
+        }
+
+        void setExpiry(final Cancellable expiry) {
+            this.expiry = expiry;
+        }
+
+        void cancelExpiry() {
+            final Cancellable handle = this.expiry;
+            if (handle != null) {
+                handle.cancel();
+            }
+        }
+
+    }
+
+    static class PerRoutePool<T, C extends GracefullyCloseable> {
+
+        private final T route;
+        private final StripedConnPool<T, C> connPool;
+        private final ConcurrentMap<PoolEntry<T, C>, Boolean> leased;
+        private final Deque<PoolEntry<T, C>> available;
+        // Requests that have expired may remain queued until they reach the head
+        private final Deque<LeaseRequest<T, C>> pending;
+        private final AtomicInteger pendingCount;
+        private final AtomicInteger allocated;
+        private final AtomicBoolean processing;
+        private final AtomicBoolean processingRequested;
+        private final AtomicBoolean terminated;
+
+        PerRoutePool(final T route, final StripedConnPool<T, C> connPool) {
+            super();
+            this.route = route;
+            this.connPool = connPool;
+            this.leased = new ConcurrentHashMap<>();
+            this.available = new ConcurrentLinkedDeque<>();
+            this.pending = new ConcurrentLinkedDeque<>();
+            this.pendingCount = new AtomicInteger(0);
+            this.allocated = new AtomicInteger(0);
+            this.processing = new AtomicBoolean(false);
+            this.processingRequested = new AtomicBoolean(false);
+            this.terminated = new AtomicBoolean(false);
+        }
+
+        public void shutdown(final ShutdownType shutdownType) {
+            if (terminated.compareAndSet(false, true)) {
+                PoolEntry<T, C> availableEntry;
+                while ((availableEntry = available.poll()) != null) {
+                    availableEntry.discardConnection(shutdownType);
+                }
+                for (final PoolEntry<T, C> entry : leased.keySet()) {
+                    entry.discardConnection(shutdownType);
+                }
+                leased.clear();
+                LeaseRequest<T, C> leaseRequest;
+                while ((leaseRequest = pending.poll()) != null) {
+                    dequeued(leaseRequest);
+                    leaseRequest.cancelExpiry();
+                    leaseRequest.getFuture().cancel();
+                }
+            }
+        }
+
+        private void addLeased(final PoolEntry<T, C> entry, final long started) {
+            if (leased.putIfAbsent(entry, Boolean.TRUE) != null) {
+                throw new IllegalStateException("Pool entry already present in the set of leased entries");
+            }
+            connPool.leased(route, started, entry.hasConnection());
+            entry.markAllocated();
+            if (connPool.connPoolListener != null) {
+                connPool.connPoolListener.onLease(route, connPool);
+            }
+        }
+
+        private void removeLeased(final PoolEntry<T, C> entry) {
+            connPool.metrics.released(entry);
+            if (!leased.remove(entry, Boolean.TRUE)) {
+                throw new IllegalStateException("Pool entry is not present in the set of leased entries");
+            }
+            if (connPool.connPoolListener != null) {
+                connPool.connPoolListener.onRelease(route, connPool);
+            }
+        }
+
+        private boolean reserve() {
+            final int max = connPool.getEffectiveMax(route);
+            for (;;) {
+                final int current = allocated.get();
+                if (current >= max) {
+                    return false;
+                }
+                if (allocated.compareAndSet(current, current + 1)) {
+                    if (connPool.reserveTotal(this)) {
+                        return true;
+                    }
+                    allocated.decrementAndGet();
+                    return false;
+                }
+            }
+        }
+
+        private void free() {
+            allocated.decrementAndGet();
+            connPool.releaseTotal();
+        }
+
+        /**
+         * Discards the least recently used available connection and gives up
+         * its slot within the total max limit to another route.
+         */
+        boolean reclaimAvailable() {
+            final PoolEntry<T, C> entry = available.pollLast();
+            if (entry != null) {
+                entry.discardConnection(ShutdownType.GRACEFUL);
+                allocated.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        private PoolEntry<T, C> getAvailableEntry(final Object state) {
+            final PoolEntry<T, C> entry = available.poll();
+            if (entry != null) {
+                if (entry.getExpiry() < System.currentTimeMillis()) {
+                    entry.discardConnection(ShutdownType.GRACEFUL);
+                    connPool.metrics.evicted(route, 1);
+                }
+                if (!LangUtils.equals(entry.getState(), state)) {
+                    entry.discardConnection(ShutdownType.GRACEFUL);
+                }
+            }
+            return entry;
+        }
+
+        private PoolEntry<T, C> acquireEntry(final Object state) {
+            final PoolEntry<T, C> availableEntry = getAvailableEntry(state);
+            if (availableEntry != null) {
+                return availableEntry;
+            }
+            if (reserve()) {
+                return new PoolEntry<>(route, connPool.timeToLive);
+            }
+            return null;
+        }
+
+        public Future<PoolEntry<T, C>> lease(
+                final Object state,
+                final Timeout requestTimeout,
+                final FutureCallback<PoolEntry<T, C>> callback) {
+            Asserts.check(!terminated.get(), "Connection pool shut down");
+            final long started = System.nanoTime();
+            final BasicFuture<PoolEntry<T, C>> future = new BasicFuture<>(callback);
+            final PoolEntry<T, C> entry = pending.isEmpty() ? acquireEntry(state) : null;
+            if (entry != null) {
+                addLeased(entry, started);
+                future.completed(entry);
+            } else {
+                final LeaseRequest<T, C> leaseRequest = new LeaseRequest<>(state, requestTimeout, future);
+                pending.add(leaseRequest);
+                pendingCount.incrementAndGet();
+                connPool.pendingTotal.incrementAndGet();
+                connPool.scheduleExpiry(this, leaseRequest);
+                // Capacity may have been released while the request was being queued
+                processPendingRequests();
+            }
+            return future;
+        }
+
+        public void release(final PoolEntry<T, C> releasedEntry, final boolean reusable) {
+            removeLeased(releasedEntry);
+            connPool.released(route, reusable && releasedEntry.hasConnection());
+            if (!reusable || releasedEntry.getExpiry() < System.currentTimeMillis()) {
+                releasedEntry.discardConnection(ShutdownType.GRACEFUL);
+            }
+            if (releasedEntry.hasConnection()) {
+                releasedEntry.markIdle();
+                switch (connPool.policy) {
+                    case LIFO:
+                        available.addFirst(releasedEntry);
+                        break;
+                    case FIFO:
+                        available.addLast(releasedEntry);
+                        break;
+                    default:
+                        throw new IllegalStateException("Unexpected ConnPoolPolicy value: " + connPool.policy);
+                }
+                if (!pending.isEmpty()) {
+                    processPendingRequests();
+                } else if (connPool.pendingTotal.get() > 0) {
+                    // Other routes may be waiting for the total max limit
+                    connPool.processPendingRequests();
+                }
+            } else {
+                free();
+                if (!pending.isEmpty()) {
+                    processPendingRequests();
+                }
+            }
+        }
+
+        boolean hasPending() {
+            return !pending.isEmpty();
+        }
+
+        /**
+         * Completes pending requests for as long as there is capacity to serve them.
+         * Only one thread at a time processes the request queue. Requests to process
+         * the queue made while another thread is doing so get executed by that thread
+         * before it gives up processing.
+         */
+        void processPendingRequests() {
+            processingRequested.set(true);
+            while (processingRequested.get() && processing.compareAndSet(false, true)) {
+                try {
+                    if (processingRequested.compareAndSet(true, false)) {
+                        completePendingRequests();
+                    }
+                } finally {
+                    processing.set(false);
+                }
+            }
+        }
+
+        private void completePendingRequests() {
+            LeaseRequest<T, C> leaseRequest;
+            while ((leaseRequest = pending.peek()) != null) {
+                if (leaseRequest.isDone()) {
+                    removePending(leaseRequest);
+                    continue;
+                }
+                if (System.currentTimeMillis() > leaseRequest.getDeadline()) {
+                    removePending(leaseRequest);
+                    timeout(leaseRequest);
+                    continue;
+                }
+                final PoolEntry<T, C> entry = acquireEntry(leaseRequest.getState());
+                if (entry == null) {
+                    break;
+                }
+                removePending(leaseRequest);
+                addLeased(entry, leaseRequest.getStarted());
+                if (!leaseRequest.completed(entry)) {
+                    release(entry, true);
+                }
+            }
+        }
+
+        /**
+         * Removes the request at the head of the queue.
+         */
+        private void removePending(final LeaseRequest<T, C> leaseRequest) {
+            if (pending.remove(leaseRequest)) {
+                dequeued(leaseRequest);
+            }
+        }
+
+        private void dequeued(final LeaseRequest<T, C> leaseRequest) {
+            if (leaseRequest.markDequeued()) {
+                pendingCount.decrementAndGet();
+                connPool.pendingTotal.decrementAndGet();
+            }
+        }
+
+        void expire(final LeaseRequest<T, C> leaseRequest) {
+            // The request is left in the queue, which is linear to search, and gets
+            // discarded once it reaches the head. It stops being counted as pending
+            // before the waiter gets notified
+            dequeued(leaseRequest);
+            timeout(leaseRequest);
+        }
+
+        private void timeout(final LeaseRequest<T, C> leaseRequest) {
+            leaseRequest.timeout(connPool.metrics, route);
+        }
+
+        public void validatePendingRequests() {
+            final long now = System.currentTimeMillis();
+            final Iterator<LeaseRequest<T, C>> it = pending.iterator();
+            while (it.hasNext()) {
+                final LeaseRequest<T, C> request = it.next();
+                final BasicFuture<PoolEntry<T, C>> future = request.getFuture();
+                if (now > request.getDeadline()) {
+                    timeout(request);
+                }
+                if (future.isDone()) {
+                    it.remove();
+                    dequeued(request);
+                }
+            }
+        }
+
+        public final T getRoute() {
+            return route;
+        }
+
+        public int getPendingCount() {
+            return pendingCount.get();
+        }
+
+        public int getLeasedCount() {
+            return leased.size();
+        }
+
+        public int getAvailableCount() {
+            return available.size();
+        }
+
+        void closeIdle(final long deadline, final int minIdle) {
+            // The least recently released connection is at the tail with LIFO
+            // and at the head with FIFO
+            final boolean fifo = connPool.policy == PoolReusePolicy.FIFO;
+            // Deque#size() is linear, so the count is taken once and maintained locally
+            int idleCount = minIdle > 0 ? available.size() : 0;
+            boolean freed = false;
+            for (;;) {
+                final PoolEntry<T, C> entry = fifo ? available.peekFirst() : available.peekLast();
+                if (entry == null || entry.getUpdated() > deadline) {
+                    break;
+                }
+                if (minIdle > 0 && idleCount <= minIdle) {
+                    break;
+                }
+                if (fifo ? available.removeFirstOccurrence(entry) : available.removeLastOccurrence(entry)) {
+                    idleCount--;
+                    entry.discardConnection(ShutdownType.GRACEFUL);
+                    connPool.metrics.evicted(route, 1);
+                    allocated.decrementAndGet();
+                    connPool.allocatedTotal.decrementAndGet();
+                    freed = true;
+                }
+            }
+            if (freed && connPool.pendingTotal.get() > 0) {
+                connPool.processPendingRequests();
+            }
+        }
+
+        public void enumAvailable(final Callback<PoolEntry<T, C>> callback) {
+            boolean freed = false;
+            for (final Iterator<PoolEntry<T, C>> it = available.iterator(); it.hasNext(); ) {
+                final PoolEntry<T, C> entry = it.next();
+                callback.execute(entry);
+                if (!entry.hasConnection() && available.removeFirstOccurrence(entry)) {
+                    allocated.decrementAndGet();
+                    connPool.allocatedTotal.decrementAndGet();
+                    freed = true;
+                }
+            }
+            if (freed && connPool.pendingTotal.get() > 0) {
+                connPool.processPendingRequests();
+            }
+        }
+
+        public void enumLeased(final Callback<PoolEntry<T, C>> callback) {
+            for (final PoolEntry<T, C> entry : leased.keySet()) {
+                callback.execute(entry);
+            }
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder buffer = new StringBuilder();
+            buffer.append("[route: ");
+            buffer.append(route);
+            buffer.append("][leased: ");
+            buffer.append(leased.size());
+            buffer.append("][available: ");
+            buffer.append(available.size());
+            buffer.append("][pending: ");
+            buffer.append(pendingCount.get());
+            buffer.append("]");
+            return buffer.toString();
+        }
+
+    }
+
+}
@@ -32,6 +32,7 @@
 import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.nio.channels.spi.SelectorProvider;
 import java.util.Date;
 import java.util.Queue;
 import java.util.Set;
@@ -47,18 +48,29 @@ abstract class AbstractSingleCoreIOReactor implements IOReactor {
     private final AtomicReference<IOReactorStatus> status;
     private final Object shutdownMutex;
 
+    final SelectorProvider selectorProvider;
     final Selector selector;
+    final SelectedKeySet selectedKeySet;
 
-    AbstractSingleCoreIOReactor(final Queue<ExceptionEvent> auditLog) {
+    AbstractSingleCoreIOReactor(final Queue<ExceptionEvent> auditLog, final SelectorProvider selectorProvider) {
+        this(auditLog, selectorProvider, false);
+    }
+
+    AbstractSingleCoreIOReactor(
+            final Queue<ExceptionEvent> auditLog,
+            final SelectorProvider selectorProvider,
+            final boolean selectorOptimized) {
         super();
         this.auditLog = auditLog;
         this.shutdownMutex = new Object();
         this.status = new AtomicReference<>(IOReactorStatus.INACTIVE);
+        this.selectorProvider = selectorProvider != null ? selectorProvider : SelectorProvider.provider();
         try {
-            this.selector = Selector.open();
+            this.selector = this.selectorProvider.openSelector();
         } catch (final IOException ex) {
             throw new IllegalStateException("Unexpected failure opening I/O selector", ex);
         }
+        this.selectedKeySet = selectorOptimized ? SelectedKeySet.install(this.selector) : null;
     }
 
     @Override
@@ -0,0 +1,112 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.core5.reactor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link ByteChannel} that keeps track of the total number of bytes
+ * transferred by the underlying socket channel. Scattering reads and
+ * gathering writes are passed through to the socket channel.
+ *
+ * @since 5.0
+ */
+final class CountingByteChannel implements ByteChannel, ScatteringByteChannel, GatheringByteChannel {
+
+    private final SocketChannel channel;
+    private final AtomicLong byteCount;
+
+    CountingByteChannel(final SocketChannel channel, final AtomicLong byteCount) {
+        super();
+        this.channel = channel;
+        this.byteCount = byteCount;
+    }
+
+    @Override
+    public int read(final ByteBuffer dst) throws IOException {
+        final int bytesRead = channel.read(dst);
+        if (bytesRead > 0) {
+            byteCount.addAndGet(bytesRead);
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public long read(final ByteBuffer[] dsts, final int offset, final int length) throws IOException {
+        final long bytesRead = channel.read(dsts, offset, length);
+        if (bytesRead > 0) {
+            byteCount.addAndGet(bytesRead);
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public long read(final ByteBuffer[] dsts) throws IOException {
+        return read(dsts, 0, dsts.length);
+    }
+
+    @Override
+    public int write(final ByteBuffer src) throws IOException {
+        final int bytesWritten = channel.write(src);
+        if (bytesWritten > 0) {
+            byteCount.addAndGet(bytesWritten);
+        }
+        return bytesWritten;
+    }
+
+    @Override
+    public long write(final ByteBuffer[] srcs, final int offset, final int length) throws IOException {
+        final long bytesWritten = channel.write(srcs, offset, length);
+        if (bytesWritten > 0) {
+            byteCount.addAndGet(bytesWritten);
+        }
+        return bytesWritten;
+    }
+
+    @Override
+    public long write(final ByteBuffer[] srcs) throws IOException {
+        return write(srcs, 0, srcs.length);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
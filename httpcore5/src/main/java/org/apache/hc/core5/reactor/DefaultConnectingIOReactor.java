@@ -36,7 +36,6 @@
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hc.core5.concurrent.DefaultThreadFactory;
 import org.apache.hc.core5.concurrent.FutureCallback;
@@ -62,7 +61,7 @@ public class DefaultConnectingIOReactor implements IOReactorService, ConnectionI
     private final int workerCount;
     private final SingleCoreIOReactor[] dispatchers;
     private final MultiCoreIOReactor ioReactor;
-    private final AtomicInteger currentWorker;
+    private final SessionDispatchStrategy dispatchStrategy;
 
     private final static ThreadFactory THREAD_FACTORY = new DefaultThreadFactory("I/O client dispatch", true);
 
@@ -90,7 +89,8 @@ public DefaultConnectingIOReactor(
             threads[i] = (threadFactory != null ? threadFactory : THREAD_FACTORY).newThread(new IOReactorWorker(dispatcher));
         }
         this.ioReactor = new MultiCoreIOReactor(this.dispatchers, threads);
-        this.currentWorker = new AtomicInteger(0);
+        this.dispatchStrategy = new SessionDispatchStrategy(this.dispatchers,
+                ioReactorConfig != null ? ioReactorConfig.getSessionDispatchPolicy() : null);
     }
 
     public DefaultConnectingIOReactor(
@@ -136,9 +136,8 @@ public Future<IOSession> connect(
         if (getStatus().compareTo(IOReactorStatus.ACTIVE) > 0) {
             throw new IOReactorShutdownException("I/O reactor has been shut down");
         }
-        final int i = Math.abs(currentWorker.incrementAndGet() % workerCount);
         try {
-            return dispatchers[i].connect(remoteEndpoint, remoteAddress, localAddress, timeout, attachment, callback);
+            return dispatchStrategy.next(remoteEndpoint).connect(remoteEndpoint, remoteAddress, localAddress, timeout, attachment, callback);
         } catch (final IOReactorShutdownException ex) {
             initiateShutdown();
             throw ex;
@@ -33,13 +33,20 @@
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.hc.core5.concurrent.BasicFuture;
 import org.apache.hc.core5.concurrent.DefaultThreadFactory;
 import org.apache.hc.core5.concurrent.FutureCallback;
 import org.apache.hc.core5.function.Callback;
@@ -55,6 +62,11 @@
  * I/O session equally across multiple I/O worker threads for a more optimal resource
  * utilization and a better I/O performance. Usually it is recommended to have
  * one worker I/O reactor per physical CPU core.
+ * <p>
+ * If {@link IOReactorConfig#isSoReusePort()} is enabled and supported by the Java runtime
+ * this I/O reactor does not employ a dedicated listener thread. Instead, every I/O worker
+ * binds its own listener socket with the {@code SO_REUSEPORT} socket option and accepts
+ * incoming connections in its own select loop.
  *
  * @since 4.0
  */
@@ -68,7 +80,10 @@ public class DefaultListeningIOReactor implements IOReactorService, ConnectionIn
     private final SingleCoreIOReactor[] dispatchers;
     private final SingleCoreListeningIOReactor listener;
     private final MultiCoreIOReactor ioReactor;
-    private final AtomicInteger currentWorker;
+    private final SessionDispatchStrategy dispatchStrategy;
+    private final ConcurrentMap<ListenerEndpoint, Boolean> endpoints;
+    private final Queue<ListenerEndpointRequest> pausedRequests;
+    private final AtomicBoolean paused;
 
     /**
      * Creates an instance of DefaultListeningIOReactor with the given configuration.
@@ -94,7 +109,10 @@ public DefaultListeningIOReactor(
         this.auditLog = new ConcurrentLinkedDeque<>();
         this.workerCount = ioReactorConfig != null ? ioReactorConfig.getIoThreadCount() : IOReactorConfig.DEFAULT.getIoThreadCount();
         this.dispatchers = new SingleCoreIOReactor[workerCount];
-        final Thread[] threads = new Thread[workerCount + 1];
+        final boolean reusePort = ioReactorConfig != null && ioReactorConfig.isSoReusePort()
+                && SingleCoreIOReactor.isReusePortSupported();
+        final int listenerCount = reusePort ? 0 : 1;
+        final Thread[] threads = new Thread[workerCount + listenerCount];
         for (int i = 0; i < this.dispatchers.length; i++) {
             final SingleCoreIOReactor dispatcher = new SingleCoreIOReactor(
                     auditLog,
@@ -104,23 +122,31 @@ public DefaultListeningIOReactor(
                     sessionListener,
                     sessionShutdownCallback);
             this.dispatchers[i] = dispatcher;
-            threads[i + 1] = (dispatchThreadFactory != null ? dispatchThreadFactory : DISPATCH_THREAD_FACTORY).newThread(new IOReactorWorker(dispatcher));
+            threads[i + listenerCount] = (dispatchThreadFactory != null ? dispatchThreadFactory : DISPATCH_THREAD_FACTORY).newThread(new IOReactorWorker(dispatcher));
         }
-        final IOReactor[] ioReactors = new IOReactor[this.workerCount + 1];
-        System.arraycopy(this.dispatchers, 0, ioReactors, 1, this.workerCount);
-        this.listener = new SingleCoreListeningIOReactor(auditLog, ioReactorConfig, new Callback<SocketChannel>() {
+        final IOReactor[] ioReactors = new IOReactor[this.workerCount + listenerCount];
+        System.arraycopy(this.dispatchers, 0, ioReactors, listenerCount, this.workerCount);
+        if (reusePort) {
+            this.listener = null;
+        } else {
+            this.listener = new SingleCoreListeningIOReactor(auditLog, ioReactorConfig, new Callback<SocketChannel>() {
 
-            @Override
-            public void execute(final SocketChannel channel) {
-                enqueueChannel(channel);
-            }
+                @Override
+                public void execute(final SocketChannel channel) {
+                    enqueueChannel(channel);
+                }
 
-        });
-        ioReactors[0] = this.listener;
-        threads[0] = (listenerThreadFactory != null ? listenerThreadFactory : LISTENER_THREAD_FACTORY).newThread(new IOReactorWorker(listener));
+            });
+            ioReactors[0] = this.listener;
+            threads[0] = (listenerThreadFactory != null ? listenerThreadFactory : LISTENER_THREAD_FACTORY).newThread(new IOReactorWorker(listener));
+        }
 
         this.ioReactor = new MultiCoreIOReactor(ioReactors, threads);
-        this.currentWorker = new AtomicInteger(0);
+        this.endpoints = new ConcurrentHashMap<>();
+        this.pausedRequests = new ConcurrentLinkedQueue<>();
+        this.paused = new AtomicBoolean(false);
+        this.dispatchStrategy = new SessionDispatchStrategy(this.dispatchers,
+                ioReactorConfig != null ? ioReactorConfig.getSessionDispatchPolicy() : null);
     }
 
     /**
@@ -157,26 +183,138 @@ public void start() {
 
     @Override
     public Future<ListenerEndpoint> listen(final SocketAddress address, final FutureCallback<ListenerEndpoint> callback) {
-        return listener.listen(address, callback);
+        if (listener != null) {
+            return listener.listen(address, callback);
+        }
+        if (getStatus().compareTo(IOReactorStatus.SHUTTING_DOWN) >= 0) {
+            throw new IOReactorShutdownException("I/O reactor has been shut down");
+        }
+        final BasicFuture<ListenerEndpoint> future = new BasicFuture<>(callback);
+        if (paused.get()) {
+            pausedRequests.add(new ListenerEndpointRequest(address, future));
+        } else {
+            bind(address, future);
+        }
+        return future;
     }
 
     public Future<ListenerEndpoint> listen(final SocketAddress address) {
         return listen(address, null);
     }
 
+    private void bind(final SocketAddress address, final BasicFuture<ListenerEndpoint> future) {
+        // The first I/O dispatcher resolves the actual address (such as an ephemeral port)
+        // all other I/O dispatchers bind to
+        dispatchers[0].listen(address, new FutureCallback<ListenerEndpoint>() {
+
+            @Override
+            public void completed(final ListenerEndpoint endpoint) {
+                final ListenerEndpointGroup group = new ListenerEndpointGroup(endpoint.getAddress());
+                group.add(endpoint);
+                bind(group, 1, future);
+            }
+
+            @Override
+            public void failed(final Exception ex) {
+                future.failed(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                future.cancel();
+            }
+
+        });
+    }
+
+    private void bind(final ListenerEndpointGroup group, final int i, final BasicFuture<ListenerEndpoint> future) {
+        if (i >= workerCount) {
+            endpoints.put(group, Boolean.TRUE);
+            if (!future.completed(group)) {
+                endpoints.remove(group);
+                group.shutdown(ShutdownType.IMMEDIATE);
+            }
+            return;
+        }
+        try {
+            dispatchers[i].listen(group.getAddress(), new FutureCallback<ListenerEndpoint>() {
+
+                @Override
+                public void completed(final ListenerEndpoint endpoint) {
+                    group.add(endpoint);
+                    bind(group, i + 1, future);
+                }
+
+                @Override
+                public void failed(final Exception ex) {
+                    group.shutdown(ShutdownType.IMMEDIATE);
+                    future.failed(ex);
+                }
+
+                @Override
+                public void cancelled() {
+                    group.shutdown(ShutdownType.IMMEDIATE);
+                    future.cancel();
+                }
+
+            });
+        } catch (final IOReactorShutdownException ex) {
+            group.shutdown(ShutdownType.IMMEDIATE);
+            future.failed(ex);
+        }
+    }
+
     @Override
     public Set<ListenerEndpoint> getEndpoints() {
-        return listener.getEndpoints();
+        if (listener != null) {
+            return listener.getEndpoints();
+        }
+        final Set<ListenerEndpoint> set = new HashSet<>();
+        final Iterator<ListenerEndpoint> it = this.endpoints.keySet().iterator();
+        while (it.hasNext()) {
+            final ListenerEndpoint endpoint = it.next();
+            if (!endpoint.isClosed()) {
+                set.add(endpoint);
+            } else {
+                it.remove();
+            }
+        }
+        return set;
     }
 
     @Override
     public void pause() throws IOException {
-        listener.pause();
+        if (listener != null) {
+            listener.pause();
+            return;
+        }
+        if (paused.compareAndSet(false, true)) {
+            final Iterator<ListenerEndpoint> it = this.endpoints.keySet().iterator();
+            while (it.hasNext()) {
+                final ListenerEndpoint endpoint = it.next();
+                if (!endpoint.isClosed()) {
+                    endpoint.close();
+                    this.pausedRequests.add(new ListenerEndpointRequest(endpoint.getAddress(), null));
+                }
+                it.remove();
+            }
+        }
     }
 
     @Override
     public void resume() throws IOException {
-        listener.resume();
+        if (listener != null) {
+            listener.resume();
+            return;
+        }
+        if (paused.compareAndSet(true, false)) {
+            ListenerEndpointRequest request;
+            while ((request = this.pausedRequests.poll()) != null) {
+                if (!request.isCancelled()) {
+                    bind(request.address, request.future != null ? request.future : new BasicFuture<ListenerEndpoint>(null));
+                }
+            }
+        }
     }
 
     @Override
@@ -190,9 +328,8 @@ public List<ExceptionEvent> getExceptionLog() {
     }
 
     private void enqueueChannel(final SocketChannel socketChannel) {
-        final int i = Math.abs(currentWorker.incrementAndGet() % workerCount);
         try {
-            dispatchers[i].enqueueChannel(socketChannel);
+            dispatchStrategy.next(socketChannel.socket().getInetAddress()).enqueueChannel(socketChannel);
         } catch (final IOReactorShutdownException ex) {
             initiateShutdown();
         }
@@ -210,9 +347,8 @@ public Future<IOSession> connect(
         if (getStatus().compareTo(IOReactorStatus.ACTIVE) > 0) {
             throw new IOReactorShutdownException("I/O reactor has been shut down");
         }
-        final int i = Math.abs(currentWorker.incrementAndGet() % workerCount);
         try {
-            return dispatchers[i].connect(remoteEndpoint, remoteAddress, localAddress, timeout, attachment, callback);
+            return dispatchStrategy.next(remoteEndpoint).connect(remoteEndpoint, remoteAddress, localAddress, timeout, attachment, callback);
         } catch (final IOReactorShutdownException ex) {
             initiateShutdown();
             throw ex;
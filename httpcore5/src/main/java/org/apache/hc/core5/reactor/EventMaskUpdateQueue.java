@@ -0,0 +1,79 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.core5.reactor;
+
+import java.nio.channels.Selector;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Queue of I/O sessions with pending event mask updates. Sessions enqueue themselves
+ * whenever their event mask changes and the I/O reactor thread applies all
+ * accumulated updates to the respective selection keys once per select loop
+ * iteration, thus avoiding contention on the selection key monitor. The selector
+ * is woken up only if an update has been requested by a thread other than
+ * the I/O reactor thread.
+ *
+ * @since 5.0
+ */
+final class EventMaskUpdateQueue {
+
+    private final Selector selector;
+    private final Queue<IOSessionImpl> queue;
+
+    private volatile Thread reactorThread;
+
+    EventMaskUpdateQueue(final Selector selector) {
+        super();
+        this.selector = selector;
+        this.queue = new ConcurrentLinkedQueue<>();
+    }
+
+    void bind(final Thread thread) {
+        this.reactorThread = thread;
+    }
+
+    void enqueue(final IOSessionImpl ioSession) {
+        this.queue.add(ioSession);
+        if (Thread.currentThread() != this.reactorThread) {
+            this.selector.wakeup();
+        }
+    }
+
+    /**
+     * Applies pending event mask updates. Must be called by the I/O reactor thread
+     * prior to each select operation.
+     */
+    void apply() {
+        IOSessionImpl ioSession;
+        while ((ioSession = this.queue.poll()) != null) {
+            ioSession.applyEventMask();
+        }
+    }
+
+}
@@ -27,6 +27,7 @@
 
 package org.apache.hc.core5.reactor;
 
+import java.nio.channels.spi.SelectorProvider;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.hc.core5.annotation.Contract;
@@ -51,35 +52,53 @@ public final class IOReactorConfig {
     private final int ioThreadCount;
     private final Timeout  soTimeout;
     private final boolean soReuseAddress;
+    private final boolean soReusePort;
     private final TimeValue soLinger;
     private final boolean soKeepAlive;
     private final boolean tcpNoDelay;
     private final int sndBufSize;
     private final int rcvBufSize;
     private final int backlogSize;
+    private final TimeoutCheckPolicy timeoutCheckPolicy;
+    private final SessionDispatchPolicy sessionDispatchPolicy;
+    private final SelectorProvider selectorProvider;
+    private final boolean selectorOptimized;
+    private final int tlsRecordSize;
 
     IOReactorConfig(
             final long selectInterval,
             final int ioThreadCount,
             final Timeout soTimeout,
             final boolean soReuseAddress,
+            final boolean soReusePort,
             final TimeValue soLinger,
             final boolean soKeepAlive,
             final boolean tcpNoDelay,
             final int sndBufSize,
             final int rcvBufSize,
-            final int backlogSize) {
+            final int backlogSize,
+            final TimeoutCheckPolicy timeoutCheckPolicy,
+            final SessionDispatchPolicy sessionDispatchPolicy,
+            final SelectorProvider selectorProvider,
+            final boolean selectorOptimized,
+            final int tlsRecordSize) {
         super();
         this.selectInterval = selectInterval;
         this.ioThreadCount = ioThreadCount;
         this.soTimeout = soTimeout;
         this.soReuseAddress = soReuseAddress;
+        this.soReusePort = soReusePort;
         this.soLinger = soLinger;
         this.soKeepAlive = soKeepAlive;
         this.tcpNoDelay = tcpNoDelay;
         this.sndBufSize = sndBufSize;
         this.rcvBufSize = rcvBufSize;
         this.backlogSize = backlogSize;
+        this.timeoutCheckPolicy = timeoutCheckPolicy;
+        this.sessionDispatchPolicy = sessionDispatchPolicy;
+        this.selectorProvider = selectorProvider;
+        this.selectorOptimized = selectorOptimized;
+        this.tlsRecordSize = tlsRecordSize;
     }
 
     /**
@@ -124,6 +143,21 @@ public boolean isSoReuseAddress() {
         return soReuseAddress;
     }
 
+    /**
+     * Determines whether or not listener sockets should be bound with the {@code SO_REUSEPORT}
+     * socket option by each individual I/O dispatcher. If enabled, every I/O dispatcher
+     * accepts incoming connections in its own select loop instead of having a dedicated
+     * listener thread hand them over to I/O dispatchers. This option has effect only if
+     * supported by the Java runtime (Java 9 or newer) and the operating system.
+     * <p>
+     * Default: {@code false}
+     *
+     * @since 5.0
+     */
+    public boolean isSoReusePort() {
+        return soReusePort;
+    }
+
     /**
      * Determines the default value of the {@link java.net.SocketOptions#SO_LINGER} parameter
      * for newly created sockets.
@@ -195,6 +229,76 @@ public int getBacklogSize() {
         return backlogSize;
     }
 
+    /**
+     * Determines the strategy used by I/O reactors to detect timed out I/O sessions.
+     * <p>
+     * Default: {@link TimeoutCheckPolicy#SCAN}
+     *
+     * @since 5.0
+     */
+    public TimeoutCheckPolicy getTimeoutCheckPolicy() {
+        return timeoutCheckPolicy;
+    }
+
+    /**
+     * Determines the policy used by multi-core I/O reactors to assign new I/O sessions
+     * to I/O dispatchers. This policy does not apply to incoming connections accepted
+     * by I/O dispatchers directly (see {@link #isSoReusePort()}).
+     * <p>
+     * Default: {@link SessionDispatchPolicy#ROUND_ROBIN}
+     *
+     * @since 5.0
+     */
+    public SessionDispatchPolicy getSessionDispatchPolicy() {
+        return sessionDispatchPolicy;
+    }
+
+    /**
+     * Determines the transport provider used by I/O reactors to open selectors
+     * and socket channels. This enables an alternative event loop implementation
+     * (such as a native edge-triggered one) to drive I/O sessions.
+     * <p>
+     * Default: {@code null} (the system-wide default provider as returned by
+     * {@link SelectorProvider#provider()}, which can be overridden with
+     * the {@code java.nio.channels.spi.SelectorProvider} system property or
+     * a service provider configuration file on the classpath)
+     *
+     * @since 5.0
+     */
+    public SelectorProvider getSelectorProvider() {
+        return selectorProvider;
+    }
+
+    /**
+     * Determines whether or not I/O reactors should replace the selected key set
+     * of their selector with an array backed one and apply event mask changes
+     * of I/O sessions in batches once per select loop iteration instead of
+     * synchronizing on the selection key for every change. Selected key set
+     * replacement is silently skipped if not permitted by the Java runtime.
+     * <p>
+     * Default: {@code false}
+     *
+     * @since 5.0
+     */
+    public boolean isSelectorOptimized() {
+        return selectorOptimized;
+    }
+
+    /**
+     * Determines the amount of outgoing application data TLS sessions accumulate
+     * before encrypting it as a single TLS record. Records produced by consecutive
+     * small writes are flushed to the socket together. Values greater than
+     * {@code 16384} (the maximum TLS record size) are truncated. {@code 0} disables
+     * coalescing; every application write is then encrypted immediately.
+     * <p>
+     * Default: {@code 0}
+     *
+     * @since 5.0
+     */
+    public int getTlsRecordSize() {
+        return tlsRecordSize;
+    }
+
     public static Builder custom() {
         return new Builder();
     }
@@ -206,12 +310,18 @@ public static Builder copy(final IOReactorConfig config) {
             .setIoThreadCount(config.getIoThreadCount())
             .setSoTimeout(config.getSoTimeout())
             .setSoReuseAddress(config.isSoReuseAddress())
+            .setSoReusePort(config.isSoReusePort())
             .setSoLinger(config.getSoLinger())
             .setSoKeepAlive(config.isSoKeepalive())
             .setTcpNoDelay(config.isTcpNoDelay())
             .setSndBufSize(config.getSndBufSize())
             .setRcvBufSize(config.getRcvBufSize())
-            .setBacklogSize(config.getBacklogSize());
+            .setBacklogSize(config.getBacklogSize())
+            .setTimeoutCheckPolicy(config.getTimeoutCheckPolicy())
+            .setSessionDispatchPolicy(config.getSessionDispatchPolicy())
+            .setSelectorProvider(config.getSelectorProvider())
+            .setSelectorOptimized(config.isSelectorOptimized())
+            .setTlsRecordSize(config.getTlsRecordSize());
     }
 
     public static class Builder {
@@ -220,24 +330,35 @@ public static class Builder {
         private int ioThreadCount;
         private Timeout  soTimeout;
         private boolean soReuseAddress;
+        private boolean soReusePort;
         private TimeValue soLinger;
         private boolean soKeepAlive;
         private boolean tcpNoDelay;
         private int sndBufSize;
         private int rcvBufSize;
         private int backlogSize;
+        private TimeoutCheckPolicy timeoutCheckPolicy;
+        private SessionDispatchPolicy sessionDispatchPolicy;
+        private SelectorProvider selectorProvider;
+        private boolean selectorOptimized;
+        private int tlsRecordSize;
 
         Builder() {
             this.selectInterval = 1000;
             this.ioThreadCount = AVAIL_PROCS;
             this.soTimeout = Timeout.ZERO_MILLISECONDS;
             this.soReuseAddress = false;
+            this.soReusePort = false;
             this.soLinger = TimeValue.NEG_ONE_SECONDS;
             this.soKeepAlive = false;
             this.tcpNoDelay = true;
             this.sndBufSize = 0;
             this.rcvBufSize = 0;
             this.backlogSize = 0;
+            this.timeoutCheckPolicy = TimeoutCheckPolicy.SCAN;
+            this.sessionDispatchPolicy = SessionDispatchPolicy.ROUND_ROBIN;
+            this.selectorOptimized = false;
+            this.tlsRecordSize = 0;
         }
 
         public Builder setSelectInterval(final long selectInterval) {
@@ -265,6 +386,11 @@ public Builder setSoReuseAddress(final boolean soReuseAddress) {
             return this;
         }
 
+        public Builder setSoReusePort(final boolean soReusePort) {
+            this.soReusePort = soReusePort;
+            return this;
+        }
+
         public Builder setSoLinger(final int soLinger, final TimeUnit timeUnit) {
             this.soLinger = TimeValue.of(soLinger, timeUnit);;
             return this;
@@ -300,15 +426,46 @@ public Builder setBacklogSize(final int backlogSize) {
             return this;
         }
 
+        public Builder setTimeoutCheckPolicy(final TimeoutCheckPolicy timeoutCheckPolicy) {
+            this.timeoutCheckPolicy = timeoutCheckPolicy;
+            return this;
+        }
+
+        public Builder setSessionDispatchPolicy(final SessionDispatchPolicy sessionDispatchPolicy) {
+            this.sessionDispatchPolicy = sessionDispatchPolicy;
+            return this;
+        }
+
+        public Builder setSelectorProvider(final SelectorProvider selectorProvider) {
+            this.selectorProvider = selectorProvider;
+            return this;
+        }
+
+        public Builder setSelectorOptimized(final boolean selectorOptimized) {
+            this.selectorOptimized = selectorOptimized;
+            return this;
+        }
+
+        public Builder setTlsRecordSize(final int tlsRecordSize) {
+            this.tlsRecordSize = tlsRecordSize;
+            return this;
+        }
+
         public IOReactorConfig build() {
             return new IOReactorConfig(
                     selectInterval, ioThreadCount,
                     Timeout.defaultsToDisabled(soTimeout),
                     soReuseAddress,
+                    soReusePort,
                     TimeValue.defaultsToNegativeOneMillisecond(soLinger),
                     soKeepAlive,
                     tcpNoDelay,
-                    sndBufSize, rcvBufSize, backlogSize);
+                    sndBufSize, rcvBufSize, backlogSize,
+                    timeoutCheckPolicy != null ? timeoutCheckPolicy : TimeoutCheckPolicy.SCAN,
+                    sessionDispatchPolicy != null ? sessionDispatchPolicy : SessionDispatchPolicy.ROUND_ROBIN,
+                    selectorProvider,
+                    selectorOptimized,
+                    tlsRecordSize);
         }
 
     }
@@ -320,12 +477,18 @@ public String toString() {
                 .append(", ioThreadCount=").append(this.ioThreadCount)
                 .append(", soTimeout=").append(this.soTimeout)
                 .append(", soReuseAddress=").append(this.soReuseAddress)
+                .append(", soReusePort=").append(this.soReusePort)
                 .append(", soLinger=").append(this.soLinger)
                 .append(", soKeepAlive=").append(this.soKeepAlive)
                 .append(", tcpNoDelay=").append(this.tcpNoDelay)
                 .append(", sndBufSize=").append(this.sndBufSize)
                 .append(", rcvBufSize=").append(this.rcvBufSize)
                 .append(", backlogSize=").append(this.backlogSize)
+                .append(", timeoutCheckPolicy=").append(this.timeoutCheckPolicy)
+                .append(", sessionDispatchPolicy=").append(this.sessionDispatchPolicy)
+                .append(", selectorProvider=").append(this.selectorProvider)
+                .append(", selectorOptimized=").append(this.selectorOptimized)
+                .append(", tlsRecordSize=").append(this.tlsRecordSize)
                 .append("]");
         return builder.toString();
     }
@@ -30,10 +30,12 @@
 import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.channels.ByteChannel;
+import java.nio.channels.CancelledKeyException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.util.Deque;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -46,9 +48,13 @@ class IOSessionImpl implements IOSession {
 
     private final SelectionKey key;
     private final SocketChannel channel;
+    private final ByteChannel byteChannel;
     private final String id;
     private final AtomicInteger status;
     private final Deque<Command> commandQueue;
+    private final EventMaskUpdateQueue eventMaskUpdateQueue;
+    private final AtomicInteger eventMask;
+    private final AtomicBoolean eventMaskUpdatePending;
 
     private volatile IOEventHandler eventHandler;
     private volatile int socketTimeout;
@@ -62,13 +68,56 @@ class IOSessionImpl implements IOSession {
      * @since 4.1
      */
     public IOSessionImpl(final SelectionKey key, final SocketChannel socketChannel) {
+        this(key, socketChannel, null);
+    }
+
+    /**
+     * Creates new instance of IOSessionImpl.
+     *
+     * @param key the selection key.
+     * @param socketChannel the socket channel
+     * @param byteCounter the counter of bytes transferred by the session.
+     *   Can be {@code null}.
+     *
+     * @since 5.0
+     */
+    IOSessionImpl(final SelectionKey key, final SocketChannel socketChannel, final AtomicLong byteCounter) {
+        this(key, socketChannel, byteCounter, null);
+    }
+
+    /**
+     * Creates new instance of IOSessionImpl.
+     *
+     * @param key the selection key.
+     * @param socketChannel the socket channel
+     * @param byteCounter the counter of bytes transferred by the session.
+     *   Can be {@code null}.
+     * @param eventMaskUpdateQueue the queue of deferred event mask updates.
+     *   If {@code null} event mask changes get applied to the selection key immediately.
+     *
+     * @since 5.0
+     */
+    IOSessionImpl(
+            final SelectionKey key,
+            final SocketChannel socketChannel,
+            final AtomicLong byteCounter,
+            final EventMaskUpdateQueue eventMaskUpdateQueue) {
         super();
         this.key = Args.notNull(key, "Selection key");
         this.channel = Args.notNull(socketChannel, "Socket channel");
+        this.byteChannel = byteCounter != null ? new CountingByteChannel(socketChannel, byteCounter) : socketChannel;
         this.commandQueue = new ConcurrentLinkedDeque<>();
         this.socketTimeout = 0;
         this.id = String.format("i/o-%08X", COUNT.getAndIncrement());
         this.status = new AtomicInteger(ACTIVE);
+        this.eventMaskUpdateQueue = eventMaskUpdateQueue;
+        if (eventMaskUpdateQueue != null) {
+            this.eventMask = new AtomicInteger(key.interestOps());
+            this.eventMaskUpdatePending = new AtomicBoolean(false);
+        } else {
+            this.eventMask = null;
+            this.eventMaskUpdatePending = null;
+        }
     }
 
     @Override
@@ -105,7 +154,7 @@ public Command getCommand() {
 
     @Override
     public ByteChannel channel() {
-        return this.channel;
+        return this.byteChannel;
     }
 
     @Override
@@ -120,6 +169,9 @@ public SocketAddress getRemoteAddress() {
 
     @Override
     public int getEventMask() {
+        if (this.eventMask != null) {
+            return this.eventMask.get();
+        }
         return this.key.interestOps();
     }
 
@@ -128,6 +180,11 @@ public void setEventMask(final int newValue) {
         if (this.status.get() == CLOSED) {
             return;
         }
+        if (this.eventMask != null) {
+            this.eventMask.set(newValue);
+            requestEventMaskUpdate();
+            return;
+        }
         synchronized (this.key) {
             this.key.interestOps(newValue);
             this.key.selector().wakeup();
@@ -139,6 +196,14 @@ public void setEvent(final int op) {
         if (this.status.get() == CLOSED) {
             return;
         }
+        if (this.eventMask != null) {
+            int current;
+            do {
+                current = this.eventMask.get();
+            } while (!this.eventMask.compareAndSet(current, current | op));
+            requestEventMaskUpdate();
+            return;
+        }
         synchronized (this.key) {
             this.key.interestOps(this.key.interestOps() | op);
             this.key.selector().wakeup();
@@ -150,12 +215,44 @@ public void clearEvent(final int op) {
         if (this.status.get() == CLOSED) {
             return;
         }
+        if (this.eventMask != null) {
+            int current;
+            do {
+                current = this.eventMask.get();
+            } while (!this.eventMask.compareAndSet(current, current & ~op));
+            requestEventMaskUpdate();
+            return;
+        }
         synchronized (this.key) {
             this.key.interestOps(this.key.interestOps() & ~op);
             this.key.selector().wakeup();
         }
     }
 
+    private void requestEventMaskUpdate() {
+        if (this.eventMaskUpdatePending.compareAndSet(false, true)) {
+            this.eventMaskUpdateQueue.enqueue(this);
+        }
+    }
+
+    /**
+     * Applies the current event mask to the selection key. Must be called
+     * by the I/O reactor thread.
+     */
+    void applyEventMask() {
+        this.eventMaskUpdatePending.set(false);
+        if (this.status.get() == CLOSED || !this.key.isValid()) {
+            return;
+        }
+        try {
+            final int ops = this.eventMask.get();
+            if (this.key.interestOps() != ops) {
+                this.key.interestOps(ops);
+            }
+        } catch (final CancelledKeyException ignore) {
+        }
+    }
+
     @Override
     public int getSocketTimeout() {
         return this.socketTimeout;
@@ -164,6 +261,12 @@ public int getSocketTimeout() {
     @Override
     public void setSocketTimeout(final int timeout) {
         this.socketTimeout = timeout;
+        // Let the channel owning the session re-evaluate its timeout. This also covers
+        // timeout changes made by session decorators such as the TLS session
+        final Object attachment = this.key.attachment();
+        if (attachment instanceof InternalChannel) {
+            ((InternalChannel) attachment).timeoutUpdated();
+        }
     }
 
     @Override
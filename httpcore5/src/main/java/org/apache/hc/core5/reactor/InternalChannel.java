@@ -37,8 +37,17 @@ abstract class InternalChannel implements GracefullyCloseable {
 
     private volatile long lastEventTime;
 
+    // Timing wheel bookkeeping, accessed by the I/O reactor thread only
+    volatile TimeoutWheel timeoutWheel;
+    volatile boolean timeoutUpdatePending;
+    InternalChannel wheelPrev;
+    InternalChannel wheelNext;
+    long wheelTick;
+    int wheelSlot;
+
     InternalChannel() {
         this.lastEventTime = System.currentTimeMillis();
+        this.wheelSlot = -1;
     }
 
     abstract void onIOEvent(final int ops) throws IOException;
@@ -49,6 +58,23 @@ abstract class InternalChannel implements GracefullyCloseable {
 
     abstract int getTimeout();
 
+    /**
+     * Determines whether or not the channel is still registered with the I/O reactor
+     * and therefore subject to timeout checks.
+     */
+    abstract boolean isRegistered();
+
+    final long getLastEventTime() {
+        return lastEventTime;
+    }
+
+    final void timeoutUpdated() {
+        final TimeoutWheel wheel = timeoutWheel;
+        if (wheel != null) {
+            wheel.requestUpdate(this);
+        }
+    }
+
     final void handleIOEvent(final int ops) {
         lastEventTime = System.currentTimeMillis();
         try {
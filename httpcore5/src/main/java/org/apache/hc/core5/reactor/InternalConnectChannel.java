@@ -79,6 +79,11 @@ int getTimeout() {
         return sessionRequest.timeout.toMillisIntBound();
     }
 
+    @Override
+    boolean isRegistered() {
+        return key.isValid() && key.attachment() == this;
+    }
+
     @Override
     void onTimeout() throws IOException {
         sessionRequest.failed(new SocketTimeoutException());
@@ -55,6 +55,7 @@ final class InternalDataChannel extends InternalChannel implements TlsCapableIOS
     private final IOSessionListener sessionListener;
     private final AtomicReference<SSLIOSession> tlsSessionRef;
     private final Queue<InternalDataChannel> closedSessions;
+    private final int tlsRecordSize;
     private final AtomicBoolean connected;
     private final AtomicBoolean closed;
 
@@ -62,10 +63,12 @@ final class InternalDataChannel extends InternalChannel implements TlsCapableIOS
             final IOSession ioSession,
             final NamedEndpoint namedEndpoint,
             final IOSessionListener sessionListener,
-            final Queue<InternalDataChannel> closedSessions) {
+            final Queue<InternalDataChannel> closedSessions,
+            final int tlsRecordSize) {
         this.ioSession = ioSession;
         this.namedEndpoint = namedEndpoint;
         this.closedSessions = closedSessions;
+        this.tlsRecordSize = tlsRecordSize;
         this.sessionListener = sessionListener;
         this.tlsSessionRef = new AtomicReference<>(null);
         this.connected = new AtomicBoolean(false);
@@ -166,6 +169,12 @@ int getTimeout() {
         return ioSession.getSocketTimeout();
     }
 
+    @Override
+    boolean isRegistered() {
+        // A closed TLS session may still be exchanging close_notify with the peer
+        return !ioSession.isClosed();
+    }
+
     @Override
     void onTimeout() throws IOException {
         final IOEventHandler handler = getEventHandler();
@@ -208,6 +217,7 @@ public void startTls(
                 namedEndpoint != null ? SSLMode.CLIENT : SSLMode.SERVER,
                 sslContext,
                 sslBufferManagement,
+                tlsRecordSize,
                 initializer,
                 verifier,
                 new Callback<SSLIOSession>() {
@@ -341,6 +351,8 @@ public int getSocketTimeout() {
     @Override
     public void setSocketTimeout(final int timeout) {
         ioSession.setSocketTimeout(timeout);
+        // In case the session is decorated and does not notify the channel itself
+        timeoutUpdated();
     }
 
     @Override
@@ -0,0 +1,100 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.core5.reactor;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.hc.core5.io.ShutdownType;
+
+/**
+ * {@link ListenerEndpoint} that represents a group of listener sockets bound
+ * to the same address by individual I/O dispatchers.
+ *
+ * @since 5.0
+ */
+final class ListenerEndpointGroup implements ListenerEndpoint {
+
+    private final SocketAddress address;
+    private final List<ListenerEndpoint> endpoints;
+
+    ListenerEndpointGroup(final SocketAddress address) {
+        super();
+        this.address = address;
+        this.endpoints = new CopyOnWriteArrayList<>();
+    }
+
+    void add(final ListenerEndpoint endpoint) {
+        this.endpoints.add(endpoint);
+    }
+
+    @Override
+    public SocketAddress getAddress() {
+        return this.address;
+    }
+
+    @Override
+    public boolean isClosed() {
+        for (final ListenerEndpoint endpoint : this.endpoints) {
+            if (!endpoint.isClosed()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException ioException = null;
+        for (final ListenerEndpoint endpoint : this.endpoints) {
+            try {
+                endpoint.close();
+            } catch (final IOException ex) {
+                ioException = ex;
+            }
+        }
+        if (ioException != null) {
+            throw ioException;
+        }
+    }
+
+    @Override
+    public void shutdown(final ShutdownType shutdownType) {
+        for (final ListenerEndpoint endpoint : this.endpoints) {
+            endpoint.shutdown(shutdownType);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "endpoint: " + address + " (" + endpoints.size() + " listeners)";
+    }
+
+}
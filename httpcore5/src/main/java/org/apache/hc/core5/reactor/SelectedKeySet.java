@@ -0,0 +1,160 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.core5.reactor;
+
+import java.lang.reflect.Field;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Array backed set of selected keys that can replace the internal {@link java.util.HashSet}
+ * of the standard {@link Selector} implementation. Keys are appended by the selector
+ * in the course of a select operation and get consumed by the I/O reactor by index
+ * without any per-event allocation.
+ * <p>
+ * This set is not thread-safe and does not enforce uniqueness of its elements.
+ * It is expected to be accessed by the I/O reactor thread only.
+ *
+ * @since 5.0
+ */
+final class SelectedKeySet extends AbstractSet<SelectionKey> {
+
+    private SelectionKey[] keys;
+    private int size;
+
+    SelectedKeySet() {
+        super();
+        this.keys = new SelectionKey[1024];
+    }
+
+    @Override
+    public boolean add(final SelectionKey key) {
+        if (key == null) {
+            return false;
+        }
+        if (this.size == this.keys.length) {
+            this.keys = Arrays.copyOf(this.keys, this.size << 1);
+        }
+        this.keys[this.size++] = key;
+        return true;
+    }
+
+    @Override
+    public boolean remove(final Object o) {
+        return false;
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns selection key at the given index.
+     */
+    SelectionKey get(final int index) {
+        return this.keys[index];
+    }
+
+    /**
+     * Removes all keys from this set releasing references to them.
+     */
+    void reset() {
+        Arrays.fill(this.keys, 0, this.size, null);
+        this.size = 0;
+    }
+
+    @Override
+    public void clear() {
+        reset();
+    }
+
+    @Override
+    public Iterator<SelectionKey> iterator() {
+        return new Iterator<SelectionKey>() {
+
+            private int idx = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.idx < size;
+            }
+
+            @Override
+            public SelectionKey next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return keys[this.idx++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+        };
+    }
+
+    /**
+     * Attempts to install a new instance of this class as the selected key set
+     * of the given selector.
+     *
+     * @return the installed key set or {@code null} if the selector implementation
+     *   does not permit replacing its selected key set.
+     */
+    static SelectedKeySet install(final Selector selector) {
+        try {
+            final Class<?> selectorImplClass = Class.forName("sun.nio.ch.SelectorImpl", false, null);
+            if (!selectorImplClass.isInstance(selector)) {
+                return null;
+            }
+            final Field selectedKeysField = selectorImplClass.getDeclaredField("selectedKeys");
+            final Field publicSelectedKeysField = selectorImplClass.getDeclaredField("publicSelectedKeys");
+            selectedKeysField.setAccessible(true);
+            publicSelectedKeysField.setAccessible(true);
+            final SelectedKeySet selectedKeySet = new SelectedKeySet();
+            selectedKeysField.set(selector, selectedKeySet);
+            publicSelectedKeysField.set(selector, selectedKeySet);
+            return selectedKeySet;
+        } catch (final Exception ex) {
+            // Not supported by the Java runtime or denied by the security manager
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.core5.reactor;
+
+/**
+ * Enumeration of policies used by multi-core I/O reactors to pick the I/O dispatcher
+ * new I/O sessions get assigned to.
+ *
+ * @since 5.0
+ */
+public enum SessionDispatchPolicy {
+
+    /**
+     * I/O sessions are distributed across I/O dispatchers in a round-robin fashion.
+     */
+    ROUND_ROBIN,
+
+    /**
+     * I/O sessions get assigned to the I/O dispatcher with the least number of active
+     * and pending I/O sessions.
+     */
+    LEAST_SESSIONS,
+
+    /**
+     * I/O sessions get assigned to the I/O dispatcher whose I/O sessions transferred
+     * the least number of bytes over the most recent select intervals.
+     */
+    LEAST_TRAFFIC,
+
+    /**
+     * I/O sessions get assigned to the I/O dispatcher selected by the hash code of
+     * the remote endpoint, so that I/O sessions with the same remote endpoint
+     * get handled by the same I/O dispatcher.
+     */
+    REMOTE_ENDPOINT_HASH
+
+}
@@ -0,0 +1,121 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.core5.reactor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.core5.net.NamedEndpoint;
+import org.apache.hc.core5.util.LangUtils;
+
+/**
+ * Picks the I/O dispatcher new I/O sessions get assigned to based on
+ * the given {@link SessionDispatchPolicy}.
+ *
+ * @since 5.0
+ */
+final class SessionDispatchStrategy {
+
+    private final SingleCoreIOReactor[] dispatchers;
+    private final SessionDispatchPolicy policy;
+    private final AtomicInteger currentWorker;
+
+    SessionDispatchStrategy(final SingleCoreIOReactor[] dispatchers, final SessionDispatchPolicy policy) {
+        super();
+        this.dispatchers = dispatchers;
+        this.policy = policy != null ? policy : SessionDispatchPolicy.ROUND_ROBIN;
+        this.currentWorker = new AtomicInteger(0);
+    }
+
+    /**
+     * Picks an I/O dispatcher.
+     *
+     * @param remoteEndpoint the remote endpoint of the new I/O session. Can be {@code null}.
+     */
+    SingleCoreIOReactor next(final Object remoteEndpoint) {
+        final int workerCount = dispatchers.length;
+        final int i = Math.abs(currentWorker.incrementAndGet() % workerCount);
+        switch (policy) {
+            case LEAST_SESSIONS:
+                return leastSessions(i);
+            case LEAST_TRAFFIC:
+                return leastTraffic(i);
+            case REMOTE_ENDPOINT_HASH:
+                if (remoteEndpoint != null) {
+                    return dispatchers[Math.abs(hashCode(remoteEndpoint) % workerCount)];
+                }
+                return dispatchers[i];
+            default:
+                return dispatchers[i];
+        }
+    }
+
+    private static int hashCode(final Object remoteEndpoint) {
+        if (remoteEndpoint instanceof NamedEndpoint) {
+            final NamedEndpoint namedEndpoint = (NamedEndpoint) remoteEndpoint;
+            int hash = LangUtils.HASH_SEED;
+            hash = LangUtils.hashCode(hash, namedEndpoint.getHostName());
+            hash = LangUtils.hashCode(hash, namedEndpoint.getPort());
+            return hash;
+        }
+        return remoteEndpoint.hashCode();
+    }
+
+    private SingleCoreIOReactor leastSessions(final int start) {
+        // Start at the round-robin position in order to spread out I/O sessions
+        // evenly among equally loaded I/O dispatchers
+        SingleCoreIOReactor candidate = dispatchers[start];
+        int min = candidate.getSessionCount();
+        for (int n = 1; n < dispatchers.length && min > 0; n++) {
+            final SingleCoreIOReactor dispatcher = dispatchers[(start + n) % dispatchers.length];
+            final int count = dispatcher.getSessionCount();
+            if (count < min) {
+                candidate = dispatcher;
+                min = count;
+            }
+        }
+        return candidate;
+    }
+
+    private SingleCoreIOReactor leastTraffic(final int start) {
+        SingleCoreIOReactor candidate = dispatchers[start];
+        long min = candidate.getRecentTraffic();
+        int minSessions = candidate.getSessionCount();
+        for (int n = 1; n < dispatchers.length; n++) {
+            final SingleCoreIOReactor dispatcher = dispatchers[(start + n) % dispatchers.length];
+            final long traffic = dispatcher.getRecentTraffic();
+            final int sessions = dispatcher.getSessionCount();
+            if (traffic < min || (traffic == min && sessions < minSessions)) {
+                candidate = dispatcher;
+                min = traffic;
+                minSessions = sessions;
+            }
+        }
+        return candidate;
+    }
+
+}
@@ -29,19 +29,26 @@
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
 import java.net.UnknownHostException;
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.hc.core5.concurrent.BasicFuture;
 import org.apache.hc.core5.concurrent.FutureCallback;
 import org.apache.hc.core5.function.Callback;
 import org.apache.hc.core5.function.Decorator;
@@ -53,6 +60,8 @@
 class SingleCoreIOReactor extends AbstractSingleCoreIOReactor implements ConnectionInitiator {
 
     private static final int MAX_CHANNEL_REQUESTS = 10000;
+    private static final int TIMEOUT_WHEEL_SLOTS = 512;
+    private static final SocketOption<Boolean> SO_REUSEPORT = lookupReusePortOption();
 
     private final IOEventHandlerFactory eventHandlerFactory;
     private final IOReactorConfig reactorConfig;
@@ -62,9 +71,18 @@ class SingleCoreIOReactor extends AbstractSingleCoreIOReactor implements Connect
     private final Queue<InternalDataChannel> closedSessions;
     private final Queue<SocketChannel> channelQueue;
     private final Queue<IOSessionRequest> requestQueue;
+    private final Queue<ListenerEndpointRequest> listenerRequestQueue;
     private final AtomicBoolean shutdownInitiated;
+    private final TimeoutWheel timeoutWheel;
+    private final AtomicInteger sessionCount;
+    private final AtomicInteger pendingCount;
+    private final AtomicLong byteCount;
+    private final EventMaskUpdateQueue eventMaskUpdateQueue;
 
     private volatile long lastTimeoutCheck;
+    private volatile long recentTraffic;
+    private long lastTrafficUpdate;
+    private long lastByteCount;
 
     SingleCoreIOReactor(
             final Queue<ExceptionEvent> auditLog,
@@ -73,9 +91,11 @@ class SingleCoreIOReactor extends AbstractSingleCoreIOReactor implements Connect
             final Decorator<IOSession> ioSessionDecorator,
             final IOSessionListener sessionListener,
             final Callback<IOSession> sessionShutdownCallback) {
-        super(auditLog);
+        super(auditLog,
+                Args.notNull(reactorConfig, "I/O reactor config").getSelectorProvider(),
+                reactorConfig.isSelectorOptimized());
         this.eventHandlerFactory = Args.notNull(eventHandlerFactory, "Event handler factory");
-        this.reactorConfig = Args.notNull(reactorConfig, "I/O reactor config");
+        this.reactorConfig = reactorConfig;
         this.ioSessionDecorator = ioSessionDecorator;
         this.sessionListener = sessionListener;
         this.sessionShutdownCallback = sessionShutdownCallback;
@@ -83,6 +103,17 @@ class SingleCoreIOReactor extends AbstractSingleCoreIOReactor implements Connect
         this.closedSessions = new ConcurrentLinkedQueue<>();
         this.channelQueue = new ConcurrentLinkedQueue<>();
         this.requestQueue = new ConcurrentLinkedQueue<>();
+        this.listenerRequestQueue = new ConcurrentLinkedQueue<>();
+        this.sessionCount = new AtomicInteger(0);
+        this.pendingCount = new AtomicInteger(0);
+        this.byteCount = reactorConfig.getSessionDispatchPolicy() == SessionDispatchPolicy.LEAST_TRAFFIC ? new AtomicLong(0) : null;
+        this.eventMaskUpdateQueue = reactorConfig.isSelectorOptimized() ? new EventMaskUpdateQueue(this.selector) : null;
+        if (reactorConfig.getTimeoutCheckPolicy() == TimeoutCheckPolicy.TIMING_WHEEL) {
+            this.timeoutWheel = new TimeoutWheel(
+                    Math.max(reactorConfig.getSelectInterval(), 1), TIMEOUT_WHEEL_SLOTS, System.currentTimeMillis());
+        } else {
+            this.timeoutWheel = null;
+        }
     }
 
     void enqueueChannel(final SocketChannel socketChannel) throws IOReactorShutdownException {
@@ -90,26 +121,67 @@ void enqueueChannel(final SocketChannel socketChannel) throws IOReactorShutdownE
         if (getStatus().compareTo(IOReactorStatus.ACTIVE) > 0) {
             throw new IOReactorShutdownException("I/O reactor has been shut down");
         }
+        this.pendingCount.incrementAndGet();
         this.channelQueue.add(socketChannel);
         this.selector.wakeup();
     }
 
+    /**
+     * Returns the number of active I/O sessions plus the number of channels and connection
+     * requests pending registration with this I/O reactor.
+     */
+    int getSessionCount() {
+        return this.sessionCount.get() + this.pendingCount.get();
+    }
+
+    /**
+     * Returns an estimate of the number of bytes transferred by I/O sessions of this I/O reactor
+     * per select interval or {@code 0} if traffic is not being tracked.
+     */
+    long getRecentTraffic() {
+        return this.recentTraffic;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Boolean> lookupReusePortOption() {
+        try {
+            return (SocketOption<Boolean>) StandardSocketOptions.class.getField("SO_REUSEPORT").get(null);
+        } catch (final Exception ex) {
+            // Not supported by the Java runtime
+            return null;
+        }
+    }
+
+    static boolean isReusePortSupported() {
+        return SO_REUSEPORT != null;
+    }
+
     @Override
     void doTerminate() {
         closePendingChannels();
         closePendingConnectionRequests();
+        closePendingListenerRequests();
         processClosedSessions();
     }
 
     @Override
     void doExecute() throws IOException {
         final long selectTimeout = this.reactorConfig.getSelectInterval();
+        if (this.eventMaskUpdateQueue != null) {
+            this.eventMaskUpdateQueue.bind(Thread.currentThread());
+        }
         while (!Thread.currentThread().isInterrupted()) {
 
+            // Apply event mask changes made since the last select
+            if (this.eventMaskUpdateQueue != null) {
+                this.eventMaskUpdateQueue.apply();
+            }
+
             final int readyCount = this.selector.select(selectTimeout);
 
             if (getStatus().compareTo(IOReactorStatus.SHUTTING_DOWN) >= 0) {
                 if (this.shutdownInitiated.compareAndSet(false, true)) {
+                    closeListenerChannels();
                     initiateSessionShutdown();
                 }
                 closePendingChannels();
@@ -120,11 +192,17 @@ void doExecute() throws IOException {
 
             // Process selected I/O events
             if (readyCount > 0) {
-                processEvents(this.selector.selectedKeys());
+                if (this.selectedKeySet != null) {
+                    processSelectedKeys(this.selectedKeySet);
+                } else {
+                    processEvents(this.selector.selectedKeys());
+                }
             }
 
             validateActiveChannels();
 
+            updateTraffic();
+
             // Process closed sessions
             processClosedSessions();
 
@@ -132,6 +210,7 @@ void doExecute() throws IOException {
             if (getStatus().compareTo(IOReactorStatus.ACTIVE) == 0) {
                 processPendingChannels();
                 processPendingConnectionRequests();
+                processPendingListenerRequests();
             }
 
             // Exit select loop if graceful shutdown has been completed
@@ -158,6 +237,10 @@ private void initiateSessionShutdown() {
 
     private void validateActiveChannels() {
         final long currentTime = System.currentTimeMillis();
+        if (this.timeoutWheel != null) {
+            this.timeoutWheel.expire(currentTime);
+            return;
+        }
         if( (currentTime - this.lastTimeoutCheck) >= this.reactorConfig.getSelectInterval()) {
             this.lastTimeoutCheck = currentTime;
             for (final SelectionKey key : this.selector.keys()) {
@@ -166,6 +249,20 @@ private void validateActiveChannels() {
         }
     }
 
+    private void updateTraffic() {
+        if (this.byteCount == null) {
+            return;
+        }
+        final long currentTime = System.currentTimeMillis();
+        if ((currentTime - this.lastTrafficUpdate) >= this.reactorConfig.getSelectInterval()) {
+            this.lastTrafficUpdate = currentTime;
+            final long total = this.byteCount.get();
+            // Exponentially weighted moving average of bytes transferred per select interval
+            this.recentTraffic = (this.recentTraffic + (total - this.lastByteCount)) / 2;
+            this.lastByteCount = total;
+        }
+    }
+
     private void processEvents(final Set<SelectionKey> selectedKeys) {
         for (final SelectionKey key : selectedKeys) {
             final InternalChannel channel = (InternalChannel) key.attachment();
@@ -178,37 +275,63 @@ private void processEvents(final Set<SelectionKey> selectedKeys) {
         selectedKeys.clear();
     }
 
+    private void processSelectedKeys(final SelectedKeySet selectedKeySet) {
+        for (int i = 0; i < selectedKeySet.size(); i++) {
+            final SelectionKey key = selectedKeySet.get(i);
+            final InternalChannel channel = (InternalChannel) key.attachment();
+            if (channel == null) {
+                continue;
+            }
+            try {
+                channel.handleIOEvent(key.readyOps());
+            } catch (final CancelledKeyException ex) {
+                channel.shutdown(ShutdownType.GRACEFUL);
+            }
+        }
+        selectedKeySet.reset();
+    }
+
     private void processPendingChannels() throws IOException {
         SocketChannel socketChannel;
         for (int i = 0; i < MAX_CHANNEL_REQUESTS && (socketChannel = this.channelQueue.poll()) != null; i++) {
+            this.pendingCount.decrementAndGet();
+            registerChannel(socketChannel);
+        }
+    }
+
+    private void registerChannel(final SocketChannel socketChannel) throws IOException {
+        try {
+            prepareSocket(socketChannel.socket());
+            socketChannel.configureBlocking(false);
+        } catch (final IOException ex) {
+            addExceptionEvent(ex);
             try {
-                prepareSocket(socketChannel.socket());
-                socketChannel.configureBlocking(false);
-            } catch (final IOException ex) {
-                addExceptionEvent(ex);
-                try {
-                    socketChannel.close();
-                } catch (final IOException ex2) {
-                    addExceptionEvent(ex2);
-                }
-                throw ex;
-            }
-            final SelectionKey key;
-            try {
-                key = socketChannel.register(this.selector, SelectionKey.OP_READ);
-            } catch (final ClosedChannelException ex) {
-                return;
-            }
-            IOSession ioSession = new IOSessionImpl(key, socketChannel);
-            if (ioSessionDecorator != null) {
-                ioSession = ioSessionDecorator.decorate(ioSession);
+                socketChannel.close();
+            } catch (final IOException ex2) {
+                addExceptionEvent(ex2);
             }
-            final InternalDataChannel dataChannel = new InternalDataChannel(ioSession, null, sessionListener, closedSessions);
-            dataChannel.setHandler(this.eventHandlerFactory.createHandler(dataChannel, null));
-            dataChannel.setSocketTimeout(this.reactorConfig.getSoTimeout().toMillisIntBound());
-            key.attach(dataChannel);
-            dataChannel.handleIOEvent(SelectionKey.OP_CONNECT);
+            throw ex;
+        }
+        final SelectionKey key;
+        try {
+            key = socketChannel.register(this.selector, SelectionKey.OP_READ);
+        } catch (final ClosedChannelException ex) {
+            return;
         }
+        IOSession ioSession = new IOSessionImpl(key, socketChannel, this.byteCount, this.eventMaskUpdateQueue);
+        if (ioSessionDecorator != null) {
+            ioSession = ioSessionDecorator.decorate(ioSession);
+        }
+        final InternalDataChannel dataChannel = new InternalDataChannel(
+                ioSession, null, sessionListener, closedSessions, reactorConfig.getTlsRecordSize());
+        this.sessionCount.incrementAndGet();
+        dataChannel.setHandler(this.eventHandlerFactory.createHandler(dataChannel, null));
+        dataChannel.setSocketTimeout(this.reactorConfig.getSoTimeout().toMillisIntBound());
+        key.attach(dataChannel);
+        if (this.timeoutWheel != null) {
+            this.timeoutWheel.schedule(dataChannel);
+        }
+        dataChannel.handleIOEvent(SelectionKey.OP_CONNECT);
     }
 
     private void processClosedSessions() {
@@ -217,6 +340,12 @@ private void processClosedSessions() {
             if (dataChannel == null) {
                 break;
             }
+            this.sessionCount.decrementAndGet();
+            if (this.timeoutWheel != null && !dataChannel.isRegistered()) {
+                // Otherwise the channel remains subject to timeout checks until
+                // the session gets terminated and is dropped by the wheel then
+                this.timeoutWheel.remove(dataChannel);
+            }
             try {
                 dataChannel.disconnected();
             } catch (final CancelledKeyException ex) {
@@ -249,6 +378,7 @@ public Future<IOSession> connect(
                 attachment,
                 callback);
 
+        this.pendingCount.incrementAndGet();
         this.requestQueue.add(sessionRequest);
         this.selector.wakeup();
 
@@ -282,10 +412,11 @@ private void validateAddress(final SocketAddress address) throws UnknownHostExce
     private void processPendingConnectionRequests() {
         IOSessionRequest sessionRequest;
         for (int i = 0; i < MAX_CHANNEL_REQUESTS && (sessionRequest = this.requestQueue.poll()) != null; i++) {
+            this.pendingCount.decrementAndGet();
             if (!sessionRequest.isCancelled()) {
                 final SocketChannel socketChannel;
                 try {
-                    socketChannel = SocketChannel.open();
+                    socketChannel = this.selectorProvider.openSocketChannel();
                 } catch (final IOException ex) {
                     sessionRequest.failed(ex);
                     return;
@@ -325,13 +456,18 @@ public InternalDataChannel create(
                     final SocketChannel socketChannel,
                     final NamedEndpoint namedEndpoint,
                     final Object attachment) {
-                IOSession ioSession = new IOSessionImpl(key, socketChannel);
+                IOSession ioSession = new IOSessionImpl(key, socketChannel, byteCount, eventMaskUpdateQueue);
                 if (ioSessionDecorator != null) {
                     ioSession = ioSessionDecorator.decorate(ioSession);
                 }
-                final InternalDataChannel dataChannel = new InternalDataChannel(ioSession, namedEndpoint, sessionListener, closedSessions);
+                final InternalDataChannel dataChannel = new InternalDataChannel(
+                        ioSession, namedEndpoint, sessionListener, closedSessions, reactorConfig.getTlsRecordSize());
+                sessionCount.incrementAndGet();
                 dataChannel.setHandler(eventHandlerFactory.createHandler(dataChannel, attachment));
                 dataChannel.setSocketTimeout(reactorConfig.getSoTimeout().toMillisIntBound());
+                if (timeoutWheel != null) {
+                    timeoutWheel.schedule(dataChannel);
+                }
                 return dataChannel;
             }
 
@@ -341,12 +477,96 @@ public InternalDataChannel create(
         } else {
             key.attach(channel);
             sessionRequest.assign(channel);
+            if (this.timeoutWheel != null) {
+                this.timeoutWheel.schedule(channel);
+            }
+        }
+    }
+
+    /**
+     * Binds a listener socket with {@code SO_REUSEPORT} socket option to the given address.
+     * Incoming connections get accepted directly by this I/O reactor.
+     */
+    Future<ListenerEndpoint> listen(final SocketAddress address, final FutureCallback<ListenerEndpoint> callback) {
+        if (getStatus().compareTo(IOReactorStatus.SHUTTING_DOWN) >= 0) {
+            throw new IOReactorShutdownException("I/O reactor has been shut down");
+        }
+        final BasicFuture<ListenerEndpoint> future = new BasicFuture<>(callback);
+        this.listenerRequestQueue.add(new ListenerEndpointRequest(address, future));
+        this.selector.wakeup();
+        return future;
+    }
+
+    private void processPendingListenerRequests() {
+        ListenerEndpointRequest request;
+        while ((request = this.listenerRequestQueue.poll()) != null) {
+            if (request.isCancelled()) {
+                continue;
+            }
+            final ServerSocketChannel serverChannel;
+            try {
+                serverChannel = this.selectorProvider.openServerSocketChannel();
+            } catch (final IOException ex) {
+                request.failed(ex);
+                continue;
+            }
+            try {
+                if (SO_REUSEPORT == null || !serverChannel.supportedOptions().contains(SO_REUSEPORT)) {
+                    throw new IOException("SO_REUSEPORT socket option is not supported");
+                }
+                serverChannel.setOption(SO_REUSEPORT, Boolean.TRUE);
+                final ServerSocket socket = serverChannel.socket();
+                socket.setReuseAddress(this.reactorConfig.isSoReuseAddress());
+                if (this.reactorConfig.getRcvBufSize() > 0) {
+                    socket.setReceiveBufferSize(this.reactorConfig.getRcvBufSize());
+                }
+                serverChannel.configureBlocking(false);
+                socket.bind(request.address, this.reactorConfig.getBacklogSize());
+
+                final SelectionKey key = serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+                key.attach(new InternalListenerChannel(key, serverChannel, new Callback<SocketChannel>() {
+
+                    @Override
+                    public void execute(final SocketChannel socketChannel) {
+                        try {
+                            registerChannel(socketChannel);
+                        } catch (final IOException ex) {
+                            // Already logged, the socket has been closed
+                        }
+                    }
+
+                }));
+                request.completed(new ListenerEndpointImpl(key, socket.getLocalSocketAddress()));
+            } catch (final IOException ex) {
+                try {
+                    serverChannel.close();
+                } catch (final IOException ignore) {
+                }
+                request.failed(ex);
+            }
+        }
+    }
+
+    private void closeListenerChannels() {
+        for (final SelectionKey key : this.selector.keys()) {
+            final Object attachment = key.attachment();
+            if (attachment instanceof InternalListenerChannel) {
+                ((InternalListenerChannel) attachment).shutdown(ShutdownType.IMMEDIATE);
+            }
+        }
+    }
+
+    private void closePendingListenerRequests() {
+        ListenerEndpointRequest request;
+        while ((request = this.listenerRequestQueue.poll()) != null) {
+            request.cancel();
         }
     }
 
     private void closePendingChannels() {
         SocketChannel socketChannel;
         while ((socketChannel = this.channelQueue.poll()) != null) {
+            this.pendingCount.decrementAndGet();
             try {
                 socketChannel.close();
             } catch (final IOException ex) {
@@ -358,6 +578,7 @@ private void closePendingChannels() {
     private void closePendingConnectionRequests() {
         IOSessionRequest sessionRequest;
         while ((sessionRequest = this.requestQueue.poll()) != null) {
+            this.pendingCount.decrementAndGet();
             sessionRequest.cancel();
         }
     }
@@ -61,7 +61,7 @@ class SingleCoreListeningIOReactor extends AbstractSingleCoreIOReactor implement
             final Queue<ExceptionEvent> auditLog,
             final IOReactorConfig ioReactorConfig,
             final Callback<SocketChannel> callback) {
-        super(auditLog);
+        super(auditLog, ioReactorConfig != null ? ioReactorConfig.getSelectorProvider() : null);
         this.reactorConfig = ioReactorConfig != null ? ioReactorConfig : IOReactorConfig.DEFAULT;
         this.callback = callback;
         this.requestQueue = new ConcurrentLinkedQueue<>();
@@ -151,7 +151,7 @@ private void processSessionRequests() throws IOException {
                 continue;
             }
             final SocketAddress address = request.address;
-            final ServerSocketChannel serverChannel = ServerSocketChannel.open();
+            final ServerSocketChannel serverChannel = this.selectorProvider.openServerSocketChannel();
             try {
                 final ServerSocket socket = serverChannel.socket();
                 socket.setReuseAddress(this.reactorConfig.isSoReuseAddress());
@@ -0,0 +1,218 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.core5.reactor;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Hashed timing wheel used to keep track of {@link InternalChannel} timeouts.
+ * <p>
+ * Channels are re-armed lazily: I/O activity only updates the last event time
+ * of the channel and its position in the wheel gets corrected once its slot
+ * comes due. This makes the cost of timeout processing proportional to
+ * the number of channels whose slot expired rather than to the total number
+ * of channels.
+ * <p>
+ * Instances of this class are expected to be accessed by the I/O reactor
+ * thread only with the exception of {@link #requestUpdate(InternalChannel)}
+ * that can be called by any thread.
+ *
+ * @since 5.0
+ */
+final class TimeoutWheel {
+
+    private final long tickDuration;
+    private final InternalChannel[] slots;
+    private final int mask;
+    private final Queue<InternalChannel> updateQueue;
+
+    private long currentTick;
+    private int size;
+
+    TimeoutWheel(final long tickDuration, final int slotCount, final long currentTime) {
+        Args.positive(tickDuration, "Tick duration");
+        Args.positive(slotCount, "Slot count");
+        this.tickDuration = tickDuration;
+        int n = 1;
+        while (n < slotCount) {
+            n <<= 1;
+        }
+        this.slots = new InternalChannel[n];
+        this.mask = n - 1;
+        this.updateQueue = new ConcurrentLinkedQueue<>();
+        this.currentTick = currentTime / tickDuration;
+    }
+
+    /**
+     * Starts tracking the given channel. Channels with no timeout get associated
+     * with the wheel but do not occupy a slot until their timeout gets updated.
+     */
+    void schedule(final InternalChannel channel) {
+        channel.timeoutWheel = this;
+        rearm(channel, currentTick);
+    }
+
+    /**
+     * Stops tracking the given channel.
+     */
+    void remove(final InternalChannel channel) {
+        unlink(channel);
+        channel.timeoutWheel = null;
+    }
+
+    /**
+     * Requests the timeout of the given channel to be re-evaluated. This method
+     * can be executed by any thread.
+     */
+    void requestUpdate(final InternalChannel channel) {
+        if (!channel.timeoutUpdatePending) {
+            channel.timeoutUpdatePending = true;
+            updateQueue.add(channel);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Advances the wheel to the given time, checking timeouts of all channels
+     * whose slots have come due.
+     */
+    void expire(final long currentTime) {
+        processUpdates();
+        final long targetTick = currentTime / tickDuration;
+        if (targetTick <= currentTick) {
+            return;
+        }
+        final long startTick = targetTick - currentTick > slots.length ? targetTick - slots.length : currentTick;
+        for (long tick = startTick + 1; tick <= targetTick; tick++) {
+            final int idx = (int) (tick & mask);
+            InternalChannel channel = slots[idx];
+            slots[idx] = null;
+            while (channel != null) {
+                final InternalChannel next = channel.wheelNext;
+                channel.wheelPrev = null;
+                channel.wheelNext = null;
+                channel.wheelSlot = -1;
+                size--;
+                if (channel.wheelTick > targetTick) {
+                    // Due in one of the subsequent rounds
+                    link(channel, idx);
+                } else {
+                    checkTimeout(channel, currentTime, targetTick);
+                }
+                channel = next;
+            }
+        }
+        currentTick = targetTick;
+    }
+
+    private void checkTimeout(final InternalChannel channel, final long currentTime, final long tick) {
+        if (!channel.isRegistered()) {
+            channel.timeoutWheel = null;
+            return;
+        }
+        final int timeout = channel.getTimeout();
+        if (timeout <= 0) {
+            return;
+        }
+        if (currentTime > channel.getLastEventTime() + timeout) {
+            channel.checkTimeout(currentTime);
+            if (channel.isRegistered()) {
+                // Keep checking the channel at each tick as long as it stays timed out
+                linkAt(channel, tick + 1);
+            }
+        } else {
+            rearm(channel, tick);
+        }
+    }
+
+    private void processUpdates() {
+        InternalChannel channel;
+        while ((channel = updateQueue.poll()) != null) {
+            channel.timeoutUpdatePending = false;
+            if (channel.timeoutWheel == this) {
+                rearm(channel, currentTick);
+            }
+        }
+    }
+
+    private void rearm(final InternalChannel channel, final long tick) {
+        unlink(channel);
+        final int timeout = channel.getTimeout();
+        if (timeout > 0) {
+            final long deadline = channel.getLastEventTime() + timeout;
+            // Timeout gets triggered once the current time is past the deadline
+            final long deadlineTick = deadline / tickDuration + 1;
+            linkAt(channel, Math.max(deadlineTick, tick + 1));
+        }
+    }
+
+    private void linkAt(final InternalChannel channel, final long tick) {
+        channel.wheelTick = tick;
+        link(channel, (int) (tick & mask));
+    }
+
+    private void link(final InternalChannel channel, final int idx) {
+        final InternalChannel head = slots[idx];
+        channel.wheelSlot = idx;
+        channel.wheelPrev = null;
+        channel.wheelNext = head;
+        if (head != null) {
+            head.wheelPrev = channel;
+        }
+        slots[idx] = channel;
+        size++;
+    }
+
+    private void unlink(final InternalChannel channel) {
+        final int idx = channel.wheelSlot;
+        if (idx < 0) {
+            return;
+        }
+        final InternalChannel prev = channel.wheelPrev;
+        final InternalChannel next = channel.wheelNext;
+        if (prev != null) {
+            prev.wheelNext = next;
+        } else {
+            slots[idx] = next;
+        }
+        if (next != null) {
+            next.wheelPrev = prev;
+        }
+        channel.wheelPrev = null;
+        channel.wheelNext = null;
+        channel.wheelSlot = -1;
+        size--;
+    }
+
+}
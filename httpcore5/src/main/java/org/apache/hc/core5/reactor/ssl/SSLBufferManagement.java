@@ -30,6 +30,8 @@
 import java.nio.ByteBuffer;
 
 import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.ByteBufferAllocator;
+import org.apache.hc.core5.util.PooledByteBufferAllocator;
 
 /**
  * @since 5.0
@@ -39,6 +41,31 @@ public abstract class SSLBufferManagement {
     public static final SSLBufferManagement STATIC = new StaticSSLBufferManagement();
     public static final SSLBufferManagement DYNAMIC = new DynamicSSLBufferManagement();
 
+    /**
+     * Maximum size of buffers recycled by {@link #POOLED}.
+     */
+    static final int MAX_POOLED_BUFFER_SIZE = 65536;
+
+    /**
+     * Buffers are borrowed from a shared pool of direct buffers when acquired and
+     * returned to the pool when released. The pool keeps a small cache of idle buffers
+     * per thread (and therefore per I/O reactor) and a bounded number of shared idle
+     * buffers.
+     */
+    public static final SSLBufferManagement POOLED = new PooledSSLBufferManagement(
+            new PooledByteBufferAllocator(MAX_POOLED_BUFFER_SIZE, 256, 16, null));
+
+    /**
+     * Creates buffer management that borrows buffers from the given allocator when
+     * acquired and returns them when released.
+     *
+     * @param allocator the buffer allocator.
+     * @since 5.0
+     */
+    public static SSLBufferManagement pooled(final ByteBufferAllocator allocator) {
+        return new PooledSSLBufferManagement(Args.notNull(allocator, "Buffer allocator"));
+    }
+
     public abstract SSLBuffer create(int size);
 
     static SSLBuffer create(final SSLBufferManagement mode, final int size) {
@@ -133,4 +160,61 @@ public boolean hasData() {
 
     }
 
+    private static final class PooledSSLBufferManagement extends SSLBufferManagement {
+
+        private final ByteBufferAllocator allocator;
+
+        PooledSSLBufferManagement(final ByteBufferAllocator allocator) {
+            this.allocator = allocator;
+        }
+
+        @Override
+        public SSLBuffer create(final int size) {
+            return new PooledBuffer(allocator, size);
+        }
+
+    }
+
+    private static final class PooledBuffer implements SSLBuffer {
+
+        private final ByteBufferAllocator allocator;
+        private final int length;
+        private ByteBuffer wrapped;
+
+        public PooledBuffer(final ByteBufferAllocator allocator, final int size) {
+            Args.positive(size, "size");
+            this.allocator = allocator;
+            this.length = size;
+        }
+
+        @Override
+        public ByteBuffer acquire() {
+            if (wrapped != null) {
+                return wrapped;
+            }
+            wrapped = allocator.allocate(length);
+            return wrapped;
+        }
+
+        @Override
+        public void release() {
+            if (wrapped != null) {
+                final ByteBuffer buffer = wrapped;
+                wrapped = null;
+                allocator.release(buffer);
+            }
+        }
+
+        @Override
+        public boolean isAcquired() {
+            return wrapped != null;
+        }
+
+        @Override
+        public boolean hasData() {
+            return wrapped != null && wrapped.position() > 0;
+        }
+
+    }
+
 }
@@ -34,6 +34,9 @@
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
@@ -68,24 +71,39 @@ public class SSLIOSession implements IOSession {
 
     private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
 
+    /**
+     * Maximum amount of application data per TLS record.
+     */
+    static final int MAX_RECORD_SIZE = 16384;
+
+    /**
+     * Number of coalesced TLS records the outbound network buffer can hold.
+     * The buffer is capped at the maximum size of pooled buffers so that it
+     * can be recycled, in which case it may hold fewer records.
+     */
+    private static final int COALESCED_RECORDS = 4;
+
     private final NamedEndpoint targetEndpoint;
     private final IOSession session;
     private final SSLEngine sslEngine;
     private final SSLBuffer inEncrypted;
     private final SSLBuffer outEncrypted;
     private final SSLBuffer inPlain;
+    private final SSLBuffer outPlain;
     private final ByteChannel channel;
     private final SSLSessionInitializer initializer;
     private final SSLSessionVerifier verifier;
     private final Callback<SSLIOSession> callback;
 
-    private int appEventMask;
+    private final ReentrantLock engineLock;
+    private final AtomicInteger appEventMask;
+    private final AtomicBoolean eventMaskUpdatePending;
 
-    private boolean endOfStream;
+    private volatile boolean endOfStream;
     private volatile SSLMode sslMode;
     private volatile int status;
     private volatile boolean initialized;
-    private TlsDetails tlsDetails;
+    private volatile TlsDetails tlsDetails;
 
     /**
      * Creates new instance of {@code SSLIOSession} class with static SSL buffers.
@@ -132,9 +150,41 @@ public SSLIOSession(
             final SSLSessionInitializer initializer,
             final SSLSessionVerifier verifier,
             final Callback<SSLIOSession> callback) {
+        this(targetEndpoint, session, sslMode, sslContext, sslBufferManagement, 0, initializer, verifier, callback);
+    }
+
+    /**
+     * Creates new instance of {@code SSLIOSession} class that optionally accumulates
+     * outgoing application data up to the given record size before encrypting it.
+     * Several records encrypted this way are flushed to the underlying session
+     * with a single write.
+     *
+     * @param session I/O session to be decorated with the TLS/SSL capabilities.
+     * @param sslMode SSL mode (client or server)
+     * @param targetEndpoint target endpoint (applicable in client mode only). May be {@code null}.
+     * @param sslContext SSL context to use for this I/O session.
+     * @param sslBufferManagement buffer management mode
+     * @param tlsRecordSize amount of application data to accumulate per TLS record.
+     *   Values greater than {@code 16384} are truncated. {@code 0} disables coalescing.
+     * @param initializer optional SSL session initializer. May be {@code null}.
+     * @param verifier optional SSL session verifier. May be {@code null}.
+     *
+     * @since 5.0
+     */
+    public SSLIOSession(
+            final NamedEndpoint targetEndpoint,
+            final IOSession session,
+            final SSLMode sslMode,
+            final SSLContext sslContext,
+            final SSLBufferManagement sslBufferManagement,
+            final int tlsRecordSize,
+            final SSLSessionInitializer initializer,
+            final SSLSessionVerifier verifier,
+            final Callback<SSLIOSession> callback) {
         super();
         Args.notNull(session, "IO session");
         Args.notNull(sslContext, "SSL context");
+        Args.notNegative(tlsRecordSize, "TLS record size");
         this.targetEndpoint = targetEndpoint;
         this.session = session;
         this.sslMode = sslMode;
@@ -142,7 +192,9 @@ public SSLIOSession(
         this.verifier = verifier;
         this.callback = callback;
 
-        this.appEventMask = session.getEventMask();
+        this.engineLock = new ReentrantLock();
+        this.appEventMask = new AtomicInteger(session.getEventMask());
+        this.eventMaskUpdatePending = new AtomicBoolean(false);
         if (this.sslMode == SSLMode.CLIENT && targetEndpoint != null) {
             this.sslEngine = sslContext.createSSLEngine(targetEndpoint.getHostName(), targetEndpoint.getPort());
         } else {
@@ -153,11 +205,15 @@ public SSLIOSession(
         // Allocate buffers for network (encrypted) data
         final int netBufferSize = sslSession.getPacketBufferSize();
         this.inEncrypted = SSLBufferManagement.create(sslBufferManagement, netBufferSize);
-        this.outEncrypted = SSLBufferManagement.create(sslBufferManagement, netBufferSize);
+        this.outEncrypted = SSLBufferManagement.create(sslBufferManagement,
+                tlsRecordSize > 0 ? Math.max(netBufferSize, Math.min(
+                        netBufferSize * COALESCED_RECORDS, SSLBufferManagement.MAX_POOLED_BUFFER_SIZE)) : netBufferSize);
 
         // Allocate buffers for application (unencrypted) data
         final int appBufferSize = sslSession.getApplicationBufferSize();
         this.inPlain = SSLBufferManagement.create(sslBufferManagement, appBufferSize);
+        this.outPlain = tlsRecordSize > 0 ? SSLBufferManagement.create(sslBufferManagement,
+                Math.min(tlsRecordSize, MAX_RECORD_SIZE)) : null;
         this.channel = new ByteChannel() {
 
             @Override
@@ -204,33 +260,75 @@ public boolean isInitialized() {
      * @throws SSLException in case of a SSL protocol exception.
      * @throws IllegalStateException if the session has already been initialized.
      */
-    public synchronized void initialize() throws SSLException {
-        Asserts.check(!this.initialized, "SSL I/O session already initialized");
-        if (this.status >= IOSession.CLOSING) {
-            return;
-        }
-        switch (this.sslMode) {
-        case CLIENT:
-            this.sslEngine.setUseClientMode(true);
-            break;
-        case SERVER:
-            this.sslEngine.setUseClientMode(false);
-            break;
+    public void initialize() throws SSLException {
+        lockEngine();
+        try {
+            Asserts.check(!this.initialized, "SSL I/O session already initialized");
+            if (this.status >= IOSession.CLOSING) {
+                return;
+            }
+            switch (this.sslMode) {
+            case CLIENT:
+                this.sslEngine.setUseClientMode(true);
+                break;
+            case SERVER:
+                this.sslEngine.setUseClientMode(false);
+                break;
+            }
+            if (this.initializer != null) {
+                this.initializer.initialize(this.targetEndpoint, this.sslEngine);
+            }
+            this.initialized = true;
+            this.sslEngine.beginHandshake();
+
+            this.inEncrypted.release();
+            this.outEncrypted.release();
+            this.inPlain.release();
+            if (this.outPlain != null) {
+                this.outPlain.release();
+            }
+            doHandshake();
+        } finally {
+            unlockEngine();
         }
-        if (this.initializer != null) {
-            this.initializer.initialize(this.targetEndpoint, this.sslEngine);
+    }
+
+    public TlsDetails getTlsDetails() {
+        return tlsDetails;
+    }
+
+    // Only SSLEngine operations and the SSL buffers they operate upon are guarded
+    // by the engine lock. Command queue and application event mask operations
+    // never block on it: they record the new mask and request an event mask update,
+    // which is either applied immediately if the lock is free or by the current
+    // lock holder upon unlocking the engine.
+
+    private void lockEngine() {
+        this.engineLock.lock();
+    }
+
+    private void unlockEngine() {
+        this.engineLock.unlock();
+        if (!this.engineLock.isHeldByCurrentThread()) {
+            processPendingEventMaskUpdate();
         }
-        this.initialized = true;
-        this.sslEngine.beginHandshake();
+    }
 
-        this.inEncrypted.release();
-        this.outEncrypted.release();
-        this.inPlain.release();
-        doHandshake();
+    private void requestEventMaskUpdate() {
+        this.eventMaskUpdatePending.set(true);
+        processPendingEventMaskUpdate();
     }
 
-    public synchronized TlsDetails getTlsDetails() {
-        return tlsDetails;
+    private void processPendingEventMaskUpdate() {
+        while (this.eventMaskUpdatePending.get() && this.engineLock.tryLock()) {
+            try {
+                if (this.eventMaskUpdatePending.compareAndSet(true, false)) {
+                    updateEventMask();
+                }
+            } finally {
+                this.engineLock.unlock();
+            }
+        }
     }
 
     // A works-around for exception handling craziness in Sun/Oracle's SSLEngine
@@ -353,7 +451,7 @@ private void doHandshake() throws SSLException {
 
     private void updateEventMask() {
         // Graceful session termination
-        if (this.status == CLOSING && !this.outEncrypted.hasData()) {
+        if (this.status == CLOSING && !this.outEncrypted.hasData() && !hasPendingPlain()) {
             this.sslEngine.closeOutbound();
         }
         if (this.status == CLOSING && this.sslEngine.isOutboundDone()
@@ -380,7 +478,7 @@ private void updateEventMask() {
             newMask = EventMask.READ;
             break;
         case NOT_HANDSHAKING:
-            newMask = this.appEventMask;
+            newMask = this.appEventMask.get();
             break;
         case NEED_TASK:
             break;
@@ -388,8 +486,8 @@ private void updateEventMask() {
             break;
         }
 
-        // Do we have encrypted data ready to be sent?
-        if (this.outEncrypted.hasData()) {
+        // Do we have encrypted data ready to be sent or plain data pending encryption?
+        if (this.outEncrypted.hasData() || hasPendingPlain()) {
             newMask = newMask | EventMask.WRITE;
         }
 
@@ -488,20 +586,25 @@ private boolean decryptData() throws SSLException {
      *
      * @throws IOException in case of an I/O error.
      */
-    public synchronized boolean isAppInputReady() throws IOException {
-        do {
-            final int bytesRead = receiveEncryptedData();
-            if (bytesRead == -1) {
-                this.endOfStream = true;
-            }
-            doHandshake();
-            final HandshakeStatus status = this.sslEngine.getHandshakeStatus();
-            if (status == HandshakeStatus.NOT_HANDSHAKING || status == HandshakeStatus.FINISHED) {
-                decryptData();
-            }
-        } while (this.sslEngine.getHandshakeStatus() == HandshakeStatus.NEED_TASK);
-        // Some decrypted data is available or at the end of stream
-        return this.inPlain.hasData() || (this.endOfStream && this.status == ACTIVE);
+    public boolean isAppInputReady() throws IOException {
+        lockEngine();
+        try {
+            do {
+                final int bytesRead = receiveEncryptedData();
+                if (bytesRead == -1) {
+                    this.endOfStream = true;
+                }
+                doHandshake();
+                final HandshakeStatus status = this.sslEngine.getHandshakeStatus();
+                if (status == HandshakeStatus.NOT_HANDSHAKING || status == HandshakeStatus.FINISHED) {
+                    decryptData();
+                }
+            } while (this.sslEngine.getHandshakeStatus() == HandshakeStatus.NEED_TASK);
+            // Some decrypted data is available or at the end of stream
+            return this.inPlain.hasData() || (this.endOfStream && this.status == ACTIVE);
+        } finally {
+            unlockEngine();
+        }
     }
 
     /**
@@ -510,8 +613,8 @@ public synchronized boolean isAppInputReady() throws IOException {
      *
      * @throws IOException - not thrown currently
      */
-    public synchronized boolean isAppOutputReady() throws IOException {
-        return (this.appEventMask & SelectionKey.OP_WRITE) > 0
+    public boolean isAppOutputReady() throws IOException {
+        return (this.appEventMask.get() & SelectionKey.OP_WRITE) > 0
             && this.status == ACTIVE
             && this.sslEngine.getHandshakeStatus() == HandshakeStatus.NOT_HANDSHAKING;
     }
@@ -521,8 +624,13 @@ public synchronized boolean isAppOutputReady() throws IOException {
      *
      * @throws IOException - not thrown currently
      */
-    public synchronized void inboundTransport() throws IOException {
-        updateEventMask();
+    public void inboundTransport() throws IOException {
+        lockEngine();
+        try {
+            updateEventMask();
+        } finally {
+            unlockEngine();
+        }
     }
 
     /**
@@ -530,102 +638,205 @@ public synchronized void inboundTransport() throws IOException {
      *
      * @throws IOException in case of an I/O error.
      */
-    public synchronized void outboundTransport() throws IOException {
-        if (this.session.isClosed()) {
-            return;
+    public void outboundTransport() throws IOException {
+        lockEngine();
+        try {
+            if (this.session.isClosed()) {
+                return;
+            }
+            if (hasPendingPlain()) {
+                encryptPendingPlain();
+            }
+            sendEncryptedData();
+            doHandshake();
+            updateEventMask();
+        } finally {
+            unlockEngine();
         }
-        sendEncryptedData();
-        doHandshake();
-        updateEventMask();
     }
 
     /**
      * Returns whether the session will produce any more inbound data.
      */
-    public synchronized boolean isInboundDone() {
+    public boolean isInboundDone() {
         return this.sslEngine.isInboundDone();
     }
 
     /**
      * Returns whether the session will accept any more outbound data.
      */
-    public synchronized boolean isOutboundDone() {
+    public boolean isOutboundDone() {
         return this.sslEngine.isOutboundDone();
     }
 
-    private synchronized int writePlain(final ByteBuffer src) throws IOException {
+    private int writePlain(final ByteBuffer src) throws IOException {
         Args.notNull(src, "Byte buffer");
-        if (this.status != ACTIVE) {
-            throw new ClosedChannelException();
+        lockEngine();
+        try {
+            if (this.status != ACTIVE) {
+                throw new ClosedChannelException();
+            }
+            if (this.outPlain != null) {
+                return coalescePlain(src);
+            }
+            final ByteBuffer outEncryptedBuf = this.outEncrypted.acquire();
+            final SSLEngineResult result = doWrap(src, outEncryptedBuf);
+            if (result.getStatus() == Status.CLOSED) {
+                this.status = CLOSED;
+            }
+            return result.bytesConsumed();
+        } finally {
+            unlockEngine();
+        }
+    }
+
+    private int coalescePlain(final ByteBuffer src) throws SSLException {
+        final boolean pending = hasPendingPlain();
+        int total = 0;
+        while (src.hasRemaining() && this.status == ACTIVE) {
+            ByteBuffer outPlainBuf = this.outPlain.acquire();
+            if (!outPlainBuf.hasRemaining()) {
+                // Record full: encrypt it if the network buffer has room for it
+                encryptPendingPlain();
+                outPlainBuf = this.outPlain.acquire();
+                if (!outPlainBuf.hasRemaining()) {
+                    break;
+                }
+            }
+            final int n = Math.min(outPlainBuf.remaining(), src.remaining());
+            final int limit = src.limit();
+            src.limit(src.position() + n);
+            outPlainBuf.put(src);
+            src.limit(limit);
+            total += n;
+        }
+        if (!pending && hasPendingPlain()) {
+            // Make sure the pending record gets flushed
+            updateEventMask();
         }
+        return total;
+    }
+
+    private boolean hasPendingPlain() {
+        return this.outPlain != null && this.outPlain.hasData();
+    }
+
+    private void encryptPendingPlain() throws SSLException {
+        final ByteBuffer outPlainBuf = this.outPlain.acquire();
         final ByteBuffer outEncryptedBuf = this.outEncrypted.acquire();
-        final SSLEngineResult result = doWrap(src, outEncryptedBuf);
-        if (result.getStatus() == Status.CLOSED) {
+        boolean closed = false;
+        outPlainBuf.flip();
+        try {
+            while (outPlainBuf.hasRemaining()) {
+                final SSLEngineResult result = doWrap(outPlainBuf, outEncryptedBuf);
+                if (result.getStatus() == Status.CLOSED) {
+                    closed = true;
+                    break;
+                }
+                if (result.getStatus() != Status.OK || result.bytesConsumed() == 0) {
+                    break;
+                }
+            }
+        } finally {
+            outPlainBuf.compact();
+        }
+        if (closed) {
+            outPlainBuf.clear();
             this.status = CLOSED;
         }
-        return result.bytesConsumed();
+        // Release if empty
+        if (outPlainBuf.position() == 0) {
+            this.outPlain.release();
+        }
+        if (outEncryptedBuf.position() == 0) {
+            this.outEncrypted.release();
+        }
     }
 
-    private synchronized int readPlain(final ByteBuffer dst) {
+    private int readPlain(final ByteBuffer dst) {
         Args.notNull(dst, "Byte buffer");
-        if (this.inPlain.hasData()) {
-            // Acquire buffer
-            final ByteBuffer inPlainBuf = this.inPlain.acquire();
+        lockEngine();
+        try {
+            if (this.inPlain.hasData()) {
+                // Acquire buffer
+                final ByteBuffer inPlainBuf = this.inPlain.acquire();
 
-            // Perform opertaions
-            inPlainBuf.flip();
-            final int n = Math.min(inPlainBuf.remaining(), dst.remaining());
-            for (int i = 0; i < n; i++) {
-                dst.put(inPlainBuf.get());
+                // Perform opertaions
+                inPlainBuf.flip();
+                final int n = Math.min(inPlainBuf.remaining(), dst.remaining());
+                final int limit = inPlainBuf.limit();
+                inPlainBuf.limit(inPlainBuf.position() + n);
+                dst.put(inPlainBuf);
+                inPlainBuf.limit(limit);
+                inPlainBuf.compact();
+
+                // Release if empty
+                if (inPlainBuf.position() == 0) {
+                    this.inPlain.release();
+                }
+                return n;
             }
-            inPlainBuf.compact();
-
-            // Release if empty
-            if (inPlainBuf.position() == 0) {
-                this.inPlain.release();
+            if (this.endOfStream) {
+                return -1;
             }
-            return n;
+            return 0;
+        } finally {
+            unlockEngine();
         }
-        if (this.endOfStream) {
-            return -1;
-        }
-        return 0;
     }
 
     /**
      * @since 5.0
      */
-    public synchronized boolean hasInputDate() {
-        return this.inPlain.hasData();
+    public boolean hasInputDate() {
+        lockEngine();
+        try {
+            return this.inPlain.hasData();
+        } finally {
+            unlockEngine();
+        }
     }
 
     @Override
-    public synchronized void close() {
-        if (this.status >= CLOSING) {
-            return;
-        }
-        this.status = CLOSING;
-        if (this.session.getSocketTimeout() == 0) {
-            this.session.setSocketTimeout(1000);
-        }
+    public void close() {
+        lockEngine();
         try {
-            updateEventMask();
-        } catch (final CancelledKeyException ex) {
-            shutdown(ShutdownType.GRACEFUL);
+            if (this.status >= CLOSING) {
+                return;
+            }
+            this.status = CLOSING;
+            if (this.session.getSocketTimeout() == 0) {
+                this.session.setSocketTimeout(1000);
+            }
+            try {
+                updateEventMask();
+            } catch (final CancelledKeyException ex) {
+                shutdown(ShutdownType.GRACEFUL);
+            }
+        } finally {
+            unlockEngine();
         }
     }
 
     @Override
-    public synchronized void shutdown(final ShutdownType shutdownType) {
-        if (this.status == CLOSED) {
-            return;
-        }
-        this.inEncrypted.release();
-        this.outEncrypted.release();
-        this.inPlain.release();
+    public void shutdown(final ShutdownType shutdownType) {
+        lockEngine();
+        try {
+            if (this.status == CLOSED) {
+                return;
+            }
+            this.inEncrypted.release();
+            this.outEncrypted.release();
+            this.inPlain.release();
+            if (this.outPlain != null) {
+                this.outPlain.release();
+            }
 
-        this.status = CLOSED;
-        this.session.shutdown(shutdownType);
+            this.status = CLOSED;
+            this.session.shutdown(shutdownType);
+        } finally {
+            unlockEngine();
+        }
     }
 
     @Override
@@ -639,13 +850,13 @@ public boolean isClosed() {
     }
 
     @Override
-    public synchronized void addLast(final Command command) {
+    public void addLast(final Command command) {
         this.session.addLast(command);
         setEvent(SelectionKey.OP_WRITE);
     }
 
     @Override
-    public synchronized void addFirst(final Command command) {
+    public void addFirst(final Command command) {
         this.session.addFirst(command);
         setEvent(SelectionKey.OP_WRITE);
     }
@@ -671,26 +882,36 @@ public SocketAddress getRemoteAddress() {
     }
 
     @Override
-    public synchronized int getEventMask() {
-        return this.appEventMask;
+    public int getEventMask() {
+        return this.appEventMask.get();
     }
 
     @Override
-    public synchronized void setEventMask(final int ops) {
-        this.appEventMask = ops;
-        updateEventMask();
+    public void setEventMask(final int ops) {
+        this.appEventMask.set(ops);
+        requestEventMaskUpdate();
     }
 
     @Override
-    public synchronized void setEvent(final int op) {
-        this.appEventMask = this.appEventMask | op;
-        updateEventMask();
+    public void setEvent(final int op) {
+        for (;;) {
+            final int current = this.appEventMask.get();
+            if (this.appEventMask.compareAndSet(current, current | op)) {
+                break;
+            }
+        }
+        requestEventMaskUpdate();
     }
 
     @Override
-    public synchronized void clearEvent(final int op) {
-        this.appEventMask = this.appEventMask & ~op;
-        updateEventMask();
+    public void clearEvent(final int op) {
+        for (;;) {
+            final int current = this.appEventMask.get();
+            if (this.appEventMask.compareAndSet(current, current & ~op)) {
+                break;
+            }
+        }
+        requestEventMaskUpdate();
     }
 
     @Override
@@ -739,7 +960,7 @@ public String toString() {
             break;
         }
         buffer.append("][");
-        formatOps(buffer, this.appEventMask);
+        formatOps(buffer, this.appEventMask.get());
         buffer.append("][");
         buffer.append(this.sslEngine.getHandshakeStatus());
         if (this.sslEngine.isInboundDone()) {
@@ -0,0 +1,59 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.core5.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Abstract allocator of {@link ByteBuffer}s used by session and frame buffers.
+ * <p>
+ * Buffers obtained from an allocator should be returned to it once no longer
+ * needed. A buffer may not be accessed after it has been released as it can be
+ * handed out to another consumer.
+ *
+ * @since 5.0
+ */
+public interface ByteBufferAllocator {
+
+    /**
+     * Allocates a buffer of at least the given capacity. The buffer is cleared
+     * and its byte order is {@link java.nio.ByteOrder#BIG_ENDIAN}.
+     *
+     * @param capacity the minimal capacity of the buffer.
+     * @return the buffer.
+     */
+    ByteBuffer allocate(int capacity);
+
+    /**
+     * Returns the buffer to this allocator.
+     *
+     * @param buffer the buffer previously obtained from this allocator.
+     */
+    void release(ByteBuffer buffer);
+
+}
@@ -0,0 +1,378 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.core5.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hc.core5.annotation.Contract;
+import org.apache.hc.core5.annotation.ThreadingBehavior;
+import org.apache.hc.core5.function.Callback;
+
+/**
+ * {@link ByteBufferAllocator} that recycles direct buffers.
+ * <p>
+ * Requested capacities are rounded up to the nearest power of two size class
+ * between {@link #MIN_BUFFER_SIZE} and the maximum pooled buffer size. Released buffers
+ * are kept in a small per-thread cache first and in a bounded shared pool per size class
+ * second. As I/O sessions are bound to a particular I/O reactor thread, per-thread caches
+ * effectively act as per-I/O reactor caches that can be accessed without contention.
+ * Buffers larger than the maximum pooled buffer size are allocated on demand and
+ * are not recycled.
+ * <p>
+ * Direct buffers can be passed to socket channels without being copied into
+ * a temporary direct buffer by the Java runtime.
+ * <p>
+ * In the leak detection mode the allocator keeps track of allocation sites and reports
+ * buffers that got garbage collected without having been released to the given callback.
+ * It also rejects buffers released more than once. The leak detection mode is
+ * expensive and intended for debugging only.
+ *
+ * @since 5.0
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public final class PooledByteBufferAllocator implements ByteBufferAllocator {
+
+    public static final int MIN_BUFFER_SIZE = 512;
+
+    private static final int MIN_SHIFT = 9;
+
+    private final int maxBufferSize;
+    private final int maxPoolSize;
+    private final int threadCacheSize;
+    private final Queue<ByteBuffer>[] pools;
+    private final AtomicInteger[] poolSizes;
+    private final ThreadLocal<ThreadCache> threadCache;
+    private final AtomicLong allocatedCount;
+    private final AtomicLong reusedCount;
+    private final LeakDetector leakDetector;
+
+    /**
+     * Creates new pooled buffer allocator.
+     *
+     * @param maxBufferSize the maximum size of pooled buffers. Gets rounded up to
+     *   the nearest power of two.
+     * @param maxPoolSize the maximum number of idle buffers per size class kept in
+     *   the shared pool.
+     * @param threadCacheSize the maximum number of idle buffers per size class kept
+     *   by each thread. {@code 0} disables per-thread caching.
+     * @param leakCallback the callback to be notified about leaked buffers with
+     *   an exception representing the allocation site. If {@code null} leak detection
+     *   is disabled.
+     */
+    @SuppressWarnings("unchecked")
+    public PooledByteBufferAllocator(
+            final int maxBufferSize,
+            final int maxPoolSize,
+            final int threadCacheSize,
+            final Callback<Exception> leakCallback) {
+        super();
+        Args.checkRange(maxBufferSize, MIN_BUFFER_SIZE, 1 << 30, "Max buffer size");
+        Args.notNegative(maxPoolSize, "Max pool size");
+        Args.notNegative(threadCacheSize, "Thread cache size");
+        final int maxIndex = sizeClass(maxBufferSize);
+        this.maxBufferSize = 1 << (maxIndex + MIN_SHIFT);
+        this.maxPoolSize = maxPoolSize;
+        this.threadCacheSize = threadCacheSize;
+        this.pools = new Queue[maxIndex + 1];
+        this.poolSizes = new AtomicInteger[maxIndex + 1];
+        for (int i = 0; i < this.pools.length; i++) {
+            this.pools[i] = new ConcurrentLinkedQueue<>();
+            this.poolSizes[i] = new AtomicInteger(0);
+        }
+        this.threadCache = new ThreadLocal<ThreadCache>() {
+
+            @Override
+            protected ThreadCache initialValue() {
+                return new ThreadCache(pools.length, threadCacheSize);
+            }
+
+        };
+        this.allocatedCount = new AtomicLong(0);
+        this.reusedCount = new AtomicLong(0);
+        this.leakDetector = leakCallback != null ? new LeakDetector(leakCallback) : null;
+    }
+
+    /**
+     * Creates new pooled buffer allocator with a maximum pooled buffer size of 64 KiB,
+     * a shared pool of up to 256 buffers and a per-thread cache of up to 16 buffers
+     * per size class.
+     */
+    public PooledByteBufferAllocator() {
+        this(65536, 256, 16, null);
+    }
+
+    static int sizeClass(final int capacity) {
+        if (capacity <= MIN_BUFFER_SIZE) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(capacity - 1) - MIN_SHIFT;
+    }
+
+    @Override
+    public ByteBuffer allocate(final int capacity) {
+        Args.notNegative(capacity, "Buffer capacity");
+        if (this.leakDetector != null) {
+            this.leakDetector.expunge();
+        }
+        final ByteBuffer buffer;
+        if (capacity > this.maxBufferSize) {
+            buffer = ByteBuffer.allocateDirect(capacity);
+            this.allocatedCount.incrementAndGet();
+        } else {
+            final int idx = sizeClass(capacity);
+            ByteBuffer cached = this.threadCacheSize > 0 ? this.threadCache.get().poll(idx) : null;
+            if (cached == null) {
+                cached = this.pools[idx].poll();
+                if (cached != null) {
+                    this.poolSizes[idx].decrementAndGet();
+                }
+            }
+            if (cached != null) {
+                cached.clear();
+                cached.order(ByteOrder.BIG_ENDIAN);
+                buffer = cached;
+                this.reusedCount.incrementAndGet();
+            } else {
+                buffer = ByteBuffer.allocateDirect(1 << (idx + MIN_SHIFT));
+                this.allocatedCount.incrementAndGet();
+            }
+        }
+        if (this.leakDetector != null) {
+            this.leakDetector.track(buffer);
+        }
+        return buffer;
+    }
+
+    @Override
+    public void release(final ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+        if (this.leakDetector != null) {
+            this.leakDetector.untrack(buffer);
+        }
+        final int capacity = buffer.capacity();
+        if (capacity < MIN_BUFFER_SIZE || capacity > this.maxBufferSize || Integer.bitCount(capacity) != 1) {
+            return;
+        }
+        final int idx = sizeClass(capacity);
+        if (this.threadCacheSize > 0 && this.threadCache.get().offer(idx, buffer)) {
+            return;
+        }
+        if (this.poolSizes[idx].incrementAndGet() <= this.maxPoolSize) {
+            this.pools[idx].add(buffer);
+        } else {
+            this.poolSizes[idx].decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the maximum size of pooled buffers.
+     */
+    public int getMaxBufferSize() {
+        return this.maxBufferSize;
+    }
+
+    /**
+     * Returns the total number of buffers allocated from the system.
+     */
+    public long getAllocatedCount() {
+        return this.allocatedCount.get();
+    }
+
+    /**
+     * Returns the total number of buffer requests satisfied with recycled buffers.
+     */
+    public long getReusedCount() {
+        return this.reusedCount.get();
+    }
+
+    /**
+     * Returns the number of idle buffers in the shared pool.
+     */
+    public int getPooledCount() {
+        int total = 0;
+        for (final AtomicInteger poolSize: this.poolSizes) {
+            total += poolSize.get();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of buffers not yet released if the leak detection mode
+     * is enabled, {@code -1} otherwise.
+     */
+    public int getOutstandingCount() {
+        return this.leakDetector != null ? this.leakDetector.size() : -1;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[maxBufferSize: ").append(this.maxBufferSize)
+                .append("; allocated: ").append(this.allocatedCount.get())
+                .append("; reused: ").append(this.reusedCount.get())
+                .append("; pooled: ").append(getPooledCount())
+                .append("]");
+        return buffer.toString();
+    }
+
+    static final class ThreadCache {
+
+        private final ByteBuffer[][] stacks;
+        private final int[] sizes;
+
+        ThreadCache(final int sizeClasses, final int capacity) {
+            this.stacks = new ByteBuffer[sizeClasses][capacity];
+            this.sizes = new int[sizeClasses];
+        }
+
+        ByteBuffer poll(final int idx) {
+            final int size = this.sizes[idx];
+            if (size == 0) {
+                return null;
+            }
+            final ByteBuffer buffer = this.stacks[idx][size - 1];
+            this.stacks[idx][size - 1] = null;
+            this.sizes[idx] = size - 1;
+            return buffer;
+        }
+
+        boolean offer(final int idx, final ByteBuffer buffer) {
+            final int size = this.sizes[idx];
+            if (size == this.stacks[idx].length) {
+                return false;
+            }
+            this.stacks[idx][size] = buffer;
+            this.sizes[idx] = size + 1;
+            return true;
+        }
+
+    }
+
+    static final class LeakRef extends WeakReference<ByteBuffer> {
+
+        final int hash;
+        final Exception allocationSite;
+
+        LeakRef(final ByteBuffer buffer, final ReferenceQueue<ByteBuffer> queue) {
+            super(buffer, queue);
+            this.hash = System.identityHashCode(buffer);
+            this.allocationSite = new Exception("Buffer of capacity " + buffer.capacity()
+                    + " has not been released. Allocated at");
+        }
+
+    }
+
+    static final class LeakDetector {
+
+        private final Callback<Exception> callback;
+        private final ReferenceQueue<ByteBuffer> refQueue;
+        private final Map<Integer, List<LeakRef>> refMap;
+
+        LeakDetector(final Callback<Exception> callback) {
+            this.callback = callback;
+            this.refQueue = new ReferenceQueue<>();
+            this.refMap = new HashMap<>();
+        }
+
+        void track(final ByteBuffer buffer) {
+            final LeakRef ref = new LeakRef(buffer, this.refQueue);
+            synchronized (this.refMap) {
+                List<LeakRef> refs = this.refMap.get(ref.hash);
+                if (refs == null) {
+                    refs = new ArrayList<>(1);
+                    this.refMap.put(ref.hash, refs);
+                }
+                refs.add(ref);
+            }
+        }
+
+        void untrack(final ByteBuffer buffer) {
+            final int hash = System.identityHashCode(buffer);
+            synchronized (this.refMap) {
+                final List<LeakRef> refs = this.refMap.get(hash);
+                if (refs != null) {
+                    for (final Iterator<LeakRef> it = refs.iterator(); it.hasNext(); ) {
+                        final LeakRef ref = it.next();
+                        if (ref.get() == buffer) {
+                            it.remove();
+                            ref.clear();
+                            if (refs.isEmpty()) {
+                                this.refMap.remove(hash);
+                            }
+                            return;
+                        }
+                    }
+                }
+            }
+            throw new IllegalStateException("Buffer has already been released or has not been allocated by this allocator");
+        }
+
+        void expunge() {
+            LeakRef ref;
+            while ((ref = (LeakRef) this.refQueue.poll()) != null) {
+                final boolean leaked;
+                synchronized (this.refMap) {
+                    final List<LeakRef> refs = this.refMap.get(ref.hash);
+                    leaked = refs != null && refs.remove(ref);
+                    if (refs != null && refs.isEmpty()) {
+                        this.refMap.remove(ref.hash);
+                    }
+                }
+                if (leaked) {
+                    this.callback.execute(ref.allocationSite);
+                }
+            }
+        }
+
+        int size() {
+            int total = 0;
+            synchronized (this.refMap) {
+                for (final List<LeakRef> refs: this.refMap.values()) {
+                    total += refs.size();
+                }
+            }
+            return total;
+        }
+
+    }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.concurrent;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hc.core5.util.TimeValue;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestHashedWheelTimer {
+
+    private HashedWheelTimer timer;
+
+    @Before
+    public void setUp() throws Exception {
+        timer = new HashedWheelTimer(TimeValue.ofMillis(5), 16, null);
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        timer.close();
+    }
+
+    @Test
+    public void testTaskExecutedAfterDeadline() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicLong executed = new AtomicLong();
+        final long deadline = System.currentTimeMillis() + 50;
+        timer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                executed.set(System.currentTimeMillis());
+                latch.countDown();
+            }
+
+        }, deadline);
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(executed.get() >= deadline);
+    }
+
+    @Test
+    public void testTaskPastDeadlineExecutedPromptly() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        timer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+
+        }, System.currentTimeMillis() - 1000);
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testTasksBeyondOneWheelRotation() throws Exception {
+        // 16 slots of 5 ms make one rotation 80 ms long
+        final CountDownLatch latch = new CountDownLatch(2);
+        final AtomicLong executed = new AtomicLong();
+        final long deadline = System.currentTimeMillis() + 200;
+        timer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                executed.set(System.currentTimeMillis());
+                latch.countDown();
+            }
+
+        }, deadline);
+        timer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+
+        }, System.currentTimeMillis() + 10);
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(executed.get() >= deadline);
+    }
+
+    @Test
+    public void testCancelledTaskNotExecuted() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Cancellable cancellable = timer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                count.incrementAndGet();
+            }
+
+        }, System.currentTimeMillis() + 20);
+        timer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+
+        }, System.currentTimeMillis() + 60);
+        Assert.assertTrue(cancellable.cancel());
+        Assert.assertFalse(cancellable.cancel());
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, count.get());
+    }
+
+    @Test
+    public void testCancelAfterExecution() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Cancellable cancellable = timer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+
+        }, System.currentTimeMillis());
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertFalse(cancellable.cancel());
+    }
+
+    @Test
+    public void testFailingTaskDoesNotStopTimer() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        timer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                throw new IllegalStateException("Boom");
+            }
+
+        }, System.currentTimeMillis());
+        timer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+
+        }, System.currentTimeMillis() + 20);
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testScheduleAfterClose() throws Exception {
+        timer.close();
+        timer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+            }
+
+        }, System.currentTimeMillis());
+    }
+
+}
@@ -45,6 +45,7 @@
 import org.apache.hc.core5.http.nio.SessionInputBuffer;
 import org.apache.hc.core5.http.nio.SessionOutputBuffer;
 import org.apache.hc.core5.util.CharArrayBuffer;
+import org.apache.hc.core5.util.PooledByteBufferAllocator;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -622,4 +623,41 @@ public void testUnmappableInputActionReplace() throws Exception {
         Assert.assertEquals("This text contains a circumflex ? !!!\r\n", result);
     }
 
+    @Test
+    public void testPooledDirectBuffers() throws Exception {
+        final PooledByteBufferAllocator allocator = new PooledByteBufferAllocator();
+        final SessionOutputBufferImpl outbuf = new SessionOutputBufferImpl(16, 16, null, allocator);
+        final SessionInputBufferImpl inbuf = new SessionInputBufferImpl(16, 16, 0, null, allocator);
+        Assert.assertTrue(outbuf.buffer().isDirect());
+        Assert.assertTrue(inbuf.buffer().isDirect());
+
+        final CharArrayBuffer line = new CharArrayBuffer(64);
+        line.append("One");
+        outbuf.writeLine(line);
+        line.clear();
+        line.append("Two");
+        outbuf.writeLine(line);
+
+        final ByteArrayOutputStream outstream = new ByteArrayOutputStream();
+        outbuf.flush(newChannel(outstream));
+        inbuf.fill(newChannel(outstream.toByteArray()));
+
+        line.clear();
+        Assert.assertTrue(inbuf.readLine(line, false));
+        Assert.assertEquals("One", line.toString());
+
+        final long allocated = allocator.getAllocatedCount();
+        inbuf.release();
+        outbuf.release();
+        Assert.assertEquals(0, outbuf.length());
+        Assert.assertFalse(inbuf.hasData());
+
+        line.clear();
+        line.append("Three");
+        outbuf.writeLine(line);
+        Assert.assertTrue(outbuf.buffer().isDirect());
+        Assert.assertEquals(allocated, allocator.getAllocatedCount());
+        Assert.assertEquals(7, outbuf.length());
+    }
+
 }
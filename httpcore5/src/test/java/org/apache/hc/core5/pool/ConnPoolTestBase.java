@@ -0,0 +1,238 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.pool;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.hc.core5.concurrent.HashedWheelTimer;
+import org.apache.hc.core5.http.HttpConnection;
+import org.apache.hc.core5.io.ShutdownType;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Tests shared by all connection pool implementations.
+ */
+public abstract class ConnPoolTestBase<P extends ManagedConnPool<String, HttpConnection>
+        & AdaptiveConnPoolControl<String> & ConnPoolMetrics<String>> {
+
+    protected abstract P createPool(int defaultMaxPerRoute, int maxTotal, HashedWheelTimer leaseTimer);
+
+    protected abstract void setRouteLimiter(P pool, AdaptiveRouteLimiter<String> routeLimiter);
+
+    protected abstract long getLeaseTimeoutCount(P pool, String route);
+
+    protected abstract long getLeaseTimeoutCount(P pool);
+
+    private Future<PoolEntry<String, HttpConnection>> lease(final P pool, final String route) {
+        return pool.lease(route, null, Timeout.DISABLED, null);
+    }
+
+    @Test
+    public void testRouteLimiter() throws Exception {
+        final P pool = createPool(4, 10, null);
+        setRouteLimiter(pool, new AdaptiveRouteLimiter<String>(1, TimeValue.ofSeconds(1), 0.1, 0.5, 2));
+        Assert.assertEquals(4, pool.getEffectiveMaxPerRoute("somehost"));
+
+        pool.release(lease(pool, "somehost").get(), false);
+        pool.release(lease(pool, "somehost").get(), false);
+
+        Assert.assertEquals(4, pool.getMaxPerRoute("somehost"));
+        Assert.assertEquals(2, pool.getEffectiveMaxPerRoute("somehost"));
+
+        final Future<PoolEntry<String, HttpConnection>> future1 = lease(pool, "somehost");
+        final Future<PoolEntry<String, HttpConnection>> future2 = lease(pool, "somehost");
+        final Future<PoolEntry<String, HttpConnection>> future3 = lease(pool, "somehost");
+        Assert.assertTrue(future1.isDone());
+        Assert.assertTrue(future2.isDone());
+        Assert.assertFalse(future3.isDone());
+
+        pool.release(future1.get(), false);
+        Assert.assertTrue(future3.isDone());
+        Assert.assertEquals(2, pool.getStats("somehost").getLeased());
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        final HttpConnection conn1 = Mockito.mock(HttpConnection.class);
+
+        final P pool = createPool(2, 2, null);
+
+        final PoolEntry<String, HttpConnection> entry1 = lease(pool, "somehost").get();
+        Thread.sleep(20L);
+        entry1.assignConnection(conn1);
+        pool.release(entry1, true);
+
+        final PoolEntry<String, HttpConnection> entry2 = lease(pool, "somehost").get();
+        Assert.assertSame(entry1, entry2);
+        pool.release(entry2, true);
+
+        final PoolEntry<String, HttpConnection> entry3 = lease(pool, "otherhost").get();
+        pool.release(entry3, false);
+
+        final PoolMetrics metrics1 = pool.getMetrics("somehost");
+        Assert.assertEquals(2, metrics1.getLeaseCount());
+        Assert.assertEquals(1, metrics1.getReuseCount());
+        Assert.assertEquals(1, metrics1.getAllocationCount());
+        Assert.assertEquals(0.5, metrics1.getReuseRatio(), 0.001);
+        Assert.assertEquals(2, metrics1.getLeaseWaitTime().getCount());
+        Assert.assertEquals(1, metrics1.getConnectTime().getCount());
+        Assert.assertTrue(metrics1.getConnectTime().getMax() >= 10);
+        Assert.assertEquals(0, metrics1.getEvictionCount());
+
+        pool.closeIdle(TimeValue.of(-1, TimeUnit.MILLISECONDS));
+        Mockito.verify(conn1).shutdown(ShutdownType.GRACEFUL);
+        Assert.assertEquals(1, pool.getMetrics("somehost").getEvictionCount());
+
+        final PoolMetrics metrics2 = pool.getMetrics("otherhost");
+        Assert.assertEquals(1, metrics2.getAllocationCount());
+        Assert.assertEquals(0, metrics2.getConnectTime().getCount());
+
+        final PoolMetrics totals = pool.getTotalMetrics();
+        Assert.assertEquals(3, totals.getLeaseCount());
+        Assert.assertEquals(2, totals.getAllocationCount());
+        Assert.assertEquals(1, totals.getEvictionCount());
+        Assert.assertEquals(3, totals.getLeaseWaitTime().getCount());
+
+        Assert.assertEquals(0, pool.getMetrics("unknown").getLeaseCount());
+    }
+
+    @Test
+    public void testCloseIdleKeepsMinIdle() throws Exception {
+        final HttpConnection conn1 = Mockito.mock(HttpConnection.class);
+        final HttpConnection conn2 = Mockito.mock(HttpConnection.class);
+        final HttpConnection conn3 = Mockito.mock(HttpConnection.class);
+
+        final P pool = createPool(3, 3, null);
+        pool.setMinIdle("somehost", 1);
+
+        final PoolEntry<String, HttpConnection> entry1 = lease(pool, "somehost").get();
+        entry1.assignConnection(conn1);
+        final PoolEntry<String, HttpConnection> entry2 = lease(pool, "somehost").get();
+        entry2.assignConnection(conn2);
+        final PoolEntry<String, HttpConnection> entry3 = lease(pool, "somehost").get();
+        entry3.assignConnection(conn3);
+
+        pool.release(entry1, true);
+        pool.release(entry2, true);
+
+        Thread.sleep(200L);
+
+        pool.release(entry3, true);
+
+        // Only connections released before the deadline get closed
+        pool.closeIdle(TimeValue.of(50, TimeUnit.MILLISECONDS));
+
+        Mockito.verify(conn1).shutdown(ShutdownType.GRACEFUL);
+        Mockito.verify(conn2).shutdown(ShutdownType.GRACEFUL);
+        Mockito.verify(conn3, Mockito.never()).shutdown(Mockito.<ShutdownType>any());
+        Assert.assertEquals(1, pool.getStats("somehost").getAvailable());
+
+        // The minimum of idle connections is kept
+        pool.closeIdle(TimeValue.of(-1, TimeUnit.MILLISECONDS));
+
+        Mockito.verify(conn3, Mockito.never()).shutdown(Mockito.<ShutdownType>any());
+        Assert.assertEquals(1, pool.getStats("somehost").getAvailable());
+
+        pool.setMinIdle("somehost", 0);
+        pool.closeIdle(TimeValue.of(-1, TimeUnit.MILLISECONDS));
+
+        Mockito.verify(conn3).shutdown(ShutdownType.GRACEFUL);
+        Assert.assertEquals(0, pool.getStats("somehost").getAvailable());
+    }
+
+    @Test
+    public void testLeaseRequestTimerExpiry() throws Exception {
+        final HttpConnection conn1 = Mockito.mock(HttpConnection.class);
+
+        final HashedWheelTimer timer = new HashedWheelTimer(TimeValue.ofMillis(5), 64, null);
+        try {
+            final P pool = createPool(1, 1, timer);
+
+            final Future<PoolEntry<String, HttpConnection>> future1 = pool.lease("somehost", null, Timeout.ofMillis(0), null);
+            final Future<PoolEntry<String, HttpConnection>> future2 = pool.lease("somehost", null, Timeout.ofMillis(0), null);
+            final Future<PoolEntry<String, HttpConnection>> future3 = pool.lease("somehost", null, Timeout.ofMillis(20), null);
+
+            Assert.assertTrue(future1.isDone());
+            final PoolEntry<String, HttpConnection> entry1 = future1.get();
+            Assert.assertNotNull(entry1);
+            entry1.assignConnection(conn1);
+            Assert.assertFalse(future2.isDone());
+            Assert.assertFalse(future3.isDone());
+
+            try {
+                future3.get(5, TimeUnit.SECONDS);
+                Assert.fail("ExecutionException should have been thrown");
+            } catch (final ExecutionException expected) {
+                Assert.assertTrue(expected.getCause() instanceof TimeoutException);
+            }
+            Assert.assertFalse(future2.isDone());
+            Assert.assertEquals(1, pool.getStats("somehost").getPending());
+            Assert.assertEquals(1, getLeaseTimeoutCount(pool, "somehost"));
+            Assert.assertEquals(0, getLeaseTimeoutCount(pool, "otherhost"));
+            Assert.assertEquals(1, getLeaseTimeoutCount(pool));
+
+            pool.release(entry1, true);
+            Assert.assertTrue(future2.isDone());
+            final PoolEntry<String, HttpConnection> entry2 = future2.get();
+            Assert.assertNotNull(entry2);
+            Assert.assertEquals(0, pool.getStats("somehost").getPending());
+            Assert.assertEquals(1, getLeaseTimeoutCount(pool));
+        } finally {
+            timer.close();
+        }
+    }
+
+    @Test
+    public void testMinIdle() throws Exception {
+        final P pool = createPool(2, 2, null);
+        Assert.assertEquals(0, pool.getDefaultMinIdle());
+        Assert.assertEquals(0, pool.getMinIdle("somehost"));
+        pool.setDefaultMinIdle(1);
+        pool.setMinIdle("somehost", 2);
+        Assert.assertEquals(1, pool.getDefaultMinIdle());
+        Assert.assertEquals(2, pool.getMinIdle("somehost"));
+        Assert.assertEquals(1, pool.getMinIdle("otherhost"));
+        try {
+            pool.setMinIdle("somehost", -1);
+            Assert.fail("IllegalArgumentException should have been thrown");
+        } catch (final IllegalArgumentException expected) {
+        }
+        try {
+            pool.setDefaultMinIdle(-1);
+            Assert.fail("IllegalArgumentException should have been thrown");
+        } catch (final IllegalArgumentException expected) {
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.pool;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.core5.util.TimeValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestAdaptiveRouteLimiter {
+
+    @Test
+    public void testDecreaseOnFailures() throws Exception {
+        final AdaptiveRouteLimiter<String> limiter = new AdaptiveRouteLimiter<>(
+                2, TimeValue.ofSeconds(1), 0.2, 0.5, 4);
+        Assert.assertEquals(10, limiter.getLimit("somehost", 10));
+
+        limiter.released("somehost", true, 10);
+        limiter.released("somehost", false, 10);
+        limiter.released("somehost", true, 10);
+        Assert.assertEquals(10, limiter.getLimit("somehost", 10));
+        limiter.released("somehost", true, 10);
+        Assert.assertEquals(5, limiter.getLimit("somehost", 10));
+
+        for (int i = 0; i < 8; i++) {
+            limiter.released("somehost", false, 10);
+        }
+        Assert.assertEquals(2, limiter.getLimit("somehost", 10));
+        Assert.assertEquals(10, limiter.getLimit("otherhost", 10));
+    }
+
+    @Test
+    public void testIncreaseOnWaits() throws Exception {
+        final AdaptiveRouteLimiter<String> limiter = new AdaptiveRouteLimiter<>(
+                1, TimeValue.of(10, TimeUnit.MILLISECONDS), 0.1, 0.5, 2);
+        limiter.released("somehost", false, 4);
+        limiter.released("somehost", false, 4);
+        Assert.assertEquals(2, limiter.getLimit("somehost", 4));
+
+        // Short waits do not affect the limit
+        limiter.leased("somehost", TimeUnit.MILLISECONDS.toNanos(1));
+        limiter.released("somehost", true, 4);
+        limiter.released("somehost", true, 4);
+        Assert.assertEquals(2, limiter.getLimit("somehost", 4));
+
+        limiter.leased("somehost", TimeUnit.MILLISECONDS.toNanos(20));
+        limiter.released("somehost", true, 4);
+        limiter.released("somehost", true, 4);
+        Assert.assertEquals(3, limiter.getLimit("somehost", 4));
+
+        limiter.leased("somehost", TimeUnit.MILLISECONDS.toNanos(20));
+        limiter.released("somehost", true, 4);
+        limiter.released("somehost", true, 4);
+        Assert.assertEquals(4, limiter.getLimit("somehost", 4));
+
+        // Once at the pool maximum the limit follows the pool maximum
+        Assert.assertEquals(8, limiter.getLimit("somehost", 8));
+    }
+
+    @Test
+    public void testLimitNeverExceedsMax() throws Exception {
+        final AdaptiveRouteLimiter<String> limiter = new AdaptiveRouteLimiter<>(
+                5, TimeValue.ofSeconds(1), 0.1, 0.5, 1);
+        limiter.released("somehost", false, 10);
+        Assert.assertEquals(5, limiter.getLimit("somehost", 10));
+        Assert.assertEquals(3, limiter.getLimit("somehost", 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBackoffRatio() throws Exception {
+        new AdaptiveRouteLimiter<String>(1, TimeValue.ofSeconds(1), 0.1, 1.0, 10);
+    }
+
+}
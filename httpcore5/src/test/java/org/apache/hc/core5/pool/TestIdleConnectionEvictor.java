@@ -0,0 +1,86 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.pool;
+
+import org.apache.hc.core5.util.TimeValue;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestIdleConnectionEvictor {
+
+    @Test
+    public void testEvictExpiredAndIdle() throws Exception {
+        final ConnPoolControl<?> connPool = Mockito.mock(ConnPoolControl.class);
+        final IdleConnectionEvictor connectionEvictor = new IdleConnectionEvictor(connPool,
+                TimeValue.ofMillis(50), TimeValue.ofSeconds(1));
+        connectionEvictor.start();
+
+        Mockito.verify(connPool, Mockito.timeout(5000).atLeast(2)).closeExpired();
+        Mockito.verify(connPool, Mockito.timeout(5000).atLeast(2)).closeIdle(TimeValue.ofSeconds(1));
+
+        Assert.assertTrue(connectionEvictor.isRunning());
+
+        connectionEvictor.shutdown();
+        connectionEvictor.awaitTermination(TimeValue.ofSeconds(1));
+        Assert.assertFalse(connectionEvictor.isRunning());
+        Assert.assertNull(connectionEvictor.getException());
+    }
+
+    @Test
+    public void testEvictExpiredOnly() throws Exception {
+        final ConnPoolControl<?> connPool = Mockito.mock(ConnPoolControl.class);
+        final IdleConnectionEvictor connectionEvictor = new IdleConnectionEvictor(connPool,
+                TimeValue.ofMillis(50), null);
+        connectionEvictor.start();
+
+        Mockito.verify(connPool, Mockito.timeout(5000).atLeast(2)).closeExpired();
+        Mockito.verify(connPool, Mockito.never()).closeIdle(Mockito.<TimeValue>any());
+
+        connectionEvictor.shutdown();
+        connectionEvictor.awaitTermination(TimeValue.ofSeconds(1));
+        Assert.assertFalse(connectionEvictor.isRunning());
+    }
+
+    @Test
+    public void testEvictionContinuesAfterFailure() throws Exception {
+        final ConnPoolControl<?> connPool = Mockito.mock(ConnPoolControl.class);
+        Mockito.doThrow(new IllegalStateException("Oppsie")).when(connPool).closeExpired();
+        final IdleConnectionEvictor connectionEvictor = new IdleConnectionEvictor(connPool,
+                TimeValue.ofMillis(50), null);
+        connectionEvictor.start();
+
+        Mockito.verify(connPool, Mockito.timeout(5000).atLeast(2)).closeExpired();
+        Assert.assertTrue(connectionEvictor.isRunning());
+        Assert.assertTrue(connectionEvictor.getException() instanceof IllegalStateException);
+
+        connectionEvictor.shutdown();
+        connectionEvictor.awaitTermination(TimeValue.ofSeconds(1));
+        Assert.assertFalse(connectionEvictor.isRunning());
+    }
+
+}
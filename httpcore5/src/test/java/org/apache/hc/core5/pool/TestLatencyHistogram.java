@@ -0,0 +1,124 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.core5.pool;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestLatencyHistogram {
+
+    @Test
+    public void testBucketBoundaries() throws Exception {
+        for (long value = 0; value < 100000; value++) {
+            final int index = LatencyHistogram.bucketIndex(value);
+            Assert.assertTrue(value <= LatencyHistogram.bucketUpperBound(index));
+            if (index > 0) {
+                Assert.assertTrue(value > LatencyHistogram.bucketUpperBound(index - 1));
+            }
+        }
+        final long big = 1234567890123L;
+        final long upperBound = LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(big));
+        Assert.assertTrue(upperBound >= big);
+        Assert.assertTrue(upperBound - big <= big / 16);
+    }
+
+    @Test
+    public void testEmptySnapshot() throws Exception {
+        final LatencyHistogram.Snapshot snapshot = new LatencyHistogram().getSnapshot();
+        Assert.assertEquals(0, snapshot.getCount());
+        Assert.assertEquals(0, snapshot.getMin());
+        Assert.assertEquals(0, snapshot.getMax());
+        Assert.assertEquals(0, snapshot.getMean(), 0.0);
+        Assert.assertEquals(0, snapshot.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void testPercentiles() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        final LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        Assert.assertEquals(1000, snapshot.getCount());
+        Assert.assertEquals(1, snapshot.getMin());
+        Assert.assertEquals(1000, snapshot.getMax());
+        Assert.assertEquals(500.5, snapshot.getMean(), 0.001);
+        Assert.assertEquals(1, snapshot.getValueAtPercentile(0));
+        Assert.assertEquals(500, snapshot.getValueAtPercentile(50), 500 / 16);
+        Assert.assertEquals(990, snapshot.getValueAtPercentile(99), 990 / 16);
+        Assert.assertEquals(1000, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        final LatencyHistogram histogram1 = new LatencyHistogram();
+        histogram1.record(10);
+        histogram1.record(20);
+        final LatencyHistogram histogram2 = new LatencyHistogram();
+        histogram2.record(5);
+        final LatencyHistogram.Snapshot snapshot = histogram1.getSnapshot().merge(histogram2.getSnapshot());
+        Assert.assertEquals(3, snapshot.getCount());
+        Assert.assertEquals(5, snapshot.getMin());
+        Assert.assertEquals(20, snapshot.getMax());
+        Assert.assertEquals(35.0 / 3, snapshot.getMean(), 0.001);
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final int threadCount = 4;
+        final int count = 10000;
+        final CountDownLatch latch = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            final Thread thread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int n = 0; n < count; n++) {
+                        histogram.record(n);
+                    }
+                    latch.countDown();
+                }
+
+            });
+            thread.start();
+        }
+        latch.await();
+        final LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        Assert.assertEquals(threadCount * count, snapshot.getCount());
+        Assert.assertEquals(0, snapshot.getMin());
+        Assert.assertEquals(count - 1, snapshot.getMax());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeValue() throws Exception {
+        new LatencyHistogram().record(-1);
+    }
+
+}
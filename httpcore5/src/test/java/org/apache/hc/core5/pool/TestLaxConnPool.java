@@ -27,9 +27,13 @@
 package org.apache.hc.core5.pool;
 
 import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.apache.hc.core5.concurrent.HashedWheelTimer;
 import org.apache.hc.core5.http.HttpConnection;
 import org.apache.hc.core5.io.ShutdownType;
 import org.apache.hc.core5.util.TimeValue;
@@ -38,7 +42,29 @@
 import org.junit.Test;
 import org.mockito.Mockito;
 
-public class TestLaxConnPool {
+public class TestLaxConnPool extends ConnPoolTestBase<LaxConnPool<String, HttpConnection>> {
+
+    @Override
+    protected LaxConnPool<String, HttpConnection> createPool(
+            final int defaultMaxPerRoute, final int maxTotal, final HashedWheelTimer leaseTimer) {
+        return new LaxConnPool<>(defaultMaxPerRoute, 0, TimeValue.NEG_ONE_MILLISECONDS, PoolReusePolicy.LIFO, null, leaseTimer);
+    }
+
+    @Override
+    protected void setRouteLimiter(
+            final LaxConnPool<String, HttpConnection> pool, final AdaptiveRouteLimiter<String> routeLimiter) {
+        pool.setRouteLimiter(routeLimiter);
+    }
+
+    @Override
+    protected long getLeaseTimeoutCount(final LaxConnPool<String, HttpConnection> pool, final String route) {
+        return pool.getLeaseTimeoutCount(route);
+    }
+
+    @Override
+    protected long getLeaseTimeoutCount(final LaxConnPool<String, HttpConnection> pool) {
+        return pool.getLeaseTimeoutCount();
+    }
 
     @Test
     public void testEmptyPool() throws Exception {
@@ -195,6 +221,111 @@ public void testMaxLimits() throws Exception {
         Assert.assertSame(conn3, entry9.getConnection());
     }
 
+    @Test
+    public void testMaxTotalLimit() throws Exception {
+        final HttpConnection conn1 = Mockito.mock(HttpConnection.class);
+        final HttpConnection conn2 = Mockito.mock(HttpConnection.class);
+
+        final LaxConnPool<String, HttpConnection> pool = new LaxConnPool<>(
+                2, 2, TimeValue.NEG_ONE_MILLISECONDS, PoolReusePolicy.LIFO, null);
+        Assert.assertEquals(2, pool.getMaxTotal());
+
+        final Future<PoolEntry<String, HttpConnection>> future1 = pool.lease("somehost", null);
+        final Future<PoolEntry<String, HttpConnection>> future2 = pool.lease("somehost", null);
+        final Future<PoolEntry<String, HttpConnection>> future3 = pool.lease("otherhost", null);
+        final Future<PoolEntry<String, HttpConnection>> future4 = pool.lease("thirdhost", null);
+
+        Assert.assertTrue(future1.isDone());
+        final PoolEntry<String, HttpConnection> entry1 = future1.get();
+        entry1.assignConnection(conn1);
+        Assert.assertTrue(future2.isDone());
+        final PoolEntry<String, HttpConnection> entry2 = future2.get();
+        entry2.assignConnection(conn2);
+        Assert.assertFalse(future3.isDone());
+        Assert.assertFalse(future4.isDone());
+
+        PoolStats totals = pool.getTotalStats();
+        Assert.assertEquals(2, totals.getLeased());
+        Assert.assertEquals(2, totals.getPending());
+        Assert.assertEquals(2, totals.getMax());
+
+        // Freed slots are handed to routes in the order they started waiting
+        pool.release(entry1, false);
+        Assert.assertTrue(future3.isDone());
+        Assert.assertFalse(future4.isDone());
+        final PoolEntry<String, HttpConnection> entry3 = future3.get();
+        Assert.assertEquals("otherhost", entry3.getRoute());
+        Assert.assertFalse(entry3.hasConnection());
+
+        // Idle connections of other routes give up their slots
+        pool.release(entry2, true);
+        Assert.assertTrue(future4.isDone());
+        final PoolEntry<String, HttpConnection> entry4 = future4.get();
+        Assert.assertEquals("thirdhost", entry4.getRoute());
+        Assert.assertFalse(entry4.hasConnection());
+        Mockito.verify(conn1).shutdown(ShutdownType.GRACEFUL);
+        Mockito.verify(conn2).shutdown(ShutdownType.GRACEFUL);
+
+        totals = pool.getTotalStats();
+        Assert.assertEquals(2, totals.getLeased());
+        Assert.assertEquals(0, totals.getAvailable());
+        Assert.assertEquals(0, totals.getPending());
+
+        pool.setMaxTotal(0);
+        final Future<PoolEntry<String, HttpConnection>> future5 = pool.lease("somehost", null);
+        Assert.assertTrue(future5.isDone());
+    }
+
+    @Test
+    public void testConcurrentLeaseReleaseMaxTotal() throws Exception {
+        final int maxTotal = 4;
+        final String[] routes = new String[] { "host1", "host2", "host3", "host4", "host5" };
+        final LaxConnPool<String, HttpConnection> pool = new LaxConnPool<>(
+                2, maxTotal, TimeValue.NEG_ONE_MILLISECONDS, PoolReusePolicy.LIFO, null);
+        final AtomicInteger leasedTotal = new AtomicInteger(0);
+        final AtomicInteger violations = new AtomicInteger(0);
+        final AtomicInteger failures = new AtomicInteger(0);
+        final int threadCount = 10;
+        final CountDownLatch latch = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            final String route = routes[i % routes.length];
+            final Thread thread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        for (int n = 0; n < 500; n++) {
+                            final PoolEntry<String, HttpConnection> entry = pool.lease(route, null).get(10, TimeUnit.SECONDS);
+                            if (leasedTotal.incrementAndGet() > maxTotal) {
+                                violations.incrementAndGet();
+                            }
+                            if (!entry.hasConnection()) {
+                                entry.assignConnection(Mockito.mock(HttpConnection.class));
+                            }
+                            leasedTotal.decrementAndGet();
+                            pool.release(entry, n % 5 != 0);
+                        }
+                    } catch (final Exception ex) {
+                        failures.incrementAndGet();
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+
+            });
+            thread.start();
+        }
+        Assert.assertTrue(latch.await(60, TimeUnit.SECONDS));
+        Assert.assertEquals(0, failures.get());
+        Assert.assertEquals(0, violations.get());
+
+        final PoolStats totals = pool.getTotalStats();
+        Assert.assertEquals(0, totals.getLeased());
+        Assert.assertEquals(0, totals.getPending());
+        Assert.assertTrue(totals.getAvailable() <= maxTotal);
+        pool.shutdown(ShutdownType.IMMEDIATE);
+    }
+
     @Test
     public void testCreateNewIfExpired() throws Exception {
         final HttpConnection conn1 = Mockito.mock(HttpConnection.class);
@@ -270,6 +401,115 @@ public void testCloseExpired() throws Exception {
         Assert.assertEquals(0, stats.getPending());
     }
 
+    @Test
+    public void testThreadCache() throws Exception {
+        final HttpConnection conn1 = Mockito.mock(HttpConnection.class);
+        final HttpConnection conn2 = Mockito.mock(HttpConnection.class);
+        final HttpConnection conn3 = Mockito.mock(HttpConnection.class);
+
+        final LaxConnPool<String, HttpConnection> pool = new LaxConnPool<>(2);
+        pool.setThreadCacheSize(4);
+        Assert.assertEquals(4, pool.getThreadCacheSize());
+
+        final PoolEntry<String, HttpConnection> entry1 = pool.lease("somehost", null).get();
+        entry1.assignConnection(conn1);
+        final PoolEntry<String, HttpConnection> entry2 = pool.lease("somehost", null).get();
+        entry2.assignConnection(conn2);
+        entry2.updateState("some state");
+        pool.release(entry2, true);
+        pool.release(entry1, true);
+
+        // Connection with matching state is leased from the thread cache
+        final PoolEntry<String, HttpConnection> entry3 = pool.lease("somehost", "some state").get();
+        Assert.assertSame(entry2, entry3);
+        Assert.assertEquals(1, pool.getStats("somehost").getAvailable());
+        pool.release(entry3, true);
+
+        // Connections leased by other threads are no longer available
+        final AtomicReference<PoolEntry<String, HttpConnection>> otherRef = new AtomicReference<>();
+        final Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    otherRef.set(pool.lease("somehost", null).get());
+                } catch (final Exception ignore) {
+                }
+            }
+
+        });
+        thread.start();
+        thread.join();
+        final PoolEntry<String, HttpConnection> otherEntry = otherRef.get();
+        Assert.assertNotNull(otherEntry);
+        final PoolEntry<String, HttpConnection> entry4 = pool.lease("somehost", null).get();
+        Assert.assertNotSame(otherEntry, entry4);
+        Assert.assertEquals(2, pool.getStats("somehost").getLeased());
+        pool.release(entry4, true);
+        pool.release(otherEntry, true);
+
+        // Evicted connections are not leased from the thread cache
+        pool.closeIdle(TimeValue.ZERO_MILLISECONDS);
+        Assert.assertEquals(0, pool.getStats("somehost").getAvailable());
+        Mockito.verify(conn1).shutdown(ShutdownType.GRACEFUL);
+        Mockito.verify(conn2).shutdown(ShutdownType.GRACEFUL);
+        final PoolEntry<String, HttpConnection> entry5 = pool.lease("somehost", null).get();
+        Assert.assertFalse(entry5.hasConnection());
+        Assert.assertEquals(1, pool.getStats("somehost").getLeased());
+
+        // Pending lease requests take precedence over the thread cache
+        pool.setMaxPerRoute("somehost", 1);
+        final Future<PoolEntry<String, HttpConnection>> future6 = pool.lease("somehost", null);
+        Assert.assertFalse(future6.isDone());
+        entry5.assignConnection(conn3);
+        pool.release(entry5, true);
+        Assert.assertTrue(future6.isDone());
+        Assert.assertSame(entry5, future6.get());
+        pool.release(future6.get(), true);
+        Assert.assertEquals(1, pool.getStats("somehost").getAvailable());
+
+        // Cached connections are handed back to the pool when the cache gets disabled
+        pool.setThreadCacheSize(0);
+        Assert.assertEquals(0, pool.getThreadCacheSize());
+        Assert.assertEquals(1, pool.getStats("somehost").getAvailable());
+        Assert.assertSame(entry5, pool.lease("somehost", null).get());
+    }
+
+    @Test
+    public void testThreadCacheOfTerminatedThreadReclaimed() throws Exception {
+        final HttpConnection conn1 = Mockito.mock(HttpConnection.class);
+
+        final LaxConnPool<String, HttpConnection> pool = new LaxConnPool<>(2);
+        pool.setThreadCacheSize(4);
+
+        final AtomicReference<PoolEntry<String, HttpConnection>> otherRef = new AtomicReference<>();
+        final Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    final PoolEntry<String, HttpConnection> entry = pool.lease("somehost", null).get();
+                    entry.assignConnection(conn1);
+                    pool.release(entry, true);
+                    otherRef.set(entry);
+                } catch (final Exception ignore) {
+                }
+            }
+
+        });
+        thread.start();
+        thread.join();
+        Assert.assertNotNull(otherRef.get());
+        Assert.assertEquals(1, pool.getThreadCacheCount());
+
+        // Cache of the terminated thread is dropped once another thread gets a cache
+        final Future<PoolEntry<String, HttpConnection>> future = pool.lease("somehost", null);
+        Assert.assertEquals(1, pool.getThreadCacheCount());
+        Assert.assertTrue(future.isDone());
+        Assert.assertSame(otherRef.get(), future.get());
+        Assert.assertEquals(1, pool.getStats("somehost").getLeased());
+    }
+
     @Test
     public void testCloseIdle() throws Exception {
         final HttpConnection conn1 = Mockito.mock(HttpConnection.class);
@@ -30,6 +30,7 @@
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.hc.core5.concurrent.HashedWheelTimer;
 import org.apache.hc.core5.http.HttpConnection;
 import org.apache.hc.core5.io.ShutdownType;
 import org.apache.hc.core5.util.TimeValue;
@@ -38,7 +39,29 @@
 import org.junit.Test;
 import org.mockito.Mockito;
 
-public class TestStrictConnPool {
+public class TestStrictConnPool extends ConnPoolTestBase<StrictConnPool<String, HttpConnection>> {
+
+    @Override
+    protected StrictConnPool<String, HttpConnection> createPool(
+            final int defaultMaxPerRoute, final int maxTotal, final HashedWheelTimer leaseTimer) {
+        return new StrictConnPool<>(defaultMaxPerRoute, maxTotal, TimeValue.NEG_ONE_MILLISECONDS, PoolReusePolicy.LIFO, null, leaseTimer);
+    }
+
+    @Override
+    protected void setRouteLimiter(
+            final StrictConnPool<String, HttpConnection> pool, final AdaptiveRouteLimiter<String> routeLimiter) {
+        pool.setRouteLimiter(routeLimiter);
+    }
+
+    @Override
+    protected long getLeaseTimeoutCount(final StrictConnPool<String, HttpConnection> pool, final String route) {
+        return pool.getLeaseTimeoutCount(route);
+    }
+
+    @Override
+    protected long getLeaseTimeoutCount(final StrictConnPool<String, HttpConnection> pool) {
+        return pool.getLeaseTimeoutCount();
+    }
 
     @Test
     public void testEmptyPool() throws Exception {
@@ -431,6 +454,73 @@ public void testCloseExpired() throws Exception {
         Assert.assertEquals(0, stats.getPending());
     }
 
+    @Test
+    public void testStateFallbackPolicy() throws Exception {
+        final HttpConnection conn1 = Mockito.mock(HttpConnection.class);
+        final HttpConnection conn2 = Mockito.mock(HttpConnection.class);
+
+        final StrictConnPool<String, HttpConnection> pool = new StrictConnPool<>(3, 3);
+        Assert.assertEquals(PoolStateFallbackPolicy.REUSE_STATELESS, pool.getStateFallbackPolicy());
+
+        final PoolEntry<String, HttpConnection> entry1 = pool.lease("somehost", null).get();
+        entry1.assignConnection(conn1);
+        entry1.updateState("stuff");
+        final PoolEntry<String, HttpConnection> entry2 = pool.lease("somehost", null).get();
+        entry2.assignConnection(conn2);
+        pool.release(entry1, true);
+        pool.release(entry2, true);
+
+        // Exact state match
+        final PoolEntry<String, HttpConnection> entry3 = pool.lease("somehost", "stuff").get();
+        Assert.assertSame(conn1, entry3.getConnection());
+        pool.release(entry3, true);
+
+        // Fallback to a connection without state
+        final PoolEntry<String, HttpConnection> entry4 = pool.lease("somehost", "other-stuff").get();
+        Assert.assertSame(conn2, entry4.getConnection());
+        pool.release(entry4, true);
+
+        pool.setStateFallbackPolicy(PoolStateFallbackPolicy.ALLOCATE_NEW);
+        final PoolEntry<String, HttpConnection> entry5 = pool.lease("somehost", "other-stuff").get();
+        Assert.assertFalse(entry5.hasConnection());
+        pool.release(entry5, false);
+
+        pool.setStateFallbackPolicy(PoolStateFallbackPolicy.REUSE_ANY);
+        final PoolEntry<String, HttpConnection> entry6 = pool.lease("somehost", "other-stuff").get();
+        Assert.assertSame(conn1, entry6.getConnection());
+        Assert.assertEquals("stuff", entry6.getState());
+        pool.release(entry6, true);
+
+        Assert.assertEquals(2, pool.getStats("somehost").getAvailable());
+        Mockito.verify(conn1, Mockito.never()).shutdown(Mockito.<ShutdownType>any());
+        Mockito.verify(conn2, Mockito.never()).shutdown(Mockito.<ShutdownType>any());
+    }
+
+    @Test
+    public void testReusePolicy() throws Exception {
+        final HttpConnection conn1 = Mockito.mock(HttpConnection.class);
+        final HttpConnection conn2 = Mockito.mock(HttpConnection.class);
+
+        final StrictConnPool<String, HttpConnection> lifoPool = new StrictConnPool<>(2, 2);
+        final PoolEntry<String, HttpConnection> entry1 = lifoPool.lease("somehost", null).get();
+        entry1.assignConnection(conn1);
+        final PoolEntry<String, HttpConnection> entry2 = lifoPool.lease("somehost", null).get();
+        entry2.assignConnection(conn2);
+        lifoPool.release(entry1, true);
+        lifoPool.release(entry2, true);
+        Assert.assertSame(conn2, lifoPool.lease("somehost", null).get().getConnection());
+
+        final StrictConnPool<String, HttpConnection> fifoPool = new StrictConnPool<>(2, 2,
+                TimeValue.NEG_ONE_MILLISECONDS, PoolReusePolicy.FIFO, null);
+        final PoolEntry<String, HttpConnection> entry3 = fifoPool.lease("somehost", null).get();
+        entry3.assignConnection(conn1);
+        final PoolEntry<String, HttpConnection> entry4 = fifoPool.lease("somehost", null).get();
+        entry4.assignConnection(conn2);
+        fifoPool.release(entry3, true);
+        fifoPool.release(entry4, true);
+        Assert.assertSame(conn1, fifoPool.lease("somehost", null).get().getConnection());
+    }
+
     @Test
     public void testCloseIdle() throws Exception {
         final HttpConnection conn1 = Mockito.mock(HttpConnection.class);
@@ -0,0 +1,116 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.core5.reactor;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestSelectedKeySet {
+
+    @Test
+    public void testAddAndReset() throws Exception {
+        final SelectedKeySet keySet = new SelectedKeySet();
+        final SelectionKey[] keys = new SelectionKey[2000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = Mockito.mock(SelectionKey.class);
+            Assert.assertTrue(keySet.add(keys[i]));
+        }
+        Assert.assertFalse(keySet.add(null));
+        Assert.assertEquals(2000, keySet.size());
+        for (int i = 0; i < keys.length; i++) {
+            Assert.assertSame(keys[i], keySet.get(i));
+        }
+        int count = 0;
+        for (final SelectionKey key : keySet) {
+            Assert.assertSame(keys[count++], key);
+        }
+        Assert.assertEquals(2000, count);
+        keySet.reset();
+        Assert.assertEquals(0, keySet.size());
+        Assert.assertNull(keySet.get(0));
+    }
+
+    @Test
+    public void testSelectIntoInstalledKeySet() throws Exception {
+        final Selector selector = Selector.open();
+        final Pipe pipe = Pipe.open();
+        try {
+            final SelectedKeySet keySet = SelectedKeySet.install(selector);
+            Assert.assertNotNull(keySet);
+            Assert.assertSame(keySet, selector.selectedKeys());
+
+            pipe.source().configureBlocking(false);
+            final SelectionKey key = pipe.source().register(selector, SelectionKey.OP_READ);
+            pipe.sink().write(ByteBuffer.wrap(new byte[] { 1 }));
+
+            Assert.assertEquals(1, selector.select(5000));
+            Assert.assertEquals(1, keySet.size());
+            Assert.assertSame(key, keySet.get(0));
+            keySet.reset();
+        } finally {
+            pipe.sink().close();
+            pipe.source().close();
+            selector.close();
+        }
+    }
+
+    @Test
+    public void testBatchedEventMaskUpdates() throws Exception {
+        final Selector selector = Mockito.mock(Selector.class);
+        final SelectionKey key = Mockito.mock(SelectionKey.class);
+        Mockito.when(key.interestOps()).thenReturn(SelectionKey.OP_READ);
+        Mockito.when(key.isValid()).thenReturn(true);
+        final SocketChannel socketChannel = Mockito.mock(SocketChannel.class);
+        final EventMaskUpdateQueue updateQueue = new EventMaskUpdateQueue(selector);
+        updateQueue.bind(Thread.currentThread());
+
+        final IOSessionImpl ioSession = new IOSessionImpl(key, socketChannel, null, updateQueue);
+        ioSession.setEvent(SelectionKey.OP_WRITE);
+        ioSession.clearEvent(SelectionKey.OP_READ);
+        ioSession.setEvent(SelectionKey.OP_READ);
+        Assert.assertEquals(SelectionKey.OP_READ | SelectionKey.OP_WRITE, ioSession.getEventMask());
+
+        Mockito.verify(key, Mockito.never()).interestOps(Mockito.anyInt());
+        Mockito.verify(selector, Mockito.never()).wakeup();
+
+        updateQueue.apply();
+        Mockito.verify(key, Mockito.times(1)).interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+
+        updateQueue.bind(null);
+        ioSession.clearEvent(SelectionKey.OP_WRITE);
+        Mockito.verify(selector, Mockito.times(1)).wakeup();
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.core5.reactor;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.io.ShutdownType;
+import org.apache.hc.core5.util.TimeValue;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestSessionDispatchStrategy {
+
+    private SingleCoreIOReactor[] dispatchers;
+
+    @Before
+    public void setup() throws Exception {
+        dispatchers = new SingleCoreIOReactor[3];
+        for (int i = 0; i < dispatchers.length; i++) {
+            dispatchers[i] = new SingleCoreIOReactor(
+                    new ConcurrentLinkedQueue<ExceptionEvent>(),
+                    Mockito.mock(IOEventHandlerFactory.class),
+                    IOReactorConfig.DEFAULT,
+                    null,
+                    null,
+                    null);
+        }
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        for (final SingleCoreIOReactor dispatcher : dispatchers) {
+            dispatcher.shutdown(ShutdownType.IMMEDIATE);
+            dispatcher.selector.close();
+        }
+    }
+
+    private static void connect(final SingleCoreIOReactor dispatcher) {
+        final HttpHost host = new HttpHost("somehost", 80);
+        dispatcher.connect(host, new InetSocketAddress("localhost", 80), null, TimeValue.ZERO_MILLISECONDS, null, null);
+    }
+
+    @Test
+    public void testRoundRobin() throws Exception {
+        final SessionDispatchStrategy strategy = new SessionDispatchStrategy(dispatchers, SessionDispatchPolicy.ROUND_ROBIN);
+        final SingleCoreIOReactor first = strategy.next(null);
+        final SingleCoreIOReactor second = strategy.next(null);
+        final SingleCoreIOReactor third = strategy.next(null);
+        Assert.assertNotSame(first, second);
+        Assert.assertNotSame(second, third);
+        Assert.assertNotSame(first, third);
+        Assert.assertSame(first, strategy.next(null));
+    }
+
+    @Test
+    public void testLeastSessions() throws Exception {
+        final SessionDispatchStrategy strategy = new SessionDispatchStrategy(dispatchers, SessionDispatchPolicy.LEAST_SESSIONS);
+        connect(dispatchers[0]);
+        connect(dispatchers[0]);
+        connect(dispatchers[2]);
+        Assert.assertEquals(2, dispatchers[0].getSessionCount());
+        for (int i = 0; i < 5; i++) {
+            Assert.assertSame(dispatchers[1], strategy.next(null));
+        }
+        connect(dispatchers[1]);
+        connect(dispatchers[1]);
+        Assert.assertSame(dispatchers[2], strategy.next(null));
+    }
+
+    @Test
+    public void testLeastTrafficSessionChannel() throws Exception {
+        final ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        final Selector selector = Selector.open();
+        try {
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            final SocketChannel socketChannel = SocketChannel.open(serverChannel.getLocalAddress());
+            final SocketChannel peerChannel = serverChannel.accept();
+            try {
+                socketChannel.configureBlocking(false);
+                final SelectionKey key = socketChannel.register(selector, SelectionKey.OP_READ);
+                // Sessions of I/O dispatchers with LEAST_TRAFFIC policy count bytes they transfer
+                final AtomicLong byteCount = new AtomicLong(0);
+                final IOSessionImpl ioSession = new IOSessionImpl(key, socketChannel, byteCount);
+                final ByteChannel channel = ioSession.channel();
+                Assert.assertTrue(channel instanceof GatheringByteChannel);
+                Assert.assertTrue(channel instanceof ScatteringByteChannel);
+
+                final long bytesWritten = ((GatheringByteChannel) channel).write(new ByteBuffer[] {
+                        ByteBuffer.wrap(new byte[] {1, 2, 3}), ByteBuffer.wrap(new byte[] {4, 5})});
+                Assert.assertEquals(5, bytesWritten);
+                Assert.assertEquals(5, byteCount.get());
+
+                final ByteBuffer dst = ByteBuffer.allocate(5);
+                while (dst.hasRemaining()) {
+                    peerChannel.read(dst);
+                }
+                dst.flip();
+                peerChannel.write(dst);
+                final ByteBuffer[] dsts = new ByteBuffer[] {ByteBuffer.allocate(2), ByteBuffer.allocate(3)};
+                long bytesRead = 0;
+                while (bytesRead < 5) {
+                    bytesRead += ((ScatteringByteChannel) channel).read(dsts);
+                }
+                Assert.assertEquals(10, byteCount.get());
+            } finally {
+                peerChannel.close();
+                socketChannel.close();
+            }
+        } finally {
+            selector.close();
+            serverChannel.close();
+        }
+    }
+
+    @Test
+    public void testRemoteEndpointHash() throws Exception {
+        final SessionDispatchStrategy strategy = new SessionDispatchStrategy(dispatchers, SessionDispatchPolicy.REMOTE_ENDPOINT_HASH);
+        final SingleCoreIOReactor dispatcher = strategy.next(new HttpHost("somehost", 80));
+        for (int i = 0; i < 5; i++) {
+            Assert.assertSame(dispatcher, strategy.next(new HttpHost("somehost", 80)));
+        }
+    }
+
+}
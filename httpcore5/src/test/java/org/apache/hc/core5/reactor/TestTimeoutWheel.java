@@ -0,0 +1,233 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.core5.reactor;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.io.ShutdownType;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestTimeoutWheel {
+
+    static class TestChannel extends InternalChannel {
+
+        volatile int timeout;
+        volatile boolean closed;
+        int timeoutCount;
+
+        TestChannel(final int timeout) {
+            this.timeout = timeout;
+        }
+
+        @Override
+        void onIOEvent(final int ops) throws IOException {
+        }
+
+        @Override
+        void onTimeout() throws IOException {
+            timeoutCount++;
+        }
+
+        @Override
+        void onException(final Exception cause) {
+        }
+
+        @Override
+        int getTimeout() {
+            return timeout;
+        }
+
+        @Override
+        boolean isRegistered() {
+            return !closed;
+        }
+
+        @Override
+        public void shutdown(final ShutdownType shutdownType) {
+            closed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+        }
+
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        final TestChannel channel = new TestChannel(1000);
+        final long start = channel.getLastEventTime();
+        final TimeoutWheel wheel = new TimeoutWheel(100, 16, start);
+        wheel.schedule(channel);
+        Assert.assertEquals(1, wheel.size());
+
+        wheel.expire(start + 500);
+        Assert.assertEquals(0, channel.timeoutCount);
+        wheel.expire(start + 1000);
+        Assert.assertEquals(0, channel.timeoutCount);
+        wheel.expire(start + 1200);
+        Assert.assertEquals(1, channel.timeoutCount);
+        Assert.assertEquals(1, wheel.size());
+
+        // Timed out channels keep on getting checked at each tick
+        wheel.expire(start + 1300);
+        Assert.assertEquals(2, channel.timeoutCount);
+
+        channel.closed = true;
+        wheel.expire(start + 1500);
+        Assert.assertEquals(2, channel.timeoutCount);
+        Assert.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testExpiryBeyondOneRotation() throws Exception {
+        final TestChannel channel = new TestChannel(5000);
+        final long start = channel.getLastEventTime();
+        final TimeoutWheel wheel = new TimeoutWheel(100, 8, start);
+        wheel.schedule(channel);
+
+        for (long t = start; t <= start + 5000; t += 100) {
+            wheel.expire(t);
+        }
+        Assert.assertEquals(0, channel.timeoutCount);
+        wheel.expire(start + 5200);
+        Assert.assertEquals(1, channel.timeoutCount);
+    }
+
+    @Test
+    public void testExpiryAfterLongPause() throws Exception {
+        final TestChannel channel1 = new TestChannel(300);
+        final TestChannel channel2 = new TestChannel(60000);
+        final long start = Math.max(channel1.getLastEventTime(), channel2.getLastEventTime());
+        final TimeoutWheel wheel = new TimeoutWheel(100, 8, start);
+        wheel.schedule(channel1);
+        wheel.schedule(channel2);
+
+        wheel.expire(start + 10000);
+        Assert.assertEquals(1, channel1.timeoutCount);
+        Assert.assertEquals(0, channel2.timeoutCount);
+        Assert.assertEquals(2, wheel.size());
+    }
+
+    @Test
+    public void testTimeoutUpdate() throws Exception {
+        final TestChannel channel = new TestChannel(0);
+        final long start = channel.getLastEventTime();
+        final TimeoutWheel wheel = new TimeoutWheel(100, 16, start);
+        wheel.schedule(channel);
+        Assert.assertEquals(0, wheel.size());
+
+        channel.timeout = 200;
+        channel.timeoutUpdated();
+        wheel.expire(start + 100);
+        Assert.assertEquals(1, wheel.size());
+        wheel.expire(start + 400);
+        Assert.assertEquals(1, channel.timeoutCount);
+
+        channel.timeout = 0;
+        channel.timeoutUpdated();
+        wheel.expire(start + 500);
+        Assert.assertEquals(1, channel.timeoutCount);
+        Assert.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testTlsSessionCloseWithNoTimeout() throws Exception {
+        final ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        final Selector selector = Selector.open();
+        try {
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            final SocketChannel socketChannel = SocketChannel.open(serverChannel.getLocalAddress());
+            // The peer accepts the connection and stays silent
+            final SocketChannel peerChannel = serverChannel.accept();
+            try {
+                socketChannel.configureBlocking(false);
+                final SelectionKey key = socketChannel.register(selector, SelectionKey.OP_READ);
+                final InternalDataChannel dataChannel = new InternalDataChannel(
+                        new IOSessionImpl(key, socketChannel),
+                        new HttpHost("localhost"),
+                        null,
+                        new ConcurrentLinkedQueue<InternalDataChannel>(),
+                        0);
+                final IOEventHandler handler = Mockito.mock(IOEventHandler.class);
+                dataChannel.setHandler(handler);
+                key.attach(dataChannel);
+
+                final long start = dataChannel.getLastEventTime();
+                final TimeoutWheel wheel = new TimeoutWheel(100, 16, start);
+                wheel.schedule(dataChannel);
+                Assert.assertEquals(0, wheel.size());
+
+                dataChannel.startTls(SSLContexts.createDefault(), null, null, null);
+                // Graceful closure of the TLS session without a timeout sets a timeout
+                // of its own to make sure the session gets terminated
+                dataChannel.close();
+                Assert.assertTrue(dataChannel.getSocketTimeout() > 0);
+                wheel.expire(start + 100);
+                Assert.assertEquals(1, wheel.size());
+                wheel.expire(start + dataChannel.getSocketTimeout() + 200);
+                Mockito.verify(handler).timeout(dataChannel);
+            } finally {
+                peerChannel.close();
+                socketChannel.close();
+            }
+        } finally {
+            selector.close();
+            serverChannel.close();
+        }
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        final TestChannel channel = new TestChannel(200);
+        final long start = channel.getLastEventTime();
+        final TimeoutWheel wheel = new TimeoutWheel(100, 16, start);
+        wheel.schedule(channel);
+        Assert.assertEquals(1, wheel.size());
+        wheel.remove(channel);
+        Assert.assertEquals(0, wheel.size());
+
+        channel.timeoutUpdated();
+        wheel.expire(start + 1000);
+        Assert.assertEquals(0, channel.timeoutCount);
+        Assert.assertEquals(0, wheel.size());
+    }
+
+}
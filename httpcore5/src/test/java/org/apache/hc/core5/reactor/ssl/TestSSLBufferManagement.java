@@ -0,0 +1,130 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.core5.reactor.ssl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.hc.core5.io.ShutdownType;
+import org.apache.hc.core5.reactor.IOSession;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.apache.hc.core5.util.PooledByteBufferAllocator;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestSSLBufferManagement {
+
+    @Test
+    public void testPooledBuffer() throws Exception {
+        final PooledByteBufferAllocator allocator = new PooledByteBufferAllocator(65536, 10, 0, null);
+        final SSLBufferManagement bufferManagement = SSLBufferManagement.pooled(allocator);
+        final SSLBuffer buffer1 = bufferManagement.create(16709);
+        final SSLBuffer buffer2 = bufferManagement.create(16709);
+        Assert.assertFalse(buffer1.isAcquired());
+        Assert.assertFalse(buffer1.hasData());
+
+        final ByteBuffer b1 = buffer1.acquire();
+        Assert.assertTrue(b1.isDirect());
+        Assert.assertTrue(b1.capacity() >= 16709);
+        Assert.assertSame(b1, buffer1.acquire());
+        Assert.assertTrue(buffer1.isAcquired());
+        Assert.assertFalse(buffer1.hasData());
+        b1.put((byte) 1);
+        Assert.assertTrue(buffer1.hasData());
+
+        buffer1.release();
+        Assert.assertFalse(buffer1.isAcquired());
+        Assert.assertFalse(buffer1.hasData());
+        Assert.assertEquals(1, allocator.getPooledCount());
+        buffer1.release();
+        Assert.assertEquals(1, allocator.getPooledCount());
+
+        final ByteBuffer b2 = buffer2.acquire();
+        Assert.assertSame(b1, b2);
+        Assert.assertEquals(0, b2.position());
+        Assert.assertEquals(0, allocator.getPooledCount());
+        Assert.assertEquals(1, allocator.getAllocatedCount());
+    }
+
+    @Test
+    public void testPooledBufferWithCoalescedRecords() throws Exception {
+        final PooledByteBufferAllocator allocator = new PooledByteBufferAllocator(
+                SSLBufferManagement.MAX_POOLED_BUFFER_SIZE, 10, 0, null);
+        final SSLBufferManagement bufferManagement = SSLBufferManagement.pooled(allocator);
+        final SSLContext sslContext = SSLContexts.createDefault();
+
+        final ByteChannel channel = new ByteChannel() {
+
+            @Override
+            public int read(final ByteBuffer dst) throws IOException {
+                return 0;
+            }
+
+            @Override
+            public int write(final ByteBuffer src) throws IOException {
+                final int n = src.remaining();
+                src.position(src.limit());
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() throws IOException {
+            }
+
+        };
+        final IOSession ioSession = Mockito.mock(IOSession.class);
+        Mockito.when(ioSession.channel()).thenReturn(channel);
+
+        // The client hello gets written out with the outbound network buffer
+        final SSLIOSession sslSession1 = new SSLIOSession(
+                null, ioSession, SSLMode.CLIENT, sslContext, bufferManagement, 8192, null, null, null);
+        sslSession1.initialize();
+        sslSession1.outboundTransport();
+        sslSession1.shutdown(ShutdownType.IMMEDIATE);
+        final long allocatedCount = allocator.getAllocatedCount();
+        Assert.assertTrue(allocatedCount > 0);
+        Assert.assertEquals(allocatedCount, allocator.getPooledCount());
+
+        final SSLIOSession sslSession2 = new SSLIOSession(
+                null, ioSession, SSLMode.CLIENT, sslContext, bufferManagement, 8192, null, null, null);
+        sslSession2.initialize();
+        sslSession2.outboundTransport();
+        Assert.assertEquals(allocatedCount, allocator.getAllocatedCount());
+        Assert.assertTrue(allocator.getReusedCount() > 0);
+    }
+
+}
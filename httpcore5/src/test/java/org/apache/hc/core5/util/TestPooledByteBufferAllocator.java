@@ -0,0 +1,147 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.core5.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.core5.function.Callback;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestPooledByteBufferAllocator {
+
+    @Test
+    public void testSizeClasses() throws Exception {
+        Assert.assertEquals(0, PooledByteBufferAllocator.sizeClass(0));
+        Assert.assertEquals(0, PooledByteBufferAllocator.sizeClass(512));
+        Assert.assertEquals(1, PooledByteBufferAllocator.sizeClass(513));
+        Assert.assertEquals(1, PooledByteBufferAllocator.sizeClass(1024));
+        Assert.assertEquals(5, PooledByteBufferAllocator.sizeClass(16384));
+        Assert.assertEquals(6, PooledByteBufferAllocator.sizeClass(16393));
+    }
+
+    @Test
+    public void testAllocateAndRecycle() throws Exception {
+        final PooledByteBufferAllocator allocator = new PooledByteBufferAllocator(65536, 10, 2, null);
+        final ByteBuffer b1 = allocator.allocate(8192);
+        Assert.assertTrue(b1.isDirect());
+        Assert.assertEquals(8192, b1.capacity());
+        final ByteBuffer b2 = allocator.allocate(1000);
+        Assert.assertEquals(1024, b2.capacity());
+        Assert.assertEquals(2, allocator.getAllocatedCount());
+
+        b1.put((byte) 1).position(100);
+        allocator.release(b1);
+        allocator.release(b2);
+        final ByteBuffer b3 = allocator.allocate(5000);
+        Assert.assertSame(b1, b3);
+        Assert.assertEquals(0, b3.position());
+        Assert.assertEquals(b3.capacity(), b3.limit());
+        Assert.assertEquals(1, allocator.getReusedCount());
+        Assert.assertEquals(2, allocator.getAllocatedCount());
+    }
+
+    @Test
+    public void testOversizedBuffersNotPooled() throws Exception {
+        final PooledByteBufferAllocator allocator = new PooledByteBufferAllocator(1024, 10, 0, null);
+        final ByteBuffer b1 = allocator.allocate(3000);
+        Assert.assertEquals(3000, b1.capacity());
+        allocator.release(b1);
+        Assert.assertEquals(0, allocator.getPooledCount());
+        Assert.assertNotSame(b1, allocator.allocate(3000));
+    }
+
+    @Test
+    public void testSharedPoolBounded() throws Exception {
+        final PooledByteBufferAllocator allocator = new PooledByteBufferAllocator(1024, 2, 0, null);
+        final ByteBuffer b1 = allocator.allocate(1024);
+        final ByteBuffer b2 = allocator.allocate(1024);
+        final ByteBuffer b3 = allocator.allocate(1024);
+        allocator.release(b1);
+        allocator.release(b2);
+        allocator.release(b3);
+        Assert.assertEquals(2, allocator.getPooledCount());
+        allocator.allocate(1024);
+        Assert.assertEquals(1, allocator.getPooledCount());
+    }
+
+    @Test
+    public void testBuffersSharedAcrossThreads() throws Exception {
+        final PooledByteBufferAllocator allocator = new PooledByteBufferAllocator(1024, 10, 1, null);
+        final ByteBuffer b1 = allocator.allocate(1024);
+        final ByteBuffer b2 = allocator.allocate(1024);
+        allocator.release(b1);
+        // Thread cache is full
+        allocator.release(b2);
+        Assert.assertEquals(1, allocator.getPooledCount());
+        final ByteBuffer[] holder = new ByteBuffer[1];
+        final Thread t = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                holder[0] = allocator.allocate(1024);
+            }
+
+        });
+        t.start();
+        t.join();
+        Assert.assertSame(b2, holder[0]);
+        Assert.assertSame(b1, allocator.allocate(1024));
+    }
+
+    @Test
+    public void testLeakDetection() throws Exception {
+        final AtomicInteger leaks = new AtomicInteger(0);
+        final PooledByteBufferAllocator allocator = new PooledByteBufferAllocator(1024, 10, 0, new Callback<Exception>() {
+
+            @Override
+            public void execute(final Exception ex) {
+                leaks.incrementAndGet();
+            }
+
+        });
+        final ByteBuffer b1 = allocator.allocate(1024);
+        allocator.allocate(1024);
+        Assert.assertEquals(2, allocator.getOutstandingCount());
+        allocator.release(b1);
+        Assert.assertEquals(1, allocator.getOutstandingCount());
+        try {
+            allocator.release(b1);
+            Assert.fail("IllegalStateException expected");
+        } catch (final IllegalStateException expected) {
+        }
+        for (int i = 0; i < 20 && leaks.get() == 0; i++) {
+            System.gc();
+            Thread.sleep(50);
+            allocator.allocate(512);
+        }
+        Assert.assertTrue(leaks.get() > 0);
+    }
+
+}